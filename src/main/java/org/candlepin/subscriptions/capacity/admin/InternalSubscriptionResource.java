@@ -37,6 +37,7 @@ import org.candlepin.subscriptions.db.model.Usage;
 import org.candlepin.subscriptions.exception.ErrorCode;
 import org.candlepin.subscriptions.exception.SubscriptionsException;
 import org.candlepin.subscriptions.security.SecurityProperties;
+import org.candlepin.subscriptions.subscription.AwsUsageContextCache;
 import org.candlepin.subscriptions.subscription.SubscriptionSyncController;
 import org.candlepin.subscriptions.tally.UsageCalculation;
 import org.candlepin.subscriptions.tally.UsageCalculation.Key;
@@ -55,15 +56,18 @@ public class InternalSubscriptionResource implements InternalApi {
   private final Counter missingSubscriptionCounter;
   private final Counter ambiguousSubscriptionCounter;
   private final SecurityProperties properties;
+  private final AwsUsageContextCache awsUsageContextCache;
 
   public InternalSubscriptionResource(
       MeterRegistry meterRegistry,
       SubscriptionSyncController subscriptionSyncController,
-      SecurityProperties properties) {
+      SecurityProperties properties,
+      AwsUsageContextCache awsUsageContextCache) {
     this.missingSubscriptionCounter = meterRegistry.counter("swatch_missing_aws_subscription");
     this.ambiguousSubscriptionCounter = meterRegistry.counter("swatch_ambiguous_aws_subscription");
     this.subscriptionSyncController = subscriptionSyncController;
     this.properties = properties;
+    this.awsUsageContextCache = awsUsageContextCache;
   }
 
   @Override
@@ -88,31 +92,68 @@ public class InternalSubscriptionResource implements InternalApi {
             Usage.fromString(usage),
             BillingProvider.AWS,
             billingAccountId);
+    var lookupKey =
+        new AwsUsageContextCache.LookupKey(
+            accountNumber, orgId, productId, sla, usage, billingAccountId);
 
+    // The contexts of all subscriptions of the lookup are cached, so that any date can be served
+    List<AwsUsageContext> contexts =
+        awsUsageContextCache.get(
+            lookupKey,
+            () ->
+                buildAwsUsageContexts(
+                    subscriptionSyncController.findSubscriptions(
+                        accountNumber, Optional.ofNullable(orgId), usageKey, null, null)));
+    boolean complete = true;
     // Set start date one hour in past to pickup recently terminated subscriptions
     var start = date.minusHours(1);
-    List<Subscription> subscriptions =
-        subscriptionSyncController.findSubscriptionsAndSyncIfNeeded(
-            accountNumber, Optional.ofNullable(orgId), usageKey, start, date, true);
+    if (contexts.stream().noneMatch(context -> isActiveBetween(context, start, date))) {
+      // The subscription may not be synced yet
+      contexts =
+          buildAwsUsageContexts(
+              subscriptionSyncController.findSubscriptionsAndSyncIfNeeded(
+                  accountNumber, Optional.ofNullable(orgId), usageKey, start, date, true));
+      complete = false;
+    }
+    return selectAwsUsageContext(contexts, complete, accountNumber, orgId, date, usageKey);
+  }
+
+  /**
+   * Pick the context of the subscription active at a date, from the contexts of a lookup's
+   * subscriptions, latest start first.
+   *
+   * @param complete whether the contexts cover all the subscriptions of the lookup; only then is
+   *     the period in which the picked context applies returned with it
+   */
+  @SuppressWarnings("java:S107")
+  private AwsUsageContext selectAwsUsageContext(
+      List<AwsUsageContext> contexts,
+      boolean complete,
+      String accountNumber,
+      String orgId,
+      OffsetDateTime date,
+      UsageCalculation.Key usageKey) {
+    var start = date.minusHours(1);
+    List<AwsUsageContext> candidates =
+        contexts.stream()
+            .filter(context -> isActiveBetween(context, start, date))
+            .collect(Collectors.toList());
 
     var existsRecentlyTerminatedSubscription =
-        subscriptions.stream().anyMatch(subscription -> subscription.getEndDate().isBefore(date));
+        candidates.stream().anyMatch(context -> context.getSubscriptionEndDate().isBefore(date));
 
     // Filter out any terminated subscriptions
-    var activeSubscriptions =
-        subscriptions.stream()
-            .filter(
-                subscription ->
-                    subscription.getEndDate().isAfter(date)
-                        || subscription.getEndDate().equals(date))
+    var activeContexts =
+        candidates.stream()
+            .filter(context -> !context.getSubscriptionEndDate().isBefore(date))
             .collect(Collectors.toList());
 
-    if (subscriptions.isEmpty()) {
+    if (candidates.isEmpty()) {
       missingSubscriptionCounter.increment();
       throw new NotFoundException();
     }
 
-    if (activeSubscriptions.isEmpty() && existsRecentlyTerminatedSubscription) {
+    if (activeContexts.isEmpty() && existsRecentlyTerminatedSubscription) {
       throw new SubscriptionsException(
           ErrorCode.SUBSCRIPTION_RECENTLY_TERMINATED,
           Status.NOT_FOUND,
@@ -120,7 +161,7 @@ public class InternalSubscriptionResource implements InternalApi {
           "");
     }
 
-    if (activeSubscriptions.size() > 1) {
+    if (activeContexts.size() > 1) {
       ambiguousSubscriptionCounter.increment();
       log.warn(
           "Multiple subscriptions found for account {} or for org {} with key {} and product tag {}."
@@ -130,7 +171,65 @@ public class InternalSubscriptionResource implements InternalApi {
           usageKey,
           usageKey.getProductId());
     }
-    return activeSubscriptions.stream().findFirst().map(this::buildAwsUsageContext).orElseThrow();
+    AwsUsageContext selected = activeContexts.get(0);
+    // Copied, since the cached contexts are shared
+    AwsUsageContext context =
+        new AwsUsageContext()
+            .rhSubscriptionId(selected.getRhSubscriptionId())
+            .subscriptionStartDate(selected.getSubscriptionStartDate())
+            .subscriptionEndDate(selected.getSubscriptionEndDate())
+            .productCode(selected.getProductCode())
+            .customerId(selected.getCustomerId())
+            .awsSellerAccountId(selected.getAwsSellerAccountId());
+    if (complete) {
+      setValidity(context, contexts, date);
+    }
+    return context;
+  }
+
+  /**
+   * Set the period, inclusive, around a date in which no subscription of the lookup starts or ends,
+   * so that the same subscription would be picked for any date in it.
+   */
+  private static void setValidity(
+      AwsUsageContext context, List<AwsUsageContext> contexts, OffsetDateTime date) {
+    OffsetDateTime validFrom = null;
+    OffsetDateTime validUntil = null;
+    for (AwsUsageContext other : contexts) {
+      OffsetDateTime otherStart = other.getSubscriptionStartDate();
+      OffsetDateTime otherEnd = other.getSubscriptionEndDate();
+      if (otherStart != null && !otherStart.isAfter(date)) {
+        validFrom = latest(validFrom, otherStart);
+      } else if (otherStart != null) {
+        validUntil = earliest(validUntil, otherStart.minusNanos(1));
+      }
+      if (otherEnd.isBefore(date)) {
+        validFrom = latest(validFrom, otherEnd.plusNanos(1));
+      } else {
+        validUntil = earliest(validUntil, otherEnd);
+      }
+    }
+    context.validFrom(validFrom).validUntil(validUntil);
+  }
+
+  private static OffsetDateTime latest(OffsetDateTime current, OffsetDateTime candidate) {
+    return current == null || candidate.isAfter(current) ? candidate : current;
+  }
+
+  private static OffsetDateTime earliest(OffsetDateTime current, OffsetDateTime candidate) {
+    return current == null || candidate.isBefore(current) ? candidate : current;
+  }
+
+  /** Whether the subscription of a context is active at some point of a period, inclusive. */
+  private static boolean isActiveBetween(
+      AwsUsageContext context, OffsetDateTime start, OffsetDateTime end) {
+    return (context.getSubscriptionStartDate() == null
+            || !context.getSubscriptionStartDate().isAfter(end))
+        && !context.getSubscriptionEndDate().isBefore(start);
+  }
+
+  private List<AwsUsageContext> buildAwsUsageContexts(List<Subscription> subscriptions) {
+    return subscriptions.stream().map(this::buildAwsUsageContext).collect(Collectors.toList());
   }
 
   private AwsUsageContext buildAwsUsageContext(Subscription subscription) {
@@ -141,6 +240,7 @@ public class InternalSubscriptionResource implements InternalApi {
     return new AwsUsageContext()
         .rhSubscriptionId(subscription.getSubscriptionId())
         .subscriptionStartDate(subscription.getStartDate())
+        .subscriptionEndDate(subscription.getEndDate())
         .productCode(productCode)
         .customerId(customerId)
         .awsSellerAccountId(sellerAccount);
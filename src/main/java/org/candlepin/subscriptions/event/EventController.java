@@ -62,9 +62,9 @@ public class EventController {
   }
 
   public Stream<Event> fetchEventsInTimeRangeByServiceType(
-      String accountNumber, String serviceType, OffsetDateTime begin, OffsetDateTime end) {
-    return repo.findByAccountNumberAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestamp(
-            accountNumber, serviceType, begin, end)
+      String orgId, String serviceType, OffsetDateTime begin, OffsetDateTime end) {
+    return repo.findByOrgIdAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestamp(
+            orgId, serviceType, begin, end)
         .map(EventRecord::getEvent);
   }
 
@@ -105,6 +105,40 @@ public class EventController {
         .collect(Collectors.toList());
   }
 
+  /**
+   * Inserts or updates a list of events with set-based statements, matching existing events by
+   * their natural key rather than by ID.
+   *
+   * @param events the events to save, with distinct keys.
+   */
+  @Transactional
+  public void upsertAll(Collection<Event> events) {
+    repo.upsertAll(events.stream().map(EventRecord::new).collect(Collectors.toList()));
+  }
+
+  /**
+   * Deletes the events of an org, event source and event type in a time range, other than the
+   * given ones.
+   *
+   * @param orgId Red Hat orgId
+   * @param eventSource the event source
+   * @param eventType the event type
+   * @param begin beginning of the time range (inclusive)
+   * @param end end of the time range (exclusive)
+   * @param keep keys of the events to keep
+   * @return the number of deleted events
+   */
+  @Transactional
+  public int deleteEventsInTimeRangeExcept(
+      String orgId,
+      String eventSource,
+      String eventType,
+      OffsetDateTime begin,
+      OffsetDateTime end,
+      Collection<EventKey> keep) {
+    return repo.deleteInTimeRangeExcept(orgId, eventSource, eventType, begin, end, keep);
+  }
+
   /**
    * Fetch a single Event by its ID.
    *
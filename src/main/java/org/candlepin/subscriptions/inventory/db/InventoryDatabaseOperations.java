@@ -20,8 +20,11 @@
  */
 package org.candlepin.subscriptions.inventory.db;
 
+import java.time.OffsetDateTime;
 import java.util.Collection;
+import java.util.Set;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.candlepin.subscriptions.inventory.db.model.InventoryHostFacts;
 import org.springframework.stereotype.Component;
@@ -45,6 +48,34 @@ public class InventoryDatabaseOperations {
     }
   }
 
+  @Transactional(value = "inventoryTransactionManager", readOnly = true)
+  public void processHostFactsOrderedByInventoryId(
+      Collection<String> orgIds, int culledOffsetDays, Consumer<InventoryHostFacts> consumer) {
+    try (Stream<InventoryHostFacts> hostFactStream =
+        repo.getFactsOrderedByInventoryId(orgIds, culledOffsetDays)) {
+      hostFactStream.forEach(consumer::accept);
+    }
+  }
+
+  @Transactional(value = "inventoryTransactionManager", readOnly = true)
+  public void processHostFactsModifiedOrMappedSince(
+      Collection<String> orgIds,
+      int culledOffsetDays,
+      OffsetDateTime modifiedSince,
+      Consumer<InventoryHostFacts> consumer) {
+    try (Stream<InventoryHostFacts> hostFactStream =
+        repo.getFactsModifiedOrMappedSince(orgIds, culledOffsetDays, modifiedSince)) {
+      hostFactStream.forEach(consumer::accept);
+    }
+  }
+
+  @Transactional(value = "inventoryTransactionManager", readOnly = true)
+  public Set<String> talliedHostIds(Collection<String> orgIds, int culledOffsetDays) {
+    try (Stream<String> stream = repo.getTalliedHostIds(orgIds, culledOffsetDays)) {
+      return stream.collect(Collectors.toSet());
+    }
+  }
+
   @Transactional(value = "inventoryTransactionManager", readOnly = true)
   public void reportedHypervisors(Collection<String> orgIds, Consumer<Object[]> consumer) {
     try (Stream<Object[]> stream = repo.getReportedHypervisors(orgIds)) {
@@ -20,6 +20,7 @@
  */
 package org.candlepin.subscriptions.inventory.db;
 
+import java.time.OffsetDateTime;
 import java.util.Collection;
 import java.util.UUID;
 import java.util.stream.Stream;
@@ -38,6 +39,34 @@ public interface InventoryRepository extends Repository<InventoryHost, UUID> {
       @Param("orgIds") Collection<String> orgIds,
       @Param("culledOffsetDays") Integer culledOffsetDays);
 
+  /**
+   * Same as {@link #getFacts(Collection, Integer)}, but ordered by inventory ID, so that the hosts
+   * can be merged against another stream sorted the same way.
+   */
+  @Query(nativeQuery = true)
+  Stream<InventoryHostFacts> getFactsOrderedByInventoryId(
+      @Param("orgIds") Collection<String> orgIds,
+      @Param("culledOffsetDays") Integer culledOffsetDays);
+
+  /**
+   * Same as {@link #getFactsOrderedByInventoryId(Collection, Integer)}, but limited to hosts
+   * modified after the given time, plus all hosts involved in hypervisor-guest mappings.
+   */
+  @Query(nativeQuery = true)
+  Stream<InventoryHostFacts> getFactsModifiedOrMappedSince(
+      @Param("orgIds") Collection<String> orgIds,
+      @Param("culledOffsetDays") Integer culledOffsetDays,
+      @Param("modifiedSince") OffsetDateTime modifiedSince);
+
+  /**
+   * Get the inventory IDs of all hosts that would be returned by {@link #getFacts(Collection,
+   * Integer)}.
+   */
+  @Query(nativeQuery = true)
+  Stream<String> getTalliedHostIds(
+      @Param("orgIds") Collection<String> orgIds,
+      @Param("culledOffsetDays") Integer culledOffsetDays);
+
   /**
    * Get a mapping of hypervisor ID to associated hypervisor host's subscription-manager ID. If the
    * hypervisor hasn't been reported, then the hyp_subman_id value will be null.
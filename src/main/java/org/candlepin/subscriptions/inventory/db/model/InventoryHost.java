@@ -89,58 +89,90 @@ import lombok.Setter;
  */
 @NamedNativeQuery(
     name = "InventoryHost.getFacts",
+    query = InventoryHost.HOST_FACTS_QUERY,
+    resultSetMapping = "inventoryHostFactsMapping")
+@NamedNativeQuery(
+    name = "InventoryHost.getFactsOrderedByInventoryId",
+    query = InventoryHost.HOST_FACTS_QUERY + " order by h.id",
+    resultSetMapping = "inventoryHostFactsMapping")
+@NamedNativeQuery(
+    name = "InventoryHost.getFactsModifiedOrMappedSince",
     query =
-        "select h.id as inventory_id, h.org_id, h.modified_on, h.account, h.display_name, "
-            + "h.facts->'rhsm'->>'IS_VIRTUAL' as is_virtual, "
-            + "h.facts->'rhsm'->>'VM_HOST_UUID' as hypervisor_uuid, "
-            + "h.facts->'satellite'->>'virtual_host_uuid' as satellite_hypervisor_uuid, "
-            + "h.facts->'satellite'->>'system_purpose_role' as satellite_role, "
-            + "h.facts->'satellite'->>'system_purpose_sla' as satellite_sla, "
-            + "h.facts->'satellite'->>'system_purpose_usage' as satellite_usage, "
-            + "h.facts->'rhsm'->>'GUEST_ID' as guest_id, "
-            + "h.facts->'rhsm'->>'SYNC_TIMESTAMP' as sync_timestamp, "
-            + "h.facts->'rhsm'->>'SYSPURPOSE_ROLE' as syspurpose_role, "
-            + "h.facts->'rhsm'->>'SYSPURPOSE_SLA' as syspurpose_sla, "
-            + "h.facts->'rhsm'->>'SYSPURPOSE_USAGE' as syspurpose_usage, "
-            + "h.facts->'rhsm'->>'SYSPURPOSE_UNITS' as syspurpose_units, "
-            + "h.facts->'rhsm'->>'BILLING_MODEL' as  billing_model, "
-            + "h.facts->'qpc'->>'IS_RHEL' as is_rhel, "
-            + "h.system_profile_facts->>'infrastructure_type' as system_profile_infrastructure_type, "
-            + "h.system_profile_facts->>'cores_per_socket' as system_profile_cores_per_socket, "
-            + "h.system_profile_facts->>'number_of_sockets' as system_profile_sockets, "
-            + "h.system_profile_facts->>'cloud_provider' as cloud_provider, "
-            + "h.system_profile_facts->>'arch' as system_profile_arch, "
-            + "h.system_profile_facts->>'is_marketplace' as is_marketplace, "
-            + "h.canonical_facts->>'subscription_manager_id' as subscription_manager_id, "
-            + "h.canonical_facts->>'insights_id' as insights_id, "
-            + "rhsm_products.products, "
-            + "qpc_prods.qpc_products, "
-            + "qpc_certs.qpc_product_ids, "
-            + "system_profile.system_profile_product_ids, "
-            + "h.stale_timestamp "
-            + "from hosts h "
-            + "cross join lateral ( "
-            + "    select string_agg(items, ',') as products "
-            + "    from jsonb_array_elements_text(h.facts->'rhsm'->'RH_PROD') as items) rhsm_products "
-            + "cross join lateral ( "
-            + "    select string_agg(items, ',') as qpc_products "
-            + "    from jsonb_array_elements_text(h.facts->'qpc'->'rh_products_installed') as items) qpc_prods "
-            + "cross join lateral ( "
-            + "    select string_agg(items, ',') as qpc_product_ids "
-            + "    from jsonb_array_elements_text(h.facts->'qpc'->'rh_product_certs') as items) qpc_certs "
-            + "cross join lateral ( "
-            + "    select string_agg(items->>'id', ',') as system_profile_product_ids "
-            + "    from jsonb_array_elements(h.system_profile_facts->'installed_products') as items) system_profile "
-            + "where h.org_id IN (:orgIds)"
-            + "   and (h.facts->'rhsm'->>'BILLING_MODEL' IS NULL OR h.facts->'rhsm'->>'BILLING_MODEL' <> 'marketplace')"
-            + "   and (h.system_profile_facts->>'host_type' IS NULL OR h.system_profile_facts->>'host_type' <> 'edge')"
-            + "   and (stale_timestamp is null "
-            + "   or  (NOW() < stale_timestamp + make_interval(days => :culledOffsetDays)))",
+        InventoryHost.HOST_FACTS_QUERY + InventoryHost.MODIFIED_OR_MAPPED_FILTER + " order by h.id",
     resultSetMapping = "inventoryHostFactsMapping")
+@NamedNativeQuery(
+    name = "InventoryHost.getTalliedHostIds",
+    query = "select cast(h.id as varchar) from hosts h where " + InventoryHost.HOST_FILTER)
 @Getter
 @Setter
 public class InventoryHost implements Serializable {
 
+  /** Filters an org's hosts down to those that are tallied. */
+  static final String HOST_FILTER =
+      "h.org_id IN (:orgIds)"
+          + "   and (h.facts->'rhsm'->>'BILLING_MODEL' IS NULL OR h.facts->'rhsm'->>'BILLING_MODEL' <> 'marketplace')"
+          + "   and (h.system_profile_facts->>'host_type' IS NULL OR h.system_profile_facts->>'host_type' <> 'edge')"
+          + "   and (stale_timestamp is null "
+          + "   or  (NOW() < stale_timestamp + make_interval(days => :culledOffsetDays)))";
+
+  /**
+   * Selects hosts modified since a given time, as well as every host involved in a hypervisor-guest
+   * mapping, since the tally of a hypervisor depends on all of its guests.
+   */
+  static final String MODIFIED_OR_MAPPED_FILTER =
+      " and (h.modified_on > :modifiedSince"
+          + "   or h.facts->'rhsm'->'VM_HOST_UUID' is not null"
+          + "   or h.facts->'satellite'->'virtual_host_uuid' is not null"
+          + "   or h.canonical_facts->>'subscription_manager_id' in ("
+          + "      select g.facts->'rhsm'->>'VM_HOST_UUID' from hosts g where g.org_id IN (:orgIds)"
+          + "      union select g.facts->'satellite'->>'virtual_host_uuid' from hosts g"
+          + "      where g.org_id IN (:orgIds)))";
+
+  static final String HOST_FACTS_QUERY =
+      "select h.id as inventory_id, h.org_id, h.modified_on, h.account, h.display_name, "
+          + "h.facts->'rhsm'->>'IS_VIRTUAL' as is_virtual, "
+          + "h.facts->'rhsm'->>'VM_HOST_UUID' as hypervisor_uuid, "
+          + "h.facts->'satellite'->>'virtual_host_uuid' as satellite_hypervisor_uuid, "
+          + "h.facts->'satellite'->>'system_purpose_role' as satellite_role, "
+          + "h.facts->'satellite'->>'system_purpose_sla' as satellite_sla, "
+          + "h.facts->'satellite'->>'system_purpose_usage' as satellite_usage, "
+          + "h.facts->'rhsm'->>'GUEST_ID' as guest_id, "
+          + "h.facts->'rhsm'->>'SYNC_TIMESTAMP' as sync_timestamp, "
+          + "h.facts->'rhsm'->>'SYSPURPOSE_ROLE' as syspurpose_role, "
+          + "h.facts->'rhsm'->>'SYSPURPOSE_SLA' as syspurpose_sla, "
+          + "h.facts->'rhsm'->>'SYSPURPOSE_USAGE' as syspurpose_usage, "
+          + "h.facts->'rhsm'->>'SYSPURPOSE_UNITS' as syspurpose_units, "
+          + "h.facts->'rhsm'->>'BILLING_MODEL' as  billing_model, "
+          + "h.facts->'qpc'->>'IS_RHEL' as is_rhel, "
+          + "h.system_profile_facts->>'infrastructure_type' as system_profile_infrastructure_type, "
+          + "h.system_profile_facts->>'cores_per_socket' as system_profile_cores_per_socket, "
+          + "h.system_profile_facts->>'number_of_sockets' as system_profile_sockets, "
+          + "h.system_profile_facts->>'cloud_provider' as cloud_provider, "
+          + "h.system_profile_facts->>'arch' as system_profile_arch, "
+          + "h.system_profile_facts->>'is_marketplace' as is_marketplace, "
+          + "h.canonical_facts->>'subscription_manager_id' as subscription_manager_id, "
+          + "h.canonical_facts->>'insights_id' as insights_id, "
+          + "rhsm_products.products, "
+          + "qpc_prods.qpc_products, "
+          + "qpc_certs.qpc_product_ids, "
+          + "system_profile.system_profile_product_ids, "
+          + "h.stale_timestamp "
+          + "from hosts h "
+          + "cross join lateral ( "
+          + "    select string_agg(items, ',') as products "
+          + "    from jsonb_array_elements_text(h.facts->'rhsm'->'RH_PROD') as items) rhsm_products "
+          + "cross join lateral ( "
+          + "    select string_agg(items, ',') as qpc_products "
+          + "    from jsonb_array_elements_text(h.facts->'qpc'->'rh_products_installed') as items) qpc_prods "
+          + "cross join lateral ( "
+          + "    select string_agg(items, ',') as qpc_product_ids "
+          + "    from jsonb_array_elements_text(h.facts->'qpc'->'rh_product_certs') as items) qpc_certs "
+          + "cross join lateral ( "
+          + "    select string_agg(items->>'id', ',') as system_profile_product_ids "
+          + "    from jsonb_array_elements(h.system_profile_facts->'installed_products') as items) system_profile "
+          + "where "
+          + HOST_FILTER;
+
   @Id private UUID id;
 
   private String account;
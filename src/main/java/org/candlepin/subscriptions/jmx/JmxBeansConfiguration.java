@@ -20,9 +20,12 @@
  */
 package org.candlepin.subscriptions.jmx;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.candlepin.subscriptions.db.AccountConfigRepository;
 import org.candlepin.subscriptions.db.model.OrgConfigRepository;
 import org.candlepin.subscriptions.security.OptInController;
+import org.candlepin.subscriptions.security.OptInStatusCache;
+import org.candlepin.subscriptions.security.SecurityProperties;
 import org.candlepin.subscriptions.user.AccountService;
 import org.candlepin.subscriptions.util.ApplicationClock;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
@@ -41,7 +44,19 @@ public class JmxBeansConfiguration {
       ApplicationClock clock,
       AccountConfigRepository accountConfigRepo,
       OrgConfigRepository orgConfigRepo,
-      AccountService accountService) {
-    return new OptInController(clock, accountConfigRepo, orgConfigRepo, accountService);
+      AccountService accountService,
+      OptInStatusCache optInStatusCache) {
+    return new OptInController(
+        clock, accountConfigRepo, orgConfigRepo, accountService, optInStatusCache);
+  }
+
+  /* Likewise for the opt-in status cache that the opt-in controller invalidates */
+  @Bean
+  @ConditionalOnMissingBean(OptInStatusCache.class)
+  OptInStatusCache optInStatusCache(
+      AccountConfigRepository accountConfigRepo,
+      SecurityProperties securityProperties,
+      MeterRegistry meterRegistry) {
+    return new OptInStatusCache(accountConfigRepo, securityProperties, meterRegistry);
   }
 }
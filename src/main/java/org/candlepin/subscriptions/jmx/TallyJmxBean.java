@@ -135,7 +135,9 @@ public class TallyJmxBean {
   @ManagedOperation(description = "Trigger hardware_measurements migration")
   @ManagedOperationParameter(
       name = "snapshotId",
-      description = "Offset to start from (may be null to start from beginning)")
+      description =
+          "Offset to start from (may be null to resume an interrupted migration, "
+              + "or start from beginning)")
   @ManagedOperationParameter(name = "batchSize", description = "Batch size")
   public void migrateHardwareMeasurements(String snapshotId, int batchSize) {
     log.info(
@@ -145,4 +147,9 @@ public class TallyJmxBean {
         StringUtils.hasText(snapshotId) ? snapshotId : null,
         batchSize);
   }
+
+  @ManagedOperation(description = "Report progress of data migrations (rows processed and ETA)")
+  public String reportDataMigrationProgress() {
+    return dataMigrationRunner.describeProgress();
+  }
 }
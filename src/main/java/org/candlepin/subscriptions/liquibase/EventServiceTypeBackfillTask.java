@@ -0,0 +1,76 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.liquibase;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+import liquibase.database.Database;
+import liquibase.exception.DatabaseException;
+
+/**
+ * Copies the service type of existing events from their JSON data to the service_type column.
+ *
+ * <p>Events are updated in batches, each committed separately, so that the events table is never
+ * locked by a single long running update. Batches are keyed by event ID, carrying the last ID of
+ * each batch to the next, so that each batch reads only its own range of the primary key index
+ * instead of scanning past the events already backfilled.
+ */
+public class EventServiceTypeBackfillTask extends LiquibaseCustomTask {
+
+  private static final int BATCH_SIZE = 10000;
+
+  // Event IDs are random UUIDs, so no event is expected to have the nil UUID.
+  private static final UUID FIRST_ID = new UUID(0, 0);
+
+  private static final String BACKFILL_SQL =
+      "with batch as (select id from events where id > ? order by id limit ?), "
+          + "updated as (update events e set service_type = e.data->>'service_type' "
+          + "from batch where e.id = batch.id and e.service_type is null "
+          + "and e.data->>'service_type' is not null returning e.id) "
+          + "select (select id from batch order by id desc limit 1) as last_id, "
+          + "(select count(*) from updated) as updated";
+
+  @Override
+  public void executeTask(Database database) throws DatabaseException, SQLException {
+    long total = 0;
+    UUID lastId = FIRST_ID;
+    while (lastId != null) {
+      try (ResultSet result = executeQuery(BACKFILL_SQL, lastId, BATCH_SIZE)) {
+        result.next();
+        lastId = result.getObject("last_id", UUID.class);
+        total += result.getLong("updated");
+      }
+      database.commit();
+      logger.info(String.format("Backfilled service_type of %d events", total));
+    }
+  }
+
+  @Override
+  public boolean disableAutoCommit() {
+    return true;
+  }
+
+  @Override
+  public String getConfirmationMessage() {
+    return "Backfilled service_type of events";
+  }
+}
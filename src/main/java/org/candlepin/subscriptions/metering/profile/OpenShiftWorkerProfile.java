@@ -20,6 +20,7 @@
  */
 package org.candlepin.subscriptions.metering.profile;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.candlepin.subscriptions.event.EventController;
 import org.candlepin.subscriptions.metering.service.prometheus.MetricProperties;
 import org.candlepin.subscriptions.metering.service.prometheus.PrometheusMeteringController;
@@ -86,7 +87,8 @@ public class OpenShiftWorkerProfile {
       EventController eventController,
       @Qualifier("openshiftMetricRetryTemplate") RetryTemplate openshiftRetryTemplate,
       OptInController optInController,
-      TagProfile tagProfile) {
+      TagProfile tagProfile,
+      MeterRegistry meterRegistry) {
     return new PrometheusMeteringController(
         clock,
         mProps,
@@ -95,6 +97,7 @@ public class OpenShiftWorkerProfile {
         eventController,
         openshiftRetryTemplate,
         optInController,
-        tagProfile);
+        tagProfile,
+        meterRegistry);
   }
 }
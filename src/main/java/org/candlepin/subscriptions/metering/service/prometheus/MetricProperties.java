@@ -52,6 +52,15 @@ public class MetricProperties {
    */
   private int step = 3600; // 1 hour
 
+  /**
+   * The maximum time range of a single range query. Longer ranges are split into sub-ranges, which
+   * are queried concurrently.
+   */
+  private Duration rangeQueryChunkSize = Duration.ofDays(1);
+
+  /** The maximum number of range queries running concurrently against the prometheus service. */
+  private int maxRangeQueriesInFlight = 4;
+
   /** Number of times the metrics gathering should be retried if something fails. */
   private int maxAttempts = 5;
 
@@ -21,13 +21,26 @@
 package org.candlepin.subscriptions.metering.service.prometheus;
 
 import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.OffsetDateTime;
-import java.util.Collection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.annotation.PreDestroy;
 import org.candlepin.subscriptions.db.model.EventKey;
 import org.candlepin.subscriptions.db.model.config.OptInType;
 import org.candlepin.subscriptions.event.EventController;
@@ -45,6 +58,7 @@ import org.candlepin.subscriptions.registry.TagMetric;
 import org.candlepin.subscriptions.registry.TagProfile;
 import org.candlepin.subscriptions.security.OptInController;
 import org.candlepin.subscriptions.util.ApplicationClock;
+import org.candlepin.subscriptions.util.DateRange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -58,6 +72,7 @@ import org.springframework.util.StringUtils;
 public class PrometheusMeteringController {
 
   private static final Logger log = LoggerFactory.getLogger(PrometheusMeteringController.class);
+  private static final String RANGE_QUERY_METRIC = "rhsm-subscriptions.metering.range_query";
 
   private final PrometheusService prometheusService;
   private final EventController eventController;
@@ -67,6 +82,8 @@ public class PrometheusMeteringController {
   private final OptInController optInController;
   private final QueryBuilder prometheusQueryBuilder;
   private final TagProfile tagProfile;
+  private final MeterRegistry meterRegistry;
+  private final ExecutorService rangeQueryExecutor;
 
   @SuppressWarnings("java:S107")
   public PrometheusMeteringController(
@@ -77,7 +94,8 @@ public class PrometheusMeteringController {
       EventController eventController,
       @Qualifier("openshiftMetricRetryTemplate") RetryTemplate openshiftRetry,
       OptInController optInController,
-      TagProfile tagProfile) {
+      TagProfile tagProfile,
+      MeterRegistry meterRegistry) {
     this.clock = clock;
     this.metricProperties = metricProperties;
     this.prometheusService = service;
@@ -86,6 +104,17 @@ public class PrometheusMeteringController {
     this.openshiftRetry = openshiftRetry;
     this.optInController = optInController;
     this.tagProfile = tagProfile;
+    this.meterRegistry = meterRegistry;
+    this.rangeQueryExecutor =
+        Executors.newFixedThreadPool(metricProperties.getMaxRangeQueriesInFlight());
+  }
+
+  @PreDestroy
+  protected void destroy() throws InterruptedException {
+    rangeQueryExecutor.shutdown();
+    if (!rangeQueryExecutor.awaitTermination(20, TimeUnit.SECONDS)) {
+      log.warn("Prometheus range queries not yet terminated in 20 seconds.");
+    }
   }
 
   // Suppressing this sonar issue because we need to log plus throw an exception on retry
@@ -123,100 +152,52 @@ public class PrometheusMeteringController {
     openshiftRetry.execute(
         context -> {
           try {
-
             log.info("Collecting metrics for orgId={}: {} {}", orgId, tag, metric);
-            QueryResult metricData =
-                prometheusService.runRangeQuery(
-                    buildPromQLForMetering(orgId, tagMetric.get()),
-                    startDate,
-                    end,
-                    metricProperties.getStep(),
-                    metricProperties.getQueryTimeout());
+            // We need to shift the start and end dates by the step, to account for the shift in
+            // the event start date when it is created. See note about eventDate in createEvents.
+            OffsetDateTime eventRangeStart = startDate.minusSeconds(metricProperties.getStep());
+            String eventType = MeteringEventFactory.getEventType(tagMetric.get().getMetricId());
 
-            if (StatusType.ERROR.equals(metricData.getStatus())) {
-              throw new MeteringException(
-                  String.format(
-                      "Unable to fetch %s %s metrics: %s", tag, metric, metricData.getError()));
-            }
+            // Each sub-range's events are persisted as soon as its results arrive.
+            Set<EventKey> reportedEvents = new HashSet<>();
+            runRangeQueryInChunks(
+                tag,
+                buildPromQLForMetering(orgId, tagMetric.get()),
+                startDate,
+                end,
+                metricData -> {
+                  if (StatusType.ERROR.equals(metricData.getStatus())) {
+                    throw new MeteringException(
+                        String.format(
+                            "Unable to fetch %s %s metrics: %s",
+                            tag, metric, metricData.getError()));
+                  }
+                  Map<EventKey, Event> events =
+                      createEvents(
+                          metricData,
+                          orgId,
+                          accountNumberFromOptIn,
+                          tagMetric.get(),
+                          tagMetaData.get().getServiceType());
+                  eventController.upsertAll(events.values());
+                  reportedEvents.addAll(events.keySet());
+                });
+            log.info(
+                "Persisted {} events for {} {} metrics.", reportedEvents.size(), tag, metric);
 
-            Map<EventKey, Event> existing =
-                eventController.mapEventsInTimeRange(
+            // Delete any stale events found during the period.
+            log.debug("Deleting stale events in range [{}, {})", eventRangeStart, end);
+            int deleted =
+                eventController.deleteEventsInTimeRangeExcept(
                     orgId,
                     MeteringEventFactory.EVENT_SOURCE,
-                    MeteringEventFactory.getEventType(tagMetric.get().getMetricId()),
-                    // We need to shift the start and end dates by the step, to account for the
-                    // shift in the event start date when it is created. See note about eventDate
-                    // below.
-                    startDate.minusSeconds(metricProperties.getStep()),
-                    end);
-
-            log.debug(
-                "Looking for events in range [{}, {})",
-                startDate.minusSeconds(metricProperties.getStep()),
-                end);
-            log.debug("Found {} existing events.", existing.size());
-
-            Map<EventKey, Event> events = new HashMap<>();
-            for (QueryResultDataResultInner r : metricData.getData().getResult()) {
-              Map<String, String> labels = r.getMetric();
-              String clusterId = labels.get("_id");
-              String sla = labels.get("support");
-              String usage = labels.get("usage");
-
-              // These were added as an edge case with RHODS as it doesn't have product as a label
-              // in prometheus
-              String product = labels.get("product");
-              String resourceName = labels.get("resource_name");
-
-              // NOTE: Role comes from the product label despite its name. The values set here
-              //       are NOT engineering or swatch product IDs. They map to the roles in the
-              //       tag profile. For openshift, the values will be 'ocp' or 'osd'.
-              String role = product == null ? resourceName : product;
-              String billingProvider = labels.get("billing_marketplace");
-              String billingAccountId = labels.get("billing_marketplace_account");
-              String account = labels.get("ebs_account");
-              // NOTE: https://issues.redhat.com/browse/SWATCH-262 should remove this workaround.
-              account = ensureAccountNumber(account, accountNumberFromOptIn);
-
-              // For the openshift metrics, we expect our results to be a 'matrix'
-              // vector [(instant_time,value), ...] so we only look at the result's getValues()
-              // data.
-              for (List<BigDecimal> measurement : r.getValues()) {
-                BigDecimal time = measurement.get(0);
-                BigDecimal value = measurement.get(1);
-
-                OffsetDateTime eventTermDate = clock.dateFromUnix(time);
-                // Need to subtract the step because we are averaging and the metric value
-                // actually represents the end of the measured period. The start of the event
-                // should be at the beginning.
-                OffsetDateTime eventDate = eventTermDate.minusSeconds(metricProperties.getStep());
-
-                Event event =
-                    createOrUpdateEvent(
-                        existing,
-                        account,
-                        orgId,
-                        tagMetric.get().getMetricId(),
-                        clusterId,
-                        sla,
-                        usage,
-                        role,
-                        eventDate,
-                        eventTermDate,
-                        tagMetaData.get().getServiceType(),
-                        billingProvider,
-                        billingAccountId,
-                        tagMetric.get().getUom(),
-                        value);
-                events.putIfAbsent(EventKey.fromEvent(event), event);
-              }
+                    eventType,
+                    eventRangeStart,
+                    end,
+                    reportedEvents);
+            if (deleted > 0) {
+              log.info("Deleted {} stale metric events.", deleted);
             }
-
-            eventController.saveAll(events.values());
-            log.info("Persisted {} events for {} {} metrics.", events.size(), tag, metric);
-
-            // Delete any stale events found during the period.
-            deleteStaleEvents(existing.values());
             return null;
           } catch (Exception e) {
             log.warn(
@@ -230,6 +211,156 @@ public class PrometheusMeteringController {
         });
   }
 
+  private Map<EventKey, Event> createEvents(
+      QueryResult metricData,
+      String orgId,
+      String accountNumberFromOptIn,
+      TagMetric tagMetric,
+      String serviceType) {
+    Map<EventKey, Event> events = new HashMap<>();
+    for (QueryResultDataResultInner r : metricData.getData().getResult()) {
+      Map<String, String> labels = r.getMetric();
+      String clusterId = labels.get("_id");
+      String sla = labels.get("support");
+      String usage = labels.get("usage");
+
+      // These were added as an edge case with RHODS as it doesn't have product as a label
+      // in prometheus
+      String product = labels.get("product");
+      String resourceName = labels.get("resource_name");
+
+      // NOTE: Role comes from the product label despite its name. The values set here
+      //       are NOT engineering or swatch product IDs. They map to the roles in the
+      //       tag profile. For openshift, the values will be 'ocp' or 'osd'.
+      String role = product == null ? resourceName : product;
+      String billingProvider = labels.get("billing_marketplace");
+      String billingAccountId = labels.get("billing_marketplace_account");
+      String account = labels.get("ebs_account");
+      // NOTE: https://issues.redhat.com/browse/SWATCH-262 should remove this workaround.
+      account = ensureAccountNumber(account, accountNumberFromOptIn);
+
+      // For the openshift metrics, we expect our results to be a 'matrix'
+      // vector [(instant_time,value), ...] so we only look at the result's getValues()
+      // data.
+      for (List<BigDecimal> measurement : r.getValues()) {
+        BigDecimal time = measurement.get(0);
+        BigDecimal value = measurement.get(1);
+
+        OffsetDateTime eventTermDate = clock.dateFromUnix(time);
+        // Need to subtract the step because we are averaging and the metric value
+        // actually represents the end of the measured period. The start of the event
+        // should be at the beginning.
+        OffsetDateTime eventDate = eventTermDate.minusSeconds(metricProperties.getStep());
+
+        Event event =
+            MeteringEventFactory.createMetricEvent(
+                account,
+                orgId,
+                tagMetric.getMetricId(),
+                clusterId,
+                sla,
+                usage,
+                role,
+                eventDate,
+                eventTermDate,
+                serviceType,
+                billingProvider,
+                billingAccountId,
+                tagMetric.getUom(),
+                value.doubleValue());
+        events.putIfAbsent(EventKey.fromEvent(event), event);
+      }
+    }
+    return events;
+  }
+
+  /**
+   * Runs a range query over sub-ranges of at most the configured chunk size, passing each
+   * sub-range's result to the consumer in order. The queries run concurrently on the shared query
+   * executor, with at most the configured number of queries per call awaiting consumption.
+   */
+  private void runRangeQueryInChunks(
+      String tag,
+      String promQL,
+      OffsetDateTime start,
+      OffsetDateTime end,
+      Consumer<QueryResult> resultConsumer) {
+    Deque<Future<QueryResult>> pending = new ArrayDeque<>();
+    try {
+      for (DateRange chunk : splitRange(start, end)) {
+        if (pending.size() >= metricProperties.getMaxRangeQueriesInFlight()) {
+          resultConsumer.accept(await(pending.poll()));
+        }
+        pending.add(rangeQueryExecutor.submit(() -> runRangeQuery(tag, promQL, chunk)));
+      }
+      while (!pending.isEmpty()) {
+        resultConsumer.accept(await(pending.poll()));
+      }
+    } finally {
+      pending.forEach(future -> future.cancel(true));
+    }
+  }
+
+  /**
+   * Splits a range query's range into sub-ranges that are a whole number of steps long. Since a
+   * range query returns a data point at its start and each step after, the next sub-range starts
+   * one step after the previous one ends, so that each data point is returned exactly once.
+   */
+  private List<DateRange> splitRange(OffsetDateTime start, OffsetDateTime end) {
+    int step = metricProperties.getStep();
+    long stepsPerChunk = Math.max(1, metricProperties.getRangeQueryChunkSize().toSeconds() / step);
+    List<DateRange> chunks = new ArrayList<>();
+    OffsetDateTime chunkStart = start;
+    do {
+      OffsetDateTime chunkEnd = chunkStart.plusSeconds((stepsPerChunk - 1) * step);
+      if (chunkEnd.isAfter(end)) {
+        chunkEnd = end;
+      }
+      chunks.add(new DateRange(chunkStart, chunkEnd));
+      chunkStart = chunkEnd.plusSeconds(step);
+    } while (!chunkStart.isAfter(end));
+    return chunks;
+  }
+
+  private QueryResult runRangeQuery(String tag, String promQL, DateRange range) {
+    long startTime = System.nanoTime();
+    QueryResult result =
+        prometheusService.runRangeQuery(
+            promQL,
+            range.getStartDate(),
+            range.getEndDate(),
+            metricProperties.getStep(),
+            metricProperties.getQueryTimeout());
+    meterRegistry
+        .timer(RANGE_QUERY_METRIC, "tag", tag)
+        .record(Duration.ofNanos(System.nanoTime() - startTime));
+    if (result != null && result.getData() != null && result.getData().getResult() != null) {
+      List<QueryResultDataResultInner> series = result.getData().getResult();
+      meterRegistry.summary(RANGE_QUERY_METRIC + ".series", "tag", tag).record(series.size());
+      meterRegistry
+          .summary(RANGE_QUERY_METRIC + ".samples", "tag", tag)
+          .record(
+              series.stream()
+                  .mapToInt(r -> r.getValues() == null ? 0 : r.getValues().size())
+                  .sum());
+    }
+    return result;
+  }
+
+  private QueryResult await(Future<QueryResult> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MeteringException("Interrupted while querying prometheus.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new MeteringException("Unable to query prometheus.", e.getCause());
+    }
+  }
+
   // SWATCH-262 should remove this method
   private String ensureAccountNumber(String account, String accountNumberFromOptIn) {
     if (StringUtils.hasText(account)) {
@@ -254,60 +385,6 @@ public class PrometheusMeteringController {
     return null;
   }
 
-  @SuppressWarnings("java:S107")
-  private Event createOrUpdateEvent(
-      Map<EventKey, Event> existing,
-      String account,
-      String orgId,
-      String metricId,
-      String instanceId,
-      String sla,
-      String usage,
-      String role,
-      OffsetDateTime measuredDate,
-      OffsetDateTime expired,
-      String serviceType,
-      String billingProvider,
-      String billingAccountId,
-      Uom metric,
-      BigDecimal value) {
-    EventKey lookupKey =
-        new EventKey(
-            orgId,
-            MeteringEventFactory.EVENT_SOURCE,
-            MeteringEventFactory.getEventType(metricId),
-            instanceId,
-            measuredDate);
-    Event event = existing.remove(lookupKey);
-    if (event == null) {
-      event = new Event();
-    }
-    MeteringEventFactory.updateMetricEvent(
-        event,
-        account,
-        orgId,
-        metricId,
-        instanceId,
-        sla,
-        usage,
-        role,
-        measuredDate,
-        expired,
-        serviceType,
-        billingProvider,
-        billingAccountId,
-        metric,
-        value.doubleValue());
-    return event;
-  }
-
-  private void deleteStaleEvents(Collection<Event> toDelete) {
-    if (!toDelete.isEmpty()) {
-      log.info("Deleting {} stale metric events.", toDelete.size());
-      eventController.deleteEvents(toDelete);
-    }
-  }
-
   private String buildPromQLForMetering(String orgId, TagMetric tagMetric) {
     // Default the query template if the tag profile didn't specify one.
     if (!StringUtils.hasText(tagMetric.getQueryKey())) {
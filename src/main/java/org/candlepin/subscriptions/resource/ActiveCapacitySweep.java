@@ -0,0 +1,83 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.resource;
+
+import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Collectors;
+import org.candlepin.subscriptions.db.model.SubscriptionCapacity;
+
+/**
+ * Tracks which capacities are active as a report date advances over a timeline.
+ *
+ * <p>A capacity is active at a date when it begins before and ends after that date. Rather than
+ * checking every capacity at every date, capacities are sorted by begin and end date once, and each
+ * call to {@link #advanceTo} reports only the capacities that became active or inactive since the
+ * previous date. Callers keep running totals by adding and subtracting those capacities.
+ */
+class ActiveCapacitySweep {
+  private final List<SubscriptionCapacity> byBeginDate;
+  private final List<SubscriptionCapacity> byEndDate;
+  private int nextBegin;
+  private int nextEnd;
+  private OffsetDateTime current;
+
+  ActiveCapacitySweep(List<SubscriptionCapacity> capacities) {
+    // A capacity that does not begin before it ends is never active.
+    List<SubscriptionCapacity> valid =
+        capacities.stream()
+            .filter(c -> c.getBeginDate().isBefore(c.getEndDate()))
+            .collect(Collectors.toList());
+    byBeginDate =
+        valid.stream()
+            .sorted(Comparator.comparing(SubscriptionCapacity::getBeginDate))
+            .collect(Collectors.toList());
+    byEndDate =
+        valid.stream()
+            .sorted(Comparator.comparing(SubscriptionCapacity::getEndDate))
+            .collect(Collectors.toList());
+  }
+
+  /**
+   * Advance to the given date, reporting each capacity that became active with a delta of 1, and
+   * each capacity that became inactive with a delta of -1.
+   *
+   * @param date the next date of the timeline; must not be before the previous date
+   * @param onChange receives each changed capacity along with its delta
+   */
+  void advanceTo(OffsetDateTime date, ObjIntConsumer<SubscriptionCapacity> onChange) {
+    if (current != null && date.isBefore(current)) {
+      throw new IllegalArgumentException(
+          String.format("Cannot move from %s back to %s", current, date));
+    }
+    current = date;
+    while (nextBegin < byBeginDate.size()
+        && byBeginDate.get(nextBegin).getBeginDate().isBefore(date)) {
+      onChange.accept(byBeginDate.get(nextBegin++), 1);
+    }
+    // Any capacity ending at or before the date also began before it, so has been counted above.
+    while (nextEnd < byEndDate.size() && !byEndDate.get(nextEnd).getEndDate().isAfter(date)) {
+      onChange.accept(byEndDate.get(nextEnd++), -1);
+    }
+  }
+}
@@ -258,9 +258,12 @@ public class CapacityResource implements CapacityApi {
 
     List<CapacitySnapshot> result = new ArrayList<>();
     OffsetDateTime next = OffsetDateTime.from(start);
+    ActiveCapacitySweep sweep = new ActiveCapacitySweep(matches);
+    CapacityTotals totals = new CapacityTotals();
 
     while (next.isBefore(end) || next.isEqual(end)) {
-      result.add(createCapacitySnapshot(next, matches));
+      sweep.advanceTo(next, totals::apply);
+      result.add(createCapacitySnapshot(next, totals));
       next = timeAdjuster.adjustToPeriodStart(next.plus(offset));
     }
 
@@ -310,11 +313,13 @@ public class CapacityResource implements CapacityApi {
 
     List<CapacitySnapshotByMetricId> result = new ArrayList<>();
     OffsetDateTime next = OffsetDateTime.from(start);
+    ActiveCapacitySweep sweep = new ActiveCapacitySweep(matches);
+    MetricCapacityTotals totals =
+        new MetricCapacityTotals(metricId, Optional.ofNullable(reportCategory));
 
     while (next.isBefore(end) || next.isEqual(end)) {
-      result.add(
-          createCapacitySnapshotWithMetricId(
-              next, matches, metricId, Optional.ofNullable(reportCategory)));
+      sweep.advanceTo(next, totals::apply);
+      result.add(createCapacitySnapshotWithMetricId(next, totals));
       next = timeAdjuster.adjustToPeriodStart(next.plus(offset));
     }
 
@@ -330,80 +335,73 @@ public class CapacityResource implements CapacityApi {
     return capacities.subList(offset, lastIndex);
   }
 
-  protected CapacitySnapshot createCapacitySnapshot(
-      OffsetDateTime date, List<SubscriptionCapacity> matches) {
-    // NOTE there is room for future optimization here, as the we're *generally* calculating the
-    // same sum
-    // across a time range, also we might opt to do some of this in the DB query in the future.
-    int sockets = 0;
-    int physicalSockets = 0;
-    int hypervisorSockets = 0;
-    int cores = 0;
-    int physicalCores = 0;
-    int hypervisorCores = 0;
-    boolean hasInfiniteQuantity = false;
-
-    for (SubscriptionCapacity capacity : matches) {
-      if (capacity.getBeginDate().isBefore(date) && capacity.getEndDate().isAfter(date)) {
-        int capacityVirtSockets = sanitize(capacity.getVirtualSockets());
-        sockets += capacityVirtSockets;
-        hypervisorSockets += capacityVirtSockets;
-
-        int capacityPhysicalSockets = sanitize(capacity.getPhysicalSockets());
-        sockets += capacityPhysicalSockets;
-        physicalSockets += capacityPhysicalSockets;
-        int capacityPhysCores = sanitize(capacity.getPhysicalCores());
-        cores += capacityPhysCores;
-        physicalCores += capacityPhysCores;
-
-        int capacityVirtCores = sanitize(capacity.getVirtualCores());
-        cores += capacityVirtCores;
-        hypervisorCores += capacityVirtCores;
-
-        hasInfiniteQuantity |= Optional.ofNullable(capacity.getHasUnlimitedUsage()).orElse(false);
-      }
-    }
-
+  protected CapacitySnapshot createCapacitySnapshot(OffsetDateTime date, CapacityTotals totals) {
     return new CapacitySnapshot()
         .date(date)
-        .sockets(sockets)
-        .physicalSockets(physicalSockets)
-        .hypervisorSockets(hypervisorSockets)
-        .cores(cores)
-        .physicalCores(physicalCores)
-        .hypervisorCores(hypervisorCores)
-        .hasInfiniteQuantity(hasInfiniteQuantity);
+        .sockets(totals.physicalSockets + totals.hypervisorSockets)
+        .physicalSockets(totals.physicalSockets)
+        .hypervisorSockets(totals.hypervisorSockets)
+        .cores(totals.physicalCores + totals.hypervisorCores)
+        .physicalCores(totals.physicalCores)
+        .hypervisorCores(totals.hypervisorCores)
+        .hasInfiniteQuantity(totals.unlimitedCount > 0);
   }
 
   protected CapacitySnapshotByMetricId createCapacitySnapshotWithMetricId(
-      OffsetDateTime date,
-      List<SubscriptionCapacity> matches,
-      MetricId metricId,
-      Optional<ReportCategory> reportCategory) {
-    int value = 0;
-    boolean hasData = false;
-    boolean hasInfiniteQuantity = false;
-
-    for (SubscriptionCapacity capacity : matches) {
-      if (capacity.getBeginDate().isBefore(date) && capacity.getEndDate().isAfter(date)) {
-        hasData = true;
-        if (metricId.equals(MetricId.SOCKETS)) {
-          value += calculateSocketsCapacity(reportCategory, capacity);
-        } else if (metricId.equals(MetricId.CORES)) {
-          value += calculateCoresCapacity(reportCategory, capacity);
-        }
-        hasInfiniteQuantity |= Optional.ofNullable(capacity.getHasUnlimitedUsage()).orElse(false);
+      OffsetDateTime date, MetricCapacityTotals totals) {
+    return new CapacitySnapshotByMetricId()
+        .date(date)
+        .value(totals.value)
+        .hasData(totals.activeCount > 0)
+        .hasInfiniteQuantity(totals.unlimitedCount > 0);
+  }
+
+  /** Running totals of the capacities active at the current report date. */
+  protected static class CapacityTotals {
+    private int physicalSockets;
+    private int hypervisorSockets;
+    private int physicalCores;
+    private int hypervisorCores;
+    private int unlimitedCount;
+
+    void apply(SubscriptionCapacity capacity, int delta) {
+      physicalSockets += delta * sanitize(capacity.getPhysicalSockets());
+      hypervisorSockets += delta * sanitize(capacity.getVirtualSockets());
+      physicalCores += delta * sanitize(capacity.getPhysicalCores());
+      hypervisorCores += delta * sanitize(capacity.getVirtualCores());
+      if (Boolean.TRUE.equals(capacity.getHasUnlimitedUsage())) {
+        unlimitedCount += delta;
       }
     }
+  }
 
-    return new CapacitySnapshotByMetricId()
-        .date(date)
-        .value(value)
-        .hasData(hasData)
-        .hasInfiniteQuantity(hasInfiniteQuantity);
+  /** Running totals of a single metric over the capacities active at the current report date. */
+  protected static class MetricCapacityTotals {
+    private final MetricId metricId;
+    private final Optional<ReportCategory> reportCategory;
+    private int value;
+    private int activeCount;
+    private int unlimitedCount;
+
+    MetricCapacityTotals(MetricId metricId, Optional<ReportCategory> reportCategory) {
+      this.metricId = metricId;
+      this.reportCategory = reportCategory;
+    }
+
+    void apply(SubscriptionCapacity capacity, int delta) {
+      activeCount += delta;
+      if (metricId.equals(MetricId.SOCKETS)) {
+        value += delta * calculateSocketsCapacity(reportCategory, capacity);
+      } else if (metricId.equals(MetricId.CORES)) {
+        value += delta * calculateCoresCapacity(reportCategory, capacity);
+      }
+      if (Boolean.TRUE.equals(capacity.getHasUnlimitedUsage())) {
+        unlimitedCount += delta;
+      }
+    }
   }
 
-  private int calculateSocketsCapacity(
+  private static int calculateSocketsCapacity(
       Optional<ReportCategory> reportCategory, SubscriptionCapacity capacity) {
     int value = 0;
     if (reportCategory.isPresent()) {
@@ -418,7 +416,7 @@ public class CapacityResource implements CapacityApi {
     return value;
   }
 
-  private int calculateCoresCapacity(
+  private static int calculateCoresCapacity(
       Optional<ReportCategory> reportCategory, SubscriptionCapacity capacity) {
     int value = 0;
     if (reportCategory.isPresent()) {
@@ -433,7 +431,7 @@ public class CapacityResource implements CapacityApi {
     return value;
   }
 
-  private int sanitize(Integer value) {
+  private static int sanitize(Integer value) {
     return value != null ? value : 0;
   }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.resource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.UUID;
+import javax.ws.rs.core.Response;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import org.candlepin.subscriptions.db.HostSpecification;
+import org.candlepin.subscriptions.db.model.Host;
+import org.candlepin.subscriptions.exception.ErrorCode;
+import org.candlepin.subscriptions.exception.SubscriptionsException;
+import org.candlepin.subscriptions.utilization.api.model.InstanceReportSort;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Position in a listing of instances, handed out as an opaque token in {@code meta.next_cursor}
+ * and accepted back through the {@code cursor} query parameter.
+ *
+ * <p>When instances are sorted by id or display name, which are never null, the cursor holds the
+ * last instance of the page, and the next page is queried as the instances sorting after it,
+ * without skipping over the earlier pages. The other sort keys can be null, and databases disagree
+ * on where nulls sort, so for those the cursor holds the offset of the next page instead.
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+class InstanceCursor {
+
+  private static final String VERSION = "1";
+  private static final String SEPARATOR = ";";
+  private static final int FIELD_COUNT = 6;
+
+  InstanceReportSort sort;
+  Sort.Direction direction;
+  int offset;
+  UUID lastId;
+  String lastDisplayName;
+
+  /**
+   * Create the cursor for the page following a page of instances.
+   *
+   * @param sort the sort of the listing, or null when sorted by id
+   * @param direction the direction of the sort
+   * @param offset the offset of the next page
+   * @param lastHost the last host of the page
+   * @return a cursor positioned after the last host
+   */
+  static InstanceCursor after(
+      InstanceReportSort sort, Sort.Direction direction, int offset, Host lastHost) {
+    if (sort == null || sort == InstanceReportSort.DISPLAY_NAME) {
+      return new InstanceCursor(
+          sort, direction, offset, lastHost.getId(), lastHost.getDisplayName());
+    }
+    return new InstanceCursor(sort, direction, offset, null, null);
+  }
+
+  /**
+   * Read a cursor from a token made by {@link #encode()}.
+   *
+   * @param token the token
+   * @return the cursor
+   * @throws SubscriptionsException if the token is not a valid cursor
+   */
+  static InstanceCursor decode(String token) {
+    try {
+      String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      // The display name goes last, so that it may contain the separator.
+      String[] fields = decoded.split(SEPARATOR, FIELD_COUNT);
+      if (fields.length != FIELD_COUNT || !VERSION.equals(fields[0])) {
+        throw invalidCursor();
+      }
+      InstanceReportSort sort = fields[1].isEmpty() ? null : InstanceReportSort.valueOf(fields[1]);
+      Sort.Direction direction = Sort.Direction.valueOf(fields[2]);
+      int offset = Integer.parseInt(fields[3]);
+      if (offset < 0) {
+        throw invalidCursor();
+      }
+      UUID lastId = fields[4].isEmpty() ? null : UUID.fromString(fields[4]);
+      String lastDisplayName = lastId == null ? null : fields[5];
+      return new InstanceCursor(sort, direction, offset, lastId, lastDisplayName);
+    } catch (IllegalArgumentException e) {
+      throw invalidCursor();
+    }
+  }
+
+  String encode() {
+    String decoded =
+        String.join(
+            SEPARATOR,
+            VERSION,
+            sort == null ? "" : sort.name(),
+            direction.name(),
+            String.valueOf(offset),
+            lastId == null ? "" : lastId.toString(),
+            Objects.requireNonNullElse(lastDisplayName, ""));
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(decoded.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Check that the cursor was made for a listing with the given sort.
+   *
+   * @throws SubscriptionsException if it was made for another sort
+   */
+  void validateSort(InstanceReportSort requestedSort, Sort.Direction requestedDirection) {
+    if (sort != requestedSort || direction != requestedDirection) {
+      throw new SubscriptionsException(
+          ErrorCode.VALIDATION_FAILED_ERROR,
+          Response.Status.BAD_REQUEST,
+          "Cursor does not match the requested sort",
+          "The sort and dir parameters must be the same as in the request the cursor came from");
+    }
+  }
+
+  /**
+   * @return criteria matching the hosts after the cursor, or null when the next page is found by
+   *     offset
+   */
+  Specification<Host> position() {
+    if (lastId == null) {
+      return null;
+    }
+    if (sort == InstanceReportSort.DISPLAY_NAME) {
+      return HostSpecification.sortedAfter(lastDisplayName, lastId, direction);
+    }
+    return HostSpecification.sortedAfter(lastId);
+  }
+
+  private static SubscriptionsException invalidCursor() {
+    return new SubscriptionsException(
+        ErrorCode.VALIDATION_FAILED_ERROR,
+        Response.Status.BAD_REQUEST,
+        "Invalid cursor",
+        "The cursor must be a meta.next_cursor value from a previous response");
+  }
+}
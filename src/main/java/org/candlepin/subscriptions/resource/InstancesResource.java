@@ -55,6 +55,7 @@ import org.candlepin.subscriptions.utilization.api.resources.InstancesApi;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -92,6 +93,7 @@ public class InstancesResource implements InstancesApi {
       ProductId productId,
       Integer offset,
       Integer limit,
+      String cursor,
       ServiceLevelType sla,
       UsageType usage,
       BillingProviderType billingProviderType,
@@ -127,7 +129,18 @@ public class InstancesResource implements InstancesApi {
       Sort.Order userDefinedOrder = new Sort.Order(dirValue, INSTANCE_SORT_PARAM_MAPPING.get(sort));
       sortValue = Sort.by(userDefinedOrder, implicitOrder);
     }
-    Pageable page = ResourceUtils.getPageable(offset, limit, sortValue);
+    InstanceCursor position = null;
+    Specification<Host> after = null;
+    Pageable page;
+    if (cursor == null) {
+      page = ResourceUtils.getPageable(offset, limit, sortValue);
+    } else {
+      position = InstanceCursor.decode(cursor);
+      position.validateSort(sort, dirValue);
+      after = position.position();
+      // A cursor positioned after an instance replaces the offset, otherwise it carries one.
+      page = ResourceUtils.getPageable(after == null ? position.getOffset() : 0, limit, sortValue);
+    }
 
     OffsetDateTime now = OffsetDateTime.now();
     OffsetDateTime start = Optional.ofNullable(beginning).orElse(now);
@@ -157,6 +170,7 @@ public class InstancesResource implements InstancesApi {
             referenceUom,
             sanitizedBillingProvider,
             sanitizedBillingAccountId,
+            after,
             page);
     payload =
         hosts.getContent().stream()
@@ -164,12 +178,22 @@ public class InstancesResource implements InstancesApi {
             .collect(Collectors.toList());
 
     PageLinks links;
-    if (offset != null || limit != null) {
+    if (cursor == null && (offset != null || limit != null)) {
       links = pageLinkCreator.getPaginationLinks(uriInfo, hosts);
     } else {
       links = null;
     }
 
+    String nextCursor = null;
+    if ((cursor != null || limit != null) && hosts.hasContent()) {
+      long pageOffset = position == null ? page.getOffset() : position.getOffset();
+      long nextOffset = pageOffset + hosts.getNumberOfElements();
+      if (nextOffset < hosts.getTotalElements()) {
+        Host lastHost = hosts.getContent().get(hosts.getNumberOfElements() - 1);
+        nextCursor = InstanceCursor.after(sort, dirValue, (int) nextOffset, lastHost).encode();
+      }
+    }
+
     return new InstanceResponse()
         .links(links)
         .meta(
@@ -180,7 +204,8 @@ public class InstancesResource implements InstancesApi {
                 .usage(usage)
                 .billingProvider(billingProviderType)
                 .billingAccountId(billingAccountId)
-                .measurements(measurements))
+                .measurements(measurements)
+                .nextCursor(nextCursor))
         .data(payload);
   }
 
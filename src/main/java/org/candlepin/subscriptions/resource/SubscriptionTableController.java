@@ -42,6 +42,7 @@ import org.candlepin.subscriptions.registry.TagProfile;
 import org.candlepin.subscriptions.util.ApplicationClock;
 import org.candlepin.subscriptions.utilization.api.model.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
@@ -117,8 +118,11 @@ public class SubscriptionTableController {
         reportStart,
         reportEnd,
         uom);
-    List<SubscriptionCapacityView> capacities =
-        subscriptionCapacityViewRepository.findAllBy(
+    Pageable pageable = ResourceUtils.getPageable(offset, limit);
+    // SKUs are grouped, sorted and paged in the database, so that only the capacities of the SKUs
+    // on the requested page are loaded.
+    Page<String> skuPage =
+        subscriptionCapacityViewRepository.findSkusBy(
             getOrgId(),
             hypervisorReportCategory,
             productId.toString(),
@@ -126,26 +130,48 @@ public class SubscriptionTableController {
             sanitizedUsage,
             reportStart,
             reportEnd,
-            uom);
+            uom,
+            sort,
+            dir,
+            pageable);
 
     Map<String, SkuCapacity> inventories = new HashMap<>();
-    for (SubscriptionCapacityView subscriptionCapacityView : capacities) {
-      String sku = subscriptionCapacityView.getSku();
-      final SkuCapacity inventory =
-          inventories.computeIfAbsent(
-              sku, key -> initializeDefaultSkuCapacity(subscriptionCapacityView, uom));
-      calculateNextEvent(subscriptionCapacityView, inventory, reportEnd);
-      addSubscriptionInformation(subscriptionCapacityView, inventory);
-      addTotalCapacity(subscriptionCapacityView, inventory);
+    if (skuPage.hasContent()) {
+      List<SubscriptionCapacityView> capacities =
+          subscriptionCapacityViewRepository.findAllBy(
+              getOrgId(),
+              hypervisorReportCategory,
+              productId.toString(),
+              sanitizedServiceLevel,
+              sanitizedUsage,
+              reportStart,
+              reportEnd,
+              uom,
+              skuPage.getContent());
+      for (SubscriptionCapacityView subscriptionCapacityView : capacities) {
+        String sku = subscriptionCapacityView.getSku();
+        final SkuCapacity inventory =
+            inventories.computeIfAbsent(
+                sku, key -> initializeDefaultSkuCapacity(subscriptionCapacityView, uom));
+        calculateNextEvent(subscriptionCapacityView, inventory, reportEnd);
+        addSubscriptionInformation(subscriptionCapacityView, inventory);
+        addTotalCapacity(subscriptionCapacityView, inventory);
+      }
     }
 
-    List<SkuCapacity> reportItems = new ArrayList<>(inventories.values());
+    // Keep the order of the SKU page.
+    List<SkuCapacity> reportItems =
+        skuPage.getContent().stream()
+            .map(inventories::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    int reportItemCount = (int) skuPage.getTotalElements();
 
     boolean isOnDemand = tagProfile.tagIsPrometheusEnabled(productId.toString());
     SubscriptionType subscriptionType =
         isOnDemand ? SubscriptionType.ON_DEMAND : SubscriptionType.ANNUAL;
 
-    if (isOnDemand && reportItems.isEmpty()) {
+    if (isOnDemand && reportItemCount == 0) {
       reportItems.addAll(
           getOnDemandSkuCapacities(
               productId,
@@ -155,16 +181,12 @@ public class SubscriptionTableController {
               sanitiziedBillingAccountId,
               reportStart,
               reportEnd));
+      reportItemCount = reportItems.size();
+      // On-demand capacities are few per org, so they are paged and sorted in memory.
+      reportItems = paginate(reportItems, pageable);
+      sortCapacities(reportItems, sort, dir);
     }
 
-    int reportItemCount = reportItems.size();
-    // The pagination and sorting of capacities is done in memory and can cause performance
-    // issues
-    // As an improvement this should be pushed lower into the Repository layer
-    Pageable pageable = ResourceUtils.getPageable(offset, limit);
-    reportItems = paginate(reportItems, pageable);
-    sortCapacities(reportItems, sort, dir);
-
     return new SkuCapacityReport()
         .data(reportItems)
         .meta(
@@ -21,15 +21,21 @@
 package org.candlepin.subscriptions.retention;
 
 import java.time.Duration;
+import javax.validation.constraints.Positive;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
 
 @Getter
 @Setter
 @Component
+@Validated
 @ConfigurationProperties(prefix = "rhsm-subscriptions.event-retention-policy")
 public class EventRecordsRetentionProperties {
   private Duration eventRetentionDuration = Duration.ofDays(90L);
+
+  /** Maximum number of events deleted by a single statement when purging. */
+  @Positive private int purgeBatchSize = 10000;
 }
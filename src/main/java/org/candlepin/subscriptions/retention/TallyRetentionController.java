@@ -20,10 +20,10 @@
  */
 package org.candlepin.subscriptions.retention;
 
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.stream.Stream;
-import org.candlepin.subscriptions.db.AccountConfigRepository;
+import java.util.function.IntUnaryOperator;
 import org.candlepin.subscriptions.db.EventRecordRepository;
 import org.candlepin.subscriptions.db.TallySnapshotRepository;
 import org.candlepin.subscriptions.db.model.Granularity;
@@ -31,7 +31,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
 /** Cleans up stale tally snapshots for an account. */
 @Component
@@ -40,28 +39,41 @@ public class TallyRetentionController {
 
   private final TallySnapshotRepository tallySnapshotRepository;
   private final EventRecordRepository eventRecordRepository;
-  private final AccountConfigRepository accountConfigRepository;
   private final TallyRetentionPolicy policy;
+  private final TallyRetentionPolicyProperties tallyRetentionPolicyProperties;
   private final EventRecordsRetentionProperties eventRecordsRetentionProperties;
 
   @Autowired
   public TallyRetentionController(
       TallySnapshotRepository tallySnapshotRepository,
       EventRecordRepository eventRecordRepository,
-      AccountConfigRepository accountConfigRepository,
       TallyRetentionPolicy policy,
+      TallyRetentionPolicyProperties tallyRetentionPolicyProperties,
       EventRecordsRetentionProperties eventRecordsRetentionProperties) {
     this.tallySnapshotRepository = tallySnapshotRepository;
     this.eventRecordRepository = eventRecordRepository;
-    this.accountConfigRepository = accountConfigRepository;
     this.policy = policy;
+    this.tallyRetentionPolicyProperties = tallyRetentionPolicyProperties;
     this.eventRecordsRetentionProperties = eventRecordsRetentionProperties;
   }
 
-  @Transactional
+  /**
+   * Purges stale snapshots of all orgs with an account config, one granularity at a time, using
+   * bounded deletes that each commit on their own.
+   */
   public void purgeSnapshots() {
-    try (Stream<String> orgList = accountConfigRepository.findSyncEnabledOrgs()) {
-      orgList.forEach(this::cleanStaleSnapshotsForOrgId);
+    int batchSize = tallyRetentionPolicyProperties.getPurgeBatchSize();
+    for (Granularity granularity : Granularity.values()) {
+      OffsetDateTime cutoffDate = policy.getCutoffDate(granularity);
+      if (cutoffDate == null) {
+        continue;
+      }
+      deleteInBatches(
+          String.format("%s snapshots older than %s", granularity, cutoffDate),
+          batchSize,
+          size ->
+              tallySnapshotRepository.deleteBatchByGranularityAndSnapshotDateBefore(
+                  granularity, cutoffDate, size));
     }
   }
 
@@ -84,6 +96,31 @@ public class TallyRetentionController {
 
     log.info("Purging event records older than Duration {}", cutoffDate);
 
-    eventRecordRepository.deleteEventRecordsByTimestampBefore(cutoffDate);
+    deleteInBatches(
+        String.format("event records older than %s", cutoffDate),
+        eventRecordsRetentionProperties.getPurgeBatchSize(),
+        size -> eventRecordRepository.deleteBatchByTimestampBefore(cutoffDate, size));
+  }
+
+  private void deleteInBatches(String description, int batchSize, IntUnaryOperator deleteBatch) {
+    if (batchSize <= 0) {
+      // Every delete would "fill" the batch, so the loop would never end.
+      throw new IllegalArgumentException("Purge batch size must be positive: " + batchSize);
+    }
+    long start = System.nanoTime();
+    long total = 0;
+    int deleted;
+    do {
+      deleted = deleteBatch.applyAsInt(batchSize);
+      total += deleted;
+    } while (deleted >= batchSize);
+
+    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+    log.info(
+        "Purged {} {} in {}ms ({} rows/s)",
+        total,
+        description,
+        elapsed.toMillis(),
+        total * 1000 / Math.max(elapsed.toMillis(), 1));
   }
 }
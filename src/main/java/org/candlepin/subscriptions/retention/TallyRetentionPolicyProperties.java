@@ -20,15 +20,18 @@
  */
 package org.candlepin.subscriptions.retention;
 
+import javax.validation.constraints.Positive;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
 
 /** Retention policies for supported granularities. */
 @Component
 @Getter
 @Setter
+@Validated
 @ConfigurationProperties(prefix = "rhsm-subscriptions.tally-retention-policy")
 public class TallyRetentionPolicyProperties {
   /**
@@ -62,4 +65,7 @@ public class TallyRetentionPolicyProperties {
    * year (the current incomplete year).
    */
   private Integer yearly;
+
+  /** Maximum number of snapshots deleted by a single statement when purging. */
+  @Positive private int purgeBatchSize = 10000;
 }
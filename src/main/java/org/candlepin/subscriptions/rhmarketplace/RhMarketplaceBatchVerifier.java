@@ -0,0 +1,306 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.rhmarketplace;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.candlepin.subscriptions.rhmarketplace.api.model.StatusResponse;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Verifies that batches submitted to Marketplace are eventually accepted.
+ *
+ * <p>Submitted batch IDs are queued, and a background thread polls their status with exponential
+ * backoff (using the same backoff settings as usage submission) until Marketplace either accepts
+ * or rejects them, or the maximum number of attempts is reached. This keeps the consumers of
+ * billable usage from blocking while Marketplace processes a batch.
+ *
+ * <p>Pending batches are also saved in the database, owned by this instance, so that verification
+ * resumes after a restart. The instance renews its claim on its batches periodically, and claims
+ * the batches of instances that stopped renewing theirs for {@link
+ * RhMarketplaceProperties#getBatchVerificationClaimTimeout()}, on startup and then periodically.
+ * Batches of live instances are never claimed, so that each batch is verified and counted once.
+ * At most {@link RhMarketplaceProperties#getMaxPendingBatches()} batches are kept waiting; further
+ * batches are dropped without verification and counted.
+ */
+@Component
+public class RhMarketplaceBatchVerifier {
+
+  private static final Logger log = LoggerFactory.getLogger(RhMarketplaceBatchVerifier.class);
+
+  private final RhMarketplaceService rhMarketplaceService;
+  private final RhMarketplacePendingBatches pendingBatchStore;
+  private final RhMarketplaceProperties properties;
+  private final ApplicationClock clock;
+  private final Counter acceptedCounter;
+  private final Counter unverifiedCounter;
+  private final Counter rejectedCounter;
+  private final Counter droppedCounter;
+  private final PriorityBlockingQueue<PendingBatch> pendingBatches =
+      new PriorityBlockingQueue<>(11, Comparator.comparing(PendingBatch::getNextCheck));
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+  private final String owner = UUID.randomUUID().toString();
+
+  @Autowired
+  RhMarketplaceBatchVerifier(
+      RhMarketplaceService rhMarketplaceService,
+      RhMarketplacePendingBatches pendingBatchStore,
+      RhMarketplaceProperties properties,
+      ApplicationClock clock,
+      MeterRegistry meterRegistry) {
+    this.rhMarketplaceService = rhMarketplaceService;
+    this.pendingBatchStore = pendingBatchStore;
+    this.properties = properties;
+    this.clock = clock;
+    this.acceptedCounter =
+        meterRegistry.counter("rhsm-subscriptions.rh-marketplace.batch.accepted");
+    this.unverifiedCounter =
+        meterRegistry.counter("rhsm-subscriptions.rh-marketplace.batch.unverified");
+    this.rejectedCounter =
+        meterRegistry.counter("rhsm-subscriptions.rh-marketplace.batch.rejected");
+    this.droppedCounter = meterRegistry.counter("rhsm-subscriptions.rh-marketplace.batch.dropped");
+    meterRegistry.gauge(
+        "rhsm-subscriptions.rh-marketplace.batch.pending", pendingBatches, Collection::size);
+    meterRegistry.gauge(
+        "rhsm-subscriptions.rh-marketplace.batch.verification.lag.seconds",
+        this,
+        RhMarketplaceBatchVerifier::getVerificationLagSeconds);
+  }
+
+  @PostConstruct
+  void start() {
+    if (properties.isVerifyBatches()) {
+      claimPendingBatches();
+      long delay = properties.getBatchVerificationPollInterval().toMillis();
+      executor.scheduleWithFixedDelay(
+          this::verifyDueBatches, delay, delay, TimeUnit.MILLISECONDS);
+      // renew well before the claim times out, so that a slow renewal does not lose it
+      long renewDelay = properties.getBatchVerificationClaimTimeout().toMillis() / 3;
+      executor.scheduleWithFixedDelay(
+          this::renewClaim, renewDelay, renewDelay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @PreDestroy
+  void stop() {
+    executor.shutdownNow();
+    if (!pendingBatches.isEmpty()) {
+      log.warn("Shutting down with {} batches left unverified", pendingBatches.size());
+    }
+  }
+
+  /**
+   * Claim and queue the saved batches that no live instance is verifying, e.g. those of this
+   * instance before a restart, checking each of them right away.
+   */
+  void claimPendingBatches() {
+    int limit = properties.getMaxPendingBatches() - pendingBatches.size();
+    if (limit <= 0) {
+      return;
+    }
+    OffsetDateTime now = clock.now();
+    Map<String, OffsetDateTime> claimed;
+    try {
+      claimed =
+          pendingBatchStore.claim(
+              owner, now, now.minus(properties.getBatchVerificationClaimTimeout()), limit);
+    } catch (DataAccessException e) {
+      log.warn("Unable to claim batches waiting for verification", e);
+      return;
+    }
+    claimed.forEach(
+        (batchId, submitted) -> {
+          Duration backOff = properties.getBackOffInitialInterval();
+          if (!enqueue(new PendingBatch(batchId, submitted, 1, now, backOff))) {
+            forget(batchId);
+          }
+        });
+    if (!claimed.isEmpty()) {
+      log.info("Claimed {} batches waiting for verification", claimed.size());
+    }
+  }
+
+  /**
+   * Renew the claim of this instance on its batches, then claim the batches of instances that
+   * stopped renewing theirs.
+   */
+  void renewClaim() {
+    try {
+      pendingBatchStore.heartbeat(owner, clock.now());
+    } catch (DataAccessException e) {
+      log.warn("Unable to renew the claim on batches waiting for verification", e);
+    }
+    claimPendingBatches();
+  }
+
+  /**
+   * Queue batches for verification.
+   *
+   * @param batchIds IDs of the batches returned by Marketplace on submission
+   */
+  public void verifyBatches(Set<String> batchIds) {
+    OffsetDateTime now = clock.now();
+    Duration backOff = properties.getBackOffInitialInterval();
+    for (String batchId : batchIds) {
+      if (!enqueue(new PendingBatch(batchId, now, 1, now.plus(backOff), backOff))) {
+        continue;
+      }
+      try {
+        pendingBatchStore.save(batchId, now, owner);
+      } catch (DataAccessException e) {
+        log.warn(
+            "Unable to save batchId {}; it will not be verified after a restart", batchId, e);
+      }
+    }
+  }
+
+  /** Queue a new batch, unless too many batches are already waiting. */
+  private boolean enqueue(PendingBatch batch) {
+    if (pendingBatches.size() >= properties.getMaxPendingBatches()) {
+      log.warn(
+          "{} batches already waiting for verification; dropping batchId {}",
+          pendingBatches.size(),
+          batch.getBatchId());
+      droppedCounter.increment();
+      return false;
+    }
+    pendingBatches.add(batch);
+    return true;
+  }
+
+  /** Check the status of each queued batch whose next check is due. */
+  void verifyDueBatches() {
+    OffsetDateTime now = clock.now();
+    PendingBatch batch;
+    while ((batch = pendingBatches.poll()) != null) {
+      if (batch.getNextCheck().isAfter(now)) {
+        // the earliest batch is not due yet, so neither are the others
+        pendingBatches.add(batch);
+        return;
+      }
+      try {
+        if (verifyBatch(batch)) {
+          forget(batch.getBatchId());
+        } else {
+          retryLater(batch, now);
+        }
+      } catch (Exception e) {
+        log.warn("Error checking status of batchId {}", batch.getBatchId(), e);
+        retryLater(batch, now);
+      }
+    }
+  }
+
+  /** Check the status of a batch, returning whether Marketplace is done processing it. */
+  private boolean verifyBatch(PendingBatch batch) throws ApiException {
+    StatusResponse response = rhMarketplaceService.getUsageBatchStatus(batch.getBatchId());
+    String status = Objects.requireNonNull(response.getStatus());
+    if (RhMarketplaceProducer.IN_PROGRESS_STATUS.equals(status)) {
+      return false;
+    } else if (!RhMarketplaceProducer.ACCEPTED_STATUS.equals(status)) {
+      log.error(
+          "RH Marketplace rejected batch {} with status {} and message {}",
+          batch.getBatchId(),
+          status,
+          response.getMessage());
+      log.debug("RH Marketplace response: {}", response);
+      rejectedCounter.increment();
+    } else {
+      acceptedCounter.increment();
+    }
+    return true;
+  }
+
+  private void retryLater(PendingBatch batch, OffsetDateTime now) {
+    if (batch.getAttempts() >= properties.getMaxAttempts()) {
+      log.error(
+          "Unable to verify batchId {} after {} attempts", batch.getBatchId(), batch.getAttempts());
+      unverifiedCounter.increment();
+      forget(batch.getBatchId());
+      return;
+    }
+    Duration backOff =
+        min(
+            Duration.ofMillis(
+                (long) (batch.getBackOff().toMillis() * properties.getBackOffMultiplier())),
+            properties.getBackOffMaxInterval());
+    pendingBatches.add(
+        new PendingBatch(
+            batch.getBatchId(),
+            batch.getSubmitted(),
+            batch.getAttempts() + 1,
+            now.plus(backOff),
+            backOff));
+  }
+
+  private void forget(String batchId) {
+    try {
+      pendingBatchStore.delete(batchId);
+    } catch (DataAccessException e) {
+      log.warn("Unable to delete batchId {}; it will be checked again after a restart", batchId, e);
+    }
+  }
+
+  private static Duration min(Duration a, Duration b) {
+    return a.compareTo(b) <= 0 ? a : b;
+  }
+
+  /** Time, in seconds, since the oldest batch waiting for verification was submitted. */
+  double getVerificationLagSeconds() {
+    OffsetDateTime now = clock.now();
+    return pendingBatches.stream()
+        .map(PendingBatch::getSubmitted)
+        .min(Comparator.naturalOrder())
+        .map(submitted -> Duration.between(submitted, now).toMillis() / 1000.0)
+        .orElse(0.0);
+  }
+
+  @Getter
+  @AllArgsConstructor
+  private static class PendingBatch {
+    private final String batchId;
+    private final OffsetDateTime submitted;
+    private final int attempts;
+    private final OffsetDateTime nextCheck;
+    private final Duration backOff;
+  }
+}
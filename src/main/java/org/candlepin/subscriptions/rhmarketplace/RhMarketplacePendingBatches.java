@@ -0,0 +1,106 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.rhmarketplace;
+
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * JDBC access to the Marketplace batches waiting for verification, so that verification can be
+ * resumed after a restart.
+ *
+ * <p>Each batch is owned by the instance verifying it, which renews its claim with a heartbeat.
+ * Batches whose owner stopped renewing its claim, e.g. after a restart, can be claimed by another
+ * instance; batches of live instances are left to them.
+ */
+@Component
+public class RhMarketplacePendingBatches {
+
+  // skip locked lets instances claiming at the same time split the batches between them
+  private static final String CLAIM_SQL =
+      "update rh_marketplace_pending_batches set owner=?, heartbeat=? where batch_id in ("
+          + "select batch_id from rh_marketplace_pending_batches "
+          + "where owner is null or heartbeat is null or heartbeat < ? "
+          + "order by submitted limit ? for update skip locked) "
+          + "returning batch_id, submitted";
+
+  private static final String HEARTBEAT_SQL =
+      "update rh_marketplace_pending_batches set heartbeat=? where owner=?";
+
+  private static final String INSERT_SQL =
+      "insert into rh_marketplace_pending_batches(batch_id, submitted, owner, heartbeat) "
+          + "values (?, ?, ?, ?) on conflict (batch_id) do nothing";
+
+  private static final String DELETE_SQL =
+      "delete from rh_marketplace_pending_batches where batch_id=?";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public RhMarketplacePendingBatches(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  /**
+   * Claim the batches that no live instance is verifying.
+   *
+   * @param owner the instance claiming the batches
+   * @param now the current time, recorded as the heartbeat of the claimed batches
+   * @param staleBefore batches whose last heartbeat is before this time are claimed
+   * @param limit the maximum number of batches to claim
+   * @return the submission time of each claimed batch, by batch ID
+   */
+  public Map<String, OffsetDateTime> claim(
+      String owner, OffsetDateTime now, OffsetDateTime staleBefore, int limit) {
+    return jdbcTemplate
+        .query(
+            CLAIM_SQL,
+            (rs, rowNum) ->
+                Map.entry(
+                    rs.getString("batch_id"), rs.getObject("submitted", OffsetDateTime.class)),
+            owner,
+            now,
+            staleBefore,
+            limit)
+        .stream()
+        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+  }
+
+  /**
+   * Renew the claim of an instance on its batches.
+   *
+   * @param owner the instance verifying the batches
+   * @param now the current time
+   */
+  public void heartbeat(String owner, OffsetDateTime now) {
+    jdbcTemplate.update(HEARTBEAT_SQL, now, owner);
+  }
+
+  public void save(String batchId, OffsetDateTime submitted, String owner) {
+    jdbcTemplate.update(INSERT_SQL, batchId, submitted, owner, submitted);
+  }
+
+  public void delete(String batchId) {
+    jdbcTemplate.update(DELETE_SQL, batchId);
+  }
+}
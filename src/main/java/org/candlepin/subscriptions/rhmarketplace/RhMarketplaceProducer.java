@@ -25,7 +25,6 @@ import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -59,26 +58,23 @@ public class RhMarketplaceProducer {
 
   private final RhMarketplaceService rhMarketplaceService;
   private final RetryTemplate retryTemplate;
-  private final Counter acceptedCounter;
-  private final Counter unverifiedCounter;
   private final Counter rejectedCounter;
   private final RhMarketplaceProperties properties;
+  private final RhMarketplaceBatchVerifier batchVerifier;
 
   @Autowired
   RhMarketplaceProducer(
       RhMarketplaceService rhMarketplaceService,
       @Qualifier("rhMarketplaceRetryTemplate") RetryTemplate retryTemplate,
       MeterRegistry meterRegistry,
-      RhMarketplaceProperties properties) {
+      RhMarketplaceProperties properties,
+      RhMarketplaceBatchVerifier batchVerifier) {
     this.rhMarketplaceService = rhMarketplaceService;
     this.retryTemplate = retryTemplate;
-    this.acceptedCounter =
-        meterRegistry.counter("rhsm-subscriptions.rh-marketplace.batch.accepted");
-    this.unverifiedCounter =
-        meterRegistry.counter("rhsm-subscriptions.rh-marketplace.batch.unverified");
     this.rejectedCounter =
         meterRegistry.counter("rhsm-subscriptions.rh-marketplace.batch.rejected");
     this.properties = properties;
+    this.batchVerifier = batchVerifier;
   }
 
   @Timed("rhsm-subscriptions.marketplace.usage.submission")
@@ -101,7 +97,9 @@ public class RhMarketplaceProducer {
               .map(BatchStatus::getBatchId)
               .collect(Collectors.toSet());
       if (properties.isVerifyBatches()) {
-        verifyBatchIds(batchIds);
+        // Verification happens in the background, so that submission isn't blocked while
+        // Marketplace processes the batches.
+        batchVerifier.verifyBatches(batchIds);
       }
     } catch (Exception e) {
       rejectedCounter.increment();
@@ -113,46 +111,6 @@ public class RhMarketplaceProducer {
     }
   }
 
-  private void verifyBatchIds(Set<String> batchIds) {
-    batchIds.forEach(
-        batchId -> {
-          try {
-            retryTemplate.execute(context -> verifyBatchId(batchId));
-          } catch (Exception e) {
-            log.error("Error verifying batchId {}", batchId, e);
-            unverifiedCounter.increment();
-          }
-        });
-  }
-
-  private String verifyBatchId(String batchId) {
-    try {
-      StatusResponse response = rhMarketplaceService.getUsageBatchStatus(batchId);
-      String status = Objects.requireNonNull(response.getStatus());
-      if (IN_PROGRESS_STATUS.equals(status)) {
-        // throw an exception so that retry logic re-checks the batch
-        throw new RhMarketplaceUsageSubmissionException(response);
-      } else if (!ACCEPTED_STATUS.equals(status)) {
-        log.error(
-            "RH Marketplace rejected batch {} with status {} and message {}",
-            batchId,
-            status,
-            response.getMessage());
-        log.debug("RH Marketplace response: {}", response);
-        rejectedCounter.increment();
-      } else {
-        acceptedCounter.increment();
-      }
-      return status;
-    } catch (ApiException e) {
-      throw new SubscriptionsException(
-          ErrorCode.REQUEST_PROCESSING_ERROR,
-          Response.Status.fromStatusCode(e.getCode()),
-          "Exception checking usage batch in Marketplace",
-          e);
-    }
-  }
-
   private StatusResponse tryRequest(UsageRequest usageRequest) {
     try {
       StatusResponse status = rhMarketplaceService.submitUsageEvents(usageRequest);
@@ -56,6 +56,18 @@ public class RhMarketplaceProperties extends HttpClientProperties {
   /** Verify that batches were accepted by Marketplace. */
   private boolean verifyBatches = true;
 
+  /** How often to check the status of the batches waiting for verification. */
+  private Duration batchVerificationPollInterval = Duration.ofSeconds(1);
+
+  /** Maximum number of batches waiting for verification; further batches are not verified. */
+  private int maxPendingBatches = 10000;
+
+  /**
+   * How long an instance may go without renewing its claim on the batches it verifies before
+   * another instance may claim them.
+   */
+  private Duration batchVerificationClaimTimeout = Duration.ofMinutes(5);
+
   /** Allows manually submitting marketplace tally summary. */
   private boolean isManualMarketplaceSubmissionEnabled;
 
@@ -20,7 +20,6 @@
  */
 package org.candlepin.subscriptions.security;
 
-import org.candlepin.subscriptions.db.AccountConfigRepository;
 import org.candlepin.subscriptions.exception.OptInRequiredException;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
@@ -34,10 +33,10 @@ import org.springframework.stereotype.Component;
 @Component
 public class OptInChecker {
 
-  private final AccountConfigRepository accountConfigRepository;
+  private final OptInStatusCache optInStatusCache;
 
-  public OptInChecker(AccountConfigRepository accountConfigRepository) {
-    this.accountConfigRepository = accountConfigRepository;
+  public OptInChecker(OptInStatusCache optInStatusCache) {
+    this.optInStatusCache = optInStatusCache;
   }
 
   public boolean checkAccess(Authentication authentication) {
@@ -57,7 +56,7 @@ public class OptInChecker {
      * the OptInRequiredException in the AccessDecisionVoter.vote method and then our own
      * AbstractAccessDecisionManager capable of catching that exception and rethrowing it after all
      * the other voters had been consulted. */
-    if (!accountConfigRepository.existsByOrgId(insightsUserPrincipal.getOrgId())) {
+    if (!optInStatusCache.isOptedIn(insightsUserPrincipal.getOrgId())) {
       throw new OptInRequiredException();
     }
     return true;
@@ -55,17 +55,20 @@ public class OptInController {
   private OrgConfigRepository orgConfigRepository;
   private ApplicationClock clock;
   private AccountService accountService;
+  private OptInStatusCache optInStatusCache;
 
   @Autowired
   public OptInController(
       ApplicationClock clock,
       AccountConfigRepository accountConfigRepo,
       OrgConfigRepository orgConfigRepo,
-      AccountService accountService) {
+      AccountService accountService,
+      OptInStatusCache optInStatusCache) {
     this.clock = clock;
     this.accountConfigRepository = accountConfigRepo;
     this.orgConfigRepository = orgConfigRepo;
     this.accountService = accountService;
+    this.optInStatusCache = optInStatusCache;
   }
 
   // Separate isolated transaction needed in order to prevent opt-in errors rolling back metrics
@@ -82,6 +85,7 @@ public class OptInController {
         accountConfigRepository.createOrUpdateAccountConfig(accountNumber, orgId, now, optInType);
     Optional<OrgConfig> orgData =
         orgConfigRepository.createOrUpdateOrgConfig(orgId, now, optInType);
+    optInStatusCache.evictAfterCommit(orgId);
     return buildDto(
         buildMeta(accountNumber, orgId),
         buildOptInAccountDTO(accountData),
@@ -121,6 +125,7 @@ public class OptInController {
     if (orgConfigRepository.existsById(orgId)) {
       orgConfigRepository.deleteById(orgId);
     }
+    optInStatusCache.evictAfterCommit(orgId);
   }
 
   @Transactional
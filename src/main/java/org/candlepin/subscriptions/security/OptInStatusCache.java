@@ -0,0 +1,105 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.candlepin.subscriptions.db.AccountConfigRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Remembers which orgs have opted in, so that the opt-in check done for every API request does not
+ * need a database round trip each time.
+ *
+ * <p>Only opted-in orgs are cached. An org that opts in is therefore visible immediately on every
+ * instance, while an opt-out is evicted locally by {@link OptInController} once committed, and seen
+ * by other instances once the entry expires.
+ */
+@Component
+public class OptInStatusCache {
+
+  private final AccountConfigRepository accountConfigRepository;
+  private final Cache<String, Boolean> optedInOrgs;
+
+  public OptInStatusCache(
+      AccountConfigRepository accountConfigRepository,
+      SecurityProperties properties,
+      MeterRegistry meterRegistry) {
+    this.accountConfigRepository = accountConfigRepository;
+    if (properties.isOptInCacheEnabled()) {
+      optedInOrgs =
+          CacheBuilder.newBuilder()
+              .maximumSize(properties.getOptInCacheMaxSize())
+              .expireAfterWrite(properties.getOptInCacheTtl())
+              .recordStats()
+              .build();
+      GuavaCacheMetrics.monitor(meterRegistry, optedInOrgs, "opt-in.status");
+    } else {
+      optedInOrgs = null;
+    }
+  }
+
+  public boolean isOptedIn(String orgId) {
+    if (optedInOrgs == null || orgId == null) {
+      return accountConfigRepository.existsByOrgId(orgId);
+    }
+    if (optedInOrgs.getIfPresent(orgId) != null) {
+      return true;
+    }
+    boolean optedIn = accountConfigRepository.existsByOrgId(orgId);
+    if (optedIn) {
+      optedInOrgs.put(orgId, Boolean.TRUE);
+    }
+    return optedIn;
+  }
+
+  public void evict(String orgId) {
+    if (optedInOrgs != null && orgId != null) {
+      optedInOrgs.invalidate(orgId);
+    }
+  }
+
+  /**
+   * Evict the org once the current transaction commits. Evicting earlier would let a concurrent
+   * check cache the status that the transaction is about to replace. Evicts immediately when no
+   * transaction is active.
+   */
+  public void evictAfterCommit(String orgId) {
+    if (optedInOrgs == null || orgId == null) {
+      return;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      evict(orgId);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            evict(orgId);
+          }
+        });
+  }
+}
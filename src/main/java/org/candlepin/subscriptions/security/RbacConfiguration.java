@@ -20,6 +20,7 @@
  */
 package org.candlepin.subscriptions.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.candlepin.subscriptions.rbac.RbacApiFactory;
 import org.candlepin.subscriptions.rbac.RbacProperties;
 import org.candlepin.subscriptions.rbac.RbacService;
@@ -32,8 +33,8 @@ import org.springframework.context.annotation.Configuration;
 public class RbacConfiguration {
 
   @Bean
-  public RbacService rbacService() {
-    return new RbacService();
+  public RbacService rbacService(RbacProperties props, MeterRegistry meterRegistry) {
+    return new RbacService(props, meterRegistry);
   }
 
   @Bean
@@ -0,0 +1,252 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.subscription;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import lombok.Value;
+import org.candlepin.subscriptions.utilization.admin.api.model.AwsUsageContext;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Time-bounded cache of the AWS usage contexts of each lookup.
+ *
+ * <p>For each lookup, the contexts of all its subscriptions are cached, whatever their dates, so
+ * that the context of any date can be picked from them without querying the subscriptions again,
+ * e.g. for each hourly snapshot of a month.
+ *
+ * <p>The contexts of a lookup are owned by the org (or account, for lookups without an org) they
+ * were resolved for, so that {@link SubscriptionSyncController} can drop them when it saves or
+ * terminates a subscription of that org, including a new subscription of the lookup.
+ */
+@Component
+public class AwsUsageContextCache {
+
+  private final Cache<LookupKey, List<AwsUsageContext>> contexts;
+  // Bumped by every invalidation. The generation at which an owner, or all owners, were last
+  // invalidated is recorded, so that a context of that owner resolved concurrently is not cached,
+  // while contexts of other owners still are.
+  private long generation;
+  private long allInvalidatedAt;
+  private final Map<String, Long> ownerInvalidatedAt = new ConcurrentHashMap<>();
+
+  public AwsUsageContextCache(SubscriptionServiceProperties properties) {
+    Duration ttl = properties.getAwsUsageContextCacheTtl();
+    this.contexts =
+        ttl.isZero()
+            ? null
+            : CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(properties.getAwsUsageContextCacheMaxSize())
+                .build();
+  }
+
+  /**
+   * Get the cached contexts of the given lookup, or resolve and cache them.
+   *
+   * @param key the lookup the contexts are resolved for
+   * @param resolver resolves the contexts of all the subscriptions of the lookup on a cache miss;
+   *     exceptions are not cached
+   * @return the usage contexts of the lookup; callers must not modify them
+   */
+  public List<AwsUsageContext> get(LookupKey key, Supplier<List<AwsUsageContext>> resolver) {
+    if (contexts == null) {
+      return resolver.get();
+    }
+    List<AwsUsageContext> cached = contexts.getIfPresent(key);
+    if (cached != null) {
+      return cached;
+    }
+    long resolvedAt = currentGeneration();
+    List<AwsUsageContext> resolved = List.copyOf(resolver.get());
+    putIfNotInvalidatedSince(key, resolved, resolvedAt);
+    return resolved;
+  }
+
+  private synchronized long currentGeneration() {
+    return generation;
+  }
+
+  /**
+   * Cache resolved contexts, unless an invalidation happened while they were being resolved: the
+   * resolver may have read the subscriptions as they were before the change that was invalidated.
+   */
+  private synchronized void putIfNotInvalidatedSince(
+      LookupKey key, List<AwsUsageContext> resolved, long resolvedAt) {
+    if (allInvalidatedAt <= resolvedAt
+        && ownerInvalidatedAt.getOrDefault(key.getOwner(), 0L) <= resolvedAt) {
+      contexts.put(key, resolved);
+    }
+  }
+
+  // Called before the entries are removed, so that a put racing the removal is either skipped or
+  // removed with them.
+  private synchronized void bumpGeneration(Collection<String> owners) {
+    generation++;
+    owners.forEach(owner -> ownerInvalidatedAt.put(owner, generation));
+  }
+
+  // Owner generations older than this one no longer matter, so they are dropped.
+  private synchronized void bumpGenerationOfAll() {
+    generation++;
+    allInvalidatedAt = generation;
+    ownerInvalidatedAt.clear();
+  }
+
+  /**
+   * Drop the cached contexts of an org and its account, after one of its subscriptions changed.
+   *
+   * @param orgId the org of the subscription, can be null
+   * @param accountNumber the account of the subscription, can be null
+   */
+  public void invalidate(String orgId, String accountNumber) {
+    if (contexts != null) {
+      bumpGeneration(owners(orgId, accountNumber));
+      contexts
+          .asMap()
+          .keySet()
+          .removeIf(
+              key ->
+                  (orgId != null && orgId.equals(key.getOwner()))
+                      || (accountNumber != null && accountNumber.equals(key.getOwner())));
+    }
+  }
+
+  /** Drop all cached contexts. */
+  public void invalidateAll() {
+    if (contexts != null) {
+      bumpGenerationOfAll();
+      contexts.invalidateAll();
+    }
+  }
+
+  /**
+   * Drop the cached contexts of an org and its account once the current transaction commits.
+   * Dropping them earlier would let a concurrent lookup re-read the uncommitted change's previous
+   * state and cache it for the full TTL. Without a transaction, they are dropped immediately.
+   *
+   * @param orgId the org of the subscription, can be null
+   * @param accountNumber the account of the subscription, can be null
+   */
+  public void invalidateAfterCommit(String orgId, String accountNumber) {
+    PendingInvalidation pending = pendingInvalidation();
+    if (pending == null) {
+      invalidate(orgId, accountNumber);
+    } else {
+      pending.owners.addAll(owners(orgId, accountNumber));
+    }
+  }
+
+  /** Drop all cached contexts once the current transaction commits, or immediately without one. */
+  public void invalidateAllAfterCommit() {
+    PendingInvalidation pending = pendingInvalidation();
+    if (pending == null) {
+      invalidateAll();
+    } else {
+      pending.all = true;
+    }
+  }
+
+  /**
+   * Find the invalidations pending on the current transaction, registering them to run after
+   * commit on first use, so that a transaction saving many subscriptions sweeps the cache once.
+   *
+   * @return the pending invalidations, or null if there is no transaction.
+   */
+  private PendingInvalidation pendingInvalidation() {
+    if (contexts == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+      return null;
+    }
+    PendingInvalidation pending =
+        (PendingInvalidation) TransactionSynchronizationManager.getResource(this);
+    if (pending == null) {
+      PendingInvalidation newPending = new PendingInvalidation();
+      TransactionSynchronizationManager.bindResource(this, newPending);
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              if (newPending.all) {
+                invalidateAll();
+              } else {
+                invalidateOwners(newPending.owners);
+              }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+              TransactionSynchronizationManager.unbindResourceIfPossible(
+                  AwsUsageContextCache.this);
+            }
+          });
+      pending = newPending;
+    }
+    return pending;
+  }
+
+  private void invalidateOwners(Set<String> owners) {
+    bumpGeneration(owners);
+    contexts.asMap().keySet().removeIf(key -> owners.contains(key.getOwner()));
+  }
+
+  private static List<String> owners(String orgId, String accountNumber) {
+    List<String> owners = new ArrayList<>(2);
+    if (orgId != null) {
+      owners.add(orgId);
+    }
+    if (accountNumber != null) {
+      owners.add(accountNumber);
+    }
+    return owners;
+  }
+
+  private static class PendingInvalidation {
+    private final Set<String> owners = new HashSet<>();
+    private boolean all;
+  }
+
+  /** The parameters of an AWS usage context lookup, but its date. */
+  @Value
+  public static class LookupKey {
+    String accountNumber;
+    String orgId;
+    String productId;
+    String sla;
+    String usage;
+    String billingAccountId;
+
+    String getOwner() {
+      return Objects.requireNonNullElse(orgId, String.valueOf(accountNumber));
+    }
+  }
+}
@@ -58,4 +58,19 @@ public class SubscriptionServiceProperties extends HttpClientProperties {
 
   /** Do not sync any subs starting later than this much in the future from now. */
   private Period ignoreStartingLaterThan = Period.ofMonths(2);
+
+  /**
+   * How long a resolved AWS usage context is reused for lookups with the same parameters. Zero
+   * disables caching.
+   */
+  private Duration awsUsageContextCacheTtl = Duration.ofMinutes(5);
+
+  /**
+   * How long a lookup that needs an org's subscriptions synced waits for a sync of the org already
+   * in progress, before carrying on without it.
+   */
+  private Duration orgSyncWaitTimeout = Duration.ofSeconds(30);
+
+  /** Maximum number of resolved AWS usage contexts cached. */
+  private long awsUsageContextCacheMaxSize = 10000;
 }
@@ -31,12 +31,19 @@ import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.persistence.EntityNotFoundException;
 import javax.transaction.Transactional;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.candlepin.subscriptions.capacity.CapacityReconciliationController;
 import org.candlepin.subscriptions.capacity.files.ProductAllowlist;
@@ -62,6 +69,8 @@ import org.springframework.data.domain.Sort;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 
 /** Update subscriptions from subscription service responses. */
@@ -85,6 +94,9 @@ public class SubscriptionSyncController {
   private String syncSubscriptionsTopic;
   private final ObjectMapper objectMapper;
   private final ProductAllowlist productAllowlist;
+  private final AwsUsageContextCache awsUsageContextCache;
+  private final Map<OrgSync, CompletableFuture<Void>> orgSyncsInFlight =
+      new ConcurrentHashMap<>();
 
   @Autowired
   public SubscriptionSyncController(
@@ -101,7 +113,8 @@ public class SubscriptionSyncController {
       ObjectMapper objectMapper,
       @Qualifier("syncSubscriptionTasks") TaskQueueProperties props,
       TagProfile tagProfile,
-      AccountService accountService) {
+      AccountService accountService,
+      AwsUsageContextCache awsUsageContextCache) {
     this.subscriptionRepository = subscriptionRepository;
     this.orgRepository = orgRepository;
     this.offeringRepository = offeringRepository;
@@ -117,6 +130,7 @@ public class SubscriptionSyncController {
     this.syncSubscriptionsByOrgKafkaTemplate = syncSubscriptionsByOrgKafkaTemplate;
     this.tagProfile = tagProfile;
     this.accountService = accountService;
+    this.awsUsageContextCache = awsUsageContextCache;
   }
 
   @Transactional
@@ -210,6 +224,8 @@ public class SubscriptionSyncController {
       subscriptionRepository.save(newOrUpdated);
       capacityReconciliationController.reconcileCapacityForSubscription(newOrUpdated);
     }
+    awsUsageContextCache.invalidateAfterCommit(
+        newOrUpdated.getOrgId(), newOrUpdated.getAccountNumber());
   }
 
   private void checkForMissingBillingProvider(
@@ -419,6 +435,8 @@ public class SubscriptionSyncController {
           .forEach(
               subscription -> {
                 subscriptionRepository.save(subscription);
+                awsUsageContextCache.invalidateAfterCommit(
+                    subscription.getOrgId(), subscription.getAccountNumber());
                 if (reconcileCapacity) {
                   capacityReconciliationController.reconcileCapacityForSubscription(subscription);
                 }
@@ -448,6 +466,7 @@ public class SubscriptionSyncController {
 
   public void deleteSubscription(String subscriptionId) {
     subscriptionRepository.deleteBySubscriptionId(subscriptionId);
+    awsUsageContextCache.invalidateAllAfterCommit();
   }
 
   @Transactional
@@ -465,6 +484,8 @@ public class SubscriptionSyncController {
     // Wait until after we are sure there's an offering for this subscription before setting the
     // end date.  We want validation to occur before we start mutating data.
     subscription.setEndDate(terminationDate);
+    awsUsageContextCache.invalidateAfterCommit(
+        subscription.getOrgId(), subscription.getAccountNumber());
 
     OffsetDateTime now = OffsetDateTime.now();
     // The calculation returns a whole number, representing the number of complete units
@@ -526,6 +547,71 @@ public class SubscriptionSyncController {
     return subscriptionRepository.findByOrgIdAndEndDateAfter(orgId, OffsetDateTime.now()).stream();
   }
 
+  /**
+   * Force sync the subscriptions of an org, unless the same sync of the org is already in progress,
+   * in which case wait for that sync to finish instead. The sync counts as finished once its
+   * transaction completes, so that waiting callers can see the synced subscriptions.
+   *
+   * <p>Waiting is bounded by the configured timeout, since the caller holds a transaction and its
+   * connection meanwhile. On timeout, the caller carries on with whatever has been committed.
+   */
+  private void forceSyncSubscriptionsForOrgOnce(String orgId, boolean paygOnly) {
+    OrgSync key = new OrgSync(orgId, paygOnly);
+    CompletableFuture<Void> sync = new CompletableFuture<>();
+    CompletableFuture<Void> syncInFlight = orgSyncsInFlight.putIfAbsent(key, sync);
+    if (syncInFlight != null) {
+      log.info("Waiting for the sync of orgId {} already in progress", orgId);
+      awaitSync(syncInFlight, orgId);
+      return;
+    }
+    Runnable finishSync =
+        () -> {
+          orgSyncsInFlight.remove(key, sync);
+          sync.complete(null);
+        };
+    boolean finishOnCompletion = TransactionSynchronizationManager.isSynchronizationActive();
+    try {
+      if (finishOnCompletion) {
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+              @Override
+              public void afterCompletion(int status) {
+                finishSync.run();
+              }
+            });
+      }
+      forceSyncSubscriptionsForOrg(orgId, paygOnly);
+    } finally {
+      if (!finishOnCompletion) {
+        finishSync.run();
+      }
+    }
+  }
+
+  private void awaitSync(CompletableFuture<Void> syncInFlight, String orgId) {
+    Duration timeout = properties.getOrgSyncWaitTimeout();
+    try {
+      syncInFlight.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      log.warn(
+          "Sync of orgId {} still in progress after {}; continuing without waiting",
+          orgId,
+          timeout);
+    } catch (ExecutionException e) {
+      log.warn("Sync of orgId {} in progress failed", orgId, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while waiting for the sync of orgId {}", orgId);
+    }
+  }
+
+  /** A force sync of an org; PAYG-only and full syncs are distinct. */
+  @Value
+  private static class OrgSync {
+    String orgId;
+    boolean paygOnly;
+  }
+
   @Transactional
   public List<org.candlepin.subscriptions.db.model.Subscription> findSubscriptionsAndSyncIfNeeded(
       String accountNumber,
@@ -534,37 +620,15 @@ public class SubscriptionSyncController {
       OffsetDateTime rangeStart,
       OffsetDateTime rangeEnd,
       boolean paygOnly) {
-    Assert.isTrue(Usage._ANY != usageKey.getUsage(), "Usage cannot be _ANY");
-    Assert.isTrue(ServiceLevel._ANY != usageKey.getSla(), "Service Level cannot be _ANY");
-
-    String productId = usageKey.getProductId();
-    Set<String> productNames = tagProfile.getOfferingProductNamesForTag(productId);
-    if (productNames.isEmpty()) {
-      log.warn("No product names configured for tag: {}", productId);
+    Optional<ReportCriteria> subscriptionCriteria =
+        buildSubscriptionCriteria(accountNumber, orgId, usageKey, rangeStart, rangeEnd);
+    if (subscriptionCriteria.isEmpty()) {
       return Collections.emptyList();
     }
 
-    ReportCriteria.ReportCriteriaBuilder reportCriteriaBuilder =
-        ReportCriteria.builder()
-            .productNames(productNames)
-            .serviceLevel(usageKey.getSla())
-            // NOTE(khowell) due to an oversight PAYG SKUs don't currently have a usage set -
-            // at some point we should use usageKey.getUsage() instead of "_ANY"
-            .usage(Usage._ANY)
-            .billingProvider(usageKey.getBillingProvider())
-            .billingAccountId(usageKey.getBillingAccountId())
-            .payg(true)
-            .beginning(rangeStart)
-            .ending(rangeEnd);
-
-    ReportCriteria subscriptionCriteria =
-        orgId
-            .map(id -> reportCriteriaBuilder.orgId(id).build())
-            .orElseGet(() -> reportCriteriaBuilder.accountNumber(accountNumber).build());
-
     List<org.candlepin.subscriptions.db.model.Subscription> result =
         subscriptionRepository.findByCriteria(
-            subscriptionCriteria, Sort.by(Subscription_.START_DATE).descending());
+            subscriptionCriteria.get(), Sort.by(Subscription_.START_DATE).descending());
 
     if (result.isEmpty()) {
       /* If we are missing the subscription, call out to the RhMarketplaceSubscriptionCollector
@@ -573,19 +637,79 @@ public class SubscriptionSyncController {
         orgId = Optional.of(accountService.lookupOrgId(accountNumber));
       }
       log.info("Syncing subscriptions for account {} using orgId {}", accountNumber, orgId.get());
-      forceSyncSubscriptionsForOrg(orgId.get(), paygOnly);
+      forceSyncSubscriptionsForOrgOnce(orgId.get(), paygOnly);
       result =
           subscriptionRepository.findByCriteria(
-              subscriptionCriteria, Sort.by(Subscription_.START_DATE).descending());
+              subscriptionCriteria.get(), Sort.by(Subscription_.START_DATE).descending());
     }
 
     if (result.isEmpty()) {
       log.error(
           "No subscription found for account {} with criteria {}",
           accountNumber,
-          subscriptionCriteria);
+          subscriptionCriteria.get());
     }
 
     return result;
   }
+
+  /**
+   * Find the PAYG subscriptions of a usage key active in a period, without syncing them.
+   *
+   * @param accountNumber the account of the subscriptions, used without an org
+   * @param orgId the org of the subscriptions
+   * @param usageKey the product, SLA, usage and billing account of the subscriptions
+   * @param rangeStart the start of the period, or null for no bound
+   * @param rangeEnd the end of the period, or null for no bound
+   * @return the subscriptions, latest start first
+   */
+  @Transactional
+  public List<org.candlepin.subscriptions.db.model.Subscription> findSubscriptions(
+      String accountNumber,
+      Optional<String> orgId,
+      Key usageKey,
+      OffsetDateTime rangeStart,
+      OffsetDateTime rangeEnd) {
+    return buildSubscriptionCriteria(accountNumber, orgId, usageKey, rangeStart, rangeEnd)
+        .map(
+            criteria ->
+                subscriptionRepository.findByCriteria(
+                    criteria, Sort.by(Subscription_.START_DATE).descending()))
+        .orElse(Collections.emptyList());
+  }
+
+  private Optional<ReportCriteria> buildSubscriptionCriteria(
+      String accountNumber,
+      Optional<String> orgId,
+      Key usageKey,
+      OffsetDateTime rangeStart,
+      OffsetDateTime rangeEnd) {
+    Assert.isTrue(Usage._ANY != usageKey.getUsage(), "Usage cannot be _ANY");
+    Assert.isTrue(ServiceLevel._ANY != usageKey.getSla(), "Service Level cannot be _ANY");
+
+    String productId = usageKey.getProductId();
+    Set<String> productNames = tagProfile.getOfferingProductNamesForTag(productId);
+    if (productNames.isEmpty()) {
+      log.warn("No product names configured for tag: {}", productId);
+      return Optional.empty();
+    }
+
+    ReportCriteria.ReportCriteriaBuilder reportCriteriaBuilder =
+        ReportCriteria.builder()
+            .productNames(productNames)
+            .serviceLevel(usageKey.getSla())
+            // NOTE(khowell) due to an oversight PAYG SKUs don't currently have a usage set -
+            // at some point we should use usageKey.getUsage() instead of "_ANY"
+            .usage(Usage._ANY)
+            .billingProvider(usageKey.getBillingProvider())
+            .billingAccountId(usageKey.getBillingAccountId())
+            .payg(true)
+            .beginning(rangeStart)
+            .ending(rangeEnd);
+
+    return Optional.of(
+        orgId
+            .map(id -> reportCriteriaBuilder.orgId(id).build())
+            .orElseGet(() -> reportCriteriaBuilder.accountNumber(accountNumber).build()));
+  }
 }
@@ -85,6 +85,25 @@ public class AccountUsageCalculation {
     products.add(key.getProductId());
   }
 
+  /**
+   * Merges the calculations of another (partial) account calculation into this one.
+   *
+   * @param other the calculation to merge
+   * @throws IllegalStateException if both calculations have a different org set
+   */
+  public void merge(AccountUsageCalculation other) {
+    String otherOrg = other.getOrgId();
+    if (otherOrg != null) {
+      if (orgId != null && !orgId.equalsIgnoreCase(otherOrg)) {
+        throw new IllegalStateException(
+            String.format("Attempt to set a different org for an account: %s:%s", orgId, otherOrg));
+      }
+      orgId = otherOrg;
+    }
+    other.calculations.forEach((key, calc) -> getOrCreateCalculation(key).addAll(calc));
+    products.addAll(other.products);
+  }
+
   public boolean containsCalculation(UsageCalculation.Key key) {
     return this.calculations.containsKey(key);
   }
@@ -0,0 +1,580 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+import javax.sql.DataSource;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.candlepin.subscriptions.db.model.BillingProvider;
+import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
+import org.candlepin.subscriptions.db.model.Host;
+import org.candlepin.subscriptions.db.model.HostBucketKey;
+import org.candlepin.subscriptions.db.model.HostHardwareType;
+import org.candlepin.subscriptions.db.model.HostTallyBucket;
+import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.Usage;
+import org.candlepin.subscriptions.json.Measurement.Uom;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * JDBC access to an org's host records, used to reconcile hosts without loading the whole {@link
+ * org.candlepin.subscriptions.db.model.AccountServiceInventory} aggregate.
+ *
+ * <p>Existing hosts are read as a cursor ordered by inventory ID, and changes are queued into a
+ * {@link Batch} which is written with JDBC batch statements whenever it fills up. All operations
+ * participate in the caller's transaction.
+ */
+@Slf4j
+@Component
+public class HostBatchOperations {
+
+  private static final String UPSERT_ACCOUNT_SERVICE_SQL =
+      "insert into account_services(org_id, service_type, account_number) values (?, ?, ?) "
+          + "on conflict (org_id, service_type) do update set account_number = "
+          + "coalesce(excluded.account_number, account_services.account_number)";
+
+  /*
+   * Hosts are joined with their buckets, so a host spans consecutive rows. Ordering by inventory ID
+   * with the "C" collation matches the ordering of the lowercase UUID strings in Java, as well as
+   * the ordering of the UUID primary key in the HBI database.
+   */
+  private static final String STREAM_HOSTS_SQL =
+      "select h.id, h.instance_id, h.inventory_id, h.insights_id, h.display_name, "
+          + "h.account_number, h.org_id, h.subscription_manager_id, h.is_guest, h.hypervisor_uuid, "
+          + "h.hardware_type, h.num_of_guests, h.last_seen, h.is_unmapped_guest, h.is_hypervisor, "
+          + "h.cloud_provider, h.instance_type, h.billing_provider, h.billing_account_id, "
+          + "(select m.value from instance_measurements m "
+          + "    where m.instance_id = h.id and m.uom = 'CORES') as cores_measurement, "
+          + "(select m.value from instance_measurements m "
+          + "    where m.instance_id = h.id and m.uom = 'SOCKETS') as sockets_measurement, "
+          + "b.product_id, b.sla, b.usage, b.billing_provider as bucket_billing_provider, "
+          + "b.billing_account_id as bucket_billing_account_id, b.as_hypervisor, b.cores, "
+          + "b.sockets, b.measurement_type "
+          + "from hosts h "
+          + "left join host_tally_buckets b on b.host_id = h.id "
+          + "where h.org_id = ? and h.instance_type = ? and h.inventory_id is not null "
+          + "order by h.inventory_id collate \"C\", h.id";
+
+  private static final String INSERT_HOST_SQL =
+      "insert into hosts(instance_id, inventory_id, insights_id, display_name, account_number, "
+          + "org_id, subscription_manager_id, is_guest, hypervisor_uuid, hardware_type, "
+          + "num_of_guests, last_seen, is_unmapped_guest, is_hypervisor, cloud_provider, "
+          + "instance_type, billing_provider, billing_account_id, id) "
+          + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  private static final String UPDATE_HOST_SQL =
+      "update hosts set instance_id=?, inventory_id=?, insights_id=?, display_name=?, "
+          + "account_number=?, org_id=?, subscription_manager_id=?, is_guest=?, hypervisor_uuid=?, "
+          + "hardware_type=?, num_of_guests=?, last_seen=?, is_unmapped_guest=?, is_hypervisor=?, "
+          + "cloud_provider=?, instance_type=?, billing_provider=?, billing_account_id=? "
+          + "where id=?";
+
+  private static final String DELETE_HOST_SQL = "delete from hosts where id=?";
+
+  private static final String DELETE_HOST_BUCKETS_SQL =
+      "delete from host_tally_buckets where host_id=?";
+
+  private static final String UPSERT_MEASUREMENT_SQL =
+      "insert into instance_measurements(instance_id, uom, value) values (?, ?, ?) "
+          + "on conflict (instance_id, uom) do update set value = excluded.value";
+
+  private static final String INSERT_BUCKET_SQL =
+      "insert into host_tally_buckets(host_id, product_id, sla, usage, billing_provider, "
+          + "billing_account_id, as_hypervisor, cores, sockets, measurement_type, version) "
+          + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+  private static final String UPDATE_BUCKET_SQL =
+      "update host_tally_buckets set cores=?, sockets=?, measurement_type=?, version=version+1 "
+          + "where host_id=? and product_id=? and sla=? and usage=? and billing_provider=? "
+          + "and billing_account_id=? and as_hypervisor=?";
+
+  private static final String DELETE_BUCKET_SQL =
+      "delete from host_tally_buckets "
+          + "where host_id=? and product_id=? and sla=? and usage=? and billing_provider=? "
+          + "and billing_account_id=? and as_hypervisor=?";
+
+  private static final String FIND_WATERMARK_SQL =
+      "select watermark, last_full_tally from host_tally_watermarks "
+          + "where org_id=? and instance_type=?";
+
+  private static final String UPSERT_WATERMARK_SQL =
+      "insert into host_tally_watermarks(org_id, instance_type, watermark, last_full_tally) "
+          + "values (?, ?, ?, ?) on conflict (org_id, instance_type) do update "
+          + "set watermark = excluded.watermark, last_full_tally = excluded.last_full_tally";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final JdbcTemplate streamingJdbcTemplate;
+
+  public HostBatchOperations(DataSource dataSource, HostCollectionProperties properties) {
+    this.jdbcTemplate = new JdbcTemplate(dataSource);
+    this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+    this.streamingJdbcTemplate.setFetchSize(properties.getReconciliationBatchSize());
+  }
+
+  /**
+   * Ensure the account_services record that the org's hosts reference exists.
+   *
+   * @param orgId the org ID
+   * @param serviceType the service type (instance type of the hosts)
+   * @param accountNumber the account number, may be null
+   */
+  public void ensureAccountServiceInventory(
+      String orgId, String serviceType, String accountNumber) {
+    jdbcTemplate.update(UPSERT_ACCOUNT_SERVICE_SQL, orgId, serviceType, accountNumber);
+  }
+
+  /**
+   * Find the watermark of the last successful host tally of an org.
+   *
+   * @param orgId the org ID
+   * @param instanceType the instance type
+   * @return the watermark, if any tally was recorded.
+   */
+  public Optional<TallyWatermark> findWatermark(String orgId, String instanceType) {
+    return jdbcTemplate
+        .query(
+            FIND_WATERMARK_SQL,
+            (rs, rowNum) ->
+                new TallyWatermark(
+                    rs.getObject("watermark", OffsetDateTime.class),
+                    rs.getObject("last_full_tally", OffsetDateTime.class)),
+            orgId,
+            instanceType)
+        .stream()
+        .findFirst();
+  }
+
+  /**
+   * Record the watermark of a successful host tally of an org.
+   *
+   * @param orgId the org ID
+   * @param instanceType the instance type
+   * @param watermark the new watermark
+   */
+  public void saveWatermark(String orgId, String instanceType, TallyWatermark watermark) {
+    jdbcTemplate.update(
+        UPSERT_WATERMARK_SQL,
+        orgId,
+        instanceType,
+        watermark.getWatermark(),
+        watermark.getLastFullTally());
+  }
+
+  /**
+   * Open a cursor over the org's existing hosts, ordered by inventory ID. Hosts are returned
+   * detached (not managed by JPA), with their buckets and CORES/SOCKETS measurements populated.
+   *
+   * <p>Must be called within a transaction, so that rows are fetched incrementally.
+   *
+   * @param orgId the org ID
+   * @param instanceType the instance type
+   * @return a cursor over the hosts; must be closed.
+   */
+  public HostCursor streamHosts(String orgId, String instanceType) {
+    return new HostCursor(
+        streamingJdbcTemplate.queryForStream(
+            STREAM_HOSTS_SQL, HostBatchOperations::mapRow, orgId, instanceType));
+  }
+
+  /**
+   * Create a new batch of changes, flushed every given number of queued statements.
+   *
+   * @param batchSize number of queued statements which triggers a flush
+   * @return a new batch
+   */
+  public Batch newBatch(int batchSize) {
+    return new Batch(batchSize);
+  }
+
+  private static HostRow mapRow(ResultSet rs, int rowNum) throws SQLException {
+    Host host = new Host();
+    host.setId(rs.getObject("id", UUID.class));
+    host.setInstanceId(rs.getString("instance_id"));
+    host.setInventoryId(rs.getString("inventory_id"));
+    host.setInsightsId(rs.getString("insights_id"));
+    host.setDisplayName(rs.getString("display_name"));
+    host.setAccountNumber(rs.getString("account_number"));
+    host.setOrgId(rs.getString("org_id"));
+    host.setSubscriptionManagerId(rs.getString("subscription_manager_id"));
+    host.setGuest(rs.getBoolean("is_guest"));
+    host.setHypervisorUuid(rs.getString("hypervisor_uuid"));
+    String hardwareType = rs.getString("hardware_type");
+    host.setHardwareType(hardwareType == null ? null : HostHardwareType.valueOf(hardwareType));
+    host.setNumOfGuests((Integer) rs.getObject("num_of_guests"));
+    host.setLastSeen(rs.getObject("last_seen", OffsetDateTime.class));
+    host.setUnmappedGuest(rs.getBoolean("is_unmapped_guest"));
+    host.setHypervisor(rs.getBoolean("is_hypervisor"));
+    host.setCloudProvider(rs.getString("cloud_provider"));
+    host.setInstanceType(rs.getString("instance_type"));
+    String billingProvider = rs.getString("billing_provider");
+    host.setBillingProvider(
+        billingProvider == null ? null : BillingProvider.fromString(billingProvider));
+    host.setBillingAccountId(rs.getString("billing_account_id"));
+    Double cores = (Double) rs.getObject("cores_measurement");
+    if (cores != null) {
+      host.setMeasurement(Uom.CORES, cores);
+    }
+    Double sockets = (Double) rs.getObject("sockets_measurement");
+    if (sockets != null) {
+      host.setMeasurement(Uom.SOCKETS, sockets);
+    }
+
+    HostTallyBucket bucket = null;
+    String productId = rs.getString("product_id");
+    if (productId != null) {
+      String measurementType = rs.getString("measurement_type");
+      bucket =
+          new HostTallyBucket(
+              host,
+              productId,
+              ServiceLevel.fromString(rs.getString("sla")),
+              Usage.fromString(rs.getString("usage")),
+              BillingProvider.fromString(rs.getString("bucket_billing_provider")),
+              rs.getString("bucket_billing_account_id"),
+              rs.getBoolean("as_hypervisor"),
+              rs.getInt("cores"),
+              rs.getInt("sockets"),
+              measurementType == null ? null : HardwareMeasurementType.valueOf(measurementType));
+    }
+    return new HostRow(host, bucket);
+  }
+
+  private static Object[] hostColumns(Host host) {
+    return new Object[] {
+      host.getInstanceId(),
+      host.getInventoryId(),
+      host.getInsightsId(),
+      host.getDisplayName(),
+      host.getAccountNumber(),
+      host.getOrgId(),
+      host.getSubscriptionManagerId(),
+      host.isGuest(),
+      host.getHypervisorUuid(),
+      host.getHardwareType() == null ? null : host.getHardwareType().name(),
+      host.getNumOfGuests(),
+      host.getLastSeen(),
+      host.isUnmappedGuest(),
+      host.isHypervisor(),
+      host.getCloudProvider(),
+      host.getInstanceType(),
+      host.getBillingProvider() == null ? null : host.getBillingProvider().getValue(),
+      host.getBillingAccountId(),
+      host.getId()
+    };
+  }
+
+  private static Object[] bucketKeyColumns(UUID hostId, HostBucketKey key) {
+    return new Object[] {
+      hostId,
+      key.getProductId(),
+      key.getSla().getValue(),
+      key.getUsage().getValue(),
+      key.getBillingProvider().getValue(),
+      key.getBillingAccountId(),
+      key.getAsHypervisor()
+    };
+  }
+
+  /**
+   * Hosts modified in inventory after the watermark have not been tallied yet. The time of the last
+   * full tally is used to schedule periodic full tallies.
+   */
+  @Getter
+  @AllArgsConstructor
+  public static class TallyWatermark {
+    private final OffsetDateTime watermark;
+    private final OffsetDateTime lastFullTally;
+  }
+
+  private static class HostRow {
+    private final Host host;
+    private final HostTallyBucket bucket;
+
+    HostRow(Host host, HostTallyBucket bucket) {
+      this.host = host;
+      this.bucket = bucket;
+    }
+  }
+
+  /**
+   * A cursor over hosts that groups consecutive host/bucket rows into a single host, and allows to
+   * peek at the next host, as needed to merge-join it against another sorted stream.
+   */
+  public static class HostCursor implements AutoCloseable {
+    private final Stream<HostRow> rows;
+    private final Iterator<HostRow> iterator;
+    private HostRow pendingRow;
+    private Host next;
+
+    HostCursor(Stream<HostRow> rows) {
+      this.rows = rows;
+      this.iterator = rows.iterator();
+      this.pendingRow = iterator.hasNext() ? iterator.next() : null;
+      advance();
+    }
+
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    public Host peek() {
+      return next;
+    }
+
+    public Host next() {
+      Host current = next;
+      advance();
+      return current;
+    }
+
+    private void advance() {
+      if (pendingRow == null) {
+        next = null;
+        return;
+      }
+      Host host = pendingRow.host;
+      while (pendingRow != null && Objects.equals(pendingRow.host.getId(), host.getId())) {
+        if (pendingRow.bucket != null) {
+          pendingRow.bucket.setHost(host);
+          host.getBuckets().add(pendingRow.bucket);
+        }
+        pendingRow = iterator.hasNext() ? iterator.next() : null;
+      }
+      next = host;
+    }
+
+    @Override
+    public void close() {
+      rows.close();
+    }
+  }
+
+  /** Snapshot of the persisted state of a host, used to determine which statements to issue. */
+  public static class PersistedState {
+    private final Object[] hostColumns;
+    private final Map<HostBucketKey, HostTallyBucket> buckets = new HashMap<>();
+    private final Double cores;
+    private final Double sockets;
+
+    private PersistedState(Host host) {
+      this.hostColumns = hostColumns(host);
+      host.getBuckets()
+          .forEach(
+              bucket ->
+                  buckets.put(
+                      bucket.getKey(),
+                      new HostTallyBucket(
+                          host,
+                          bucket.getKey().getProductId(),
+                          bucket.getKey().getSla(),
+                          bucket.getKey().getUsage(),
+                          bucket.getKey().getBillingProvider(),
+                          bucket.getKey().getBillingAccountId(),
+                          bucket.getKey().getAsHypervisor(),
+                          bucket.getCores(),
+                          bucket.getSockets(),
+                          bucket.getMeasurementType())));
+      this.cores = host.getMeasurement(Uom.CORES);
+      this.sockets = host.getMeasurement(Uom.SOCKETS);
+    }
+
+    public static PersistedState of(Host host) {
+      return new PersistedState(host);
+    }
+  }
+
+  /** Queued host changes, written with JDBC batch statements. */
+  public class Batch {
+    private final int batchSize;
+    private final List<Object[]> hostInserts = new ArrayList<>();
+    private final List<Object[]> hostUpdates = new ArrayList<>();
+    private final List<Object[]> hostDeletes = new ArrayList<>();
+    private final List<Object[]> hostBucketDeletes = new ArrayList<>();
+    private final List<Object[]> measurementUpserts = new ArrayList<>();
+    private final List<Object[]> bucketInserts = new ArrayList<>();
+    private final List<Object[]> bucketUpdates = new ArrayList<>();
+    private final List<Object[]> bucketDeletes = new ArrayList<>();
+    private int pending;
+    private int inserted;
+    private int updated;
+    private int deleted;
+
+    private Batch(int batchSize) {
+      this.batchSize = batchSize;
+    }
+
+    /**
+     * Queue the statements needed to persist a host.
+     *
+     * @param persisted the state of the host as read from the database, or null for a new host
+     * @param host the desired state of the host
+     */
+    public void save(PersistedState persisted, Host host) {
+      if (persisted == null) {
+        host.setId(UUID.randomUUID());
+        hostInserts.add(hostColumns(host));
+        inserted++;
+        pending++;
+      } else {
+        Object[] columns = hostColumns(host);
+        if (!Arrays.equals(persisted.hostColumns, columns)) {
+          hostUpdates.add(columns);
+          updated++;
+          pending++;
+        }
+      }
+      saveMeasurement(host, Uom.CORES, persisted == null ? null : persisted.cores);
+      saveMeasurement(host, Uom.SOCKETS, persisted == null ? null : persisted.sockets);
+      saveBuckets(persisted, host);
+      flushIfFull();
+    }
+
+    /**
+     * Queue the deletion of a host and its buckets.
+     *
+     * @param host the host to delete
+     */
+    public void delete(Host host) {
+      hostBucketDeletes.add(new Object[] {host.getId()});
+      hostDeletes.add(new Object[] {host.getId()});
+      deleted++;
+      pending += 2;
+      flushIfFull();
+    }
+
+    private void saveMeasurement(Host host, Uom uom, Double persistedValue) {
+      Double value = host.getMeasurement(uom);
+      if (value != null && !value.equals(persistedValue)) {
+        measurementUpserts.add(new Object[] {host.getId(), uom.name(), value});
+        pending++;
+      }
+    }
+
+    private void saveBuckets(PersistedState persisted, Host host) {
+      Map<HostBucketKey, HostTallyBucket> persistedBuckets =
+          persisted == null ? Map.of() : persisted.buckets;
+      Map<HostBucketKey, HostTallyBucket> buckets = new HashMap<>();
+      host.getBuckets().forEach(bucket -> buckets.put(bucketKey(host, bucket), bucket));
+      buckets.forEach(
+          (key, bucket) -> {
+            HostTallyBucket persistedBucket = persistedBuckets.get(key);
+            if (persistedBucket == null) {
+              bucketInserts.add(bucketInsertColumns(host, bucket));
+              pending++;
+            } else if (!persistedBucket.equals(bucket)) {
+              bucketUpdates.add(bucketUpdateColumns(host, bucket));
+              pending++;
+            }
+          });
+      persistedBuckets.keySet().stream()
+          .filter(key -> !buckets.containsKey(key))
+          .forEach(
+              key -> {
+                bucketDeletes.add(bucketKeyColumns(host.getId(), key));
+                pending++;
+              });
+    }
+
+    private HostBucketKey bucketKey(Host host, HostTallyBucket bucket) {
+      // new hosts were given their ID after the buckets were added
+      bucket.setHost(host);
+      return bucket.getKey();
+    }
+
+    private Object[] bucketInsertColumns(Host host, HostTallyBucket bucket) {
+      Object[] key = bucketKeyColumns(host.getId(), bucket.getKey());
+      Object[] columns = Arrays.copyOf(key, key.length + 3);
+      columns[key.length] = bucket.getCores();
+      columns[key.length + 1] = bucket.getSockets();
+      columns[key.length + 2] = measurementType(bucket);
+      return columns;
+    }
+
+    private Object[] bucketUpdateColumns(Host host, HostTallyBucket bucket) {
+      Object[] key = bucketKeyColumns(host.getId(), bucket.getKey());
+      Object[] columns = new Object[key.length + 3];
+      columns[0] = bucket.getCores();
+      columns[1] = bucket.getSockets();
+      columns[2] = measurementType(bucket);
+      System.arraycopy(key, 0, columns, 3, key.length);
+      return columns;
+    }
+
+    private String measurementType(HostTallyBucket bucket) {
+      return bucket.getMeasurementType() == null ? null : bucket.getMeasurementType().name();
+    }
+
+    private void flushIfFull() {
+      if (pending >= batchSize) {
+        flush();
+      }
+    }
+
+    /** Write all queued changes. */
+    public void flush() {
+      // Order matters: hosts must exist before their children are written, and children must be
+      // removed before their hosts.
+      executeBatch(DELETE_BUCKET_SQL, bucketDeletes);
+      executeBatch(DELETE_HOST_BUCKETS_SQL, hostBucketDeletes);
+      executeBatch(DELETE_HOST_SQL, hostDeletes);
+      executeBatch(INSERT_HOST_SQL, hostInserts);
+      executeBatch(UPDATE_HOST_SQL, hostUpdates);
+      executeBatch(UPSERT_MEASUREMENT_SQL, measurementUpserts);
+      executeBatch(INSERT_BUCKET_SQL, bucketInserts);
+      executeBatch(UPDATE_BUCKET_SQL, bucketUpdates);
+      pending = 0;
+    }
+
+    private void executeBatch(String sql, List<Object[]> args) {
+      if (!args.isEmpty()) {
+        jdbcTemplate.batchUpdate(sql, args);
+        args.clear();
+      }
+    }
+
+    public int getInserted() {
+      return inserted;
+    }
+
+    public int getUpdated() {
+      return updated;
+    }
+
+    public int getDeleted() {
+      return deleted;
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally;
+
+import java.time.Duration;
+import lombok.Data;
+
+/** Properties controlling how HBI hosts are collected during the nightly tally. */
+@Data
+public class HostCollectionProperties {
+
+  /**
+   * If enabled, HBI host facts are partitioned into chunks that are normalized and collected on a
+   * bounded worker pool, instead of on the thread streaming the inventory database.
+   */
+  private boolean parallelEnabled = false;
+
+  /** Number of worker threads used to collect host chunks when parallel collection is enabled. */
+  private int parallelism = 4;
+
+  /** Number of hosts in each chunk handed to a worker. */
+  private int chunkSize = 1000;
+
+  /**
+   * Maximum number of chunks that can be queued or in progress at once. Bounds the number of host
+   * facts held in memory while the inventory stream is ahead of the workers.
+   */
+  private int maxChunksInFlight = 8;
+
+  /**
+   * If enabled, existing hosts are reconciled against HBI by streaming both sides ordered by
+   * inventory ID, and changes are written in JDBC batches, instead of loading and saving the org's
+   * whole host inventory. Takes precedence over parallel collection, which does not preserve
+   * ordering.
+   */
+  private boolean streamingReconciliationEnabled = false;
+
+  /** Number of statements queued before a JDBC batch is written, also used as fetch size. */
+  private int reconciliationBatchSize = 500;
+
+  /**
+   * If enabled, only HBI hosts modified since the last successful tally of an org (plus all hosts
+   * in hypervisor-guest mappings) are re-collected. The usage of other hosts is taken from their
+   * persisted buckets, and hosts no longer in HBI are removed.
+   */
+  private boolean deltaEnabled = false;
+
+  /**
+   * Maximum time between full tallies of an org when delta tallies are enabled. Full tallies
+   * correct drift, e.g. from facts that become stale without the host being modified in HBI.
+   */
+  private Duration fullTallyInterval = Duration.ofDays(7);
+
+  /**
+   * How far before the previous tally's start to look for modified hosts, to account for HBI
+   * updates that committed after the previous tally read its hosts.
+   */
+  private Duration deltaOverlap = Duration.ofHours(1);
+}
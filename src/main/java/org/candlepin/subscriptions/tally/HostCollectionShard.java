@@ -0,0 +1,103 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import lombok.Getter;
+import org.candlepin.subscriptions.db.model.Host;
+import org.candlepin.subscriptions.db.model.HostBucketKey;
+import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.Usage;
+import org.candlepin.subscriptions.tally.facts.NormalizedFacts;
+
+/**
+ * Partial results of collecting a subset of an org's HBI hosts.
+ *
+ * <p>A shard is only ever written by a single thread. Shards are combined by {@link
+ * #merge(HostCollectionShard)} in a fixed order, so that the merged result does not depend on how
+ * work was scheduled.
+ */
+@Getter
+class HostCollectionShard {
+  private final AccountUsageCalculation accountCalc;
+  private final Map<String, Set<UsageCalculation.Key>> hypervisorUsageKeys = new HashMap<>();
+  private final Map<String, NormalizedFacts> hypervisorFacts = new LinkedHashMap<>();
+  private final Map<String, Host> hypervisorHosts = new LinkedHashMap<>();
+  private final Map<String, Integer> hypervisorGuestCounts = new HashMap<>();
+  private final Map<String, Set<HostBucketKey>> hostSeenBucketKeysLookup = new HashMap<>();
+  private final Map<String, Host> hosts = new LinkedHashMap<>();
+  private final BitSet calculatedSlaUsages = new BitSet(UsageKeyTable.size());
+  private int hostCount;
+
+  HostCollectionShard(String account) {
+    this.accountCalc = new AccountUsageCalculation(account);
+  }
+
+  void incrementHostCount() {
+    hostCount++;
+  }
+
+  /**
+   * Records that calculations of every product were created at an SLA and usage.
+   *
+   * @return true if they had not been created before.
+   */
+  boolean markCalculationsCreated(ServiceLevel sla, Usage usage) {
+    int index = UsageKeyTable.index(sla, usage);
+    if (calculatedSlaUsages.get(index)) {
+      return false;
+    }
+    calculatedSlaUsages.set(index);
+    return true;
+  }
+
+  void incrementGuestCount(String hypervisorUuid) {
+    hypervisorGuestCounts.merge(hypervisorUuid, 1, Integer::sum);
+  }
+
+  /**
+   * Merges another shard into this one.
+   *
+   * @param other the shard to merge; it must not be used afterwards.
+   */
+  void merge(HostCollectionShard other) {
+    accountCalc.merge(other.accountCalc);
+    other.hypervisorUsageKeys.forEach(
+        (uuid, keys) ->
+            hypervisorUsageKeys.computeIfAbsent(uuid, u -> new HashSet<>()).addAll(keys));
+    hypervisorFacts.putAll(other.hypervisorFacts);
+    hypervisorHosts.putAll(other.hypervisorHosts);
+    other.hypervisorGuestCounts.forEach(
+        (uuid, count) -> hypervisorGuestCounts.merge(uuid, count, Integer::sum));
+    other.hostSeenBucketKeysLookup.forEach(
+        (instanceId, keys) ->
+            hostSeenBucketKeysLookup
+                .computeIfAbsent(instanceId, i -> new HashSet<>())
+                .addAll(keys));
+    hosts.putAll(other.hosts);
+    hostCount += other.hostCount;
+  }
+}
@@ -22,16 +22,30 @@ package org.candlepin.subscriptions.tally;
 
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
 import org.candlepin.subscriptions.ApplicationProperties;
 import org.candlepin.subscriptions.db.AccountServiceInventoryRepository;
 import org.candlepin.subscriptions.db.model.*;
@@ -43,6 +57,7 @@ import org.candlepin.subscriptions.tally.collector.ProductUsageCollector;
 import org.candlepin.subscriptions.tally.collector.ProductUsageCollectorFactory;
 import org.candlepin.subscriptions.tally.facts.FactNormalizer;
 import org.candlepin.subscriptions.tally.facts.NormalizedFacts;
+import org.candlepin.subscriptions.util.ApplicationClock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -56,31 +71,65 @@ public class InventoryAccountUsageCollector {
   private static final Logger log = LoggerFactory.getLogger(InventoryAccountUsageCollector.class);
   public static final String HBI_INSTANCE_TYPE = "HBI_HOST";
 
+  private static final String PHASE_TIMER = "rhsm-subscriptions.tally.hbi_collection";
+
   private final FactNormalizer factNormalizer;
   private final InventoryDatabaseOperations inventory;
   private final AccountServiceInventoryRepository accountServiceInventoryRepository;
+  private final HostBatchOperations hostBatchOperations;
+  private final HostCollectionProperties hostCollectionProperties;
   private final int culledOffsetDays;
+  private final MeterRegistry meterRegistry;
+  private final ApplicationClock clock;
   private final Counter totalHosts;
+  private final ExecutorService executor;
 
   public InventoryAccountUsageCollector(
       FactNormalizer factNormalizer,
       InventoryDatabaseOperations inventory,
       AccountServiceInventoryRepository accountServiceInventoryRepository,
+      HostBatchOperations hostBatchOperations,
       ApplicationProperties props,
-      MeterRegistry meterRegistry) {
+      HostCollectionProperties hostCollectionProperties,
+      MeterRegistry meterRegistry,
+      ApplicationClock clock) {
     this.factNormalizer = factNormalizer;
     this.inventory = inventory;
     this.accountServiceInventoryRepository = accountServiceInventoryRepository;
+    this.hostBatchOperations = hostBatchOperations;
+    this.hostCollectionProperties = hostCollectionProperties;
     this.culledOffsetDays = props.getCullingOffsetDays();
+    this.meterRegistry = meterRegistry;
+    this.clock = clock;
     this.totalHosts = meterRegistry.counter("rhsm-subscriptions.tally.hbi_hosts");
+    this.executor =
+        hostCollectionProperties.isParallelEnabled()
+            ? Executors.newFixedThreadPool(hostCollectionProperties.getParallelism())
+            : null;
+  }
+
+  @PreDestroy
+  protected void destroy() throws InterruptedException {
+    if (executor != null) {
+      executor.shutdown();
+      if (!executor.awaitTermination(20, TimeUnit.SECONDS)) {
+        log.warn("Host collection workers not yet terminated in 20 seconds.");
+      }
+    }
   }
 
-  @SuppressWarnings("squid:S3776")
   @Transactional
   public Map<String, AccountUsageCalculation> collect(
       Collection<String> products, String account, String orgId) {
+    UsageKeyTable keyTable = new UsageKeyTable(products);
+    if (hostCollectionProperties.isStreamingReconciliationEnabled()) {
+      return hostCollectionProperties.isDeltaEnabled()
+          ? reconcileSinceWatermark(keyTable, account, orgId)
+          : reconcile(keyTable, account, orgId, null);
+    }
     log.info("Finding HBI hosts for account={} org={}", account, orgId);
 
+    long phaseStart = System.nanoTime();
     AccountServiceInventory accountServiceInventory =
         accountServiceInventoryRepository
             .findById(
@@ -94,6 +143,7 @@ public class InventoryAccountUsageCollector {
     }
 
     Set<String> duplicateInstanceIds = new HashSet<>();
+    // Concurrent, since hosts are claimed from this map by the collection workers.
     Map<String, Host> inventoryHostMap =
         accountServiceInventory.getServiceInstances().values().stream()
             .filter(host -> host.getInventoryId() != null)
@@ -101,122 +151,46 @@ public class InventoryAccountUsageCollector {
                 Collectors.toMap(
                     Host::getInventoryId,
                     Function.identity(),
-                    (h1, h2) -> handleDuplicateHost(duplicateInstanceIds, h1, h2)));
+                    (h1, h2) -> handleDuplicateHost(duplicateInstanceIds, h1, h2),
+                    ConcurrentHashMap::new));
     duplicateInstanceIds.forEach(accountServiceInventory.getServiceInstances()::remove);
 
     Map<String, String> hypMapping = new HashMap<>();
-    Map<String, Set<UsageCalculation.Key>> hypervisorUsageKeys = new HashMap<>();
-    Map<String, Map<String, NormalizedFacts>> accountHypervisorFacts = new HashMap<>();
-    Map<String, Host> hypervisorHosts = new HashMap<>();
-    Map<String, Integer> hypervisorGuestCounts = new HashMap<>();
-
     inventory.reportedHypervisors(
         List.of(orgId), reported -> hypMapping.put((String) reported[0], (String) reported[1]));
     log.info("Found {} reported hypervisors.", hypMapping.size());
+    phaseStart = recordPhase("load", orgId, phaseStart);
 
-    Map<String, Set<HostBucketKey>> hostSeenBucketKeysLookup = new HashMap<>();
-    Map<String, AccountUsageCalculation> calcsByAccount = new HashMap<>();
-    inventory.processHostFacts(
-        List.of(orgId),
-        culledOffsetDays,
-        hostFacts -> {
-          calcsByAccount.putIfAbsent(account, new AccountUsageCalculation(account));
-
-          AccountUsageCalculation accountCalc = calcsByAccount.get(account);
-          NormalizedFacts facts = factNormalizer.normalize(hostFacts, hypMapping);
-
-          // Validate and set the orgId.
-          // Don't set null orgId as it may overwrite an existing value.
-          // Likely won't happen, but there could be stale data in inventory
-          // with no org set.
-          String org = facts.getOrgId();
-          if (org != null) {
-            String currentOrg = accountCalc.getOrgId();
-            if (currentOrg != null && !currentOrg.equalsIgnoreCase(org)) {
-              throw new IllegalStateException(
-                  String.format(
-                      "Attempt to set a different org for an account: %s:%s", currentOrg, org));
-            }
-            accountCalc.setOrgId(org);
-          }
-
-          Host existingHost = inventoryHostMap.remove(hostFacts.getInventoryId().toString());
-          Host host = existingHost == null ? hostFromHbiFacts(hostFacts, facts) : existingHost;
-          if (existingHost != null) {
-            populateHostFieldsFromHbi(host, hostFacts, facts);
-          }
-          Set<HostBucketKey> seenBucketKeys =
-              hostSeenBucketKeysLookup.computeIfAbsent(host.getInstanceId(), h -> new HashSet<>());
-
-          if (facts.isHypervisor()) {
-            Map<String, NormalizedFacts> idToHypervisorMap =
-                accountHypervisorFacts.computeIfAbsent(account, a -> new HashMap<>());
-            idToHypervisorMap.put(hostFacts.getSubscriptionManagerId(), facts);
-            hypervisorHosts.put(hostFacts.getSubscriptionManagerId(), host);
-          } else if (facts.isVirtual() && StringUtils.hasText(facts.getHypervisorUuid())) {
-            Integer guests = hypervisorGuestCounts.getOrDefault(host.getHypervisorUuid(), 0);
-            hypervisorGuestCounts.put(host.getHypervisorUuid(), ++guests);
-          }
+    HostCollectionShard result =
+        executor == null
+            ? collectHosts(keyTable, account, orgId, hypMapping, inventoryHostMap)
+            : collectHostsInParallel(keyTable, account, orgId, hypMapping, inventoryHostMap);
+    phaseStart = recordPhase("hosts", orgId, phaseStart);
 
-          ServiceLevel[] slas = new ServiceLevel[] {facts.getSla(), ServiceLevel._ANY};
-          Usage[] usages = new Usage[] {facts.getUsage(), Usage._ANY};
-
-          // Calculate for each UsageKey
-          // review current implementation of default values, and determine if factnormalizer needs
-          // to handle billingAcctId & BillingProvider
-          products.forEach(
-              product -> {
-                for (ServiceLevel sla : slas) {
-                  for (Usage usage : usages) {
-                    UsageCalculation.Key key =
-                        new UsageCalculation.Key(product, sla, usage, BillingProvider._ANY, "_ANY");
-                    UsageCalculation calc = accountCalc.getOrCreateCalculation(key);
-                    if (facts.getProducts().contains(product)) {
-                      try {
-                        String hypervisorUuid = facts.getHypervisorUuid();
-                        if (hypervisorUuid != null) {
-                          Set<UsageCalculation.Key> keys =
-                              hypervisorUsageKeys.computeIfAbsent(
-                                  hypervisorUuid, uuid -> new HashSet<>());
-                          keys.add(key);
-                        }
-                        Optional<HostTallyBucket> appliedBucket =
-                            ProductUsageCollectorFactory.get(product).collect(calc, facts);
-                        appliedBucket.ifPresent(
-                            bucket -> {
-                              // host.addBucket changes bucket.key.hostId, so we do that first; to
-                              // avoid mutating the item in the set
-                              host.addBucket(bucket);
-                              seenBucketKeys.add(bucket.getKey());
-                            });
-                      } catch (Exception e) {
-                        log.error(
-                            "Unable to collect usage data for host: {} product: {}",
-                            hostFacts.getSubscriptionManagerId(),
-                            product,
-                            e);
-                      }
-                    }
-                  }
-                }
-              });
-          // Save the host now that the buckets have been determined. Hypervisor hosts will
-          // be persisted once all potential guests have been processed.
-          if (!facts.isHypervisor()) {
-            accountServiceInventory.getServiceInstances().put(host.getInstanceId(), host);
-          }
+    Map<String, AccountUsageCalculation> calcsByAccount = new HashMap<>();
+    if (result.getHostCount() > 0) {
+      calcsByAccount.put(account, result.getAccountCalc());
+    }
 
-          totalHosts.increment();
-        });
+    // Save the hosts now that the buckets have been determined. Hypervisor hosts will
+    // be persisted once all potential guests have been processed.
+    accountServiceInventory.getServiceInstances().putAll(result.getHosts());
 
     // apply data from guests to hypervisor records
+    Map<String, Map<String, NormalizedFacts>> accountHypervisorFacts = new HashMap<>();
+    if (!result.getHypervisorFacts().isEmpty()) {
+      accountHypervisorFacts.put(account, result.getHypervisorFacts());
+    }
+    Map<String, Host> hypervisorHosts = result.getHypervisorHosts();
+    Map<String, Set<HostBucketKey>> hostSeenBucketKeysLookup = result.getHostSeenBucketKeysLookup();
     collectHypervisorGuestData(
-        hypervisorUsageKeys,
+        result.getHypervisorUsageKeys(),
         accountHypervisorFacts,
         hypervisorHosts,
-        hypervisorGuestCounts,
+        result.getHypervisorGuestCounts(),
         calcsByAccount,
         hostSeenBucketKeysLookup);
+    phaseStart = recordPhase("hypervisors", orgId, phaseStart);
 
     log.info(
         "Removing {} stale host records (HBI records no longer present).", inventoryHostMap.size());
@@ -251,10 +225,432 @@ public class InventoryAccountUsageCollector {
 
     accountServiceInventory.setOrgId(orgId);
     accountServiceInventoryRepository.save(accountServiceInventory);
+    recordPhase("save", orgId, phaseStart);
 
     return calcsByAccount;
   }
 
+  /**
+   * Reconciles only the hosts modified since the org's watermark, unless the org has no watermark
+   * yet or its last full tally is older than the configured interval.
+   */
+  private Map<String, AccountUsageCalculation> reconcileSinceWatermark(
+      UsageKeyTable keyTable, String account, String orgId) {
+    OffsetDateTime tallyStart = clock.now();
+    OffsetDateTime fullTallyDue =
+        tallyStart.minus(hostCollectionProperties.getFullTallyInterval());
+    Optional<HostBatchOperations.TallyWatermark> watermark =
+        hostBatchOperations
+            .findWatermark(orgId, HBI_INSTANCE_TYPE)
+            .filter(
+                w -> w.getLastFullTally() != null && w.getLastFullTally().isAfter(fullTallyDue));
+    OffsetDateTime modifiedSince =
+        watermark
+            .map(w -> w.getWatermark().minus(hostCollectionProperties.getDeltaOverlap()))
+            .orElse(null);
+
+    Map<String, AccountUsageCalculation> calcsByAccount =
+        reconcile(keyTable, account, orgId, modifiedSince);
+
+    OffsetDateTime lastFullTally =
+        watermark.map(HostBatchOperations.TallyWatermark::getLastFullTally).orElse(tallyStart);
+    hostBatchOperations.saveWatermark(
+        orgId,
+        HBI_INSTANCE_TYPE,
+        new HostBatchOperations.TallyWatermark(tallyStart, lastFullTally));
+    return calcsByAccount;
+  }
+
+  /**
+   * Streaming alternative to the aggregate based collection above.
+   *
+   * <p>The org's existing hosts and the HBI host facts are both streamed ordered by inventory ID
+   * and merge-joined, so that each host is read, collected and written (via a JDBC batch) before
+   * the next one. Only hypervisors are held until the end, since their buckets depend on their
+   * guests.
+   *
+   * <p>When modifiedSince is given, only HBI hosts modified since then, and hosts in
+   * hypervisor-guest mappings, are streamed. The usage of the other hosts still in HBI is
+   * re-applied from their persisted buckets without writing them.
+   */
+  private Map<String, AccountUsageCalculation> reconcile(
+      UsageKeyTable keyTable, String account, String orgId, OffsetDateTime modifiedSince) {
+    log.info(
+        "Reconciling HBI hosts for account={} org={} modifiedSince={}",
+        account,
+        orgId,
+        modifiedSince);
+
+    long phaseStart = System.nanoTime();
+    hostBatchOperations.ensureAccountServiceInventory(orgId, HBI_INSTANCE_TYPE, account);
+    Map<String, String> hypMapping = new HashMap<>();
+    inventory.reportedHypervisors(
+        List.of(orgId), reported -> hypMapping.put((String) reported[0], (String) reported[1]));
+    log.info("Found {} reported hypervisors.", hypMapping.size());
+    // Hosts that are not streamed, but still present in HBI, are unchanged. Each is removed from
+    // the set once collected, so that duplicate records of it are removed.
+    Set<String> unchangedHostIds =
+        modifiedSince == null
+            ? new HashSet<>()
+            : new HashSet<>(inventory.talliedHostIds(List.of(orgId), culledOffsetDays));
+    phaseStart = recordPhase("load", orgId, phaseStart);
+
+    HostCollectionShard shard = new HostCollectionShard(account);
+    Map<String, HostBatchOperations.PersistedState> persistedHypervisors = new HashMap<>();
+    HostBatchOperations.Batch batch =
+        hostBatchOperations.newBatch(hostCollectionProperties.getReconciliationBatchSize());
+    Consumer<Host> unmatchedHostHandler =
+        existingHost -> {
+          if (unchangedHostIds.remove(existingHost.getInventoryId())) {
+            collectPersistedBuckets(shard, keyTable, existingHost);
+          } else {
+            // HBI record no longer present
+            batch.delete(existingHost);
+          }
+        };
+    try (HostBatchOperations.HostCursor existingHosts =
+        hostBatchOperations.streamHosts(orgId, HBI_INSTANCE_TYPE)) {
+      Consumer<Consumer<InventoryHostFacts>> hostFactsSource =
+          modifiedSince == null
+              ? consumer ->
+                  inventory.processHostFactsOrderedByInventoryId(
+                      List.of(orgId), culledOffsetDays, consumer)
+              : consumer ->
+                  inventory.processHostFactsModifiedOrMappedSince(
+                      List.of(orgId), culledOffsetDays, modifiedSince, consumer);
+      hostFactsSource.accept(
+          hostFacts -> {
+            String inventoryId = hostFacts.getInventoryId().toString();
+            Map<String, Host> match = new HashMap<>();
+            while (existingHosts.hasNext()
+                && existingHosts.peek().getInventoryId().compareTo(inventoryId) <= 0) {
+              Host existingHost = existingHosts.next();
+              if (existingHost.getInventoryId().equals(inventoryId) && match.isEmpty()) {
+                match.put(inventoryId, existingHost);
+              } else if (existingHost.getInventoryId().equals(inventoryId)) {
+                log.warn("Removing duplicate host record w/ inventory ID: {}", inventoryId);
+                batch.delete(existingHost);
+              } else {
+                unmatchedHostHandler.accept(existingHost);
+              }
+            }
+            Host existingHost = match.get(inventoryId);
+            HostBatchOperations.PersistedState persisted =
+                existingHost == null ? null : HostBatchOperations.PersistedState.of(existingHost);
+
+            collectHost(shard, keyTable, hostFacts, hypMapping, match);
+
+            String instanceId = existingHost == null ? inventoryId : existingHost.getInstanceId();
+            Host host = shard.getHosts().remove(instanceId);
+            if (host != null) {
+              Set<HostBucketKey> seenBucketKeys =
+                  shard.getHostSeenBucketKeysLookup().remove(instanceId);
+              host.getBuckets().removeIf(b -> !seenBucketKeys.contains(b.getKey()));
+              batch.save(persisted, host);
+            } else {
+              // hypervisors are saved once all potential guests have been processed
+              persistedHypervisors.put(instanceId, persisted);
+            }
+          });
+      while (existingHosts.hasNext()) {
+        unmatchedHostHandler.accept(existingHosts.next());
+      }
+    }
+    phaseStart = recordPhase("hosts", orgId, phaseStart);
+
+    Map<String, AccountUsageCalculation> calcsByAccount = new HashMap<>();
+    if (shard.getHostCount() > 0) {
+      calcsByAccount.put(account, shard.getAccountCalc());
+    }
+    Map<String, Map<String, NormalizedFacts>> accountHypervisorFacts = new HashMap<>();
+    if (!shard.getHypervisorFacts().isEmpty()) {
+      accountHypervisorFacts.put(account, shard.getHypervisorFacts());
+    }
+    collectHypervisorGuestData(
+        shard.getHypervisorUsageKeys(),
+        accountHypervisorFacts,
+        shard.getHypervisorHosts(),
+        shard.getHypervisorGuestCounts(),
+        calcsByAccount,
+        shard.getHostSeenBucketKeysLookup());
+    shard
+        .getHypervisorHosts()
+        .values()
+        .forEach(
+            host -> {
+              Set<HostBucketKey> seenBucketKeys =
+                  shard
+                      .getHostSeenBucketKeysLookup()
+                      .getOrDefault(host.getInstanceId(), Collections.emptySet());
+              host.getBuckets().removeIf(b -> !seenBucketKeys.contains(b.getKey()));
+              batch.save(persistedHypervisors.get(host.getInstanceId()), host);
+            });
+    batch.flush();
+    log.info(
+        "Reconciled HBI hosts for org={}: inserted={} updated={} deleted={}",
+        orgId,
+        batch.getInserted(),
+        batch.getUpdated(),
+        batch.getDeleted());
+    recordPhase("save", orgId, phaseStart);
+
+    if (log.isDebugEnabled()) {
+      calcsByAccount.values().forEach(calc -> log.debug("Account Usage: {}", calc));
+    }
+    return calcsByAccount;
+  }
+
+  /**
+   * Re-applies the usage of an unchanged host from its persisted buckets. Calculations are created
+   * for every product at each of the host's SLA/usage combinations, as when collecting its facts.
+   */
+  private void collectPersistedBuckets(
+      HostCollectionShard shard, UsageKeyTable keyTable, Host host) {
+    AccountUsageCalculation accountCalc = shard.getAccountCalc();
+    if (host.getOrgId() != null && accountCalc.getOrgId() == null) {
+      accountCalc.setOrgId(host.getOrgId());
+    }
+    for (HostTallyBucket bucket : host.getBuckets()) {
+      HostBucketKey bucketKey = bucket.getKey();
+      UsageCalculation.Key key =
+          keyTable.get(
+              bucketKey.getProductId(),
+              bucketKey.getSla(),
+              bucketKey.getUsage(),
+              bucketKey.getBillingProvider(),
+              bucketKey.getBillingAccountId());
+      if (key == null) {
+        continue;
+      }
+      if (UsageKeyTable.isAnyBilling(key.getBillingProvider(), key.getBillingAccountId())) {
+        createCalculations(shard, keyTable, key.getSla(), key.getUsage());
+      } else {
+        keyTable.createCalculations(
+            accountCalc,
+            key.getSla(),
+            key.getUsage(),
+            key.getBillingProvider(),
+            key.getBillingAccountId());
+      }
+      ProductUsageCollectorFactory.get(key.getProductId())
+          .collectFromBucket(accountCalc.getOrCreateCalculation(key), bucket);
+    }
+    shard.incrementHostCount();
+    totalHosts.increment();
+  }
+
+  private HostCollectionShard collectHosts(
+      UsageKeyTable keyTable,
+      String account,
+      String orgId,
+      Map<String, String> hypMapping,
+      Map<String, Host> inventoryHostMap) {
+    HostCollectionShard shard = new HostCollectionShard(account);
+    inventory.processHostFacts(
+        List.of(orgId),
+        culledOffsetDays,
+        hostFacts -> collectHost(shard, keyTable, hostFacts, hypMapping, inventoryHostMap));
+    return shard;
+  }
+
+  /**
+   * Partitions the host fact stream into chunks that are collected by the worker pool, each into
+   * its own shard. Shards are merged in chunk order, as the chunks complete, so that the result is
+   * identical to a serial collection.
+   */
+  private HostCollectionShard collectHostsInParallel(
+      UsageKeyTable keyTable,
+      String account,
+      String orgId,
+      Map<String, String> hypMapping,
+      Map<String, Host> inventoryHostMap) {
+    HostCollectionShard result = new HostCollectionShard(account);
+    Semaphore chunksInFlight = new Semaphore(hostCollectionProperties.getMaxChunksInFlight());
+    Deque<Future<HostCollectionShard>> pending = new ArrayDeque<>();
+    List<InventoryHostFacts> chunk = new ArrayList<>(hostCollectionProperties.getChunkSize());
+
+    Consumer<List<InventoryHostFacts>> submitChunk =
+        hostFactsChunk -> {
+          acquire(chunksInFlight);
+          pending.add(
+              executor.submit(
+                  () -> {
+                    try {
+                      HostCollectionShard shard = new HostCollectionShard(account);
+                      hostFactsChunk.forEach(
+                          hostFacts ->
+                              collectHost(
+                                  shard, keyTable, hostFacts, hypMapping, inventoryHostMap));
+                      return shard;
+                    } finally {
+                      chunksInFlight.release();
+                    }
+                  }));
+          mergeCompletedShards(result, pending, false);
+        };
+
+    try {
+      inventory.processHostFacts(
+          List.of(orgId),
+          culledOffsetDays,
+          hostFacts -> {
+            chunk.add(hostFacts);
+            if (chunk.size() >= hostCollectionProperties.getChunkSize()) {
+              submitChunk.accept(new ArrayList<>(chunk));
+              chunk.clear();
+            }
+          });
+      if (!chunk.isEmpty()) {
+        submitChunk.accept(new ArrayList<>(chunk));
+      }
+      mergeCompletedShards(result, pending, true);
+    } finally {
+      pending.forEach(future -> future.cancel(true));
+    }
+    return result;
+  }
+
+  private void mergeCompletedShards(
+      HostCollectionShard result, Deque<Future<HostCollectionShard>> pending, boolean wait) {
+    while (!pending.isEmpty() && (wait || pending.peek().isDone())) {
+      try {
+        result.merge(pending.poll().get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while collecting HBI hosts.", e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw new IllegalStateException("Unable to collect HBI hosts.", e.getCause());
+      }
+    }
+  }
+
+  private void acquire(Semaphore semaphore) {
+    try {
+      semaphore.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while collecting HBI hosts.", e);
+    }
+  }
+
+  @SuppressWarnings("squid:S3776")
+  private void collectHost(
+      HostCollectionShard shard,
+      UsageKeyTable keyTable,
+      InventoryHostFacts hostFacts,
+      Map<String, String> hypMapping,
+      Map<String, Host> inventoryHostMap) {
+    AccountUsageCalculation accountCalc = shard.getAccountCalc();
+    NormalizedFacts facts = factNormalizer.normalize(hostFacts, hypMapping);
+
+    // Validate and set the orgId.
+    // Don't set null orgId as it may overwrite an existing value.
+    // Likely won't happen, but there could be stale data in inventory
+    // with no org set.
+    String org = facts.getOrgId();
+    if (org != null) {
+      String currentOrg = accountCalc.getOrgId();
+      if (currentOrg != null && !currentOrg.equalsIgnoreCase(org)) {
+        throw new IllegalStateException(
+            String.format("Attempt to set a different org for an account: %s:%s", currentOrg, org));
+      }
+      accountCalc.setOrgId(org);
+    }
+
+    Host existingHost = inventoryHostMap.remove(hostFacts.getInventoryId().toString());
+    Host host = existingHost == null ? hostFromHbiFacts(hostFacts, facts) : existingHost;
+    if (existingHost != null) {
+      populateHostFieldsFromHbi(host, hostFacts, facts);
+    }
+    Set<HostBucketKey> seenBucketKeys =
+        shard
+            .getHostSeenBucketKeysLookup()
+            .computeIfAbsent(host.getInstanceId(), h -> new HashSet<>());
+
+    if (facts.isHypervisor()) {
+      shard.getHypervisorFacts().put(hostFacts.getSubscriptionManagerId(), facts);
+      shard.getHypervisorHosts().put(hostFacts.getSubscriptionManagerId(), host);
+    } else if (facts.isVirtual() && StringUtils.hasText(facts.getHypervisorUuid())) {
+      shard.incrementGuestCount(host.getHypervisorUuid());
+    }
+
+    ServiceLevel[] slas = new ServiceLevel[] {facts.getSla(), ServiceLevel._ANY};
+    Usage[] usages = new Usage[] {facts.getUsage(), Usage._ANY};
+
+    // Every product being tallied has a calculation for each SLA/usage combination of any host,
+    // so those are created once per combination, and only the host's own products are visited.
+    for (ServiceLevel sla : slas) {
+      for (Usage usage : usages) {
+        createCalculations(shard, keyTable, sla, usage);
+      }
+    }
+
+    // Calculate for each UsageKey
+    // review current implementation of default values, and determine if factnormalizer needs
+    // to handle billingAcctId & BillingProvider
+    String hypervisorUuid = facts.getHypervisorUuid();
+    for (String product : facts.getProducts()) {
+      if (!keyTable.contains(product)) {
+        continue;
+      }
+      for (ServiceLevel sla : slas) {
+        for (Usage usage : usages) {
+          UsageCalculation.Key key = keyTable.get(product, sla, usage);
+          UsageCalculation calc = accountCalc.getOrCreateCalculation(key);
+          try {
+            if (hypervisorUuid != null) {
+              Set<UsageCalculation.Key> keys =
+                  shard
+                      .getHypervisorUsageKeys()
+                      .computeIfAbsent(hypervisorUuid, uuid -> new HashSet<>());
+              keys.add(key);
+            }
+            Optional<HostTallyBucket> appliedBucket =
+                ProductUsageCollectorFactory.get(product).collect(calc, facts);
+            appliedBucket.ifPresent(
+                bucket -> {
+                  // host.addBucket changes bucket.key.hostId, so we do that first; to
+                  // avoid mutating the item in the set
+                  host.addBucket(bucket);
+                  seenBucketKeys.add(bucket.getKey());
+                });
+          } catch (Exception e) {
+            log.error(
+                "Unable to collect usage data for host: {} product: {}",
+                hostFacts.getSubscriptionManagerId(),
+                product,
+                e);
+          }
+        }
+      }
+    }
+    if (!facts.isHypervisor()) {
+      shard.getHosts().put(host.getInstanceId(), host);
+    }
+
+    shard.incrementHostCount();
+    totalHosts.increment();
+  }
+
+  private static void createCalculations(
+      HostCollectionShard shard, UsageKeyTable keyTable, ServiceLevel sla, Usage usage) {
+    if (shard.markCalculationsCreated(sla, usage)) {
+      keyTable.createCalculations(shard.getAccountCalc(), sla, usage);
+    }
+  }
+
+  private long recordPhase(String phase, String orgId, long phaseStart) {
+    long now = System.nanoTime();
+    Duration elapsed = Duration.ofNanos(now - phaseStart);
+    meterRegistry.timer(PHASE_TIMER, "phase", phase).record(elapsed);
+    log.debug(
+        "HBI host collection phase={} for org={} took {}ms", phase, orgId, elapsed.toMillis());
+    return now;
+  }
+
   private Host handleDuplicateHost(Set<String> duplicateInstanceIds, Host host1, Host host2) {
     log.warn("Removing duplicate host record w/ inventory ID: {}", host2.getInventoryId());
     duplicateInstanceIds.add(host2.getInstanceId());
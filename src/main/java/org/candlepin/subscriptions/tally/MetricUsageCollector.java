@@ -20,10 +20,13 @@
  */
 package org.candlepin.subscriptions.tally;
 
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -32,6 +35,7 @@ import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import org.candlepin.subscriptions.db.AccountServiceInventoryRepository;
@@ -146,14 +150,37 @@ public class MetricUsageCollector {
                   instance.clearMonthlyTotals(effectiveStartDateTime, effectiveEndDateTime));
     }
 
+    Optional<TagMetaData> serviceTypeMeta = tagProfile.getTagMetaDataByServiceType(serviceType);
     Map<OffsetDateTime, AccountUsageCalculation> accountCalcs = new HashMap<>();
-    for (OffsetDateTime offset = effectiveStartDateTime;
-        offset.isBefore(effectiveEndDateTime);
-        offset = offset.plusHours(1)) {
-      AccountUsageCalculation accountUsageCalculation =
-          collectHour(accountServiceInventory, offset);
-      if (accountUsageCalculation != null && !accountUsageCalculation.getKeys().isEmpty()) {
-        accountCalcs.put(offset, accountUsageCalculation);
+    // Fetch the whole range at once; the events are ordered by timestamp, so each hour's events
+    // can be collected as soon as the first event of a later hour is read.
+    try (Stream<Event> events =
+        eventController.fetchEventsInTimeRangeByServiceType(
+            orgId,
+            serviceType,
+            effectiveStartDateTime,
+            effectiveEndDateTime)) {
+      Iterator<Event> eventIterator = events.iterator();
+      List<Event> hourEvents = new ArrayList<>();
+      OffsetDateTime currentHour = null;
+      while (eventIterator.hasNext()) {
+        Event event = eventIterator.next();
+        OffsetDateTime hour = hourOf(effectiveStartDateTime, event.getTimestamp());
+        if (currentHour != null && !currentHour.equals(hour)) {
+          addHourCalculation(
+              accountCalcs,
+              currentHour,
+              collectHour(accountServiceInventory, serviceTypeMeta, hourEvents));
+          hourEvents.clear();
+        }
+        currentHour = hour;
+        hourEvents.add(event);
+      }
+      if (currentHour != null) {
+        addHourCalculation(
+            accountCalcs,
+            currentHour,
+            collectHour(accountServiceInventory, serviceTypeMeta, hourEvents));
       }
     }
     accountCalcs.values().forEach(calc -> calc.setOrgId(accountServiceInventory.getOrgId()));
@@ -170,16 +197,39 @@ public class MetricUsageCollector {
         tagProfile.getTagMetaDataByServiceType(accountServiceInventory.getServiceType());
     OffsetDateTime endDateTime = startDateTime.plusHours(1);
 
+    try (Stream<Event> events =
+        eventController.fetchEventsInTimeRangeByServiceType(
+            accountServiceInventory.getOrgId(),
+            accountServiceInventory.getServiceType(),
+            startDateTime,
+            endDateTime)) {
+      return collectHour(
+          accountServiceInventory, serviceTypeMeta, events.collect(Collectors.toList()));
+    }
+  }
+
+  /** Returns the start of the hour of the collection range that contains the timestamp. */
+  private OffsetDateTime hourOf(OffsetDateTime rangeStart, OffsetDateTime timestamp) {
+    return rangeStart.plusHours(Duration.between(rangeStart, timestamp).toHours());
+  }
+
+  private void addHourCalculation(
+      Map<OffsetDateTime, AccountUsageCalculation> accountCalcs,
+      OffsetDateTime hour,
+      AccountUsageCalculation accountUsageCalculation) {
+    if (accountUsageCalculation != null && !accountUsageCalculation.getKeys().isEmpty()) {
+      accountCalcs.put(hour, accountUsageCalculation);
+    }
+  }
+
+  private AccountUsageCalculation collectHour(
+      AccountServiceInventory accountServiceInventory,
+      Optional<TagMetaData> serviceTypeMeta,
+      List<Event> hourEvents) {
+    // We group the hour's events by instanceId so that we can clear the measurements
+    // on first access, if the instance already exists for the accountServiceInventory.
     Map<String, List<Event>> eventToHostMapping =
-        eventController
-            .fetchEventsInTimeRangeByServiceType(
-                accountServiceInventory.getAccountNumber(),
-                accountServiceInventory.getServiceType(),
-                startDateTime,
-                endDateTime)
-            // We group fetched events by instanceId so that we can clear the measurements
-            // on first access, if the instance already exists for the accountServiceInventory.
-            .collect(Collectors.groupingBy(Event::getInstanceId));
+        hourEvents.stream().collect(Collectors.groupingBy(Event::getInstanceId));
 
     Map<String, Host> thisHoursInstances = new HashMap<>();
     eventToHostMapping.forEach(
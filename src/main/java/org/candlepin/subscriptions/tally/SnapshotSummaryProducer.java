@@ -20,10 +20,17 @@
  */
 package org.candlepin.subscriptions.tally;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import lombok.Value;
+import org.candlepin.subscriptions.db.model.Granularity;
 import org.candlepin.subscriptions.db.model.TallySnapshot;
 import org.candlepin.subscriptions.json.TallySummary;
 import org.slf4j.Logger;
@@ -31,8 +38,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.retry.support.RetryTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.util.concurrent.ListenableFuture;
 
 /** Component that produces tally snapshot summary messages given a list of tally snapshots. */
 @Service
@@ -43,6 +52,8 @@ public class SnapshotSummaryProducer {
   private final KafkaTemplate<String, TallySummary> tallySummaryKafkaTemplate;
   private final RetryTemplate kafkaRetryTemplate;
   private final TallySummaryMapper summaryMapper;
+  private final boolean batchEnabled;
+  private final int maxSnapshotsPerMessage;
 
   @Autowired
   protected SnapshotSummaryProducer(
@@ -55,9 +66,16 @@ public class SnapshotSummaryProducer {
     this.kafkaRetryTemplate = kafkaRetryTemplate;
     this.tallySummaryKafkaTemplate = tallySummaryKafkaTemplate;
     this.summaryMapper = summaryMapper;
+    this.batchEnabled = props.isBatchEnabled();
+    this.maxSnapshotsPerMessage = Math.max(1, props.getMaxSnapshotsPerMessage());
   }
 
   public void produceTallySummaryMessages(Map<String, List<TallySnapshot>> newAndUpdatedSnapshots) {
+    if (batchEnabled) {
+      produceBatchedTallySummaryMessages(newAndUpdatedSnapshots);
+      return;
+    }
+
     AtomicInteger totalTallies = new AtomicInteger();
     newAndUpdatedSnapshots.forEach(
         (account, snapshots) ->
@@ -80,6 +98,114 @@ public class SnapshotSummaryProducer {
     log.info("Produced {} TallySummary messages", totalTallies);
   }
 
+  /**
+   * Packs the snapshots of each org and granularity into TallySummary messages holding at most
+   * maxSnapshotsPerMessage snapshots. All messages are handed to the producer without waiting on
+   * the broker, flushed once, and any send failures are reported together afterwards.
+   */
+  private void produceBatchedTallySummaryMessages(
+      Map<String, List<TallySnapshot>> newAndUpdatedSnapshots) {
+    List<PendingSummary> pending = new ArrayList<>();
+    int totalSnapshots = 0;
+    for (Map.Entry<String, List<TallySnapshot>> entry : newAndUpdatedSnapshots.entrySet()) {
+      String account = entry.getKey();
+      Map<SummaryGroup, List<TallySnapshot>> groups =
+          entry.getValue().stream()
+              .filter(this::hasMeasurements)
+              .collect(
+                  Collectors.groupingBy(
+                      snapshot -> new SummaryGroup(snapshot.getOrgId(), snapshot.getGranularity()),
+                      LinkedHashMap::new,
+                      Collectors.toList()));
+
+      for (Map.Entry<SummaryGroup, List<TallySnapshot>> group : groups.entrySet()) {
+        List<TallySnapshot> snapshots = group.getValue();
+        for (int from = 0; from < snapshots.size(); from += maxSnapshotsPerMessage) {
+          List<TallySnapshot> chunk =
+              snapshots.subList(from, Math.min(from + maxSnapshotsPerMessage, snapshots.size()));
+          TallySummary summary =
+              summaryMapper.mapSnapshots(account, group.getKey().getOrgId(), chunk);
+          ListenableFuture<SendResult<String, TallySummary>> future =
+              kafkaRetryTemplate.execute(
+                  ctx -> tallySummaryKafkaTemplate.send(tallySummaryTopic, summary));
+          pending.add(new PendingSummary(group.getKey().getOrgId(), chunk.size(), future));
+          totalSnapshots += chunk.size();
+        }
+      }
+    }
+
+    if (pending.isEmpty()) {
+      log.info("Produced 0 TallySummary messages");
+      return;
+    }
+
+    tallySummaryKafkaTemplate.flush();
+    awaitSends(pending, totalSnapshots);
+  }
+
+  private void awaitSends(List<PendingSummary> pending, int totalSnapshots) {
+    int failedMessages = 0;
+    int failedSnapshots = 0;
+    int unconfirmedMessages = 0;
+    TreeSet<String> failedOrgs = new TreeSet<>();
+    Throwable firstFailure = null;
+    for (int i = 0; i < pending.size(); i++) {
+      PendingSummary summary = pending.get(i);
+      if (summary.getFuture() == null) {
+        continue;
+      }
+      try {
+        summary.getFuture().get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        unconfirmedMessages = pending.size() - i;
+        log.warn(
+            "Interrupted while waiting on TallySummary messages to be acknowledged; "
+                + "{} of {} messages were not confirmed.",
+            unconfirmedMessages,
+            pending.size());
+        break;
+      } catch (ExecutionException e) {
+        failedMessages++;
+        failedSnapshots += summary.getSnapshotCount();
+        failedOrgs.add(String.valueOf(summary.getOrgId()));
+        if (firstFailure == null) {
+          firstFailure = e.getCause();
+        }
+      }
+    }
+
+    // Failures seen before an interruption are still reported.
+    if (failedMessages > 0) {
+      log.error(
+          "Failed to send {} of {} TallySummary messages ({} snapshots) for orgs {}",
+          failedMessages,
+          pending.size(),
+          failedSnapshots,
+          failedOrgs,
+          firstFailure);
+    }
+    if (unconfirmedMessages > 0) {
+      return;
+    }
+    log.info(
+        "Produced {} TallySummary messages containing {} snapshots",
+        pending.size() - failedMessages,
+        totalSnapshots - failedSnapshots);
+  }
+
+  private boolean hasMeasurements(TallySnapshot snapshot) {
+    if (snapshot.getTallyMeasurements().isEmpty()) {
+      log.warn(
+          "Tally snapshot {} for org {} did not have measurements. "
+              + "No usage will be sent to RH marketplace for this snapshot.",
+          snapshot.getId(),
+          snapshot.getOrgId());
+      return false;
+    }
+    return true;
+  }
+
   /**
    * Validates a TallySummary to make sure that it has all the information required by the RH
    * marketplace API. Any issues will be logged.
@@ -103,4 +229,17 @@ public class SnapshotSummaryProducer {
 
     return true;
   }
+
+  @Value
+  private static class SummaryGroup {
+    String orgId;
+    Granularity granularity;
+  }
+
+  @Value
+  private static class PendingSummary {
+    String orgId;
+    int snapshotCount;
+    ListenableFuture<SendResult<String, TallySummary>> future;
+  }
 }
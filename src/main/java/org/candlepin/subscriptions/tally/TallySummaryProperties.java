@@ -40,4 +40,13 @@ public class TallySummaryProperties {
 
   /** Outgoing topic */
   private String topic;
+
+  /**
+   * Whether snapshots for an org should be packed into as few TallySummary messages as possible
+   * rather than sending one message per snapshot.
+   */
+  private boolean batchEnabled = false;
+
+  /** Upper bound on the number of snapshots packed into a single batched TallySummary. */
+  private int maxSnapshotsPerMessage = 100;
 }
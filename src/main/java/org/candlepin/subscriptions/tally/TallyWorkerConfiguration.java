@@ -112,6 +112,12 @@ public class TallyWorkerConfiguration {
     return new TallySummaryProperties();
   }
 
+  @Bean
+  @ConfigurationProperties(prefix = "rhsm-subscriptions.host-collection")
+  public HostCollectionProperties hostCollectionProperties() {
+    return new HostCollectionProperties();
+  }
+
   @Bean(name = "tallySummaryKafkaRetryTemplate")
   public RetryTemplate tallySummaryKafkaRetryTemplate(TallySummaryProperties properties) {
     return new RetryTemplateBuilder()
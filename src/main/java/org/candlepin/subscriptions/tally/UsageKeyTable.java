@@ -0,0 +1,139 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import org.candlepin.subscriptions.db.model.BillingProvider;
+import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.Usage;
+
+/**
+ * Flyweight table of the usage calculation keys of the products being tallied, one per product,
+ * SLA and usage, with any billing provider and billing account.
+ *
+ * <p>Collecting a host looks its keys up here rather than allocating new ones, and the shared
+ * instances make the lookups of calculations by key cheap. The table is immutable once built, so
+ * it can be shared by collection workers.
+ */
+class UsageKeyTable {
+  private static final ServiceLevel[] SLAS = ServiceLevel.values();
+  private static final Usage[] USAGES = Usage.values();
+  private static final String ANY_BILLING_ACCOUNT = "_ANY";
+
+  private final Map<String, UsageCalculation.Key[]> keysByProduct = new HashMap<>();
+
+  UsageKeyTable(Collection<String> products) {
+    for (String product : products) {
+      UsageCalculation.Key[] keys = new UsageCalculation.Key[SLAS.length * USAGES.length];
+      for (ServiceLevel sla : SLAS) {
+        for (Usage usage : USAGES) {
+          keys[index(sla, usage)] =
+              new UsageCalculation.Key(
+                  product, sla, usage, BillingProvider._ANY, ANY_BILLING_ACCOUNT);
+        }
+      }
+      keysByProduct.put(product, keys);
+    }
+  }
+
+  /** Number of distinct SLA and usage combinations, i.e. the bound of {@link #index}. */
+  static int size() {
+    return SLAS.length * USAGES.length;
+  }
+
+  /** Position of an SLA and usage combination in the table. */
+  static int index(ServiceLevel sla, Usage usage) {
+    return sla.ordinal() * USAGES.length + usage.ordinal();
+  }
+
+  boolean contains(String product) {
+    return keysByProduct.containsKey(product);
+  }
+
+  /**
+   * Find the key of a product, SLA and usage.
+   *
+   * @return the shared key, or null if the product is not being tallied.
+   */
+  UsageCalculation.Key get(String product, ServiceLevel sla, Usage usage) {
+    UsageCalculation.Key[] keys = keysByProduct.get(product);
+    return keys == null ? null : keys[index(sla, usage)];
+  }
+
+  /**
+   * Find the key of a product's usage, reusing the shared instance when it has any billing
+   * provider and billing account.
+   *
+   * @return the key, or null if the product is not being tallied.
+   */
+  UsageCalculation.Key get(
+      String product,
+      ServiceLevel sla,
+      Usage usage,
+      BillingProvider billingProvider,
+      String billingAccountId) {
+    if (isAnyBilling(billingProvider, billingAccountId)) {
+      return get(product, sla, usage);
+    }
+    return contains(product)
+        ? new UsageCalculation.Key(product, sla, usage, billingProvider, billingAccountId)
+        : null;
+  }
+
+  /** Whether a billing provider and account are those of the keys in the table. */
+  static boolean isAnyBilling(BillingProvider billingProvider, String billingAccountId) {
+    return billingProvider == BillingProvider._ANY && ANY_BILLING_ACCOUNT.equals(billingAccountId);
+  }
+
+  /**
+   * Make sure the account has a calculation for every product at an SLA and usage, so that the
+   * tally reports those products even when no host has them.
+   */
+  void createCalculations(AccountUsageCalculation accountCalc, ServiceLevel sla, Usage usage) {
+    int index = index(sla, usage);
+    keysByProduct.values().forEach(keys -> accountCalc.getOrCreateCalculation(keys[index]));
+  }
+
+  /**
+   * Make sure the account has a calculation for every product at an SLA, usage, billing provider
+   * and billing account. Keys are allocated unless they are in the table.
+   */
+  void createCalculations(
+      AccountUsageCalculation accountCalc,
+      ServiceLevel sla,
+      Usage usage,
+      BillingProvider billingProvider,
+      String billingAccountId) {
+    if (isAnyBilling(billingProvider, billingAccountId)) {
+      createCalculations(accountCalc, sla, usage);
+      return;
+    }
+    keysByProduct
+        .keySet()
+        .forEach(
+            product ->
+                accountCalc.getOrCreateCalculation(
+                    new UsageCalculation.Key(
+                        product, sla, usage, billingProvider, billingAccountId)));
+  }
+}
@@ -24,11 +24,22 @@ import io.micrometer.core.instrument.MeterRegistry;
 import java.lang.reflect.InvocationTargetException;
 import java.sql.Date;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 
+/**
+ * A migration of data, done by {@link DataMigrationRunner} as batches of records extracted and then
+ * transformed and loaded, in key order.
+ *
+ * <p>The runner splits the key space into ranges that are migrated concurrently by one instance,
+ * so implementations must be thread-safe. Batches may be processed again after a migration is
+ * resumed, so transformAndLoad must be idempotent.
+ */
 public abstract class DataMigration {
   private static final String LIQUIBASE_CHANGELOG_INSERT =
       "insert into databasechangelog(id, author, filename, dateexecuted, orderexecuted, exectype, md5sum, description, comments, tag, liquibase, contexts, labels, deployment_id)\n"
@@ -48,13 +59,53 @@ public abstract class DataMigration {
     this.meterRegistry = meterRegistry;
   }
 
-  // Can we stream these back
-  public abstract SqlRowSet extract(String recordOffset, int batchSize);
+  /**
+   * Extract the next batch of records of a key range.
+   *
+   * @param recordOffset key after which to start, or null to start at the beginning
+   * @param upperBound key of the last record of the range (inclusive), or null if unbounded
+   * @param batchSize maximum number of records extracted
+   * @return the batch of records, ordered by key
+   */
+  public abstract SqlRowSet extract(String recordOffset, String upperBound, int batchSize);
 
+  /**
+   * Transform and load a batch of records.
+   *
+   * @param data the batch returned by extract
+   * @return the key of the last record of the batch, or null if the batch was empty
+   */
   public abstract String transformAndLoad(SqlRowSet data);
 
   public abstract void recordCompleted();
 
+  /**
+   * Count the records left to migrate in a key range, used to report the progress of the
+   * migration.
+   *
+   * @param recordOffset key after which to count, or null to count from the beginning
+   * @param upperBound key of the last record of the range (inclusive), or null if unbounded
+   */
+  public abstract long countRecords(String recordOffset, String upperBound);
+
+  /**
+   * Split the key space into ranges that can be migrated concurrently. Split points must sort as
+   * strings the same way extract orders keys.
+   *
+   * <p>By default, the key space of random (version 4) UUIDs is split evenly.
+   *
+   * @param ranges the number of ranges
+   * @return the inclusive upper bound of each range but the last, which is unbounded
+   */
+  public List<String> splitKeySpace(int ranges) {
+    List<String> splitPoints = new ArrayList<>();
+    long step = Long.divideUnsigned(-1L, ranges);
+    for (int i = 1; i < ranges; i++) {
+      splitPoints.add(new UUID(step * i, -1L).toString());
+    }
+    return splitPoints;
+  }
+
   protected void markLiquibaseChangesetRan(JdbcTemplate jdbcTemplate, Map<String, Object> values) {
     int maxOrderExecutedValue =
         Optional.ofNullable(jdbcTemplate.queryForObject(MAX_ORDEREXECUTED_QUERY, Integer.class))
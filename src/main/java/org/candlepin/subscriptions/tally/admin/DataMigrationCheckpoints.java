@@ -0,0 +1,133 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally.admin;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * JDBC access to the checkpoints of data migrations. A checkpoint records the last record
+ * processed in one key range of a migration, so that an interrupted migration can be resumed.
+ */
+@Component
+public class DataMigrationCheckpoints {
+
+  private static final String FIND_SQL =
+      "select range_index, range_start, range_end, last_processed_id, rows_processed, completed "
+          + "from data_migration_checkpoints where migration=? order by range_index";
+
+  private static final String DELETE_SQL =
+      "delete from data_migration_checkpoints where migration=?";
+
+  private static final String INSERT_SQL =
+      "insert into data_migration_checkpoints(migration, range_index, range_start, range_end, "
+          + "rows_processed, completed, updated) values (?, ?, ?, ?, 0, false, current_timestamp)";
+
+  private static final String SAVE_PROGRESS_SQL =
+      "update data_migration_checkpoints set last_processed_id=?, "
+          + "rows_processed=rows_processed+?, updated=current_timestamp "
+          + "where migration=? and range_index=?";
+
+  private static final String MARK_COMPLETED_SQL =
+      "update data_migration_checkpoints set completed=true, updated=current_timestamp "
+          + "where migration=? and range_index=?";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public DataMigrationCheckpoints(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  /**
+   * Find the checkpoints of a migration.
+   *
+   * @param migration the migration name
+   * @return the checkpoints of each range, ordered by range index. Empty if no run is in progress.
+   */
+  public List<Checkpoint> find(String migration) {
+    return jdbcTemplate.query(
+        FIND_SQL,
+        (rs, rowNum) ->
+            new Checkpoint(
+                migration,
+                rs.getInt("range_index"),
+                rs.getString("range_start"),
+                rs.getString("range_end"),
+                rs.getString("last_processed_id"),
+                rs.getLong("rows_processed"),
+                rs.getBoolean("completed")),
+        migration);
+  }
+
+  /**
+   * Replace the checkpoints of a migration with fresh ones, at the start of each range.
+   *
+   * @param migration the migration name
+   * @param checkpoints the new checkpoints
+   */
+  public void reset(String migration, List<Checkpoint> checkpoints) {
+    delete(migration);
+    jdbcTemplate.batchUpdate(
+        INSERT_SQL,
+        checkpoints.stream()
+            .map(
+                c ->
+                    new Object[] {migration, c.getRangeIndex(), c.getRangeStart(), c.getRangeEnd()})
+            .collect(Collectors.toList()));
+  }
+
+  public void saveProgress(Checkpoint checkpoint, String lastProcessedId, long rows) {
+    jdbcTemplate.update(
+        SAVE_PROGRESS_SQL,
+        lastProcessedId,
+        rows,
+        checkpoint.getMigration(),
+        checkpoint.getRangeIndex());
+  }
+
+  public void markCompleted(Checkpoint checkpoint) {
+    jdbcTemplate.update(MARK_COMPLETED_SQL, checkpoint.getMigration(), checkpoint.getRangeIndex());
+  }
+
+  public void delete(String migration) {
+    jdbcTemplate.update(DELETE_SQL, migration);
+  }
+
+  /**
+   * Progress of one key range of a migration. The range covers keys after rangeStart, up to and
+   * including rangeEnd, where null means unbounded.
+   */
+  @Data
+  @AllArgsConstructor
+  public static class Checkpoint {
+    private String migration;
+    private int rangeIndex;
+    private String rangeStart;
+    private String rangeEnd;
+    private String lastProcessedId;
+    private long rowsProcessed;
+    private boolean completed;
+  }
+}
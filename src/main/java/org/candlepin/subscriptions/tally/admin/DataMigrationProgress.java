@@ -0,0 +1,104 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally.admin;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+
+/** Progress of a run of a data migration, reported over JMX and as metrics. */
+public class DataMigrationProgress {
+
+  public enum State {
+    RUNNING,
+    COMPLETED,
+    STOPPED,
+    FAILED
+  }
+
+  @Getter private final String migration;
+  @Getter private final long estimatedTotalRows;
+  private final long initialRowsProcessed;
+  private final AtomicLong rowsProcessed;
+  private final long startedNanos;
+  @Getter private volatile State state = State.RUNNING;
+
+  /**
+   * @param migration the migration name
+   * @param estimatedTotalRows estimated number of rows the migration processes
+   * @param initialRowsProcessed rows already processed by an earlier, interrupted run
+   */
+  public DataMigrationProgress(
+      String migration, long estimatedTotalRows, long initialRowsProcessed) {
+    this.migration = migration;
+    this.estimatedTotalRows = estimatedTotalRows;
+    this.initialRowsProcessed = initialRowsProcessed;
+    this.rowsProcessed = new AtomicLong(initialRowsProcessed);
+    this.startedNanos = System.nanoTime();
+  }
+
+  public void addRowsProcessed(long rows) {
+    rowsProcessed.addAndGet(rows);
+  }
+
+  public long getRowsProcessed() {
+    return rowsProcessed.get();
+  }
+
+  public void finish(State finalState) {
+    state = finalState;
+  }
+
+  public boolean isRunning() {
+    return state == State.RUNNING;
+  }
+
+  /**
+   * Estimate the time remaining, from the rate at which rows were processed by this run.
+   *
+   * @return the estimated time remaining, or null if no estimate can be made yet.
+   */
+  public Duration getEstimatedTimeRemaining() {
+    if (!isRunning()) {
+      return Duration.ZERO;
+    }
+    long processedThisRun = rowsProcessed.get() - initialRowsProcessed;
+    long elapsedNanos = System.nanoTime() - startedNanos;
+    if (processedThisRun <= 0 || elapsedNanos <= 0) {
+      return null;
+    }
+    long remainingRows = Math.max(estimatedTotalRows - rowsProcessed.get(), 0);
+    double nanosPerRow = (double) elapsedNanos / processedThisRun;
+    return Duration.ofNanos((long) (remainingRows * nanosPerRow));
+  }
+
+  @Override
+  public String toString() {
+    Duration eta = getEstimatedTimeRemaining();
+    return String.format(
+        "%s: %s, %d of ~%d rows processed, ETA %s",
+        migration,
+        state,
+        getRowsProcessed(),
+        estimatedTotalRows,
+        eta == null ? "unknown" : eta.withNanos(0));
+  }
+}
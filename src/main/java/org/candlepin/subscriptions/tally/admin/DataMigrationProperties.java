@@ -0,0 +1,45 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally.admin;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/** Properties controlling how {@link DataMigrationRunner} runs data migrations. */
+@Data
+@Component
+@ConfigurationProperties(prefix = "rhsm-subscriptions.data-migration")
+public class DataMigrationProperties {
+
+  /**
+   * Number of key ranges a migration is split into, which is also the number of ranges migrated
+   * concurrently.
+   */
+  private int parallelism = 4;
+
+  /**
+   * Maximum number of records migrated per second, across all ranges of all running migrations.
+   * Protects the primary database from a migration saturating it. Zero or less disables the
+   * throttle.
+   */
+  private double maxRowsPerSecond = 5000;
+}
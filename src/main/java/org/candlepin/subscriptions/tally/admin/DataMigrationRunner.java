@@ -20,58 +20,284 @@
  */
 package org.candlepin.subscriptions.tally.admin;
 
+import com.google.common.util.concurrent.RateLimiter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import javax.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.candlepin.subscriptions.tally.admin.DataMigrationCheckpoints.Checkpoint;
+import org.candlepin.subscriptions.tally.admin.DataMigrationProgress.State;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
 
+/**
+ * Runs data migrations in the background.
+ *
+ * <p>The key space of a migration is split into ranges that are migrated concurrently. The last
+ * record processed in each range is checkpointed after every batch, so that a migration that is
+ * interrupted (e.g. by a restart) continues where it left off when it is triggered again. The rate
+ * at which records are migrated is throttled to protect the database.
+ */
 @Component
 @Slf4j
 public class DataMigrationRunner {
   private final ExecutorService executor;
   private final JdbcTemplate jdbcTemplate;
   private final MeterRegistry meterRegistry;
+  private final DataMigrationProperties properties;
+  private final DataMigrationCheckpoints checkpoints;
+  private final RateLimiter rateLimiter;
+  private final Map<String, DataMigrationProgress> progress = new ConcurrentHashMap<>();
+  private final Set<String> running = ConcurrentHashMap.newKeySet();
+  private volatile boolean stopping;
 
   @Autowired
-  public DataMigrationRunner(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
-    executor = Executors.newFixedThreadPool(4);
+  public DataMigrationRunner(
+      JdbcTemplate jdbcTemplate,
+      MeterRegistry meterRegistry,
+      DataMigrationProperties properties,
+      DataMigrationCheckpoints checkpoints) {
+    executor = Executors.newFixedThreadPool(properties.getParallelism());
     this.jdbcTemplate = jdbcTemplate;
     this.meterRegistry = meterRegistry;
+    this.properties = properties;
+    this.checkpoints = checkpoints;
+    this.rateLimiter =
+        properties.getMaxRowsPerSecond() > 0
+            ? RateLimiter.create(properties.getMaxRowsPerSecond())
+            : null;
   }
 
   @PreDestroy
   protected void destroy() throws InterruptedException {
+    stop();
     executor.shutdown();
     if (!executor.awaitTermination(20, TimeUnit.SECONDS)) {
       log.warn("Data migration not yet terminated in 20 seconds.");
     }
   }
 
+  /** Ask running migrations to stop; ranges stop after their current batch. */
+  void stop() {
+    // Checkpoints allow resuming the migrations later.
+    stopping = true;
+  }
+
+  /**
+   * Start a data migration in the background.
+   *
+   * @param migrationClass the migration
+   * @param startingRecordID key after which to start. If null, an interrupted run of the migration
+   *     is resumed from its checkpoints, or the migration starts from the beginning.
+   * @param batchSize number of records per batch
+   */
   public void migrate(
       Class<? extends DataMigration> migrationClass, String startingRecordID, int batchSize) {
-    executor.execute(
-        () -> {
-          DataMigration dataMigration;
-          try {
-            dataMigration = DataMigration.getMigration(migrationClass, jdbcTemplate, meterRegistry);
-          } catch (Exception e) {
-            log.warn("Unable to constructor migration from class {}", migrationClass);
-            return;
-          }
-
-          String lastProcessedId = startingRecordID;
-          do {
-            SqlRowSet page = dataMigration.extract(lastProcessedId, batchSize);
-            lastProcessedId = dataMigration.transformAndLoad(page);
-          } while (lastProcessedId != null);
-
-          dataMigration.recordCompleted();
-        });
+    DataMigration dataMigration;
+    try {
+      dataMigration = DataMigration.getMigration(migrationClass, jdbcTemplate, meterRegistry);
+    } catch (Exception e) {
+      log.warn("Unable to constructor migration from class {}", migrationClass);
+      return;
+    }
+    migrate(migrationClass.getSimpleName(), dataMigration, startingRecordID, batchSize);
+  }
+
+  /**
+   * Start a data migration in the background, unless a run of it is already in progress.
+   *
+   * @return completes when the run finishes, or immediately if it was not started.
+   */
+  CompletableFuture<Void> migrate(
+      String name, DataMigration dataMigration, String startingRecordID, int batchSize) {
+    if (!running.add(name)) {
+      log.warn("Data migration {} is already running.", name);
+      return CompletableFuture.completedFuture(null);
+    }
+
+    List<CompletableFuture<Boolean>> rangeResults;
+    DataMigrationProgress runProgress;
+    try {
+      // Split points are lowercase UUIDs, so the starting key must be too for them to compare.
+      String startingKey =
+          startingRecordID == null ? null : startingRecordID.toLowerCase(Locale.ROOT);
+      List<Checkpoint> ranges = planRanges(name, dataMigration, startingKey);
+      // On resume, the checkpoints are the baseline of the progress: the rows they record as
+      // processed, plus the rows left after each of them.
+      long alreadyProcessed = ranges.stream().mapToLong(Checkpoint::getRowsProcessed).sum();
+      long remaining =
+          ranges.stream()
+              .filter(range -> !range.isCompleted())
+              .mapToLong(
+                  range -> dataMigration.countRecords(resumeOffset(range), range.getRangeEnd()))
+              .sum();
+      runProgress = new DataMigrationProgress(name, alreadyProcessed + remaining, alreadyProcessed);
+      progress.put(name, runProgress);
+      registerMetrics(name);
+      log.info("Starting data migration {} with {} key ranges", name, ranges.size());
+
+      rangeResults =
+          ranges.stream()
+              .filter(range -> !range.isCompleted())
+              .map(
+                  range ->
+                      CompletableFuture.supplyAsync(
+                          () -> migrateRange(dataMigration, range, batchSize, runProgress),
+                          executor))
+              .collect(Collectors.toList());
+    } catch (RuntimeException e) {
+      running.remove(name);
+      throw e;
+    }
+
+    return CompletableFuture.allOf(rangeResults.toArray(new CompletableFuture<?>[0]))
+        .handle(
+            (result, error) -> {
+              try {
+                if (error != null) {
+                  log.error("Data migration {} failed; it can be resumed", name, error);
+                  runProgress.finish(State.FAILED);
+                } else if (rangeResults.stream().allMatch(CompletableFuture::join)) {
+                  complete(name, dataMigration, runProgress);
+                } else {
+                  log.info("Data migration {} stopped; it can be resumed", name);
+                  runProgress.finish(State.STOPPED);
+                }
+              } finally {
+                running.remove(name);
+              }
+              return null;
+            });
+  }
+
+  private void complete(
+      String name, DataMigration dataMigration, DataMigrationProgress runProgress) {
+    try {
+      dataMigration.recordCompleted();
+      checkpoints.delete(name);
+      runProgress.finish(State.COMPLETED);
+      log.info("Data migration {} completed", name);
+    } catch (Exception e) {
+      log.error("Unable to record completion of data migration {}", name, e);
+      runProgress.finish(State.FAILED);
+    }
+  }
+
+  /** Describe the progress of each data migration run since startup, one per line. */
+  public String describeProgress() {
+    return progress.values().stream()
+        .map(DataMigrationProgress::toString)
+        .sorted()
+        .collect(Collectors.joining("\n"));
+  }
+
+  private List<Checkpoint> planRanges(
+      String name, DataMigration dataMigration, String startingRecordID) {
+    if (startingRecordID == null) {
+      List<Checkpoint> saved = checkpoints.find(name);
+      if (!saved.isEmpty()) {
+        log.info("Resuming data migration {} from its checkpoints", name);
+        return saved;
+      }
+    }
+
+    List<String> bounds = new ArrayList<>();
+    bounds.add(null);
+    bounds.addAll(dataMigration.splitKeySpace(properties.getParallelism()));
+    bounds.add(null);
+    List<Checkpoint> ranges = new ArrayList<>();
+    for (int i = 0; i < bounds.size() - 1; i++) {
+      String start = bounds.get(i);
+      String end = bounds.get(i + 1);
+      if (startingRecordID != null) {
+        if (end != null && end.compareTo(startingRecordID) <= 0) {
+          continue;
+        }
+        if (start == null || start.compareTo(startingRecordID) < 0) {
+          start = startingRecordID;
+        }
+      }
+      ranges.add(new Checkpoint(name, i, start, end, null, 0, false));
+    }
+    checkpoints.reset(name, ranges);
+    return ranges;
+  }
+
+  /**
+   * Migrate the remainder of a key range.
+   *
+   * @return true if the range was completed, false if the runner is stopping.
+   */
+  private boolean migrateRange(
+      DataMigration dataMigration,
+      Checkpoint range,
+      int batchSize,
+      DataMigrationProgress runProgress) {
+    String lastProcessedId = resumeOffset(range);
+    while (!stopping) {
+      SqlRowSet page = dataMigration.extract(lastProcessedId, range.getRangeEnd(), batchSize);
+      int rows = countRows(page);
+      if (rows > 0 && rateLimiter != null) {
+        rateLimiter.acquire(rows);
+      }
+      String lastIdInPage = dataMigration.transformAndLoad(page);
+      if (lastIdInPage == null) {
+        checkpoints.markCompleted(range);
+        return true;
+      }
+      lastProcessedId = lastIdInPage;
+      checkpoints.saveProgress(range, lastProcessedId, rows);
+      runProgress.addRowsProcessed(rows);
+    }
+    return false;
+  }
+
+  /** Key after which the rest of a range is migrated. */
+  private static String resumeOffset(Checkpoint range) {
+    return range.getLastProcessedId() != null ? range.getLastProcessedId() : range.getRangeStart();
+  }
+
+  private static int countRows(SqlRowSet page) {
+    int rows = page.last() ? page.getRow() : 0;
+    page.beforeFirst();
+    return rows;
+  }
+
+  private void registerMetrics(String name) {
+    // Gauges look the progress up by name, so that they follow later runs of the migration.
+    Gauge.builder(
+            "swatch_data_migration_rows_processed",
+            progress,
+            p -> p.containsKey(name) ? p.get(name).getRowsProcessed() : 0)
+        .tag("migration", name)
+        .register(meterRegistry);
+    Gauge.builder(
+            "swatch_data_migration_rows_total",
+            progress,
+            p -> p.containsKey(name) ? p.get(name).getEstimatedTotalRows() : 0)
+        .tag("migration", name)
+        .register(meterRegistry);
+    Gauge.builder("swatch_data_migration_eta_seconds", progress, p -> etaSeconds(p.get(name)))
+        .tag("migration", name)
+        .register(meterRegistry);
+  }
+
+  private static double etaSeconds(DataMigrationProgress runProgress) {
+    Duration eta = runProgress == null ? null : runProgress.getEstimatedTimeRemaining();
+    return eta == null ? Double.NaN : eta.toSeconds();
   }
 }
@@ -52,11 +52,16 @@ public class HardwareMeasurementMigration extends DataMigration {
           + "                   on s.snapshot_id = h.snapshot_id and s.measurement_type = h.measurement_type and s.uom = 'SOCKETS'\n"
           + "         left join tally_measurements c\n"
           + "                   on c.snapshot_id = h.snapshot_id and c.measurement_type = h.measurement_type and c.uom = 'CORES'\n"
-          + "where ?::uuid is null\n"
-          + "   or h.snapshot_id > ?::uuid\n"
+          + "where (?::uuid is null or h.snapshot_id > ?::uuid)\n"
+          + "  and (?::uuid is null or h.snapshot_id <= ?::uuid)\n"
           + "order by h.snapshot_id\n"
           + "limit ?";
 
+  private static final String HARDWARE_MEASUREMENT_COUNT_QUERY =
+      "select count(*) from hardware_measurements\n"
+          + "where (?::uuid is null or snapshot_id > ?::uuid)\n"
+          + "  and (?::uuid is null or snapshot_id <= ?::uuid)";
+
   private final Counter counter;
 
   public HardwareMeasurementMigration(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
@@ -65,14 +70,25 @@ public class HardwareMeasurementMigration extends DataMigration {
   }
 
   @Override
-  public SqlRowSet extract(String recordOffset, int batchSize) {
+  public SqlRowSet extract(String recordOffset, String upperBound, int batchSize) {
     return jdbcTemplate.query(
         HARDWARE_MEASUREMENT_QUERY,
-        new Object[] {recordOffset, recordOffset, batchSize},
-        new int[] {Types.VARCHAR, Types.VARCHAR, Types.NUMERIC},
+        new Object[] {recordOffset, recordOffset, upperBound, upperBound, batchSize},
+        new int[] {Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.NUMERIC},
         SQL_ROW_SET_RESULT_SET_EXTRACTOR);
   }
 
+  @Override
+  public long countRecords(String recordOffset, String upperBound) {
+    Long count =
+        jdbcTemplate.queryForObject(
+            HARDWARE_MEASUREMENT_COUNT_QUERY,
+            new Object[] {recordOffset, recordOffset, upperBound, upperBound},
+            new int[] {Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR},
+            Long.class);
+    return count == null ? 0 : count;
+  }
+
   @Override
   public String transformAndLoad(SqlRowSet data) {
     String lastSeenSnapshotId = null;
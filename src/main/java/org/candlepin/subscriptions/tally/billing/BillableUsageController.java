@@ -20,8 +20,21 @@
  */
 package org.candlepin.subscriptions.tally.billing;
 
+import java.sql.Timestamp;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.candlepin.subscriptions.db.BillableUsageRemittanceRepository;
 import org.candlepin.subscriptions.db.TallySnapshotRepository;
@@ -66,6 +79,26 @@ public class BillableUsageController {
     billingProducer.produce(processBillableUsage(billingWindow, usage));
   }
 
+  /**
+   * Submits a batch of usages sharing the same billing window, typically all the usages of a single
+   * TallySummary. Monthly usages are computed with a single snapshot read and a single remittance
+   * read for the whole batch instead of several queries per usage.
+   */
+  public void submitBillableUsages(BillingWindow billingWindow, List<BillableUsage> usages) {
+    // Send the messages last to ensure that remittance has been updated.
+    processBillableUsages(billingWindow, usages).forEach(billingProducer::produce);
+  }
+
+  public List<BillableUsage> processBillableUsages(
+      BillingWindow billingWindow, List<BillableUsage> usages) {
+    if (billingWindow != BillingWindow.MONTHLY || usages.size() < 2) {
+      return usages.stream()
+          .map(usage -> processBillableUsage(billingWindow, usage))
+          .collect(Collectors.toList());
+    }
+    return produceMonthlyBillables(usages);
+  }
+
   public BillableUsage processBillableUsage(BillingWindow billingWindow, BillableUsage usage) {
     BillableUsage toBill;
     switch (billingWindow) {
@@ -141,6 +174,124 @@ public class BillableUsageController {
     return usage;
   }
 
+  private List<BillableUsage> produceMonthlyBillables(List<BillableUsage> usages) {
+    log.debug("Processing {} monthly billable usages", usages.size());
+    Map<MeasuredTotalKey, NavigableMap<OffsetDateTime, Double>> monthlyTotals =
+        getMonthlyTotals(usages);
+
+    Map<BillableUsageRemittanceEntityPK, BillableUsageRemittanceEntity> remittances =
+        new HashMap<>();
+    billableUsageRemittanceRepository
+        .findAllById(
+            usages.stream()
+                .map(BillableUsageRemittanceEntityPK::keyFrom)
+                .distinct()
+                .collect(Collectors.toList()))
+        .forEach(remittance -> remittances.put(remittance.getKey(), remittance));
+
+    // Usages sharing a remittance key are applied in order against the same entity, exactly as if
+    // they had been processed one at a time.
+    Map<BillableUsageRemittanceEntityPK, BillableUsageRemittanceEntity> updated =
+        new LinkedHashMap<>();
+    for (BillableUsage usage : usages) {
+      BillableUsageRemittanceEntityPK key = BillableUsageRemittanceEntityPK.keyFrom(usage);
+      BillableUsageRemittanceEntity remittance =
+          remittances.computeIfAbsent(
+              key, k -> BillableUsageRemittanceEntity.builder().key(k).remittedValue(0.0).build());
+      double currentMonthlyTotal =
+          getMonthlyTotal(monthlyTotals.get(MeasuredTotalKey.from(usage)), usage.getSnapshotDate());
+      BillableUsageCalculation usageCalc =
+          calculateBillableUsage(currentMonthlyTotal, remittance.getRemittedValue());
+
+      log.debug(
+          "Processing monthly billable usage: Usage: {}, Current total: {}, Current remittance: {}, New billable: {}",
+          usage,
+          currentMonthlyTotal,
+          remittance,
+          usageCalc);
+
+      usage.setValue(usageCalc.getBillableValue());
+      if (updateRemittance(remittance, usage.getOrgId(), usageCalc)) {
+        updated.put(key, remittance);
+      }
+    }
+
+    if (!updated.isEmpty()) {
+      log.debug("Updating {} remittances", updated.size());
+      billableUsageRemittanceRepository.saveAll(new ArrayList<>(updated.values()));
+    }
+    return usages;
+  }
+
+  /**
+   * Reads the hourly PHYSICAL measurements backing the given usages, from the start of the earliest
+   * usage's month up to the latest usage, with one grouped query per account. Each hour maps to the
+   * running total of its month up to and including that hour.
+   */
+  private Map<MeasuredTotalKey, NavigableMap<OffsetDateTime, Double>> getMonthlyTotals(
+      List<BillableUsage> usages) {
+    Map<MeasuredTotalKey, NavigableMap<OffsetDateTime, Double>> totals = new HashMap<>();
+    Map<String, List<BillableUsage>> usagesByAccount =
+        usages.stream().collect(Collectors.groupingBy(BillableUsage::getAccountNumber));
+    usagesByAccount.forEach(
+        (accountNumber, accountUsages) -> {
+          OffsetDateTime beginning =
+              clock.startOfMonth(
+                  accountUsages.stream()
+                      .map(BillableUsage::getSnapshotDate)
+                      .min(Comparator.naturalOrder())
+                      .orElseThrow());
+          OffsetDateTime ending =
+              accountUsages.stream()
+                  .map(BillableUsage::getSnapshotDate)
+                  .max(Comparator.naturalOrder())
+                  .orElseThrow();
+          List<String> productIds =
+              accountUsages.stream()
+                  .map(BillableUsage::getProductId)
+                  .distinct()
+                  .collect(Collectors.toList());
+          try (Stream<Object[]> hourlySums =
+              snapshotRepository.sumHourlyPhysicalMeasurements(
+                  accountNumber, productIds, beginning, ending)) {
+            hourlySums.forEach(
+                hourlySum ->
+                    totals
+                        .computeIfAbsent(MeasuredTotalKey.from(hourlySum), k -> new TreeMap<>())
+                        .put(
+                            ((Timestamp) hourlySum[6]).toInstant().atOffset(ZoneOffset.UTC),
+                            ((Number) hourlySum[7]).doubleValue()));
+          }
+        });
+    totals.values().forEach(this::accumulateByMonth);
+    return totals;
+  }
+
+  /** Replaces each hourly value with the running total of its month, up to and including it. */
+  private void accumulateByMonth(NavigableMap<OffsetDateTime, Double> hourlyValues) {
+    OffsetDateTime month = null;
+    double runningTotal = 0.0;
+    for (Map.Entry<OffsetDateTime, Double> hour : hourlyValues.entrySet()) {
+      OffsetDateTime hourMonth = clock.startOfMonth(hour.getKey());
+      if (!hourMonth.equals(month)) {
+        month = hourMonth;
+        runningTotal = 0.0;
+      }
+      runningTotal += hour.getValue();
+      hour.setValue(runningTotal);
+    }
+  }
+
+  private double getMonthlyTotal(
+      NavigableMap<OffsetDateTime, Double> monthlyTotals, OffsetDateTime snapshotDate) {
+    Map.Entry<OffsetDateTime, Double> latest =
+        monthlyTotals == null ? null : monthlyTotals.floorEntry(snapshotDate);
+    if (latest == null || latest.getKey().isBefore(clock.startOfMonth(snapshotDate))) {
+      return 0.0;
+    }
+    return latest.getValue();
+  }
+
   private boolean updateRemittance(
       BillableUsageRemittanceEntity remittance, String orgId, BillableUsageCalculation usageCalc) {
     boolean updated = false;
@@ -180,4 +331,36 @@ public class BillableUsageController {
         ending,
         measurementKey);
   }
+
+  /** Identifies the hourly measurements that add up to the measured total of a billable usage. */
+  @Value
+  private static class MeasuredTotalKey {
+    String productId;
+    ServiceLevel serviceLevel;
+    Usage usage;
+    BillingProvider billingProvider;
+    String billingAccountId;
+    Uom uom;
+
+    static MeasuredTotalKey from(BillableUsage usage) {
+      return new MeasuredTotalKey(
+          usage.getProductId(),
+          ServiceLevel.fromString(usage.getSla().value()),
+          Usage.fromString(usage.getUsage().value()),
+          BillingProvider.fromString(usage.getBillingProvider().value()),
+          usage.getBillingAccountId(),
+          Uom.fromValue(usage.getUom().value()));
+    }
+
+    /** From a row of {@link TallySnapshotRepository#sumHourlyPhysicalMeasurements}. */
+    static MeasuredTotalKey from(Object[] hourlySum) {
+      return new MeasuredTotalKey(
+          (String) hourlySum[0],
+          ServiceLevel.fromString((String) hourlySum[1]),
+          Usage.fromString((String) hourlySum[2]),
+          BillingProvider.fromString((String) hourlySum[3]),
+          (String) hourlySum[4],
+          Uom.valueOf((String) hourlySum[5]));
+    }
+  }
 }
@@ -21,10 +21,17 @@
 package org.candlepin.subscriptions.tally.billing;
 
 import io.micrometer.core.annotation.Timed;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
+import org.candlepin.subscriptions.json.BillableUsage;
 import org.candlepin.subscriptions.json.Measurement;
 import org.candlepin.subscriptions.json.TallySummary;
+import org.candlepin.subscriptions.registry.BillingWindow;
 import org.candlepin.subscriptions.registry.TagMetric;
 import org.candlepin.subscriptions.registry.TagProfile;
 import org.candlepin.subscriptions.task.TaskQueueProperties;
@@ -74,25 +81,37 @@ public class TallySummaryMessageConsumer extends SeekableKafkaConsumer {
   public void receive(TallySummary tallySummary) {
     log.debug("Tally Summary received. Producing billable usage.}");
 
-    billableUsageMapper
-        .fromTallySummary(tallySummary)
-        .forEach(
-            usage -> {
-              Measurement.Uom uom = Measurement.Uom.fromValue(usage.getUom().toString());
-              Optional<TagMetric> tagMetric = tagProfile.getTagMetric(usage.getProductId(), uom);
-              if (tagMetric.isEmpty()) {
-                throw new UnsupportedOperationException(
-                    String.format(
-                        "Unable to find TagMetric for snapshot measurement with product %s and UOM %s!",
-                        usage.getProductId(), uom));
-              }
+    // A summary may carry many snapshots when the tally producer batches them, so resolve the
+    // billing window of every usage before submitting any of them. An unsupported product then
+    // rejects the whole summary instead of leaving it partially submitted.
+    List<BillableUsage> usages =
+        billableUsageMapper.fromTallySummary(tallySummary).collect(Collectors.toList());
+    Map<BillingWindow, List<BillableUsage>> usagesByBillingWindow =
+        new EnumMap<>(BillingWindow.class);
+    usages.forEach(
+        usage ->
+            usagesByBillingWindow
+                .computeIfAbsent(getBillingWindow(usage), window -> new ArrayList<>())
+                .add(usage));
 
-              retry.execute(
-                  context -> {
-                    billableUsageController.submitBillableUsage(
-                        tagMetric.get().getBillingWindow(), usage);
-                    return null;
-                  });
-            });
+    usagesByBillingWindow.forEach(
+        (billingWindow, windowUsages) ->
+            retry.execute(
+                context -> {
+                  billableUsageController.submitBillableUsages(billingWindow, windowUsages);
+                  return null;
+                }));
+  }
+
+  private BillingWindow getBillingWindow(BillableUsage usage) {
+    Measurement.Uom uom = Measurement.Uom.fromValue(usage.getUom().toString());
+    Optional<TagMetric> tagMetric = tagProfile.getTagMetric(usage.getProductId(), uom);
+    if (tagMetric.isEmpty()) {
+      throw new UnsupportedOperationException(
+          String.format(
+              "Unable to find TagMetric for snapshot measurement with product %s and UOM %s!",
+              usage.getProductId(), uom));
+    }
+    return tagMetric.get().getBillingWindow();
   }
 }
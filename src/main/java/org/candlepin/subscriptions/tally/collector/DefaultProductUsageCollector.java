@@ -81,4 +81,16 @@ public class DefaultProductUsageCollector implements ProductUsageCollector {
     /* do nothing for hypervisor-guest mappings by default */
     return Optional.empty();
   }
+
+  @Override
+  public void collectFromBucket(UsageCalculation prodCalc, HostTallyBucket bucket) {
+    HardwareMeasurementType type = bucket.getMeasurementType();
+    if (type != null && HardwareMeasurementType.isSupportedCloudProvider(type.name())) {
+      prodCalc.addCloudProvider(type, bucket.getCores(), bucket.getSockets(), 1);
+    } else if (type == HardwareMeasurementType.PHYSICAL) {
+      prodCalc.addPhysical(bucket.getCores(), bucket.getSockets(), 1);
+    } else {
+      prodCalc.addToTotal(bucket.getCores(), bucket.getSockets(), 1);
+    }
+  }
 }
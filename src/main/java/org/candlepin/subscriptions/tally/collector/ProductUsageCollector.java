@@ -48,4 +48,12 @@ public interface ProductUsageCollector {
    */
   Optional<HostTallyBucket> collectForHypervisor(
       String account, UsageCalculation prodCalc, NormalizedFacts hypervisorFacts);
+
+  /**
+   * Re-apply the usage of a bucket previously returned by this collector, without the host's facts.
+   *
+   * @param prodCalc which usage key's calculation to update
+   * @param bucket a bucket returned by {@link #collect} or {@link #collectForHypervisor}
+   */
+  void collectFromBucket(UsageCalculation prodCalc, HostTallyBucket bucket);
 }
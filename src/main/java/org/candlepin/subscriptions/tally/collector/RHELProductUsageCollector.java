@@ -104,6 +104,23 @@ public class RHELProductUsageCollector implements ProductUsageCollector {
             prodCalc, true, appliedCores, appliedSockets, HardwareMeasurementType.HYPERVISOR));
   }
 
+  @Override
+  public void collectFromBucket(UsageCalculation prodCalc, HostTallyBucket bucket) {
+    HardwareMeasurementType type = bucket.getMeasurementType();
+    if (type == null) {
+      return;
+    }
+    if (HardwareMeasurementType.isSupportedCloudProvider(type.name())) {
+      prodCalc.addCloudProvider(type, bucket.getCores(), bucket.getSockets(), 1);
+    } else if (type == HardwareMeasurementType.VIRTUAL) {
+      prodCalc.addUnmappedGuest(bucket.getCores(), bucket.getSockets(), 1);
+    } else if (type == HardwareMeasurementType.PHYSICAL) {
+      prodCalc.addPhysical(bucket.getCores(), bucket.getSockets(), 1);
+    } else if (type == HardwareMeasurementType.HYPERVISOR) {
+      prodCalc.addHypervisor(bucket.getCores(), bucket.getSockets(), 1);
+    }
+  }
+
   private HostTallyBucket createBucket(
       UsageCalculation currentCalc,
       boolean asHypervisor,
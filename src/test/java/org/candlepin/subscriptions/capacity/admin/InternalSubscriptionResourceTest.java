@@ -41,6 +41,8 @@ import org.candlepin.subscriptions.security.IdentityHeaderAuthenticationFilterMo
 import org.candlepin.subscriptions.security.SecurityProperties;
 import org.candlepin.subscriptions.security.WithMockPskPrincipal;
 import org.candlepin.subscriptions.security.WithMockRedHatPrincipal;
+import org.candlepin.subscriptions.subscription.AwsUsageContextCache;
+import org.candlepin.subscriptions.subscription.SubscriptionServiceProperties;
 import org.candlepin.subscriptions.subscription.SubscriptionSyncController;
 import org.candlepin.subscriptions.utilization.admin.api.model.AwsUsageContext;
 import org.junit.jupiter.api.BeforeEach;
@@ -88,7 +90,8 @@ class InternalSubscriptionResourceTest {
   void incrementsMissingCounter_WhenAccounNumberPresent() {
     SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
     InternalSubscriptionResource resource =
-        new InternalSubscriptionResource(meterRegistry, syncController, properties);
+        new InternalSubscriptionResource(
+            meterRegistry, syncController, properties, newAwsUsageContextCache());
     when(syncController.findSubscriptionsAndSyncIfNeeded(
             any(), any(), any(), any(), any(), anyBoolean()))
         .thenReturn(Collections.emptyList());
@@ -105,7 +108,8 @@ class InternalSubscriptionResourceTest {
   void incrementsMissingCounter_WhenOrgIdPresent() {
     SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
     InternalSubscriptionResource resource =
-        new InternalSubscriptionResource(meterRegistry, syncController, properties);
+        new InternalSubscriptionResource(
+            meterRegistry, syncController, properties, newAwsUsageContextCache());
     when(syncController.findSubscriptionsAndSyncIfNeeded(
             any(), any(), any(), any(), any(), anyBoolean()))
         .thenReturn(Collections.emptyList());
@@ -122,7 +126,8 @@ class InternalSubscriptionResourceTest {
   void incrementsAmbiguousCounter_WhenAccounNumberPresent() {
     SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
     InternalSubscriptionResource resource =
-        new InternalSubscriptionResource(meterRegistry, syncController, properties);
+        new InternalSubscriptionResource(
+            meterRegistry, syncController, properties, newAwsUsageContextCache());
     Subscription sub1 = new Subscription();
     sub1.setBillingProviderId("foo1;foo2;foo3");
     sub1.setEndDate(defaultEndDate);
@@ -146,7 +151,8 @@ class InternalSubscriptionResourceTest {
   void incrementsAmbiguousCounter_WhenOrgIdPresent() {
     SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
     InternalSubscriptionResource resource =
-        new InternalSubscriptionResource(meterRegistry, syncController, properties);
+        new InternalSubscriptionResource(
+            meterRegistry, syncController, properties, newAwsUsageContextCache());
     Subscription sub1 = new Subscription();
     sub1.setBillingProviderId("foo1;foo2;foo3");
     sub1.setEndDate(defaultEndDate);
@@ -170,7 +176,8 @@ class InternalSubscriptionResourceTest {
   void shouldThrowSubscriptionsExceptionForTerminatedSubscription_WhenAccounNumberPresent() {
     SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
     InternalSubscriptionResource resource =
-        new InternalSubscriptionResource(meterRegistry, syncController, properties);
+        new InternalSubscriptionResource(
+            meterRegistry, syncController, properties, newAwsUsageContextCache());
     var endDate = OffsetDateTime.of(2022, 1, 1, 6, 0, 0, 0, ZoneOffset.UTC);
     Subscription sub1 = new Subscription();
     sub1.setBillingProviderId("foo1;foo2;foo3");
@@ -197,7 +204,8 @@ class InternalSubscriptionResourceTest {
   void shouldThrowSubscriptionsExceptionForTerminatedSubscription_WhenOrgIdPresent() {
     SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
     InternalSubscriptionResource resource =
-        new InternalSubscriptionResource(meterRegistry, syncController, properties);
+        new InternalSubscriptionResource(
+            meterRegistry, syncController, properties, newAwsUsageContextCache());
     var endDate = OffsetDateTime.of(2022, 1, 1, 6, 0, 0, 0, ZoneOffset.UTC);
     Subscription sub1 = new Subscription();
     sub1.setBillingProviderId("foo1;foo2;foo3");
@@ -224,7 +232,8 @@ class InternalSubscriptionResourceTest {
   void shouldReturnActiveSubscriptionAndNotTerminated_WhenAccounNumberPresent() {
     SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
     InternalSubscriptionResource resource =
-        new InternalSubscriptionResource(meterRegistry, syncController, properties);
+        new InternalSubscriptionResource(
+            meterRegistry, syncController, properties, newAwsUsageContextCache());
     var endDate = OffsetDateTime.of(2022, 1, 1, 6, 0, 0, 0, ZoneOffset.UTC);
     Subscription sub1 = new Subscription();
     sub1.setBillingProviderId("foo1;foo2;foo3");
@@ -248,7 +257,8 @@ class InternalSubscriptionResourceTest {
   void shouldReturnActiveSubscriptionAndNotTerminated_WhenOrgIdPresent() {
     SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
     InternalSubscriptionResource resource =
-        new InternalSubscriptionResource(meterRegistry, syncController, properties);
+        new InternalSubscriptionResource(
+            meterRegistry, syncController, properties, newAwsUsageContextCache());
     var endDate = OffsetDateTime.of(2022, 1, 1, 6, 0, 0, 0, ZoneOffset.UTC);
     Subscription sub1 = new Subscription();
     sub1.setBillingProviderId("foo1;foo2;foo3");
@@ -268,6 +278,130 @@ class InternalSubscriptionResourceTest {
     assertEquals("bar3", awsUsageContext.getAwsSellerAccountId());
   }
 
+  @Test
+  void reusesAwsUsageContextsOfLookupForOtherHours() {
+    InternalSubscriptionResource resource =
+        new InternalSubscriptionResource(
+            new SimpleMeterRegistry(), syncController, properties, newAwsUsageContextCache());
+    Subscription sub = new Subscription();
+    sub.setBillingProviderId("foo1;foo2;foo3");
+    sub.setStartDate(defaultLookUpDate.minusMonths(1));
+    sub.setEndDate(defaultEndDate);
+    when(syncController.findSubscriptions(any(), any(), any(), any(), any()))
+        .thenReturn(List.of(sub));
+
+    AwsUsageContext first =
+        resource.getAwsUsageContext(
+            null, "org123", defaultLookUpDate, "rhosak", "Premium", "Production", "123");
+    AwsUsageContext nextHour =
+        resource.getAwsUsageContext(
+            null,
+            "org123",
+            defaultLookUpDate.plusHours(1),
+            "rhosak",
+            "Premium",
+            "Production",
+            "123");
+
+    assertEquals("foo1", nextHour.getProductCode());
+    assertEquals(sub.getStartDate(), first.getValidFrom());
+    assertEquals(defaultEndDate, first.getValidUntil());
+    verify(syncController, times(1)).findSubscriptions(any(), any(), any(), isNull(), isNull());
+    verify(syncController, never())
+        .findSubscriptionsAndSyncIfNeeded(any(), any(), any(), any(), any(), anyBoolean());
+  }
+
+  @Test
+  void picksAwsUsageContextOfRenewalOnlyOnceItStarts() {
+    InternalSubscriptionResource resource =
+        new InternalSubscriptionResource(
+            new SimpleMeterRegistry(), syncController, properties, newAwsUsageContextCache());
+    Subscription original = new Subscription();
+    original.setBillingProviderId("foo1;foo2;foo3");
+    original.setStartDate(OffsetDateTime.of(2022, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC));
+    original.setEndDate(OffsetDateTime.of(2022, 12, 31, 0, 0, 0, 0, ZoneOffset.UTC));
+    Subscription renewal = new Subscription();
+    renewal.setBillingProviderId("bar1;bar2;bar3");
+    renewal.setStartDate(OffsetDateTime.of(2022, 6, 1, 0, 0, 0, 0, ZoneOffset.UTC));
+    renewal.setEndDate(OffsetDateTime.of(2023, 6, 1, 0, 0, 0, 0, ZoneOffset.UTC));
+    when(syncController.findSubscriptions(any(), any(), any(), any(), any()))
+        .thenReturn(List.of(renewal, original));
+
+    AwsUsageContext march =
+        resource.getAwsUsageContext(
+            null,
+            "org123",
+            OffsetDateTime.of(2022, 3, 1, 8, 0, 0, 0, ZoneOffset.UTC),
+            "rhosak",
+            "Premium",
+            "Production",
+            "123");
+    AwsUsageContext july =
+        resource.getAwsUsageContext(
+            null,
+            "org123",
+            OffsetDateTime.of(2022, 7, 1, 8, 0, 0, 0, ZoneOffset.UTC),
+            "rhosak",
+            "Premium",
+            "Production",
+            "123");
+
+    assertEquals("foo1", march.getProductCode());
+    assertEquals(original.getStartDate(), march.getValidFrom());
+    assertEquals(renewal.getStartDate().minusNanos(1), march.getValidUntil());
+    assertEquals("bar1", july.getProductCode());
+    assertEquals(renewal.getStartDate(), july.getValidFrom());
+    assertEquals(original.getEndDate(), july.getValidUntil());
+    verify(syncController, times(1)).findSubscriptions(any(), any(), any(), any(), any());
+  }
+
+  @Test
+  void syncsWhenNoCachedSubscriptionIsActive() {
+    InternalSubscriptionResource resource =
+        new InternalSubscriptionResource(
+            new SimpleMeterRegistry(), syncController, properties, newAwsUsageContextCache());
+    Subscription sub = new Subscription();
+    sub.setBillingProviderId("foo1;foo2;foo3");
+    sub.setStartDate(defaultLookUpDate.minusMonths(1));
+    sub.setEndDate(defaultEndDate);
+    when(syncController.findSubscriptions(any(), any(), any(), any(), any()))
+        .thenReturn(Collections.emptyList());
+    when(syncController.findSubscriptionsAndSyncIfNeeded(
+            any(), any(), any(), any(), any(), anyBoolean()))
+        .thenReturn(List.of(sub));
+
+    AwsUsageContext context =
+        resource.getAwsUsageContext(
+            null, "org123", defaultLookUpDate, "rhosak", "Premium", "Production", "123");
+
+    assertEquals("foo1", context.getProductCode());
+    // Resolved from the subscriptions of the lookup date only, so valid for that date only
+    assertNull(context.getValidFrom());
+    assertNull(context.getValidUntil());
+  }
+
+  @Test
+  void resolvesAwsUsageContextsAgainAfterInvalidation() {
+    AwsUsageContextCache cache = newAwsUsageContextCache();
+    InternalSubscriptionResource resource =
+        new InternalSubscriptionResource(
+            new SimpleMeterRegistry(), syncController, properties, cache);
+    Subscription sub = new Subscription();
+    sub.setBillingProviderId("foo1;foo2;foo3");
+    sub.setStartDate(defaultLookUpDate.minusMonths(1));
+    sub.setEndDate(defaultEndDate);
+    when(syncController.findSubscriptions(any(), any(), any(), any(), any()))
+        .thenReturn(List.of(sub));
+
+    resource.getAwsUsageContext(
+        null, "org123", defaultLookUpDate, "rhosak", "Premium", "Production", "123");
+    cache.invalidate("org123", null);
+    resource.getAwsUsageContext(
+        null, "org123", defaultLookUpDate, "rhosak", "Premium", "Production", "123");
+
+    verify(syncController, times(2)).findSubscriptions(any(), any(), any(), any(), any());
+  }
+
   @Test
   @WithMockPskPrincipal
   void forceSyncForOrgWorksWithPsk() throws Exception {
@@ -291,4 +425,8 @@ class InternalSubscriptionResourceTest {
   void forceSyncForOrgWorksFailsWithRhPrincipal() throws Exception {
     mvc.perform(post(SYNC_ORG_123)).andExpect(status().isForbidden());
   }
+
+  private static AwsUsageContextCache newAwsUsageContextCache() {
+    return new AwsUsageContextCache(new SubscriptionServiceProperties());
+  }
 }
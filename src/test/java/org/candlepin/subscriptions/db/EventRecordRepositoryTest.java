@@ -30,6 +30,7 @@ import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import org.candlepin.subscriptions.FixedClockConfiguration;
+import org.candlepin.subscriptions.db.model.EventKey;
 import org.candlepin.subscriptions.db.model.EventRecord;
 import org.candlepin.subscriptions.json.Event;
 import org.junit.jupiter.api.Test;
@@ -203,6 +204,71 @@ class EventRecordRepositoryTest {
     assertThrows(DataIntegrityViolationException.class, () -> repository.saveAndFlush(e2));
   }
 
+  @SuppressWarnings({"linelength", "indentation"})
+  @Test
+  void findByServiceType() {
+    Event rhelEvent =
+        event("account123", "org123", "SOURCE", "TYPE", "INSTANCE", OffsetDateTime.now(CLOCK));
+    Event otherEvent =
+        event("account123", "org123", "SOURCE", "TYPE", "OTHER", OffsetDateTime.now(CLOCK));
+    otherEvent.setServiceType("OTHER_SERVICE_TYPE");
+    repository.saveAll(List.of(new EventRecord(rhelEvent), new EventRecord(otherEvent)));
+    repository.flush();
+
+    OffsetDateTime begin = OffsetDateTime.now(CLOCK).minusHours(1);
+    OffsetDateTime end = OffsetDateTime.now(CLOCK).plusHours(1);
+    List<EventRecord> found =
+        repository
+            .findByOrgIdAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestamp(
+                "org123", "SERVICE_TYPE", begin, end)
+            .collect(Collectors.toList());
+
+    assertEquals(1, found.size());
+    assertEquals(rhelEvent.getEventId(), found.get(0).getId());
+    assertTrue(
+        repository.existsByOrgIdAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThan(
+            "org123", "OTHER_SERVICE_TYPE", begin, end));
+    assertFalse(
+        repository.existsByOrgIdAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThan(
+            "org456", "SERVICE_TYPE", begin, end));
+  }
+
+  @Test
+  void upsertAllMatchesEventsByNaturalKeyAndDeleteKeepsGivenKeys() {
+    OffsetDateTime now = OffsetDateTime.now(CLOCK);
+    Event original = event("account123", "org123", "SOURCE", "TYPE", "INSTANCE", now);
+    repository.upsertAll(List.of(new EventRecord(original)));
+
+    Event replacement = event("account123", "org123", "SOURCE", "TYPE", "INSTANCE", now);
+    replacement.setDisplayName(Optional.of("updated"));
+    Event other = event("account123", "org123", "SOURCE", "TYPE", "OTHER", now);
+    repository.upsertAll(List.of(new EventRecord(replacement), new EventRecord(other)));
+
+    List<EventRecord> found =
+        repository
+            .findByOrgIdAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestamp(
+                "org123", now, now.plusHours(1))
+            .collect(Collectors.toList());
+    assertEquals(2, found.size());
+    EventRecord updated =
+        found.stream().filter(r -> "INSTANCE".equals(r.getInstanceId())).findFirst().orElseThrow();
+    assertEquals(original.getEventId(), updated.getId());
+    assertEquals(original.getEventId(), updated.getEvent().getEventId());
+    assertEquals(Optional.of("updated"), updated.getEvent().getDisplayName());
+
+    int deleted =
+        repository.deleteInTimeRangeExcept(
+            "org123", "SOURCE", "TYPE", now, now.plusHours(1), List.of(EventKey.fromEvent(other)));
+    assertEquals(1, deleted);
+    found =
+        repository
+            .findByOrgIdAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestamp(
+                "org123", now, now.plusHours(1))
+            .collect(Collectors.toList());
+    assertEquals(1, found.size());
+    assertEquals("OTHER", found.get(0).getInstanceId());
+  }
+
   @Test
   void testDeleteByTimestamp() {
     var now = OffsetDateTime.now();
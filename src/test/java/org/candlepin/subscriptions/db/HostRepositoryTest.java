@@ -21,6 +21,11 @@
 package org.candlepin.subscriptions.db;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
@@ -53,6 +58,7 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -1154,6 +1160,79 @@ class HostRepositoryTest {
     assertEquals(BillingProvider.AWS, results.getContent().get(3).getBillingProvider());
   }
 
+  @Transactional
+  @Test
+  void testFindAllByContinuesAfterPosition() {
+    Host host1 = createHost("i1", "a1");
+    host1.setDisplayName("apple");
+    Host host2 = createHost("i2", "a1");
+    host2.setDisplayName("banana");
+    Host host3 = createHost("i3", "a1");
+    host3.setDisplayName("cherry");
+    for (Host host : List.of(host1, host2, host3)) {
+      addBucketToHost(
+          host,
+          COOL_PROD,
+          ServiceLevel.PREMIUM,
+          Usage.PRODUCTION,
+          HardwareMeasurementType.PHYSICAL,
+          BillingProvider._ANY);
+    }
+    persistHosts(host1, host2, host3);
+
+    Pageable page = PageRequest.of(0, 1, Sort.by("displayName", "id"));
+    Page<Host> results =
+        repo.findAllBy(
+            "ORG_a1",
+            COOL_PROD,
+            ServiceLevel.PREMIUM,
+            Usage.PRODUCTION,
+            "",
+            0,
+            0,
+            null,
+            null,
+            BillingProvider._ANY,
+            "_ANY",
+            HostSpecification.sortedAfter(host1.getDisplayName(), host1.getId(), Direction.ASC),
+            page);
+
+    assertEquals(3L, results.getTotalElements());
+    assertEquals(List.of("banana"), results.map(Host::getDisplayName).getContent());
+  }
+
+  @Test
+  void testFindAllBySkipsHostsDeletedAfterTheirIdsWereSelected() {
+    HostRepository hostRepository = mock(HostRepository.class, CALLS_REAL_METHODS);
+    Host remaining = createHost("i1", "a1");
+    remaining.setId(UUID.randomUUID());
+    UUID deletedId = UUID.randomUUID();
+    Pageable page = PageRequest.of(0, 2, Sort.by("displayName", "id"));
+    when(hostRepository.findHostIds(any(), any(), eq(page)))
+        .thenReturn(new PageImpl<>(List.of(deletedId, remaining.getId()), page, 5));
+    when(hostRepository.findAllById(List.of(deletedId, remaining.getId())))
+        .thenReturn(List.of(remaining));
+
+    Page<Host> results =
+        hostRepository.findAllBy(
+            "ORG_a1",
+            COOL_PROD,
+            ServiceLevel.PREMIUM,
+            Usage.PRODUCTION,
+            "",
+            0,
+            0,
+            null,
+            null,
+            BillingProvider._ANY,
+            "_ANY",
+            null,
+            page);
+
+    assertEquals(List.of(remaining), results.getContent());
+    assertEquals(4L, results.getTotalElements());
+  }
+
   @Transactional
   @ParameterizedTest
   @CsvSource({"'',3", "banana,1", "rang,1", "an,2", "celery,0"})
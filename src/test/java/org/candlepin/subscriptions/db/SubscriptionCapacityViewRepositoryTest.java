@@ -46,6 +46,8 @@ import org.candlepin.subscriptions.db.model.SubscriptionCapacity;
 import org.candlepin.subscriptions.db.model.SubscriptionCapacityView;
 import org.candlepin.subscriptions.db.model.SubscriptionCapacityView_;
 import org.candlepin.subscriptions.db.model.Usage;
+import org.candlepin.subscriptions.utilization.api.model.SkuCapacityReportSort;
+import org.candlepin.subscriptions.utilization.api.model.SortDirection;
 import org.candlepin.subscriptions.utilization.api.model.Uom;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
@@ -55,6 +57,8 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
@@ -605,6 +609,238 @@ class SubscriptionCapacityViewRepositoryTest {
     assertEquals(offering.getDescription(), found.get(0).getProductName());
   }
 
+  @Transactional
+  @Test
+  void shouldSortSkusWithUnlimitedCapacityLastAscending() {
+    SubscriptionCapacity limited = createUnpersisted(NOWISH, FAR_FUTURE);
+    limited.setSubscriptionId("limited");
+    limited.setSku("limited");
+    SubscriptionCapacity unlimited = createUnpersisted(NOWISH, FAR_FUTURE);
+    unlimited.setSubscriptionId("unlimited");
+    unlimited.setSku("unlimited");
+    unlimited.setHasUnlimitedUsage(true);
+    unlimited.setPhysicalSockets(0);
+    unlimited.setVirtualSockets(0);
+    saveWithSubscriptionsAndOfferings(limited, unlimited);
+
+    Page<String> ascending =
+        repository.findSkusBy(
+            ORG_ID,
+            null,
+            PRODUCT_ID,
+            null,
+            null,
+            NOWISH,
+            FAR_FUTURE,
+            null,
+            SkuCapacityReportSort.TOTAL_CAPACITY,
+            SortDirection.ASC,
+            PageRequest.of(0, 10));
+    assertEquals(List.of("limited", "unlimited"), ascending.getContent());
+
+    Page<String> descending =
+        repository.findSkusBy(
+            ORG_ID,
+            null,
+            PRODUCT_ID,
+            null,
+            null,
+            NOWISH,
+            FAR_FUTURE,
+            null,
+            SkuCapacityReportSort.TOTAL_CAPACITY,
+            SortDirection.DESC,
+            PageRequest.of(0, 10));
+    assertEquals(List.of("unlimited", "limited"), descending.getContent());
+  }
+
+  @Transactional
+  @Test
+  void shouldSortSkusByTotalCapacityOfAllTheirSubscriptions() {
+    SubscriptionCapacity small = createUnpersisted(NOWISH, FAR_FUTURE);
+    small.setSubscriptionId("small1");
+    small.setSku("small");
+    SubscriptionCapacity anotherSmall = createUnpersisted(NOWISH, FAR_FUTURE);
+    anotherSmall.setSubscriptionId("small2");
+    anotherSmall.setSku("small");
+    SubscriptionCapacity large = createUnpersisted(NOWISH, FAR_FUTURE);
+    large.setSubscriptionId("large");
+    large.setSku("large");
+    large.setVirtualSockets(30);
+    saveWithSubscriptionsAndOfferings(small, anotherSmall, large);
+    // Two subscriptions of 24 sockets outweigh a single one of 34 sockets
+
+    Page<String> page =
+        repository.findSkusBy(
+            ORG_ID,
+            null,
+            PRODUCT_ID,
+            null,
+            null,
+            NOWISH,
+            FAR_FUTURE,
+            Uom.SOCKETS,
+            SkuCapacityReportSort.TOTAL_CAPACITY,
+            SortDirection.ASC,
+            PageRequest.of(0, 10));
+    assertEquals(List.of("large", "small"), page.getContent());
+  }
+
+  @Transactional
+  @Test
+  void shouldPageSkusAndCountAllMatchingSkus() {
+    SubscriptionCapacity first = createUnpersisted(NOWISH, FAR_FUTURE);
+    first.setSubscriptionId("1");
+    first.setSku("sku1");
+    SubscriptionCapacity second = createUnpersisted(NOWISH, FAR_FUTURE);
+    second.setSubscriptionId("2");
+    second.setSku("sku2");
+    SubscriptionCapacity secondAgain = createUnpersisted(NOWISH, FAR_FUTURE);
+    secondAgain.setSubscriptionId("3");
+    secondAgain.setSku("sku2");
+    SubscriptionCapacity third = createUnpersisted(NOWISH, FAR_FUTURE);
+    third.setSubscriptionId("4");
+    third.setSku("sku3");
+    saveWithSubscriptionsAndOfferings(first, second, secondAgain, third);
+
+    Page<String> page =
+        repository.findSkusBy(
+            ORG_ID,
+            null,
+            PRODUCT_ID,
+            null,
+            null,
+            NOWISH,
+            FAR_FUTURE,
+            null,
+            SkuCapacityReportSort.SKU,
+            SortDirection.DESC,
+            PageRequest.of(0, 2));
+    assertEquals(List.of("sku3", "sku2"), page.getContent());
+    assertEquals(3, page.getTotalElements());
+
+    List<SubscriptionCapacityView> capacities =
+        repository.findAllBy(
+            ORG_ID, null, PRODUCT_ID, null, null, NOWISH, FAR_FUTURE, null, page.getContent());
+    assertThat(
+        capacities.stream()
+            .map(capacity -> capacity.getKey().getSubscriptionId())
+            .collect(Collectors.toList()),
+        containsInAnyOrder("2", "3", "4"));
+  }
+
+  @Transactional
+  @Test
+  void shouldSortSkusByServiceLevelInEnumOrder() {
+    SubscriptionCapacity selfSupport = createUnpersisted(NOWISH, FAR_FUTURE);
+    selfSupport.setSubscriptionId("a");
+    selfSupport.setSku("a");
+    selfSupport.setServiceLevel(ServiceLevel.SELF_SUPPORT);
+    SubscriptionCapacity standard = createUnpersisted(NOWISH, FAR_FUTURE);
+    standard.setSubscriptionId("b");
+    standard.setSku("b");
+    standard.setServiceLevel(ServiceLevel.STANDARD);
+    SubscriptionCapacity premium = createUnpersisted(NOWISH, FAR_FUTURE);
+    premium.setSubscriptionId("c");
+    premium.setSku("c");
+    premium.setServiceLevel(ServiceLevel.PREMIUM);
+    saveWithSubscriptionsAndOfferings(selfSupport, standard, premium);
+
+    // Premium, Standard, Self-Support rather than the alphabetical order of the SLA strings
+    assertEquals(
+        List.of("c", "b", "a"),
+        findSkusSortedBy(SkuCapacityReportSort.SERVICE_LEVEL, FAR_FUTURE, SortDirection.ASC));
+    assertEquals(
+        List.of("a", "b", "c"),
+        findSkusSortedBy(SkuCapacityReportSort.SERVICE_LEVEL, FAR_FUTURE, SortDirection.DESC));
+  }
+
+  @Transactional
+  @Test
+  void shouldSortSkusByUsageInEnumOrder() {
+    SubscriptionCapacity disasterRecovery = createUnpersisted(NOWISH, FAR_FUTURE);
+    disasterRecovery.setSubscriptionId("a");
+    disasterRecovery.setSku("a");
+    disasterRecovery.setUsage(Usage.DISASTER_RECOVERY);
+    SubscriptionCapacity production = createUnpersisted(NOWISH, FAR_FUTURE);
+    production.setSubscriptionId("b");
+    production.setSku("b");
+    production.setUsage(Usage.PRODUCTION);
+    SubscriptionCapacity developmentTest = createUnpersisted(NOWISH, FAR_FUTURE);
+    developmentTest.setSubscriptionId("c");
+    developmentTest.setSku("c");
+    developmentTest.setUsage(Usage.DEVELOPMENT_TEST);
+    saveWithSubscriptionsAndOfferings(disasterRecovery, production, developmentTest);
+
+    // Production, Development/Test, Disaster Recovery rather than alphabetical order
+    assertEquals(
+        List.of("b", "c", "a"),
+        findSkusSortedBy(SkuCapacityReportSort.USAGE, FAR_FUTURE, SortDirection.ASC));
+  }
+
+  @Transactional
+  @Test
+  void shouldSortSkusWithTheSameNextEventTypeBySku() {
+    SubscriptionCapacity endsLater = createUnpersisted(NOWISH, FAR_FUTURE);
+    endsLater.setSubscriptionId("a");
+    endsLater.setSku("a");
+    SubscriptionCapacity endsSooner = createUnpersisted(NOWISH, NOW.plusDays(30));
+    endsSooner.setSubscriptionId("b");
+    endsSooner.setSku("b");
+    saveWithSubscriptionsAndOfferings(endsLater, endsSooner);
+
+    // The next event of both SKUs is the end of a subscription, whatever its date
+    assertEquals(
+        List.of("a", "b"),
+        findSkusSortedBy(SkuCapacityReportSort.NEXT_EVENT_TYPE, NOW, SortDirection.ASC));
+    assertEquals(
+        List.of("b", "a"),
+        findSkusSortedBy(SkuCapacityReportSort.NEXT_EVENT_DATE, NOW, SortDirection.ASC));
+  }
+
+  private List<String> findSkusSortedBy(
+      SkuCapacityReportSort sort, OffsetDateTime reportEnd, SortDirection dir) {
+    return repository
+        .findSkusBy(
+            ORG_ID,
+            null,
+            PRODUCT_ID,
+            null,
+            null,
+            NOWISH,
+            reportEnd,
+            null,
+            sort,
+            dir,
+            PageRequest.of(0, 10))
+        .getContent();
+  }
+
+  private void saveWithSubscriptionsAndOfferings(SubscriptionCapacity... capacities) {
+    for (SubscriptionCapacity capacity : capacities) {
+      subscriptionRepository.save(
+          createSubscription(
+              capacity.getOrgId(),
+              capacity.getAccountNumber(),
+              capacity.getSku(),
+              capacity.getSubscriptionId(),
+              capacity.getBeginDate(),
+              capacity.getEndDate()));
+      subscriptionCapacityRepository.save(capacity);
+    }
+    Stream.of(capacities)
+        .map(SubscriptionCapacity::getSku)
+        .distinct()
+        .forEach(
+            sku ->
+                offeringRepository.save(
+                    createOffering(
+                        sku, Integer.parseInt(PRODUCT_ID), null, Usage.PRODUCTION, "role1")));
+    subscriptionRepository.flush();
+    subscriptionCapacityRepository.flush();
+    offeringRepository.flush();
+  }
+
   private SubscriptionCapacity createUnpersisted(OffsetDateTime begin, OffsetDateTime end) {
     SubscriptionCapacity capacity = new SubscriptionCapacity();
     capacity.setAccountNumber(ACCOUNT_NUMBER);
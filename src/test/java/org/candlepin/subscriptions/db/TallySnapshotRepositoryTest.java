@@ -22,6 +22,7 @@ package org.candlepin.subscriptions.db;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
@@ -29,6 +30,8 @@ import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.candlepin.subscriptions.db.model.BillingProvider;
 import org.candlepin.subscriptions.db.model.Granularity;
@@ -415,6 +418,60 @@ class TallySnapshotRepositoryTest {
             key));
   }
 
+  @Test
+  void testSumHourlyPhysicalMeasurements() {
+    TallySnapshot first =
+        createUnpersisted("Org1", "Account1", "rosa", Granularity.HOURLY, 1, 2, 3, NOWISH);
+    first.setMeasurement(HardwareMeasurementType.PHYSICAL, Uom.CORES, 2.5);
+    TallySnapshot otherBillingAccount =
+        createUnpersisted(
+            "Org1",
+            "Account1",
+            "rosa",
+            Granularity.HOURLY,
+            ServiceLevel.PREMIUM,
+            Usage.PRODUCTION,
+            BillingProvider._ANY,
+            "otherAcct",
+            1,
+            2,
+            3,
+            NOWISH);
+    otherBillingAccount.setMeasurement(HardwareMeasurementType.PHYSICAL, Uom.CORES, 4.0);
+    TallySnapshot second =
+        createUnpersisted(
+            "Org1", "Account1", "rosa", Granularity.HOURLY, 1, 2, 3, NOWISH.plusHours(1));
+    second.setMeasurement(HardwareMeasurementType.PHYSICAL, Uom.CORES, 1.5);
+    // Will not be summed - incorrect granularity
+    TallySnapshot daily =
+        createUnpersisted("Org1", "Account1", "rosa", Granularity.DAILY, 1, 2, 3, NOWISH);
+    daily.setMeasurement(HardwareMeasurementType.PHYSICAL, Uom.CORES, 99.0);
+    repository.saveAll(Arrays.asList(first, otherBillingAccount, second, daily));
+    repository.flush();
+
+    Map<String, Object[]> sums =
+        repository
+            .sumHourlyPhysicalMeasurements(
+                "Account1", List.of("rosa"), NOWISH, NOWISH.plusHours(1))
+            .collect(
+                Collectors.toMap(
+                    row -> row[4] + "@" + ((Timestamp) row[6]).toInstant(), Function.identity()));
+
+    // TOTAL measurements are not summed
+    assertEquals(3, sums.size());
+    Object[] firstSum = sums.get("sellerAcct@" + NOWISH.toInstant());
+    assertEquals("rosa", firstSum[0]);
+    assertEquals(ServiceLevel.PREMIUM.getValue(), firstSum[1]);
+    assertEquals(Usage.PRODUCTION.getValue(), firstSum[2]);
+    assertEquals(BillingProvider._ANY.getValue(), firstSum[3]);
+    assertEquals(Uom.CORES.name(), firstSum[5]);
+    assertEquals(2.5, ((Number) firstSum[7]).doubleValue());
+    assertEquals(4.0, ((Number) sums.get("otherAcct@" + NOWISH.toInstant())[7]).doubleValue());
+    assertEquals(
+        1.5,
+        ((Number) sums.get("sellerAcct@" + NOWISH.plusHours(1).toInstant())[7]).doubleValue());
+  }
+
   private List<TallySnapshot> createSequencedSnapshots(
       OffsetDateTime start,
       int numOfSnaps,
@@ -24,13 +24,13 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
-import java.util.function.Function;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.candlepin.subscriptions.FixedClockConfiguration;
 import org.candlepin.subscriptions.db.AccountConfigRepository;
@@ -84,6 +84,8 @@ class PrometheusMeteringControllerTest {
 
   @Autowired private TagProfile tagProfile;
 
+  @Autowired private MeterRegistry meterRegistry;
+
   @MockBean private OptInController optInController;
 
   @Autowired
@@ -119,7 +121,8 @@ class PrometheusMeteringControllerTest {
             eventController,
             openshiftRetry,
             optInController,
-            tagProfile);
+            tagProfile,
+            meterRegistry);
 
     queries = new QueryHelper(tagProfile, queryBuilder);
   }
@@ -177,6 +180,42 @@ class PrometheusMeteringControllerTest {
             metricProperties.getQueryTimeout());
   }
 
+  @Test
+  void longRangesAreQueriedInChunks() {
+    OffsetDateTime start = clock.startOfCurrentHour();
+    OffsetDateTime end = start.plusDays(3);
+    QueryResult data =
+        buildOpenShiftClusterQueryResult(
+            expectedAccount,
+            expectedOrgId,
+            expectedClusterId,
+            expectedSla,
+            expectedUsage,
+            expectedBillingProvider,
+            expectedBillingAccountId,
+            List.of(List.of(new BigDecimal(12312.345), new BigDecimal(24))));
+    when(service.runRangeQuery(anyString(), any(), any(), any(), any())).thenReturn(data);
+
+    controller.collectMetrics("OpenShift-metrics", Uom.CORES, expectedOrgId, start, end);
+
+    String expectedQuery =
+        queries.expectedQuery("OpenShift-metrics", Map.of("orgId", expectedOrgId));
+    OffsetDateTime firstDataPoint = start.plusHours(1);
+    for (int day = 0; day < 3; day++) {
+      OffsetDateTime chunkStart = firstDataPoint.plusDays(day);
+      OffsetDateTime chunkEnd = day < 2 ? chunkStart.plusHours(23) : end;
+      verify(service)
+          .runRangeQuery(
+              expectedQuery,
+              chunkStart,
+              chunkEnd,
+              metricProperties.getStep(),
+              metricProperties.getQueryTimeout());
+    }
+    verify(service, times(3)).runRangeQuery(anyString(), any(), any(), any(), any());
+    verify(eventController, times(3)).upsertAll(any());
+  }
+
   @Test
   void orgIdGetsOptedInWhenReportingMetrics() {
     OffsetDateTime start = clock.startOfCurrentHour();
@@ -269,7 +308,7 @@ class PrometheusMeteringControllerTest {
     controller.collectMetrics("OpenShift-metrics", Uom.CORES, expectedOrgId, start, end);
 
     ArgumentCaptor<Collection> saveCaptor = ArgumentCaptor.forClass(Collection.class);
-    verify(eventController).saveAll(saveCaptor.capture());
+    verify(eventController).upsertAll(saveCaptor.capture());
 
     verify(service)
         .runRangeQuery(
@@ -278,9 +317,8 @@ class PrometheusMeteringControllerTest {
             end,
             metricProperties.getStep(),
             metricProperties.getQueryTimeout());
-    verify(eventController).saveAll(any());
 
-    // Attempted to verify the eventController.saveAll(events) but
+    // Attempted to verify the eventController.upsertAll(events) but
     // couldn't find a way to get mockito to match on the collection
     // of HashMap.Value. Using a capture works just as well, but is a less convenient.
     assertEquals(expectedEvents.size(), saveCaptor.getValue().size());
@@ -288,7 +326,7 @@ class PrometheusMeteringControllerTest {
   }
 
   @Test
-  void verifyExistingEventsAreUpdatedWhenReportedByPrometheusAndDeletedIfStale() {
+  void verifyReportedEventsAreUpsertedAndOtherEventsInRangeDeleted() {
     BigDecimal time1 = BigDecimal.valueOf(123456.234);
     BigDecimal val1 = BigDecimal.valueOf(100L);
     BigDecimal time2 = BigDecimal.valueOf(222222.222);
@@ -351,60 +389,20 @@ class PrometheusMeteringControllerTest {
                 expectedUom,
                 val2.doubleValue()));
 
-    Event purgedEvent =
-        MeteringEventFactory.createMetricEvent(
-            expectedAccount,
-            expectedOrgId,
-            expectedMetricId,
-            "CLUSTER_NO_LONGER_EXISTS",
-            expectedSla,
-            expectedUsage,
-            expectedRole,
-            clock.dateFromUnix(time1).minusSeconds(metricProperties.getStep()),
-            clock.dateFromUnix(time1),
-            expectedServiceType,
-            expectedBillingProvider,
-            expectedBillingAccountId,
-            expectedUom,
-            val1.doubleValue());
-
-    List<Event> existingEvents =
-        List.of(
-            // This event will get updated by the incoming data from prometheus.
-            MeteringEventFactory.createMetricEvent(
-                expectedAccount,
-                expectedOrgId,
-                expectedMetricId,
-                expectedClusterId,
-                expectedSla,
-                expectedUsage,
-                expectedRole,
-                updatedEvent.getTimestamp(),
-                updatedEvent.getExpiration().get(),
-                expectedServiceType,
-                expectedBillingProvider,
-                expectedBillingAccountId,
-                expectedUom,
-                144.4),
-            // This event should get purged because prometheus did not report this cluster.
-            purgedEvent);
-    when(eventController.mapEventsInTimeRange(
-            expectedOrgId,
-            MeteringEventFactory.EVENT_SOURCE,
-            MeteringEventFactory.getEventType(expectedMetricId),
-            start,
-            end))
-        .thenReturn(
-            existingEvents.stream()
-                .collect(Collectors.toMap(EventKey::fromEvent, Function.identity())));
-
     controller.collectMetrics("OpenShift-metrics", Uom.CORES, expectedOrgId, start, end);
 
     ArgumentCaptor<Collection> saveCaptor = ArgumentCaptor.forClass(Collection.class);
-    verify(eventController).saveAll(saveCaptor.capture());
-
-    ArgumentCaptor<Collection> purgeCaptor = ArgumentCaptor.forClass(Collection.class);
-    verify(eventController).deleteEvents(purgeCaptor.capture());
+    verify(eventController).upsertAll(saveCaptor.capture());
+
+    ArgumentCaptor<Collection> keepCaptor = ArgumentCaptor.forClass(Collection.class);
+    verify(eventController)
+        .deleteEventsInTimeRangeExcept(
+            eq(expectedOrgId),
+            eq(MeteringEventFactory.EVENT_SOURCE),
+            eq(MeteringEventFactory.getEventType(expectedMetricId)),
+            eq(start),
+            eq(end),
+            keepCaptor.capture());
 
     verify(service)
         .runRangeQuery(
@@ -420,8 +418,9 @@ class PrometheusMeteringControllerTest {
     assertEquals(expectedEvents.size(), saveCaptor.getValue().size());
     assertTrue(saveCaptor.getValue().containsAll(expectedEvents));
 
-    assertEquals(1, purgeCaptor.getValue().size());
-    assertTrue(purgeCaptor.getValue().contains(purgedEvent));
+    assertEquals(
+        expectedEvents.stream().map(EventKey::fromEvent).collect(Collectors.toSet()),
+        Set.copyOf(keepCaptor.getValue()));
   }
 
   @Test
@@ -480,46 +479,12 @@ class PrometheusMeteringControllerTest {
             expectedUom,
             4.0);
 
-    var eventId = UUID.randomUUID();
-    updatedEvent.setEventId(eventId);
-
     List<Event> expectedEvents = List.of(updatedEvent);
 
-    var existingEvent =
-        MeteringEventFactory.createMetricEvent(
-            expectedAccount,
-            expectedOrgId,
-            expectedMetricId,
-            expectedClusterId,
-            expectedSla,
-            expectedUsage,
-            expectedRole,
-            updatedEvent.getTimestamp(),
-            updatedEvent.getExpiration().get(),
-            expectedServiceType,
-            expectedBillingProvider,
-            expectedBillingAccountId,
-            expectedUom,
-            144.4);
-    existingEvent.setEventId(eventId);
-    List<Event> existingEvents =
-        List.of(
-            // This event will get updated by the incoming data from prometheus.
-            existingEvent);
-    when(eventController.mapEventsInTimeRange(
-            expectedOrgId,
-            MeteringEventFactory.EVENT_SOURCE,
-            MeteringEventFactory.getEventType(expectedMetricId),
-            start,
-            end))
-        .thenReturn(
-            existingEvents.stream()
-                .collect(Collectors.toMap(EventKey::fromEvent, Function.identity())));
-
     controller.collectMetrics("OpenShift-metrics", Uom.CORES, expectedOrgId, start, end);
 
     var saveCaptor = ArgumentCaptor.forClass(Collection.class);
-    verify(eventController).saveAll(saveCaptor.capture());
+    verify(eventController).upsertAll(saveCaptor.capture());
 
     verify(service)
         .runRangeQuery(
@@ -168,11 +168,16 @@ class TagProfileTest {
   }
 
   @Test
-  void testGetTagMetricByProductTagAndUomThrowsExceptionWhenDuplicateDefined() {
+  void testInitLookupsThrowsExceptionWhenDuplicateTagMetricDefined() {
     tagProfile.getTagMetrics().add(tagProfile.getTagMetric("OpenShift-metrics", Uom.CORES).get());
 
-    assertThrows(
-        IllegalStateException.class, () -> tagProfile.getTagMetric("OpenShift-metrics", Uom.CORES));
+    assertThrows(IllegalStateException.class, () -> tagProfile.initLookups());
+  }
+
+  @Test
+  void lookupsAreUnmodifiable() {
+    Set<String> tags = tagProfile.getTagsByEngProduct(ENG_PROD_69);
+    assertThrows(UnsupportedOperationException.class, () -> tags.add("foo"));
   }
 
   @Test
@@ -0,0 +1,126 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.resource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.candlepin.subscriptions.db.model.SubscriptionCapacity;
+import org.junit.jupiter.api.Test;
+
+class ActiveCapacitySweepTest {
+
+  private static final OffsetDateTime START =
+      OffsetDateTime.of(2022, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+  private int nextSubscriptionId;
+
+  @Test
+  void capacityIsActiveStrictlyBetweenBeginAndEnd() {
+    SubscriptionCapacity capacity = capacity(START.plusDays(1), START.plusDays(3));
+    ActiveCapacitySweep sweep = new ActiveCapacitySweep(List.of(capacity));
+    Set<SubscriptionCapacity> active = new HashSet<>();
+
+    sweep.advanceTo(START.plusDays(1), (c, delta) -> apply(active, c, delta));
+    assertTrue(active.isEmpty());
+    sweep.advanceTo(START.plusDays(2), (c, delta) -> apply(active, c, delta));
+    assertEquals(Set.of(capacity), active);
+    sweep.advanceTo(START.plusDays(3), (c, delta) -> apply(active, c, delta));
+    assertTrue(active.isEmpty());
+  }
+
+  @Test
+  void capacityBetweenTwoDatesIsAddedAndRemoved() {
+    SubscriptionCapacity capacity = capacity(START.plusHours(1), START.plusHours(2));
+    ActiveCapacitySweep sweep = new ActiveCapacitySweep(List.of(capacity));
+    List<Integer> deltas = new ArrayList<>();
+
+    sweep.advanceTo(START, (c, delta) -> deltas.add(delta));
+    sweep.advanceTo(START.plusDays(1), (c, delta) -> deltas.add(delta));
+
+    assertEquals(List.of(1, -1), deltas);
+  }
+
+  @Test
+  void capacityEndingBeforeItBeginsIsNeverActive() {
+    SubscriptionCapacity capacity = capacity(START.plusDays(2), START.plusDays(1));
+    ActiveCapacitySweep sweep = new ActiveCapacitySweep(List.of(capacity));
+
+    sweep.advanceTo(START.plusDays(3), (c, delta) -> fail("Unexpected change " + c));
+  }
+
+  @Test
+  void cannotMoveBackwards() {
+    ActiveCapacitySweep sweep = new ActiveCapacitySweep(List.of());
+    sweep.advanceTo(START.plusDays(1), (c, delta) -> {});
+
+    assertThrows(IllegalArgumentException.class, () -> sweep.advanceTo(START, (c, delta) -> {}));
+  }
+
+  @Test
+  void activeCapacitiesMatchScanAtEveryDate() {
+    Random random = new Random(42);
+    List<SubscriptionCapacity> capacities =
+        IntStream.range(0, 200)
+            .mapToObj(
+                i -> {
+                  OffsetDateTime begin = START.plusDays(random.nextInt(60) - 10L);
+                  return capacity(begin, begin.plusDays(random.nextInt(30)));
+                })
+            .collect(Collectors.toList());
+    ActiveCapacitySweep sweep = new ActiveCapacitySweep(capacities);
+    Set<SubscriptionCapacity> active = new HashSet<>();
+
+    for (int day = 0; day < 60; day++) {
+      OffsetDateTime date = START.plusDays(day);
+      sweep.advanceTo(date, (c, delta) -> apply(active, c, delta));
+      Set<SubscriptionCapacity> expected =
+          capacities.stream()
+              .filter(c -> c.getBeginDate().isBefore(date) && c.getEndDate().isAfter(date))
+              .collect(Collectors.toSet());
+      assertEquals(expected, active, "Active capacities differ at " + date);
+    }
+  }
+
+  private static void apply(Set<SubscriptionCapacity> active, SubscriptionCapacity c, int delta) {
+    if (delta > 0) {
+      assertTrue(active.add(c));
+    } else {
+      assertTrue(active.remove(c));
+    }
+  }
+
+  private SubscriptionCapacity capacity(OffsetDateTime begin, OffsetDateTime end) {
+    SubscriptionCapacity capacity = new SubscriptionCapacity();
+    capacity.setSubscriptionId(String.valueOf(nextSubscriptionId++));
+    capacity.setBeginDate(begin);
+    capacity.setEndDate(end);
+    return capacity;
+  }
+}
@@ -22,9 +22,14 @@ package org.candlepin.subscriptions.resource;
 
 import static org.candlepin.subscriptions.utilization.api.model.ProductId.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.time.OffsetDateTime;
@@ -34,6 +39,7 @@ import org.candlepin.subscriptions.db.HostRepository;
 import org.candlepin.subscriptions.db.model.BillingProvider;
 import org.candlepin.subscriptions.db.model.Host;
 import org.candlepin.subscriptions.db.model.InstanceMonthlyTotalKey;
+import org.candlepin.subscriptions.exception.SubscriptionsException;
 import org.candlepin.subscriptions.json.Measurement;
 import org.candlepin.subscriptions.resteasy.PageLinkCreator;
 import org.candlepin.subscriptions.security.WithMockRedHatPrincipal;
@@ -41,11 +47,14 @@ import org.candlepin.subscriptions.tally.AccountListSourceException;
 import org.candlepin.subscriptions.utilization.api.model.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.ActiveProfiles;
 
 @SpringBootTest
@@ -87,6 +96,7 @@ class InstancesResourceTest {
                 any(),
                 any(),
                 any(),
+                any(),
                 any()))
         .thenReturn(new PageImpl<>(List.of(host)));
 
@@ -125,6 +135,7 @@ class InstancesResourceTest {
             RHOSAK,
             null,
             null,
+            null,
             ServiceLevelType.PREMIUM,
             UsageType.PRODUCTION,
             expectedBillingProvider.asOpenApiEnum(),
@@ -137,4 +148,139 @@ class InstancesResourceTest {
 
     assertEquals(expected, report);
   }
+
+  @Test
+  void testCursorContinuesAfterLastInstanceWhenSortedByDisplayName() {
+    var first = new Host();
+    first.setId(UUID.randomUUID());
+    first.setDisplayName("a.example.com");
+    var second = new Host();
+    second.setId(UUID.randomUUID());
+    second.setDisplayName("b.example.com");
+    when(repository.findAllBy(
+            eq("owner123456"),
+            any(),
+            any(),
+            any(),
+            any(),
+            anyInt(),
+            anyInt(),
+            any(),
+            any(),
+            any(),
+            any(),
+            any(),
+            any()))
+        .thenAnswer(
+            invocation -> {
+              Pageable page = invocation.getArgument(12);
+              Host host = invocation.getArgument(11) == null ? first : second;
+              return new PageImpl<>(List.of(host), page, 2);
+            });
+
+    InstanceResponse firstPage = getInstancesSortedByDisplayName(null);
+    String cursor = firstPage.getMeta().getNextCursor();
+    assertNotNull(cursor);
+    InstanceResponse secondPage = getInstancesSortedByDisplayName(cursor);
+
+    assertEquals("b.example.com", secondPage.getData().get(0).getDisplayName());
+    assertNull(secondPage.getMeta().getNextCursor());
+    ArgumentCaptor<Pageable> pages = ArgumentCaptor.forClass(Pageable.class);
+    verify(repository, times(2))
+        .findAllBy(
+            any(),
+            any(),
+            any(),
+            any(),
+            any(),
+            anyInt(),
+            anyInt(),
+            any(),
+            any(),
+            any(),
+            any(),
+            any(),
+            pages.capture());
+    // The second page is found from the position of the first one, not by skipping over it.
+    assertEquals(0L, pages.getAllValues().get(1).getOffset());
+  }
+
+  @Test
+  void testCursorMustMatchTheRequestedSort() {
+    var host = new Host();
+    host.setId(UUID.randomUUID());
+    host.setDisplayName("a.example.com");
+    when(repository.findAllBy(
+            eq("owner123456"),
+            any(),
+            any(),
+            any(),
+            any(),
+            anyInt(),
+            anyInt(),
+            any(),
+            any(),
+            any(),
+            any(),
+            any(),
+            any()))
+        .thenReturn(new PageImpl<>(List.of(host), PageRequest.of(0, 1), 2));
+    String cursor = getInstancesSortedByDisplayName(null).getMeta().getNextCursor();
+
+    assertThrows(
+        SubscriptionsException.class,
+        () ->
+            resource.getInstancesByProduct(
+                RHOSAK,
+                null,
+                1,
+                cursor,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                InstanceReportSort.LAST_SEEN,
+                null));
+  }
+
+  @Test
+  void testInvalidCursorIsRejected() {
+    assertThrows(
+        SubscriptionsException.class,
+        () ->
+            resource.getInstancesByProduct(
+                RHOSAK,
+                null,
+                1,
+                "bm90IGEgY3Vyc29y",
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null));
+  }
+
+  private InstanceResponse getInstancesSortedByDisplayName(String cursor) {
+    return resource.getInstancesByProduct(
+        RHOSAK,
+        null,
+        1,
+        cursor,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        InstanceReportSort.DISPLAY_NAME,
+        null);
+  }
 }
@@ -20,14 +20,13 @@
  */
 package org.candlepin.subscriptions.retention;
 
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
-import java.util.Arrays;
-import java.util.List;
-import org.candlepin.subscriptions.db.AccountConfigRepository;
+import org.candlepin.subscriptions.db.EventRecordRepository;
 import org.candlepin.subscriptions.db.TallySnapshotRepository;
 import org.candlepin.subscriptions.db.model.Granularity;
 import org.junit.jupiter.api.Test;
@@ -49,9 +48,11 @@ class TallyRetentionControllerTest {
 
   @MockBean private TallyRetentionPolicy policy;
   @MockBean private TallySnapshotRepository repository;
-  @MockBean private AccountConfigRepository accountConfigRepository;
+  @MockBean private EventRecordRepository eventRecordRepository;
 
   @Autowired private TallyRetentionController controller;
+  @Autowired private TallyRetentionPolicyProperties properties;
+  @Autowired private EventRecordsRetentionProperties eventProperties;
 
   @Test
   void retentionControllerShouldRemoveSnapshotsForGranularitiesConfigured() throws Exception {
@@ -74,14 +75,42 @@ class TallyRetentionControllerTest {
   void testPurgeSnapshots() throws Exception {
     OffsetDateTime cutoff = OffsetDateTime.ofInstant(Instant.EPOCH, ZoneId.systemDefault());
     when(policy.getCutoffDate(Granularity.DAILY)).thenReturn(cutoff);
-
-    List<String> testList = Arrays.asList("1", "2", "3", "4");
-    when(accountConfigRepository.findSyncEnabledOrgs()).thenReturn(testList.stream());
+    when(repository.deleteBatchByGranularityAndSnapshotDateBefore(
+            Granularity.DAILY, cutoff, properties.getPurgeBatchSize()))
+        .thenReturn(properties.getPurgeBatchSize(), properties.getPurgeBatchSize(), 3);
 
     controller.purgeSnapshots();
 
-    verify(repository, times(4))
-        .deleteAllByOrgIdAndGranularityAndSnapshotDateBefore(
-            anyString(), eq(Granularity.DAILY), eq(cutoff));
+    verify(repository, times(3))
+        .deleteBatchByGranularityAndSnapshotDateBefore(
+            Granularity.DAILY, cutoff, properties.getPurgeBatchSize());
+    verifyNoMoreInteractions(repository);
+  }
+
+  @Test
+  void testPurgeOldEventRecordsDeletesInBatches() {
+    when(eventRecordRepository.deleteBatchByTimestampBefore(
+            any(OffsetDateTime.class), eq(eventProperties.getPurgeBatchSize())))
+        .thenReturn(eventProperties.getPurgeBatchSize(), 0);
+
+    controller.purgeOldEventRecords();
+
+    verify(eventRecordRepository, times(2))
+        .deleteBatchByTimestampBefore(
+            any(OffsetDateTime.class), eq(eventProperties.getPurgeBatchSize()));
+  }
+
+  @Test
+  void testPurgeFailsFastOnNonPositiveBatchSize() {
+    OffsetDateTime cutoff = OffsetDateTime.ofInstant(Instant.EPOCH, ZoneId.systemDefault());
+    when(policy.getCutoffDate(Granularity.DAILY)).thenReturn(cutoff);
+    int batchSize = properties.getPurgeBatchSize();
+    properties.setPurgeBatchSize(0);
+    try {
+      assertThrows(IllegalArgumentException.class, () -> controller.purgeSnapshots());
+    } finally {
+      properties.setPurgeBatchSize(batchSize);
+    }
+    verifyNoInteractions(repository);
   }
 }
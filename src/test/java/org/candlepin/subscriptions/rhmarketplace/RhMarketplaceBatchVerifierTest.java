@@ -0,0 +1,216 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.rhmarketplace;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Set;
+import org.candlepin.subscriptions.rhmarketplace.api.model.StatusResponse;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class RhMarketplaceBatchVerifierTest {
+
+  private RhMarketplaceService rhMarketplaceService;
+  private RhMarketplacePendingBatches pendingBatchStore;
+  private MeterRegistry registry;
+  private RhMarketplaceProperties properties;
+  private RhMarketplaceBatchVerifier verifier;
+
+  @BeforeEach
+  void setup() {
+    rhMarketplaceService = mock(RhMarketplaceService.class);
+    pendingBatchStore = mock(RhMarketplacePendingBatches.class);
+    registry = new SimpleMeterRegistry();
+    properties = new RhMarketplaceProperties();
+    properties.setMaxAttempts(2);
+    properties.setBackOffInitialInterval(Duration.ZERO);
+    properties.setBackOffMaxInterval(Duration.ZERO);
+    properties.setBackOffMultiplier(2.0);
+    verifier =
+        new RhMarketplaceBatchVerifier(
+            rhMarketplaceService,
+            pendingBatchStore,
+            properties,
+            new ApplicationClock(),
+            registry);
+  }
+
+  @Test
+  void testRecordsAcceptedBatch() throws ApiException {
+    when(rhMarketplaceService.getUsageBatchStatus("foo"))
+        .thenReturn(new StatusResponse().status("accepted"));
+
+    verifier.verifyBatches(Set.of("foo"));
+    verifier.verifyDueBatches();
+
+    assertEquals(
+        1.0, registry.counter("rhsm-subscriptions.rh-marketplace.batch.accepted").count());
+    assertEquals(
+        0.0, registry.get("rhsm-subscriptions.rh-marketplace.batch.pending").gauge().value());
+  }
+
+  @Test
+  void testRecordsRejectedBatch() throws ApiException {
+    when(rhMarketplaceService.getUsageBatchStatus("foo"))
+        .thenReturn(new StatusResponse().status("failed"));
+
+    verifier.verifyBatches(Set.of("foo"));
+    verifier.verifyDueBatches();
+
+    assertEquals(
+        1.0, registry.counter("rhsm-subscriptions.rh-marketplace.batch.rejected").count());
+  }
+
+  @Test
+  void testRecordsUnverifiedBatchAfterMaxAttempts() throws ApiException {
+    when(rhMarketplaceService.getUsageBatchStatus("foo"))
+        .thenReturn(new StatusResponse().status("inprogress"));
+
+    verifier.verifyBatches(Set.of("foo"));
+    verifier.verifyDueBatches();
+
+    verify(rhMarketplaceService, times(2)).getUsageBatchStatus("foo");
+    assertEquals(
+        1.0, registry.counter("rhsm-subscriptions.rh-marketplace.batch.unverified").count());
+    verify(pendingBatchStore).delete("foo");
+  }
+
+  @Test
+  void testSavesBatchUntilVerified() throws ApiException {
+    when(rhMarketplaceService.getUsageBatchStatus("foo"))
+        .thenReturn(new StatusResponse().status("accepted"));
+
+    verifier.verifyBatches(Set.of("foo"));
+    verify(pendingBatchStore).save(eq("foo"), any(OffsetDateTime.class), any());
+    verify(pendingBatchStore, never()).delete(any());
+
+    verifier.verifyDueBatches();
+    verify(pendingBatchStore).delete("foo");
+  }
+
+  @Test
+  void testClaimsSavedBatches() throws ApiException {
+    var submitted = OffsetDateTime.parse("2022-07-01T00:00:00Z");
+    when(pendingBatchStore.claim(any(), any(), any(), anyInt()))
+        .thenReturn(Map.of("foo", submitted));
+    when(rhMarketplaceService.getUsageBatchStatus("foo"))
+        .thenReturn(new StatusResponse().status("accepted"));
+
+    verifier.claimPendingBatches();
+    assertEquals(
+        1.0, registry.get("rhsm-subscriptions.rh-marketplace.batch.pending").gauge().value());
+
+    verifier.verifyDueBatches();
+    assertEquals(
+        1.0, registry.counter("rhsm-subscriptions.rh-marketplace.batch.accepted").count());
+    verify(pendingBatchStore).delete("foo");
+    verify(pendingBatchStore, never()).save(any(), any(), any());
+  }
+
+  @Test
+  void testClaimsOnlyBatchesOfStaleOwnersUpToMaxPending() {
+    properties.setMaxPendingBatches(2);
+    properties.setBatchVerificationClaimTimeout(Duration.ofMinutes(5));
+    var owner = ArgumentCaptor.forClass(String.class);
+    var now = ArgumentCaptor.forClass(OffsetDateTime.class);
+    var staleBefore = ArgumentCaptor.forClass(OffsetDateTime.class);
+
+    verifier.verifyBatches(Set.of("foo"));
+    verifier.claimPendingBatches();
+
+    verify(pendingBatchStore).claim(owner.capture(), now.capture(), staleBefore.capture(), eq(1));
+    verify(pendingBatchStore).save(eq("foo"), any(OffsetDateTime.class), eq(owner.getValue()));
+    assertEquals(now.getValue().minusMinutes(5), staleBefore.getValue());
+  }
+
+  @Test
+  void testRenewsClaimOfOwnBatches() {
+    verifier.verifyBatches(Set.of("foo"));
+    var owner = ArgumentCaptor.forClass(String.class);
+    verify(pendingBatchStore).save(eq("foo"), any(OffsetDateTime.class), owner.capture());
+
+    verifier.renewClaim();
+
+    verify(pendingBatchStore).heartbeat(eq(owner.getValue()), any(OffsetDateTime.class));
+    verify(pendingBatchStore).claim(eq(owner.getValue()), any(), any(), anyInt());
+  }
+
+  @Test
+  void testDropsBatchesBeyondMaxPending() {
+    properties.setMaxPendingBatches(1);
+
+    verifier.verifyBatches(Set.of("foo"));
+    verifier.verifyBatches(Set.of("bar"));
+
+    assertEquals(
+        1.0, registry.get("rhsm-subscriptions.rh-marketplace.batch.pending").gauge().value());
+    assertEquals(1.0, registry.counter("rhsm-subscriptions.rh-marketplace.batch.dropped").count());
+    verify(pendingBatchStore).save(eq("foo"), any(OffsetDateTime.class), any());
+    verify(pendingBatchStore, never()).save(eq("bar"), any(), any());
+  }
+
+  @Test
+  void testChecksBatchesAgainOnlyAfterBackOff() throws ApiException {
+    properties.setBackOffInitialInterval(Duration.ofSeconds(1));
+    properties.setBackOffMaxInterval(Duration.ofSeconds(4));
+    var clock = mock(Clock.class);
+    var start = Instant.parse("2022-07-01T00:00:00Z");
+    when(clock.getZone()).thenReturn(ZoneOffset.UTC);
+    when(clock.instant()).thenReturn(start);
+    verifier =
+        new RhMarketplaceBatchVerifier(
+            rhMarketplaceService,
+            pendingBatchStore,
+            properties,
+            new ApplicationClock(clock),
+            registry);
+    when(rhMarketplaceService.getUsageBatchStatus("foo"))
+        .thenReturn(new StatusResponse().status("inprogress"));
+
+    verifier.verifyBatches(Set.of("foo"));
+    verifier.verifyDueBatches();
+    verifyNoInteractions(rhMarketplaceService);
+
+    when(clock.instant()).thenReturn(start.plusSeconds(1));
+    verifier.verifyDueBatches();
+    verify(rhMarketplaceService, times(1)).getUsageBatchStatus("foo");
+    assertEquals(
+        1.0, registry.get("rhsm-subscriptions.rh-marketplace.batch.pending").gauge().value());
+    assertEquals(
+        1.0,
+        registry
+            .get("rhsm-subscriptions.rh-marketplace.batch.verification.lag.seconds")
+            .gauge()
+            .value());
+  }
+}
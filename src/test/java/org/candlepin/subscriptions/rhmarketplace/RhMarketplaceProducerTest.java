@@ -26,6 +26,7 @@ import static org.mockito.Mockito.*;
 
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Set;
 import org.candlepin.subscriptions.exception.SubscriptionsException;
 import org.candlepin.subscriptions.rhmarketplace.api.model.BatchStatus;
 import org.candlepin.subscriptions.rhmarketplace.api.model.StatusResponse;
@@ -43,7 +44,11 @@ class RhMarketplaceProducerTest {
     MeterRegistry registry = new SimpleMeterRegistry();
     RhMarketplaceProducer rhMarketplaceProducer =
         new RhMarketplaceProducer(
-            rhMarketplaceService, retryTemplate, registry, new RhMarketplaceProperties());
+            rhMarketplaceService,
+            retryTemplate,
+            registry,
+            new RhMarketplaceProperties(),
+            mock(RhMarketplaceBatchVerifier.class));
     var rejectedCounter = registry.counter("rhsm-subscriptions.rh-marketplace.batch.rejected");
 
     when(rhMarketplaceService.submitUsageEvents(any())).thenThrow(SubscriptionsException.class);
@@ -57,76 +62,30 @@ class RhMarketplaceProducerTest {
   }
 
   @Test
-  void testMarketplaceProducerRecordsSuccessfulBatch() throws ApiException {
+  void testMarketplaceProducerQueuesBatchesForVerification() throws ApiException {
     RetryTemplate retryTemplate = new RetryTemplateBuilder().maxAttempts(2).noBackoff().build();
     RhMarketplaceService rhMarketplaceService = mock(RhMarketplaceService.class);
+    RhMarketplaceBatchVerifier batchVerifier = mock(RhMarketplaceBatchVerifier.class);
     MeterRegistry registry = new SimpleMeterRegistry();
     RhMarketplaceProducer rhMarketplaceProducer =
         new RhMarketplaceProducer(
-            rhMarketplaceService, retryTemplate, registry, new RhMarketplaceProperties());
-    var acceptedCounter = registry.counter("rhsm-subscriptions.rh-marketplace.batch.accepted");
+            rhMarketplaceService,
+            retryTemplate,
+            registry,
+            new RhMarketplaceProperties(),
+            batchVerifier);
 
     when(rhMarketplaceService.submitUsageEvents(any()))
         .thenReturn(
             new StatusResponse()
                 .status("inprogress")
                 .addDataItem(new BatchStatus().batchId("foo")));
-    when(rhMarketplaceService.getUsageBatchStatus("foo"))
-        .thenReturn(new StatusResponse().status("accepted"));
 
     var usageRequest = new UsageRequest();
     rhMarketplaceProducer.submitUsageRequest(usageRequest);
 
-    assertEquals(1.0, acceptedCounter.count());
-  }
-
-  @Test
-  void testMarketplaceProducerRecordsUnverifiedBatch() throws ApiException {
-    RetryTemplate retryTemplate = new RetryTemplateBuilder().maxAttempts(2).noBackoff().build();
-    RhMarketplaceService rhMarketplaceService = mock(RhMarketplaceService.class);
-    MeterRegistry registry = new SimpleMeterRegistry();
-    RhMarketplaceProducer rhMarketplaceProducer =
-        new RhMarketplaceProducer(
-            rhMarketplaceService, retryTemplate, registry, new RhMarketplaceProperties());
-    var unverifiedCounter = registry.counter("rhsm-subscriptions.rh-marketplace.batch.unverified");
-
-    when(rhMarketplaceService.submitUsageEvents(any()))
-        .thenReturn(
-            new StatusResponse()
-                .status("inprogress")
-                .addDataItem(new BatchStatus().batchId("foo")));
-    when(rhMarketplaceService.getUsageBatchStatus("foo"))
-        .thenReturn(new StatusResponse().status("inprogress"));
-
-    var usageRequest = new UsageRequest();
-    rhMarketplaceProducer.submitUsageRequest(usageRequest);
-
-    verify(rhMarketplaceService, times(2)).getUsageBatchStatus("foo");
-    assertEquals(1.0, unverifiedCounter.count());
-  }
-
-  @Test
-  void testMarketplaceProducerRecordsRejectedBatch() throws ApiException {
-    RetryTemplate retryTemplate = new RetryTemplateBuilder().maxAttempts(2).noBackoff().build();
-    RhMarketplaceService rhMarketplaceService = mock(RhMarketplaceService.class);
-    MeterRegistry registry = new SimpleMeterRegistry();
-    RhMarketplaceProducer rhMarketplaceProducer =
-        new RhMarketplaceProducer(
-            rhMarketplaceService, retryTemplate, registry, new RhMarketplaceProperties());
-    var rejectedCounter = registry.counter("rhsm-subscriptions.rh-marketplace.batch.rejected");
-
-    when(rhMarketplaceService.submitUsageEvents(any()))
-        .thenReturn(
-            new StatusResponse()
-                .status("inprogress")
-                .addDataItem(new BatchStatus().batchId("foo")));
-    when(rhMarketplaceService.getUsageBatchStatus("foo"))
-        .thenReturn(new StatusResponse().status("failed"));
-
-    var usageRequest = new UsageRequest();
-    rhMarketplaceProducer.submitUsageRequest(usageRequest);
-
-    assertEquals(1.0, rejectedCounter.count());
+    verify(batchVerifier).verifyBatches(Set.of("foo"));
+    verify(rhMarketplaceService, never()).getUsageBatchStatus(any());
   }
 
   @Test
@@ -137,7 +96,12 @@ class RhMarketplaceProducerTest {
     var properties = new RhMarketplaceProperties();
     properties.setAmendmentNotSupportedMarker("(amendments) is not available");
     RhMarketplaceProducer rhMarketplaceProducer =
-        new RhMarketplaceProducer(rhMarketplaceService, retryTemplate, registry, properties);
+        new RhMarketplaceProducer(
+            rhMarketplaceService,
+            retryTemplate,
+            registry,
+            properties,
+            mock(RhMarketplaceBatchVerifier.class));
     when(rhMarketplaceService.submitUsageEvents(any()))
         .thenReturn(
             new StatusResponse()
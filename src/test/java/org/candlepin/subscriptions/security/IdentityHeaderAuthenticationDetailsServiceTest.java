@@ -39,11 +39,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 @SpringBootTest
 @ActiveProfiles("test")
@@ -96,6 +99,31 @@ class IdentityHeaderAuthenticationDetailsServiceTest {
     assertThat(extractRoles(true), Matchers.contains(RoleProvider.SWATCH_ADMIN_ROLE));
   }
 
+  @Test
+  void testPermissionsCachedPerIdentity() throws RbacApiException {
+    when(rbacApi.getCurrentUserAccess("subscriptions"))
+        .thenReturn(List.of(new Access().permission("subscriptions:reports:read")));
+    try {
+      withIdentityHeader("cached-identity-a");
+      rbacService.getPermissions("subscriptions");
+      assertEquals(
+          List.of("subscriptions:reports:read"), rbacService.getPermissions("subscriptions"));
+      verify(rbacApi, times(1)).getCurrentUserAccess("subscriptions");
+
+      withIdentityHeader("cached-identity-b");
+      rbacService.getPermissions("subscriptions");
+      verify(rbacApi, times(2)).getCurrentUserAccess("subscriptions");
+    } finally {
+      RequestContextHolder.resetRequestAttributes();
+    }
+  }
+
+  private void withIdentityHeader(String identity) {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.addHeader("x-rh-identity", identity);
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+  }
+
   private Collection<String> extractRoles(boolean devMode) {
     SecurityProperties props = new SecurityProperties();
     RbacProperties rbacProps = new RbacProperties();
@@ -28,6 +28,7 @@ import org.candlepin.subscriptions.db.AccountConfigRepository;
 import org.candlepin.subscriptions.exception.OptInRequiredException;
 import org.candlepin.subscriptions.utilization.api.model.OptInConfig;
 import org.candlepin.subscriptions.utilization.api.model.OptInConfigData;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -42,8 +43,15 @@ class OptInCheckerTest {
 
   @Autowired OptInChecker checker;
 
+  @Autowired OptInStatusCache optInStatusCache;
+
   @MockBean AccountConfigRepository accountConfigRepository;
 
+  @BeforeEach
+  void setup() {
+    optInStatusCache.evict("owner");
+  }
+
   @Test
   @WithInvalidPrincipal
   void testBadPrincipal() {
@@ -80,4 +88,19 @@ class OptInCheckerTest {
     Authentication auth = SecurityContextHolder.getContext().getAuthentication();
     assertTrue(checker.checkAccess(auth));
   }
+
+  @Test
+  @WithMockRedHatPrincipal
+  void testOptedInOrgIsCachedUntilEvicted() {
+    when(accountConfigRepository.existsByOrgId("owner")).thenReturn(true);
+
+    Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+    assertTrue(checker.checkAccess(auth));
+    assertTrue(checker.checkAccess(auth));
+    verify(accountConfigRepository, times(1)).existsByOrgId("owner");
+
+    when(accountConfigRepository.existsByOrgId("owner")).thenReturn(false);
+    optInStatusCache.evict("owner");
+    assertThrows(OptInRequiredException.class, () -> checker.checkAccess(auth));
+  }
 }
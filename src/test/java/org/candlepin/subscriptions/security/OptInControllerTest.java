@@ -41,6 +41,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.transaction.TestTransaction;
 import org.springframework.transaction.annotation.Transactional;
 
 @Transactional
@@ -54,6 +55,8 @@ class OptInControllerTest {
 
   @Autowired private AccountService accountService;
 
+  @Autowired private OptInStatusCache optInStatusCache;
+
   private OptInController controller;
   private ApplicationClock clock;
 
@@ -61,7 +64,8 @@ class OptInControllerTest {
   void setupTest() {
     clock = new FixedClockConfiguration().fixedClock();
     TimeZone.setDefault(TimeZone.getTimeZone(clock.getClock().getZone()));
-    controller = new OptInController(clock, accountRepo, orgRepo, accountService);
+    controller =
+        new OptInController(clock, accountRepo, orgRepo, accountService, optInStatusCache);
   }
 
   @Test
@@ -186,7 +190,7 @@ class OptInControllerTest {
 
     AccountService mockAccountService = mock(AccountService.class);
     OptInController controllerWithMockApi =
-        new OptInController(clock, accountRepo, orgRepo, mockAccountService);
+        new OptInController(clock, accountRepo, orgRepo, mockAccountService, optInStatusCache);
     controllerWithMockApi.optInByAccountNumber("account123", OptInType.API);
 
     verifyNoInteractions(mockAccountService);
@@ -211,7 +215,7 @@ class OptInControllerTest {
 
     AccountService mockAccountService = mock(AccountService.class);
     OptInController controllerWithMockApi =
-        new OptInController(clock, accountRepo, orgRepo, mockAccountService);
+        new OptInController(clock, accountRepo, orgRepo, mockAccountService, optInStatusCache);
     controllerWithMockApi.optInByOrgId("org123", OptInType.API);
 
     verifyNoInteractions(mockAccountService);
@@ -228,6 +232,33 @@ class OptInControllerTest {
     assertTrue(orgRepo.findById(expectedOrgId).isEmpty());
   }
 
+  @Test
+  void testOptInAndOptOutEvictCachedStatus() {
+    OptInStatusCache mockCache = mock(OptInStatusCache.class);
+    OptInController controllerWithMockCache =
+        new OptInController(clock, accountRepo, orgRepo, accountService, mockCache);
+
+    controllerWithMockCache.optIn("my-account", "my-org", OptInType.API);
+    verify(mockCache).evictAfterCommit("my-org");
+
+    controllerWithMockCache.optOut("my-org");
+    verify(mockCache, times(2)).evictAfterCommit("my-org");
+  }
+
+  @Test
+  void testOptOutIsSeenDespiteCachedStatus() {
+    controller.optIn("my-account", "my-org", OptInType.API);
+    assertTrue(optInStatusCache.isOptedIn("my-org"));
+
+    controller.optOut("my-org");
+    // not evicted until the opt-out commits, so no concurrent check can re-cache the opt-in
+    assertTrue(optInStatusCache.isOptedIn("my-org"));
+
+    TestTransaction.flagForCommit();
+    TestTransaction.end();
+    assertFalse(optInStatusCache.isOptedIn("my-org"));
+  }
+
   @Test
   void testGetOptInConfig() {
     String expectedAccount = "account123456";
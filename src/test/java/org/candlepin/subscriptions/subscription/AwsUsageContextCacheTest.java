@@ -0,0 +1,170 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.subscription;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+import org.candlepin.subscriptions.subscription.AwsUsageContextCache.LookupKey;
+import org.candlepin.subscriptions.utilization.admin.api.model.AwsUsageContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class AwsUsageContextCacheTest {
+
+  private static final LookupKey ORG_KEY =
+      new LookupKey(null, "org123", "rhosak", "Premium", "Production", "123");
+
+  private final AwsUsageContextCache cache =
+      new AwsUsageContextCache(new SubscriptionServiceProperties());
+
+  @AfterEach
+  void clearSynchronization() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    TransactionSynchronizationManager.unbindResourceIfPossible(cache);
+  }
+
+  @Test
+  void testContextsAreCachedPerLookup() {
+    List<AwsUsageContext> first = cache.get(ORG_KEY, this::resolve);
+
+    assertSame(first, cache.get(ORG_KEY, this::resolve));
+  }
+
+  @Test
+  void testInvalidateDropsContextsOfOwner() {
+    List<AwsUsageContext> first = cache.get(ORG_KEY, this::resolve);
+    cache.invalidate("org123", null);
+
+    assertNotSame(first, cache.get(ORG_KEY, this::resolve));
+  }
+
+  @Test
+  void testInvalidateKeepsContextsOfOtherOwners() {
+    List<AwsUsageContext> first = cache.get(ORG_KEY, this::resolve);
+    cache.invalidate("org456", "account456");
+
+    assertSame(first, cache.get(ORG_KEY, this::resolve));
+  }
+
+  @Test
+  void testInvalidateAfterCommitWaitsForCommit() {
+    List<AwsUsageContext> first = cache.get(ORG_KEY, this::resolve);
+    TransactionSynchronizationManager.initSynchronization();
+
+    cache.invalidateAfterCommit("org123", null);
+    assertSame(first, cache.get(ORG_KEY, this::resolve));
+
+    completeTransaction(true);
+    assertNotSame(first, cache.get(ORG_KEY, this::resolve));
+  }
+
+  @Test
+  void testInvalidateAfterCommitSkippedOnRollback() {
+    List<AwsUsageContext> first = cache.get(ORG_KEY, this::resolve);
+    TransactionSynchronizationManager.initSynchronization();
+
+    cache.invalidateAllAfterCommit();
+    completeTransaction(false);
+
+    assertSame(first, cache.get(ORG_KEY, this::resolve));
+  }
+
+  @Test
+  void testContextsResolvedDuringInvalidationAreNotCached() {
+    List<AwsUsageContext> stale =
+        cache.get(
+            ORG_KEY,
+            () -> {
+              // The subscription changes while the resolver is still running.
+              cache.invalidateAfterCommit("org123", null);
+              return resolve();
+            });
+
+    assertNotSame(stale, cache.get(ORG_KEY, this::resolve));
+  }
+
+  @Test
+  void testContextsResolvedDuringInvalidationOfOtherOwnerAreCached() {
+    List<AwsUsageContext> first =
+        cache.get(
+            ORG_KEY,
+            () -> {
+              cache.invalidateAfterCommit("org456", "account456");
+              return resolve();
+            });
+
+    assertSame(first, cache.get(ORG_KEY, this::resolve));
+  }
+
+  @Test
+  void testContextsResolvedDuringInvalidationOfAllAreNotCached() {
+    List<AwsUsageContext> stale =
+        cache.get(
+            ORG_KEY,
+            () -> {
+              cache.invalidateAllAfterCommit();
+              return resolve();
+            });
+
+    assertNotSame(stale, cache.get(ORG_KEY, this::resolve));
+  }
+
+  @Test
+  void testContextsResolvedBeforeCommittedInvalidationAreNotCached() {
+    TransactionSynchronizationManager.initSynchronization();
+    cache.invalidateAfterCommit("org123", null);
+
+    List<AwsUsageContext> stale =
+        cache.get(
+            ORG_KEY,
+            () -> {
+              // The change commits after the resolver read the previous subscription.
+              completeTransaction(true);
+              return resolve();
+            });
+
+    assertNotSame(stale, cache.get(ORG_KEY, this::resolve));
+  }
+
+  private List<AwsUsageContext> resolve() {
+    return List.of(new AwsUsageContext());
+  }
+
+  private void completeTransaction(boolean committed) {
+    var synchronizations = TransactionSynchronizationManager.getSynchronizations();
+    TransactionSynchronizationManager.clearSynchronization();
+    if (committed) {
+      synchronizations.forEach(TransactionSynchronization::afterCommit);
+    }
+    synchronizations.forEach(
+        s ->
+            s.afterCompletion(
+                committed
+                    ? TransactionSynchronization.STATUS_COMMITTED
+                    : TransactionSynchronization.STATUS_ROLLED_BACK));
+  }
+}
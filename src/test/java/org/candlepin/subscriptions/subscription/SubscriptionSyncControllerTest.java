@@ -39,6 +39,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.IntStream;
 import org.candlepin.subscriptions.capacity.CapacityReconciliationController;
 import org.candlepin.subscriptions.capacity.files.ProductAllowlist;
@@ -100,6 +105,8 @@ class SubscriptionSyncControllerTest {
   private OffsetDateTime rangeStart = OffsetDateTime.now().minusDays(5);
   private OffsetDateTime rangeEnd = OffsetDateTime.now().plusDays(5);
 
+  private final Map<FutureTask<List<Subscription>>, Thread> syncThreads = new HashMap<>();
+
   @Autowired
   @Qualifier("syncSubscriptionTasks")
   private TaskQueueProperties taskQueueProperties;
@@ -505,6 +512,87 @@ class SubscriptionSyncControllerTest {
     verify(subscriptionService, times(1)).getSubscriptionsByOrgId("org1000");
   }
 
+  @Test
+  void concurrentLookupsOfSameOrgSyncSubscriptionsOnce() throws Exception {
+    List<Subscription> result = Collections.singletonList(paygSubscription("abc"));
+    AtomicBoolean synced = new AtomicBoolean();
+    CountDownLatch syncStarted = new CountDownLatch(1);
+    CountDownLatch releaseSync = new CountDownLatch(1);
+    CountDownLatch secondLookedUp = new CountDownLatch(2);
+    when(mockProfile.getOfferingProductNamesForTag(anyString()))
+        .thenReturn(Set.of("OpenShift Container Platform"));
+    when(subscriptionRepository.findByCriteria(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              if (synced.get()) {
+                return result;
+              }
+              secondLookedUp.countDown();
+              return new ArrayList<>();
+            });
+    when(subscriptionService.getSubscriptionsByOrgId("org1000"))
+        .thenAnswer(
+            invocation -> {
+              syncStarted.countDown();
+              awaitQuietly(releaseSync);
+              synced.set(true);
+              return Collections.emptyList();
+            });
+
+    FutureTask<List<Subscription>> first = findSubscriptionsInThread("abc");
+    assertTrue(syncStarted.await(10, TimeUnit.SECONDS));
+    FutureTask<List<Subscription>> second = findSubscriptionsInThread("abc");
+    assertTrue(secondLookedUp.await(10, TimeUnit.SECONDS));
+    awaitWaitingForSync(second);
+    releaseSync.countDown();
+
+    assertEquals(result, first.get(10, TimeUnit.SECONDS));
+    assertEquals(result, second.get(10, TimeUnit.SECONDS));
+    verify(subscriptionService, times(1)).getSubscriptionsByOrgId("org1000");
+  }
+
+  @Test
+  void failedSyncReleasesWaitingLookupsAndAllowsNextSync() throws Exception {
+    CountDownLatch syncStarted = new CountDownLatch(1);
+    CountDownLatch releaseSync = new CountDownLatch(1);
+    CountDownLatch secondLookedUp = new CountDownLatch(2);
+    when(mockProfile.getOfferingProductNamesForTag(anyString()))
+        .thenReturn(Set.of("OpenShift Container Platform"));
+    when(subscriptionRepository.findByCriteria(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              secondLookedUp.countDown();
+              return new ArrayList<>();
+            });
+    when(subscriptionService.getSubscriptionsByOrgId("org1000"))
+        .thenAnswer(
+            invocation -> {
+              syncStarted.countDown();
+              awaitQuietly(releaseSync);
+              throw new IllegalStateException("upstream unavailable");
+            })
+        .thenReturn(Collections.emptyList());
+
+    FutureTask<List<Subscription>> first = findSubscriptionsInThread("abc");
+    assertTrue(syncStarted.await(10, TimeUnit.SECONDS));
+    FutureTask<List<Subscription>> second = findSubscriptionsInThread("abc");
+    assertTrue(secondLookedUp.await(10, TimeUnit.SECONDS));
+    awaitWaitingForSync(second);
+    releaseSync.countDown();
+
+    ExecutionException failure =
+        assertThrows(ExecutionException.class, () -> first.get(10, TimeUnit.SECONDS));
+    assertThat(failure.getCause(), instanceOf(IllegalStateException.class));
+    // released by the rolled back sync well before the wait timeout
+    assertEquals(Collections.emptyList(), second.get(10, TimeUnit.SECONDS));
+    verify(subscriptionService, times(1)).getSubscriptionsByOrgId("org1000");
+
+    // the failed sync no longer counts as in progress, so the next lookup syncs again
+    subscriptionSyncController.findSubscriptionsAndSyncIfNeeded(
+        "1000", Optional.of("org1000"), paygKey("abc"), rangeStart, rangeEnd, false);
+    verify(subscriptionService, times(2)).getSubscriptionsByOrgId("org1000");
+  }
+
   @Test
   void terminateActivePAYGSubscriptionTest() {
     Subscription s = createSubscription("123", "testsku", "456");
@@ -663,6 +751,60 @@ class SubscriptionSyncControllerTest {
     assertEquals("account123", existing.getAccountNumber());
   }
 
+  private Key paygKey(String billingProviderId) {
+    return new Key(
+        String.valueOf(1),
+        ServiceLevel.STANDARD,
+        Usage.PRODUCTION,
+        BillingProvider.RED_HAT,
+        billingProviderId);
+  }
+
+  private Subscription paygSubscription(String billingProviderId) {
+    Subscription subscription = new Subscription();
+    subscription.setStartDate(OffsetDateTime.now().minusDays(7));
+    subscription.setEndDate(OffsetDateTime.now().plusDays(7));
+    subscription.setBillingProvider(BillingProvider.RED_HAT);
+    subscription.setBillingProviderId(billingProviderId);
+    return subscription;
+  }
+
+  private FutureTask<List<Subscription>> findSubscriptionsInThread(String billingProviderId) {
+    FutureTask<List<Subscription>> task =
+        new FutureTask<>(
+            () ->
+                subscriptionSyncController.findSubscriptionsAndSyncIfNeeded(
+                    "1000",
+                    Optional.of("org1000"),
+                    paygKey(billingProviderId),
+                    rangeStart,
+                    rangeEnd,
+                    false));
+    Thread thread = new Thread(task);
+    syncThreads.put(task, thread);
+    thread.start();
+    return task;
+  }
+
+  /** Wait until the lookup is parked waiting for the sync already in progress. */
+  private void awaitWaitingForSync(FutureTask<List<Subscription>> task)
+      throws InterruptedException {
+    Thread thread = syncThreads.get(task);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (thread.getState() != Thread.State.TIMED_WAITING) {
+      assertTrue(System.nanoTime() < deadline, "Lookup never waited for the sync in progress");
+      Thread.sleep(10);
+    }
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
   private Subscription createSubscription(String orgId, String sku, String subId) {
     final Subscription subscription = new Subscription();
     subscription.setSubscriptionId(subId);
@@ -59,6 +59,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Page;
 import org.springframework.test.context.ActiveProfiles;
 
 @SpringBootTest
@@ -86,6 +87,9 @@ class SubscriptionTableControllerOnDemandTest {
     when(offeringRepository.findByProductName(any()))
         .thenReturn(
             Arrays.asList(MW01882.toOffering(), MW01882RN.toOffering(), MW01882S.toOffering()));
+    when(subscriptionCapacityViewRepository.findSkusBy(
+            any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(Page.empty());
   }
 
   private static final SubCapSpec MW01882 =
@@ -31,7 +31,6 @@ import static org.mockito.Mockito.when;
 
 import java.time.OffsetDateTime;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 import javax.ws.rs.core.Response;
@@ -53,6 +52,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 
 @SpringBootTest
@@ -75,6 +77,9 @@ class SubscriptionTableControllerTest {
     // The @ReportingAccessRequired annotation checks if the org of the user is allowlisted
     // to receive reports or not. This org will be used throughout most tests.
     when(accountListSource.containsReportingAccount("account123456")).thenReturn(true);
+    when(subscriptionCapacityViewRepository.findSkusBy(
+            any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(Page.empty());
   }
 
   private static final SubCapSpec RH0180191 =
@@ -169,8 +174,11 @@ class SubscriptionTableControllerTest {
     List<SubscriptionCapacityView> givenCapacities =
         givenCapacities(Org.STANDARD, productId, RH0180191.withSub(expectedSub));
 
+    when(subscriptionCapacityViewRepository.findSkusBy(
+            any(), any(), anyString(), any(), any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(skuPage(givenCapacities));
     when(subscriptionCapacityViewRepository.findAllBy(
-            any(), any(), anyString(), any(), any(), any(), any(), any()))
+            any(), any(), anyString(), any(), any(), any(), any(), any(), any()))
         .thenReturn(givenCapacities);
 
     // When requesting a SKU capacity report for the eng product,
@@ -205,8 +213,11 @@ class SubscriptionTableControllerTest {
             productId,
             RH0180191.withSub(expectedOlderSub),
             RH0180191.withSub(expectedNewerSub));
+    when(subscriptionCapacityViewRepository.findSkusBy(
+            any(), any(), anyString(), any(), any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(skuPage(givenCapacities));
     when(subscriptionCapacityViewRepository.findAllBy(
-            any(), any(), anyString(), any(), any(), any(), any(), any()))
+            any(), any(), anyString(), any(), any(), any(), any(), any(), any()))
         .thenReturn(givenCapacities);
 
     // When requesting a SKU capacity report for the eng product,
@@ -253,8 +264,11 @@ class SubscriptionTableControllerTest {
             productId,
             RH0180191.withSub(expectedNewerSub),
             RH00604F5.withSub(expectedOlderSub));
+    when(subscriptionCapacityViewRepository.findSkusBy(
+            any(), any(), anyString(), any(), any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(skuPage(givenCapacities));
     when(subscriptionCapacityViewRepository.findAllBy(
-            any(), any(), anyString(), any(), any(), any(), any(), any()))
+            any(), any(), anyString(), any(), any(), any(), any(), any(), any()))
         .thenReturn(givenCapacities);
 
     // When requesting a SKU capacity report for the eng product, sorted by SKU
@@ -308,9 +322,9 @@ class SubscriptionTableControllerTest {
   void testGetSkuCapacityReportNoSub() {
     // Given an org with no active subs,
     ProductId productId = RHEL_SERVER;
-    when(subscriptionCapacityViewRepository.findAllBy(
-            any(), any(), anyString(), any(), any(), any(), any(), any()))
-        .thenReturn(Collections.emptyList());
+    when(subscriptionCapacityViewRepository.findSkusBy(
+            any(), any(), anyString(), any(), any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(Page.empty());
 
     // When requesting a SKU capacity report for an eng product,
     SkuCapacityReport actual =
@@ -334,6 +348,19 @@ class SubscriptionTableControllerTest {
             RH0180191.withSub(expectedOlderSub),
             RH0180191.withSub(expectedNewerSub));
 
+    when(subscriptionCapacityViewRepository.findSkusBy(
+            eq("owner123456"),
+            any(),
+            eq(RHEL.toString()),
+            eq(ServiceLevel._ANY),
+            eq(Usage._ANY),
+            any(),
+            any(),
+            any(),
+            any(),
+            any(),
+            any()))
+        .thenReturn(skuPage(givenCapacities));
     when(subscriptionCapacityViewRepository.findAllBy(
             eq("owner123456"),
             any(),
@@ -342,6 +369,7 @@ class SubscriptionTableControllerTest {
             eq(Usage._ANY),
             any(),
             any(),
+            any(),
             any()))
         .thenReturn(givenCapacities);
 
@@ -363,8 +391,21 @@ class SubscriptionTableControllerTest {
             RH0180191.withSub(expectedOlderSub),
             RH0180191.withSub(expectedNewerSub));
 
+    when(subscriptionCapacityViewRepository.findSkusBy(
+            any(),
+            any(),
+            any(),
+            eq(ServiceLevel.STANDARD),
+            any(),
+            any(),
+            any(),
+            any(),
+            any(),
+            any(),
+            any()))
+        .thenReturn(skuPage(givenCapacities));
     when(subscriptionCapacityViewRepository.findAllBy(
-            any(), any(), any(), eq(ServiceLevel.STANDARD), any(), any(), any(), any()))
+            any(), any(), any(), eq(ServiceLevel.STANDARD), any(), any(), any(), any(), any()))
         .thenReturn(givenCapacities);
 
     SkuCapacityReport reportForUnmatchedSLA =
@@ -411,8 +452,21 @@ class SubscriptionTableControllerTest {
             RH0180191.withSub(expectedOlderSub),
             RH0180191.withSub(expectedNewerSub));
 
+    when(subscriptionCapacityViewRepository.findSkusBy(
+            any(),
+            any(),
+            any(),
+            any(),
+            eq(Usage.PRODUCTION),
+            any(),
+            any(),
+            any(),
+            any(),
+            any(),
+            any()))
+        .thenReturn(skuPage(givenCapacities));
     when(subscriptionCapacityViewRepository.findAllBy(
-            any(), any(), any(), any(), eq(Usage.PRODUCTION), any(), any(), any()))
+            any(), any(), any(), any(), eq(Usage.PRODUCTION), any(), any(), any(), any()))
         .thenReturn(givenCapacities);
 
     SkuCapacityReport reportForUnmatchedUsage =
@@ -489,8 +543,13 @@ class SubscriptionTableControllerTest {
                     false)
                 .withSub(Sub.sub("1239", "1235", 4, 5, 7)));
 
+    when(subscriptionCapacityViewRepository.findSkusBy(
+            any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(
+            new PageImpl<>(
+                skuPage(givenCapacities).getContent().subList(0, 2), PageRequest.of(0, 2), 5));
     when(subscriptionCapacityViewRepository.findAllBy(
-            any(), any(), any(), any(), any(), any(), any(), any()))
+            any(), any(), any(), any(), any(), any(), any(), any(), any()))
         .thenReturn(givenCapacities);
 
     SkuCapacityReport reportWithOffsetAndLimit =
@@ -520,11 +579,53 @@ class SubscriptionTableControllerTest {
             RH0180192_SOCKETS.withSub(expectedOlderSub),
             RH0180194_SOCKETS_AND_CORES.withSub(expectedMuchOlderSub));
 
+    when(subscriptionCapacityViewRepository.findSkusBy(
+            any(),
+            any(),
+            any(),
+            eq(ServiceLevel.STANDARD),
+            any(),
+            any(),
+            any(),
+            eq(Uom.CORES),
+            any(),
+            any(),
+            any()))
+        .thenReturn(skuPage(capacitiesWithCores));
     when(subscriptionCapacityViewRepository.findAllBy(
-            any(), any(), any(), eq(ServiceLevel.STANDARD), any(), any(), any(), eq(Uom.CORES)))
+            any(),
+            any(),
+            any(),
+            eq(ServiceLevel.STANDARD),
+            any(),
+            any(),
+            any(),
+            eq(Uom.CORES),
+            any()))
         .thenReturn(capacitiesWithCores);
+    when(subscriptionCapacityViewRepository.findSkusBy(
+            any(),
+            any(),
+            any(),
+            eq(ServiceLevel.STANDARD),
+            any(),
+            any(),
+            any(),
+            eq(Uom.SOCKETS),
+            any(),
+            any(),
+            any()))
+        .thenReturn(skuPage(capacitiesWithSockets));
     when(subscriptionCapacityViewRepository.findAllBy(
-            any(), any(), any(), eq(ServiceLevel.STANDARD), any(), any(), any(), eq(Uom.SOCKETS)))
+            any(),
+            any(),
+            any(),
+            eq(ServiceLevel.STANDARD),
+            any(),
+            any(),
+            any(),
+            eq(Uom.SOCKETS),
+            any()))
         .thenReturn(capacitiesWithSockets);
 
     SkuCapacityReport reportForMatchingCoresUom =
@@ -581,9 +682,9 @@ class SubscriptionTableControllerTest {
 
   @Test
   void testShouldPopulateAnnualSubscriptionType() {
-    when(subscriptionCapacityViewRepository.findAllBy(
-            any(), any(), any(), any(), any(), any(), any(), any()))
-        .thenReturn(Collections.emptyList());
+    when(subscriptionCapacityViewRepository.findSkusBy(
+            any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(Page.empty());
 
     SkuCapacityReport report =
         subscriptionTableController.capacityReportBySku(
@@ -604,9 +705,9 @@ class SubscriptionTableControllerTest {
 
   @Test
   void testShouldPopulateOnDemandSubscriptionType() {
-    when(subscriptionCapacityViewRepository.findAllBy(
-            any(), any(), any(), any(), any(), any(), any(), any()))
-        .thenReturn(Collections.emptyList());
+    when(subscriptionCapacityViewRepository.findSkusBy(
+            any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(Page.empty());
 
     SkuCapacityReport report =
         subscriptionTableController.capacityReportBySku(
@@ -634,8 +735,11 @@ class SubscriptionTableControllerTest {
     List<SubscriptionCapacityView> givenCapacities =
         givenCapacities(Org.STANDARD, productId, RH0180195_UNLIMITED_USAGE.withSub(expectedSub));
 
+    when(subscriptionCapacityViewRepository.findSkusBy(
+            any(), any(), anyString(), any(), any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(skuPage(givenCapacities));
     when(subscriptionCapacityViewRepository.findAllBy(
-            any(), any(), anyString(), any(), any(), any(), any(), any()))
+            any(), any(), anyString(), any(), any(), any(), any(), any(), any()))
         .thenReturn(givenCapacities);
 
     // When requesting a SKU capacity report for the eng product,
@@ -651,60 +755,8 @@ class SubscriptionTableControllerTest {
   }
 
   @Test
-  void testShouldSortUnlimitedLastAscending() {
-    // Given an org with two active subs with different quantities for different SKUs,
-    // and the subs have an eng product with a socket capacity of 2,
-    // and the subs have different ending dates,
-    ProductId productId = RHEL_SERVER;
-    Sub expectedNewerSub = Sub.sub("1234", "1235", 4, 5, 7);
-    Sub expectedOlderSub = Sub.sub("1236", "1237", 5, 6, 6);
-    List<SubscriptionCapacityView> givenCapacities =
-        givenCapacities(
-            Org.STANDARD,
-            productId,
-            RH0180191.withSub(expectedNewerSub),
-            RH0180195_UNLIMITED_USAGE.withSub(expectedOlderSub));
-    when(subscriptionCapacityViewRepository.findAllBy(
-            any(), any(), anyString(), any(), any(), any(), any(), any()))
-        .thenReturn(givenCapacities);
-
-    // When requesting a SKU capacity report for the eng product, sorted by quantity
-    SkuCapacityReport actual =
-        subscriptionTableController.capacityReportBySku(
-            productId,
-            null,
-            null,
-            null,
-            null,
-            null,
-            null,
-            null,
-            null,
-            SkuCapacityReportSort.TOTAL_CAPACITY,
-            null);
-
-    // Then the report contains two inventory items containing a sub with appropriate
-    // quantity and capacities, and RH00604F5 is listed first.
-    assertEquals(
-        2,
-        actual.getData().size(),
-        "Both subs are for different SKUs so should collect into two capacity items.");
-
-    SkuCapacity actualItem = actual.getData().get(0);
-    assertEquals(RH0180191.sku, actualItem.getSku(), "Wrong SKU. (Incorrect ordering of SKUs?)");
-
-    actualItem = actual.getData().get(1);
-    assertEquals(
-        RH0180195_UNLIMITED_USAGE.sku,
-        actualItem.getSku(),
-        "Wrong SKU. (Incorrect ordering of SKUs?)");
-  }
-
-  @Test
-  void testShouldSortUnlimitedFirstDescending() {
-    // Given an org with two active subs with different quantities for different SKUs,
-    // and the subs have an eng product with a socket capacity of 2,
-    // and the subs have different ending dates,
+  void testShouldKeepSkuOrderOfPage() {
+    // Given an org with two active subs for different SKUs,
     ProductId productId = RHEL_SERVER;
     Sub expectedNewerSub = Sub.sub("1234", "1235", 4, 5, 7);
     Sub expectedOlderSub = Sub.sub("1236", "1237", 5, 6, 6);
@@ -714,11 +766,25 @@ class SubscriptionTableControllerTest {
             productId,
             RH0180191.withSub(expectedNewerSub),
             RH0180195_UNLIMITED_USAGE.withSub(expectedOlderSub));
+    // and the repository sorts the unlimited SKU first,
+    when(subscriptionCapacityViewRepository.findSkusBy(
+            any(),
+            any(),
+            anyString(),
+            any(),
+            any(),
+            any(),
+            any(),
+            any(),
+            eq(SkuCapacityReportSort.TOTAL_CAPACITY),
+            eq(SortDirection.DESC),
+            any()))
+        .thenReturn(new PageImpl<>(List.of(RH0180195_UNLIMITED_USAGE.sku, RH0180191.sku)));
     when(subscriptionCapacityViewRepository.findAllBy(
-            any(), any(), anyString(), any(), any(), any(), any(), any()))
+            any(), any(), anyString(), any(), any(), any(), any(), any(), any()))
         .thenReturn(givenCapacities);
 
-    // When requesting a SKU capacity report for the eng product, sorted by quantity
+    // When requesting a SKU capacity report for the eng product, sorted by total capacity
     SkuCapacityReport actual =
         subscriptionTableController.capacityReportBySku(
             productId,
@@ -733,21 +799,11 @@ class SubscriptionTableControllerTest {
             SkuCapacityReportSort.TOTAL_CAPACITY,
             SortDirection.DESC);
 
-    // Then the report contains two inventory items containing a sub with appropriate
-    // quantity and capacities, and RH0180195 is listed first.
-    assertEquals(
-        2,
-        actual.getData().size(),
-        "Both subs are for different SKUs so should collect into two capacity items.");
-
-    SkuCapacity actualItem = actual.getData().get(0);
+    // Then the report items follow the order of the SKU page.
     assertEquals(
-        RH0180195_UNLIMITED_USAGE.sku,
-        actualItem.getSku(),
+        List.of(RH0180195_UNLIMITED_USAGE.sku, RH0180191.sku),
+        actual.getData().stream().map(SkuCapacity::getSku).collect(Collectors.toList()),
         "Wrong SKU. (Incorrect ordering of SKUs?)");
-
-    actualItem = actual.getData().get(1);
-    assertEquals(RH0180191.sku, actualItem.getSku(), "Wrong SKU. (Incorrect ordering of SKUs?)");
   }
 
   @Test
@@ -759,8 +815,11 @@ class SubscriptionTableControllerTest {
     List<SubscriptionCapacityView> givenCapacities =
         givenCapacities(Org.STANDARD, productId, RH0180196_VIRTUAL_SOCKETS.withSub(expectedSub));
 
+    when(subscriptionCapacityViewRepository.findSkusBy(
+            any(), any(), anyString(), any(), any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(skuPage(givenCapacities));
     when(subscriptionCapacityViewRepository.findAllBy(
-            any(), any(), anyString(), any(), any(), any(), any(), any()))
+            any(), any(), anyString(), any(), any(), any(), any(), any(), any()))
         .thenReturn(givenCapacities);
 
     // When requesting a SKU capacity report for the eng product,
@@ -785,8 +844,11 @@ class SubscriptionTableControllerTest {
     List<SubscriptionCapacityView> givenCapacities =
         givenCapacities(Org.STANDARD, productId, RH0180197_VIRTUAL_CORES.withSub(expectedSub));
 
+    when(subscriptionCapacityViewRepository.findSkusBy(
+            any(), any(), anyString(), any(), any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(skuPage(givenCapacities));
     when(subscriptionCapacityViewRepository.findAllBy(
-            any(), any(), anyString(), any(), any(), any(), any(), any()))
+            any(), any(), anyString(), any(), any(), any(), any(), any(), any()))
         .thenReturn(givenCapacities);
 
     // When requesting a SKU capacity report for the eng product,
@@ -802,6 +864,16 @@ class SubscriptionTableControllerTest {
     assertCapacities(0, 8, Uom.CORES, actualItem);
   }
 
+  /** The page of SKUs the repository would return for the given capacities, sorted by SKU. */
+  private static Page<String> skuPage(List<SubscriptionCapacityView> capacities) {
+    return new PageImpl<>(
+        capacities.stream()
+            .map(SubscriptionCapacityView::getSku)
+            .distinct()
+            .sorted()
+            .collect(Collectors.toList()));
+  }
+
   private static void assertCapacities(
       int expectedPhysCap, int expectedVirtCap, Uom expectedUom, SkuCapacity actual) {
     assertEquals(expectedUom, actual.getUom(), "Wrong UOM");
@@ -24,8 +24,10 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
 import org.candlepin.subscriptions.db.model.BillingProvider;
+import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
 import org.candlepin.subscriptions.db.model.ServiceLevel;
 import org.candlepin.subscriptions.db.model.Usage;
+import org.candlepin.subscriptions.json.Measurement.Uom;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 
@@ -69,6 +71,43 @@ class AccountUsageCalculationTest {
     assertThat(calc.getProducts(), Matchers.containsInAnyOrder(p1, p2, p3));
   }
 
+  @Test
+  void testMerge() {
+    String p1 = "Product1";
+    String p2 = "Product2";
+
+    AccountUsageCalculation calc = new AccountUsageCalculation("Account1");
+    calc.getOrCreateCalculation(createUsageKey(p1)).addPhysical(4, 2, 1);
+    AccountUsageCalculation other = new AccountUsageCalculation("Account1");
+    other.setOrgId("Org1");
+    other.getOrCreateCalculation(createUsageKey(p1)).addPhysical(8, 4, 1);
+    other.getOrCreateCalculation(createUsageKey(p2)).addHypervisor(2, 2, 1);
+
+    calc.merge(other);
+
+    assertEquals("Org1", calc.getOrgId());
+    assertThat(calc.getProducts(), Matchers.containsInAnyOrder(p1, p2));
+    UsageCalculation p1Calc = calc.getCalculation(createUsageKey(p1));
+    assertEquals(
+        12.0, p1Calc.getTotals(HardwareMeasurementType.PHYSICAL).getMeasurement(Uom.CORES));
+    assertEquals(12.0, p1Calc.getTotals(HardwareMeasurementType.TOTAL).getMeasurement(Uom.CORES));
+    assertEquals(
+        2.0,
+        calc.getCalculation(createUsageKey(p2))
+            .getTotals(HardwareMeasurementType.TOTAL)
+            .getMeasurement(Uom.SOCKETS));
+  }
+
+  @Test
+  void testMergeWithDifferentOrgThrows() {
+    AccountUsageCalculation calc = new AccountUsageCalculation("Account1");
+    calc.setOrgId("Org1");
+    AccountUsageCalculation other = new AccountUsageCalculation("Account1");
+    other.setOrgId("Org2");
+
+    assertThrows(IllegalStateException.class, () -> calc.merge(other));
+  }
+
   private UsageCalculation.Key createUsageKey(String productId) {
     return new UsageCalculation.Key(
         productId, ServiceLevel.EMPTY, Usage.EMPTY, BillingProvider.EMPTY, "_ANY");
@@ -0,0 +1,141 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.candlepin.subscriptions.db.model.BillingProvider;
+import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
+import org.candlepin.subscriptions.db.model.Host;
+import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.Usage;
+import org.candlepin.subscriptions.json.Measurement.Uom;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+@SpringBootTest
+@ActiveProfiles({"worker", "test"})
+@Transactional
+class HostBatchOperationsTest {
+
+  private static final String ORG_ID = "org123";
+  private static final String INSTANCE_TYPE = "HBI_HOST";
+
+  @Autowired private HostBatchOperations operations;
+
+  @Test
+  void testSaveUpdateAndDeleteHosts() {
+    operations.ensureAccountServiceInventory(ORG_ID, INSTANCE_TYPE, "account123");
+    Host host1 = createHost("00000000-0000-0000-0000-000000000002");
+    Host host2 = createHost("00000000-0000-0000-0000-000000000001");
+    HostBatchOperations.Batch batch = operations.newBatch(1);
+    batch.save(null, host1);
+    batch.save(null, host2);
+    batch.flush();
+
+    List<Host> hosts = readHosts();
+    assertEquals(2, hosts.size());
+    // ordered by inventory ID
+    assertEquals(host2.getInventoryId(), hosts.get(0).getInventoryId());
+    assertEquals(host1.getInventoryId(), hosts.get(1).getInventoryId());
+    assertEquals(1, hosts.get(0).getBuckets().size());
+    assertEquals(4.0, hosts.get(0).getMeasurement(Uom.CORES));
+
+    Host updated = hosts.get(0);
+    HostBatchOperations.PersistedState persisted = HostBatchOperations.PersistedState.of(updated);
+    updated.setDisplayName("updated");
+    updated.setMeasurement(Uom.CORES, 8.0);
+    updated.getBuckets().clear();
+    updated.addBucket(
+        "RHEL Server",
+        ServiceLevel._ANY,
+        Usage._ANY,
+        BillingProvider._ANY,
+        "_ANY",
+        false,
+        2,
+        8,
+        HardwareMeasurementType.PHYSICAL);
+    batch = operations.newBatch(100);
+    batch.save(persisted, updated);
+    batch.delete(hosts.get(1));
+    batch.flush();
+
+    assertEquals(1, batch.getUpdated());
+    assertEquals(1, batch.getDeleted());
+    hosts = readHosts();
+    assertEquals(1, hosts.size());
+    assertEquals("updated", hosts.get(0).getDisplayName());
+    assertEquals(8.0, hosts.get(0).getMeasurement(Uom.CORES));
+    assertEquals(1, hosts.get(0).getBuckets().size());
+    assertEquals(
+        "RHEL Server", hosts.get(0).getBuckets().iterator().next().getKey().getProductId());
+  }
+
+  @Test
+  void testSaveAndFindWatermark() {
+    assertTrue(operations.findWatermark(ORG_ID, INSTANCE_TYPE).isEmpty());
+    OffsetDateTime fullTally = OffsetDateTime.parse("2022-11-01T00:00:00Z");
+    operations.saveWatermark(
+        ORG_ID, INSTANCE_TYPE, new HostBatchOperations.TallyWatermark(fullTally, fullTally));
+    OffsetDateTime deltaTally = OffsetDateTime.parse("2022-11-02T00:00:00Z");
+    operations.saveWatermark(
+        ORG_ID, INSTANCE_TYPE, new HostBatchOperations.TallyWatermark(deltaTally, fullTally));
+
+    HostBatchOperations.TallyWatermark watermark =
+        operations.findWatermark(ORG_ID, INSTANCE_TYPE).orElseThrow();
+    assertTrue(deltaTally.isEqual(watermark.getWatermark()));
+    assertTrue(fullTally.isEqual(watermark.getLastFullTally()));
+  }
+
+  private List<Host> readHosts() {
+    List<Host> hosts = new ArrayList<>();
+    try (HostBatchOperations.HostCursor cursor = operations.streamHosts(ORG_ID, INSTANCE_TYPE)) {
+      while (cursor.hasNext()) {
+        hosts.add(cursor.next());
+      }
+    }
+    return hosts;
+  }
+
+  private Host createHost(String inventoryId) {
+    Host host = new Host(inventoryId, "insights", "account123", ORG_ID, "subman");
+    host.setDisplayName(inventoryId);
+    host.setMeasurement(Uom.CORES, 4.0);
+    host.addBucket(
+        "RHEL",
+        ServiceLevel._ANY,
+        Usage._ANY,
+        BillingProvider._ANY,
+        "_ANY",
+        false,
+        1,
+        4,
+        HardwareMeasurementType.PHYSICAL);
+    return host;
+  }
+}
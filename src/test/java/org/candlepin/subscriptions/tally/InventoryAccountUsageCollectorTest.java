@@ -34,9 +34,13 @@ import static org.mockito.Mockito.*;
 
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -44,14 +48,22 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.Stream.Builder;
+import org.candlepin.subscriptions.ApplicationProperties;
 import org.candlepin.subscriptions.db.AccountServiceInventoryRepository;
 import org.candlepin.subscriptions.db.HostRepository;
 import org.candlepin.subscriptions.db.model.*;
+import org.candlepin.subscriptions.inventory.db.InventoryDatabaseOperations;
 import org.candlepin.subscriptions.inventory.db.InventoryRepository;
 import org.candlepin.subscriptions.inventory.db.model.InventoryHostFacts;
+import org.candlepin.subscriptions.json.Measurement.Uom;
+import org.candlepin.subscriptions.tally.facts.FactNormalizer;
+import org.candlepin.subscriptions.util.ApplicationClock;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -59,6 +71,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
 
 @SpringBootTest
 @ActiveProfiles({"worker", "test"})
@@ -75,12 +88,20 @@ class InventoryAccountUsageCollectorTest {
 
   public static final String ACCOUNT = "foo123";
   public static final String ORG_ID = "org123";
+  private static final String HBI_HOST = InventoryAccountUsageCollector.HBI_INSTANCE_TYPE;
+  private static final OffsetDateTime TALLY_TIME = OffsetDateTime.parse("2022-11-01T00:00:00Z");
+  // previous tally start, less the default delta overlap
+  private static final OffsetDateTime DELTA_SINCE = TALLY_TIME.minusHours(1);
 
   @MockBean private InventoryRepository inventoryRepo;
   @MockBean private HostRepository hostRepo;
   @MockBean private AccountServiceInventoryRepository accountServiceInventoryRepository;
   @Autowired private InventoryAccountUsageCollector collector;
   @Autowired private MeterRegistry meterRegistry;
+  @Autowired private FactNormalizer factNormalizer;
+  @Autowired private InventoryDatabaseOperations inventoryDatabaseOperations;
+  @Autowired private ApplicationProperties applicationProperties;
+  @Autowired private HostBatchOperations hostBatchOperations;
 
   @Test
   void hypervisorCountsIgnoredForNonRhelProduct() {
@@ -718,6 +739,334 @@ class InventoryAccountUsageCollectorTest {
     assertEquals(1, accountServiceInventory.getServiceInstances().size());
   }
 
+  @Test
+  void parallelCollectionMatchesSerialCollection() throws InterruptedException {
+    InventoryHostFacts hypervisor = createHypervisor(ACCOUNT, ORG_ID, TEST_PRODUCT_ID);
+    hypervisor.setSystemProfileCoresPerSocket(4);
+    hypervisor.setSystemProfileSockets(3);
+    InventoryHostFacts guest1 =
+        createGuest(hypervisor.getSubscriptionManagerId(), ACCOUNT, ORG_ID, TEST_PRODUCT_ID);
+    guest1.setSystemProfileCoresPerSocket(4);
+    guest1.setSystemProfileSockets(3);
+    InventoryHostFacts guest2 =
+        createGuest(hypervisor.getSubscriptionManagerId(), ACCOUNT, ORG_ID, TEST_PRODUCT_ID);
+    guest2.setSystemProfileCoresPerSocket(4);
+    guest2.setSystemProfileSockets(2);
+    InventoryHostFacts physical =
+        createRhsmHost(ACCOUNT, ORG_ID, List.of(TEST_PRODUCT_ID), "", OffsetDateTime.now());
+    physical.setSystemProfileCoresPerSocket(2);
+    physical.setSystemProfileSockets(2);
+
+    Map<String, String> expectedHypervisorMap = new HashMap<>();
+    expectedHypervisorMap.put(
+        hypervisor.getSubscriptionManagerId(), hypervisor.getSubscriptionManagerId());
+
+    HostCollectionProperties properties = new HostCollectionProperties();
+    properties.setParallelEnabled(true);
+    properties.setParallelism(2);
+    properties.setChunkSize(1);
+    properties.setMaxChunksInFlight(2);
+    InventoryAccountUsageCollector parallelCollector =
+        new InventoryAccountUsageCollector(
+            factNormalizer,
+            inventoryDatabaseOperations,
+            accountServiceInventoryRepository,
+            hostBatchOperations,
+            applicationProperties,
+            properties,
+            meterRegistry,
+            new ApplicationClock());
+
+    try {
+      mockReportedHypervisors(ORG_ID, expectedHypervisorMap);
+      when(inventoryRepo.getFacts(eq(List.of(ORG_ID)), anyInt()))
+          .thenReturn(Stream.of(guest1, hypervisor, physical, guest2));
+      AccountUsageCalculation calc =
+          parallelCollector.collect(RHEL_PRODUCTS, ACCOUNT, ORG_ID).get(ACCOUNT);
+
+      // hypervisor gets counted twice - once for itself, once for the guests
+      checkTotalsCalculation(calc, ACCOUNT, ORG_ID, TEST_PRODUCT, 28, 10, 3);
+      checkHypervisorTotalsCalculation(calc, ACCOUNT, ORG_ID, TEST_PRODUCT, 12, 4, 1);
+      checkPhysicalTotalsCalculation(calc, ACCOUNT, ORG_ID, TEST_PRODUCT, 16, 6, 2);
+    } finally {
+      parallelCollector.destroy();
+    }
+  }
+
+  @Test
+  @Transactional
+  void streamingReconciliationMatchesAggregateCollection() {
+    InventoryHostFacts removed = physicalHost(1, ServiceLevel.PREMIUM, 2);
+    InventoryHostFacts changed = physicalHost(3, ServiceLevel.PREMIUM, 2);
+    InventoryHostFacts unchanged = physicalHost(5, ServiceLevel.STANDARD, 4);
+    InventoryAccountUsageCollector streamingCollector =
+        newCollector(streamingProperties(false), new ApplicationClock());
+    InventoryAccountUsageCollector aggregateCollector =
+        newCollector(new HostCollectionProperties(), new ApplicationClock());
+    AccountServiceInventory aggregateInventory =
+        AccountServiceInventory.forOrgIdAndServiceType(ORG_ID, HBI_HOST);
+    when(accountServiceInventoryRepository.findById(any()))
+        .thenReturn(Optional.of(aggregateInventory));
+
+    mockHbiHosts(removed, changed, unchanged);
+    streamingCollector.collect(RHEL_PRODUCTS, ACCOUNT, ORG_ID);
+    aggregateCollector.collect(RHEL_PRODUCTS, ACCOUNT, ORG_ID);
+    assertEquals(
+        describeHosts(aggregateInventory.getServiceInstances().values()),
+        describeHosts(readPersistedHosts()));
+
+    // hosts are added before and between the persisted ones, one changes and one is removed
+    InventoryHostFacts added1 = physicalHost(2, ServiceLevel.STANDARD, 2);
+    InventoryHostFacts changedNow = physicalHost(3, ServiceLevel.STANDARD, 4);
+    InventoryHostFacts added2 = physicalHost(4, ServiceLevel.PREMIUM, 2);
+    mockHbiHosts(added1, changedNow, added2, unchanged);
+    AccountUsageCalculation streamed =
+        streamingCollector.collect(RHEL_PRODUCTS, ACCOUNT, ORG_ID).get(ACCOUNT);
+    AccountUsageCalculation aggregated =
+        aggregateCollector.collect(RHEL_PRODUCTS, ACCOUNT, ORG_ID).get(ACCOUNT);
+
+    List<Host> persisted = readPersistedHosts();
+    assertEquals(4, persisted.size());
+    assertEquals(
+        describeHosts(aggregateInventory.getServiceInstances().values()),
+        describeHosts(persisted));
+    assertEquals(totalsOf(aggregated), totalsOf(streamed));
+    checkPhysicalTotalsCalculation(streamed, ACCOUNT, ORG_ID, TEST_PRODUCT, 24, 12, 4);
+  }
+
+  @Test
+  @Transactional
+  void deltaTallyReappliesUnchangedHostsFromPersistedBuckets() {
+    InventoryHostFacts host1 = physicalHost(1, ServiceLevel.PREMIUM, 2);
+    InventoryHostFacts host2 = physicalHost(2, ServiceLevel.STANDARD, 4);
+    mockHbiHosts(host1, host2);
+    newCollector(streamingProperties(true), clockAt(TALLY_TIME))
+        .collect(RHEL_PRODUCTS, ACCOUNT, ORG_ID);
+
+    mockModifiedHbiHosts();
+    AccountUsageCalculation calc =
+        newCollector(streamingProperties(true), clockAt(TALLY_TIME.plusDays(1)))
+            .collect(RHEL_PRODUCTS, ACCOUNT, ORG_ID)
+            .get(ACCOUNT);
+
+    verify(inventoryRepo)
+        .getFactsModifiedOrMappedSince(
+            eq(List.of(ORG_ID)), anyInt(), argThat(since -> since.isEqual(DELTA_SINCE)));
+    assertMatchesFullTally(calc);
+    checkPhysicalTotalsCalculation(calc, ACCOUNT, ORG_ID, TEST_PRODUCT, 12, 6, 2);
+  }
+
+  @Test
+  @Transactional
+  void deltaTallyCollectsModifiedHosts() {
+    InventoryHostFacts host1 = physicalHost(1, ServiceLevel.PREMIUM, 2);
+    InventoryHostFacts host3 = physicalHost(3, ServiceLevel.STANDARD, 4);
+    mockHbiHosts(host1, host3);
+    newCollector(streamingProperties(true), clockAt(TALLY_TIME))
+        .collect(RHEL_PRODUCTS, ACCOUNT, ORG_ID);
+
+    InventoryHostFacts added = physicalHost(2, ServiceLevel.STANDARD, 2);
+    InventoryHostFacts modified = physicalHost(3, ServiceLevel.PREMIUM, 2);
+    mockHbiHosts(host1, added, modified);
+    mockModifiedHbiHosts(added, modified);
+    AccountUsageCalculation calc =
+        newCollector(streamingProperties(true), clockAt(TALLY_TIME.plusDays(1)))
+            .collect(RHEL_PRODUCTS, ACCOUNT, ORG_ID)
+            .get(ACCOUNT);
+
+    verify(inventoryRepo, times(1)).getFactsOrderedByInventoryId(eq(List.of(ORG_ID)), anyInt());
+    assertMatchesFullTally(calc);
+    checkPhysicalTotalsCalculation(calc, ACCOUNT, ORG_ID, TEST_PRODUCT, 12, 6, 3);
+  }
+
+  @Test
+  @Transactional
+  void deltaTallyRemovesHostsCulledSinceWatermark() {
+    InventoryHostFacts host1 = physicalHost(1, ServiceLevel.PREMIUM, 2);
+    InventoryHostFacts culled = physicalHost(2, ServiceLevel.STANDARD, 4);
+    InventoryHostFacts host3 = physicalHost(3, ServiceLevel.STANDARD, 2);
+    mockHbiHosts(host1, culled, host3);
+    newCollector(streamingProperties(true), clockAt(TALLY_TIME))
+        .collect(RHEL_PRODUCTS, ACCOUNT, ORG_ID);
+
+    mockHbiHosts(host1, host3);
+    mockModifiedHbiHosts();
+    AccountUsageCalculation calc =
+        newCollector(streamingProperties(true), clockAt(TALLY_TIME.plusDays(1)))
+            .collect(RHEL_PRODUCTS, ACCOUNT, ORG_ID)
+            .get(ACCOUNT);
+
+    assertEquals(2, readPersistedHosts().size());
+    assertMatchesFullTally(calc);
+    checkPhysicalTotalsCalculation(calc, ACCOUNT, ORG_ID, TEST_PRODUCT, 8, 4, 2);
+  }
+
+  @Test
+  @Transactional
+  void deltaTallyRunsFullTallyOnceIntervalElapsed() {
+    HostCollectionProperties properties = streamingProperties(true);
+    InventoryHostFacts host1 = physicalHost(1, ServiceLevel.PREMIUM, 2);
+    InventoryHostFacts host2 = physicalHost(2, ServiceLevel.STANDARD, 4);
+    mockHbiHosts(host1, host2);
+    newCollector(properties, clockAt(TALLY_TIME)).collect(RHEL_PRODUCTS, ACCOUNT, ORG_ID);
+
+    // facts changed without the host being seen as modified, as only a full tally corrects
+    InventoryHostFacts drifted = physicalHost(2, ServiceLevel.STANDARD, 2);
+    mockHbiHosts(host1, drifted);
+    mockModifiedHbiHosts();
+    OffsetDateTime fullTallyTime =
+        TALLY_TIME.plus(properties.getFullTallyInterval()).plusHours(1);
+    AccountUsageCalculation calc =
+        newCollector(properties, clockAt(fullTallyTime))
+            .collect(RHEL_PRODUCTS, ACCOUNT, ORG_ID)
+            .get(ACCOUNT);
+
+    verify(inventoryRepo, never()).getFactsModifiedOrMappedSince(any(), any(), any());
+    verify(inventoryRepo, times(2)).getFactsOrderedByInventoryId(eq(List.of(ORG_ID)), anyInt());
+    assertTrue(
+        fullTallyTime.isEqual(
+            hostBatchOperations.findWatermark(ORG_ID, HBI_HOST).orElseThrow().getLastFullTally()));
+    assertMatchesFullTally(calc);
+    checkPhysicalTotalsCalculation(calc, ACCOUNT, ORG_ID, TEST_PRODUCT, 8, 4, 2);
+  }
+
+  /** Asserts the totals and persisted hosts are those of a full aggregate tally of HBI. */
+  private void assertMatchesFullTally(AccountUsageCalculation calc) {
+    AccountServiceInventory fullInventory =
+        AccountServiceInventory.forOrgIdAndServiceType(ORG_ID, HBI_HOST);
+    when(accountServiceInventoryRepository.findById(any())).thenReturn(Optional.of(fullInventory));
+    AccountUsageCalculation full =
+        newCollector(new HostCollectionProperties(), new ApplicationClock())
+            .collect(RHEL_PRODUCTS, ACCOUNT, ORG_ID)
+            .get(ACCOUNT);
+    assertEquals(totalsOf(full), totalsOf(calc));
+    assertEquals(
+        describeHosts(fullInventory.getServiceInstances().values()),
+        describeHosts(readPersistedHosts()));
+  }
+
+  private InventoryAccountUsageCollector newCollector(
+      HostCollectionProperties properties, ApplicationClock clock) {
+    return new InventoryAccountUsageCollector(
+        factNormalizer,
+        inventoryDatabaseOperations,
+        accountServiceInventoryRepository,
+        hostBatchOperations,
+        applicationProperties,
+        properties,
+        meterRegistry,
+        clock);
+  }
+
+  private HostCollectionProperties streamingProperties(boolean deltaEnabled) {
+    HostCollectionProperties properties = new HostCollectionProperties();
+    properties.setStreamingReconciliationEnabled(true);
+    properties.setDeltaEnabled(deltaEnabled);
+    // small batches, so that writes are flushed while hosts are still being streamed
+    properties.setReconciliationBatchSize(2);
+    return properties;
+  }
+
+  private ApplicationClock clockAt(OffsetDateTime time) {
+    return new ApplicationClock(Clock.fixed(time.toInstant(), ZoneOffset.UTC));
+  }
+
+  private InventoryHostFacts physicalHost(int id, ServiceLevel sla, int sockets) {
+    InventoryHostFacts host =
+        createRhsmHost(
+            ACCOUNT, ORG_ID, TEST_PRODUCT_ID.toString(), sla, "", OffsetDateTime.now());
+    host.setInventoryId(UUID.fromString(String.format("00000000-0000-0000-0000-%012d", id)));
+    host.setSystemProfileCoresPerSocket(2);
+    host.setSystemProfileSockets(sockets);
+    return host;
+  }
+
+  /** Mocks the hosts currently in HBI, ordered by inventory ID where the collector needs it. */
+  private void mockHbiHosts(InventoryHostFacts... hosts) {
+    List<InventoryHostFacts> ordered =
+        Stream.of(hosts)
+            .sorted(Comparator.comparing(host -> host.getInventoryId().toString()))
+            .collect(Collectors.toList());
+    when(inventoryRepo.getFacts(eq(List.of(ORG_ID)), anyInt()))
+        .thenAnswer(invocation -> ordered.stream());
+    when(inventoryRepo.getFactsOrderedByInventoryId(eq(List.of(ORG_ID)), anyInt()))
+        .thenAnswer(invocation -> ordered.stream());
+    when(inventoryRepo.getTalliedHostIds(eq(List.of(ORG_ID)), anyInt()))
+        .thenAnswer(invocation -> ordered.stream().map(host -> host.getInventoryId().toString()));
+    when(inventoryRepo.getReportedHypervisors(List.of(ORG_ID)))
+        .thenAnswer(invocation -> Stream.empty());
+  }
+
+  private void mockModifiedHbiHosts(InventoryHostFacts... hosts) {
+    List<InventoryHostFacts> ordered =
+        Stream.of(hosts)
+            .sorted(Comparator.comparing(host -> host.getInventoryId().toString()))
+            .collect(Collectors.toList());
+    when(inventoryRepo.getFactsModifiedOrMappedSince(eq(List.of(ORG_ID)), anyInt(), any()))
+        .thenAnswer(invocation -> ordered.stream());
+  }
+
+  private List<Host> readPersistedHosts() {
+    List<Host> hosts = new ArrayList<>();
+    try (HostBatchOperations.HostCursor cursor =
+        hostBatchOperations.streamHosts(ORG_ID, HBI_HOST)) {
+      while (cursor.hasNext()) {
+        hosts.add(cursor.next());
+      }
+    }
+    return hosts;
+  }
+
+  /** Describes the tallied state of each host by inventory ID, for comparison across paths. */
+  private Map<String, Set<String>> describeHosts(Collection<Host> hosts) {
+    Map<String, Set<String>> described = new TreeMap<>();
+    for (Host host : hosts) {
+      Set<String> details = new TreeSet<>();
+      details.add("instanceId=" + host.getInstanceId());
+      details.add("hardwareType=" + host.getHardwareType());
+      details.add("cores=" + host.getMeasurement(Uom.CORES));
+      details.add("sockets=" + host.getMeasurement(Uom.SOCKETS));
+      for (HostTallyBucket bucket : host.getBuckets()) {
+        HostBucketKey key = bucket.getKey();
+        details.add(
+            String.format(
+                "bucket=%s/%s/%s/%s/%s/%s:%d/%d/%s",
+                key.getProductId(),
+                key.getSla(),
+                key.getUsage(),
+                key.getBillingProvider(),
+                key.getBillingAccountId(),
+                key.getAsHypervisor(),
+                bucket.getCores(),
+                bucket.getSockets(),
+                bucket.getMeasurementType()));
+      }
+      described.put(host.getInventoryId(), details);
+    }
+    return described;
+  }
+
+  /** The non-empty totals of each calculation, by key and measurement type. */
+  private Map<UsageCalculation.Key, Map<HardwareMeasurementType, Map<Uom, Double>>> totalsOf(
+      AccountUsageCalculation calc) {
+    assertEquals(ORG_ID, calc.getOrgId());
+    Map<UsageCalculation.Key, Map<HardwareMeasurementType, Map<Uom, Double>>> totals =
+        new HashMap<>();
+    for (UsageCalculation.Key key : calc.getKeys()) {
+      Map<HardwareMeasurementType, Map<Uom, Double>> keyTotals = new HashMap<>();
+      for (HardwareMeasurementType type : HardwareMeasurementType.values()) {
+        UsageCalculation.Totals typeTotals = calc.getCalculation(key).getTotals(type);
+        if (typeTotals != null) {
+          keyTotals.put(type, typeTotals.getMeasurements());
+        }
+      }
+      if (!keyTotals.isEmpty()) {
+        totals.put(key, keyTotals);
+      }
+    }
+    return totals;
+  }
+
   private void checkTotalsCalculation(
       AccountUsageCalculation calc,
       String account,
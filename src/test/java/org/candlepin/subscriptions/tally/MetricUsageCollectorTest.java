@@ -536,7 +536,7 @@ class MetricUsageCollectorTest {
             m -> {
               OffsetDateTime begin = m.getArgument(2, OffsetDateTime.class);
               OffsetDateTime end = m.getArgument(3, OffsetDateTime.class);
-              if (begin.equals(eventDate) && end.equals(eventDate.plusHours(1))) {
+              if (!eventDate.isBefore(begin) && eventDate.isBefore(end)) {
                 return Stream.of(event);
               }
               return Stream.of();
@@ -588,7 +588,7 @@ class MetricUsageCollectorTest {
             m -> {
               OffsetDateTime begin = m.getArgument(2, OffsetDateTime.class);
               OffsetDateTime end = m.getArgument(3, OffsetDateTime.class);
-              if (begin.equals(eventDate) && end.equals(eventDate.plusHours(1))) {
+              if (!eventDate.isBefore(begin) && eventDate.isBefore(end)) {
                 return Stream.of(event);
               }
               return Stream.of();
@@ -605,6 +605,60 @@ class MetricUsageCollectorTest {
     assertEquals(0.0, staleInstance.getMonthlyTotal(monthId, Measurement.Uom.CORES));
   }
 
+  @Test
+  void testCollectFetchesEventsOnceAndGroupsThemByHour() {
+    OffsetDateTime start = clock.startOfCurrentHour().minusHours(3);
+    String instanceId = UUID.randomUUID().toString();
+    Event firstHourEvent = createCoresEvent(instanceId, start.plusMinutes(10), 1.0);
+    Event thirdHourEvent = createCoresEvent(instanceId, start.plusHours(2), 2.0);
+    Event lateThirdHourEvent =
+        createCoresEvent(instanceId, start.plusHours(2).plusMinutes(59), 4.0);
+    when(accountRepo.findById(any())).thenReturn(Optional.of(createTestAccountServiceInventory()));
+    when(eventController.hasEventsInTimeRange(any(), any(), any(), any())).thenReturn(true);
+    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+        .thenReturn(Stream.of(firstHourEvent, thirdHourEvent, lateThirdHourEvent));
+
+    CollectionResult result =
+        metricUsageCollector.collect(
+            SERVICE_TYPE, "account123", "org123", new DateRange(start, start.plusHours(3)));
+
+    Mockito.verify(eventController, Mockito.times(1))
+        .fetchEventsInTimeRangeByServiceType("org123", SERVICE_TYPE, start, start.plusHours(3));
+    assertEquals(Set.of(start, start.plusHours(2)), result.getCalculations().keySet());
+    UsageCalculation.Key key =
+        new UsageCalculation.Key(
+            RHEL, ServiceLevel.PREMIUM, Usage.PRODUCTION, BillingProvider._ANY, "_ANY");
+    assertEquals(
+        Double.valueOf(1.0),
+        result
+            .getCalculations()
+            .get(start)
+            .getCalculation(key)
+            .getTotals(HardwareMeasurementType.PHYSICAL)
+            .getMeasurement(Uom.CORES));
+    assertEquals(
+        Double.valueOf(4.0),
+        result
+            .getCalculations()
+            .get(start.plusHours(2))
+            .getCalculation(key)
+            .getTotals(HardwareMeasurementType.PHYSICAL)
+            .getMeasurement(Uom.CORES));
+  }
+
+  private Event createCoresEvent(String instanceId, OffsetDateTime timestamp, double cores) {
+    return new Event()
+        .withEventId(UUID.randomUUID())
+        .withTimestamp(timestamp)
+        .withServiceType(SERVICE_TYPE)
+        .withInstanceId(instanceId)
+        .withProductIds(List.of("1234"))
+        .withMeasurements(
+            Collections.singletonList(new Measurement().withUom(Uom.CORES).withValue(cores)))
+        .withUsage(Event.Usage.PRODUCTION)
+        .withSla(Event.Sla.PREMIUM);
+  }
+
   @Test
   void collectionThrowsExceptionWhenDateRangeIsNotRounded() {
     DateRange range = new DateRange(clock.startOfCurrentHour(), clock.now());
@@ -28,6 +28,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.time.OffsetDateTime;
 import java.util.HashMap;
@@ -35,6 +36,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.candlepin.subscriptions.db.model.BillingProvider;
 import org.candlepin.subscriptions.db.model.Granularity;
 import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
@@ -53,7 +55,9 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.retry.support.RetryTemplate;
+import org.springframework.util.concurrent.SettableListenableFuture;
 
 @ExtendWith(MockitoExtension.class)
 class SnapshotSummaryProducerTest {
@@ -187,6 +191,97 @@ class SnapshotSummaryProducerTest {
     verify(kafka, never()).send(anyString(), any());
   }
 
+  @Test
+  void testBatchedModePacksSnapshotsPerOrgAndFlushesOnce() {
+    props.setBatchEnabled(true);
+    props.setMaxSnapshotsPerMessage(2);
+    producer =
+        new SnapshotSummaryProducer(kafka, new RetryTemplate(), props, new TallySummaryMapper());
+    when(kafka.send(anyString(), any(TallySummary.class))).thenReturn(acknowledged());
+
+    Map<String, List<TallySnapshot>> updateMap = new HashMap<>();
+    updateMap.put("a1", hourlySnapshots("a1", "org1", 5));
+    updateMap.put("a2", hourlySnapshots("a2", "org2", 1));
+    updateMap.get("a1").get(4).getTallyMeasurements().clear();
+    producer.produceTallySummaryMessages(updateMap);
+
+    verify(kafka, times(3)).send(eq(props.getTopic()), summaryCaptor.capture());
+    verify(kafka).flush();
+    Map<String, List<Integer>> snapshotCounts =
+        summaryCaptor.getAllValues().stream()
+            .collect(
+                Collectors.groupingBy(
+                    TallySummary::getOrgId,
+                    Collectors.mapping(
+                        summary -> summary.getTallySnapshots().size(), Collectors.toList())));
+    assertEquals(List.of(2, 2), snapshotCounts.get("org1"));
+    assertEquals(List.of(1), snapshotCounts.get("org2"));
+  }
+
+  @Test
+  void testBatchedModeKeepsSendingWhenAMessageFails() {
+    props.setBatchEnabled(true);
+    props.setMaxSnapshotsPerMessage(1);
+    producer =
+        new SnapshotSummaryProducer(kafka, new RetryTemplate(), props, new TallySummaryMapper());
+    SettableListenableFuture<SendResult<String, TallySummary>> failed =
+        new SettableListenableFuture<>();
+    failed.setException(new IllegalStateException("broker unavailable"));
+    when(kafka.send(anyString(), any(TallySummary.class)))
+        .thenReturn(failed)
+        .thenReturn(acknowledged());
+
+    producer.produceTallySummaryMessages(Map.of("a1", hourlySnapshots("a1", "org1", 2)));
+
+    verify(kafka, times(2)).send(eq(props.getTopic()), any(TallySummary.class));
+    verify(kafka).flush();
+  }
+
+  @Test
+  void testBatchedModeStopsWaitingWhenInterrupted() {
+    props.setBatchEnabled(true);
+    props.setMaxSnapshotsPerMessage(1);
+    producer =
+        new SnapshotSummaryProducer(kafka, new RetryTemplate(), props, new TallySummaryMapper());
+    SettableListenableFuture<SendResult<String, TallySummary>> failed =
+        new SettableListenableFuture<>();
+    failed.setException(new IllegalStateException("broker unavailable"));
+    when(kafka.send(anyString(), any(TallySummary.class)))
+        .thenReturn(failed)
+        .thenReturn(new SettableListenableFuture<>());
+
+    Thread.currentThread().interrupt();
+    producer.produceTallySummaryMessages(Map.of("a1", hourlySnapshots("a1", "org1", 2)));
+
+    // Thread.interrupted() also clears the flag for later tests.
+    assertTrue(Thread.interrupted());
+    verify(kafka, times(2)).send(eq(props.getTopic()), any(TallySummary.class));
+  }
+
+  private SettableListenableFuture<SendResult<String, TallySummary>> acknowledged() {
+    SettableListenableFuture<SendResult<String, TallySummary>> future =
+        new SettableListenableFuture<>();
+    future.set(null);
+    return future;
+  }
+
+  private List<TallySnapshot> hourlySnapshots(String account, String orgId, int count) {
+    return IntStream.range(0, count)
+        .mapToObj(
+            i ->
+                buildSnapshot(
+                    account,
+                    orgId,
+                    "OSD",
+                    Granularity.HOURLY,
+                    ServiceLevel.PREMIUM,
+                    Usage.PRODUCTION,
+                    BillingProvider.RED_HAT,
+                    Uom.CORES,
+                    i + 1.0))
+        .collect(Collectors.toList());
+  }
+
   void assertMeasurement(
       Map<String, List<TallyMeasurement>> measurements,
       String hardwareType,
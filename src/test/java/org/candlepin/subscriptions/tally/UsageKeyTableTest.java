@@ -0,0 +1,99 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.candlepin.subscriptions.db.model.BillingProvider;
+import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.Usage;
+import org.junit.jupiter.api.Test;
+
+class UsageKeyTableTest {
+
+  private final UsageKeyTable table =
+      new UsageKeyTable(List.of("RHEL", "OpenShift Container Platform"));
+
+  @Test
+  void testKeysAreShared() {
+    UsageCalculation.Key key = table.get("RHEL", ServiceLevel.PREMIUM, Usage.PRODUCTION);
+
+    assertSame(key, table.get("RHEL", ServiceLevel.PREMIUM, Usage.PRODUCTION));
+    assertSame(
+        key,
+        table.get("RHEL", ServiceLevel.PREMIUM, Usage.PRODUCTION, BillingProvider._ANY, "_ANY"));
+    assertEquals(
+        new UsageCalculation.Key(
+            "RHEL", ServiceLevel.PREMIUM, Usage.PRODUCTION, BillingProvider._ANY, "_ANY"),
+        key);
+  }
+
+  @Test
+  void testUnknownProductHasNoKeys() {
+    assertFalse(table.contains("RHEL Workstation"));
+    assertNull(table.get("RHEL Workstation", ServiceLevel._ANY, Usage._ANY));
+    assertNull(
+        table.get("RHEL Workstation", ServiceLevel._ANY, Usage._ANY, BillingProvider.AWS, "acct"));
+  }
+
+  @Test
+  void testKeysWithSpecificBillingAreAllocated() {
+    UsageCalculation.Key key =
+        table.get("RHEL", ServiceLevel._ANY, Usage._ANY, BillingProvider.AWS, "acct");
+
+    assertNotSame(key, table.get("RHEL", ServiceLevel._ANY, Usage._ANY));
+    assertEquals(BillingProvider.AWS, key.getBillingProvider());
+    assertEquals("acct", key.getBillingAccountId());
+  }
+
+  @Test
+  void testCreateCalculationsForEveryProduct() {
+    AccountUsageCalculation accountCalc = new AccountUsageCalculation("account");
+
+    table.createCalculations(accountCalc, ServiceLevel.STANDARD, Usage._ANY);
+
+    assertEquals(
+        Set.of(
+            table.get("RHEL", ServiceLevel.STANDARD, Usage._ANY),
+            table.get("OpenShift Container Platform", ServiceLevel.STANDARD, Usage._ANY)),
+        accountCalc.getKeys());
+  }
+
+  @Test
+  void testIndexesAreDistinct() {
+    Set<Integer> indexes = new HashSet<>();
+    for (ServiceLevel sla : ServiceLevel.values()) {
+      for (Usage usage : Usage.values()) {
+        int index = UsageKeyTable.index(sla, usage);
+        assertTrue(index >= 0 && index < UsageKeyTable.size());
+        assertTrue(indexes.add(index));
+      }
+    }
+  }
+}
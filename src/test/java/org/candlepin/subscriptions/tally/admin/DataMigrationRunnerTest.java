@@ -0,0 +1,322 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally.admin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.candlepin.subscriptions.tally.admin.DataMigrationCheckpoints.Checkpoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.rowset.SqlRowSet;
+
+class DataMigrationRunnerTest {
+
+  private static final String NAME = "FakeMigration";
+
+  private final DataMigrationCheckpoints checkpoints = mock(DataMigrationCheckpoints.class);
+  private final DataMigrationProperties properties = new DataMigrationProperties();
+  private DataMigrationRunner runner;
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    if (runner != null) {
+      runner.destroy();
+    }
+  }
+
+  @Test
+  void testRangesAreMigratedInParallel() throws Exception {
+    properties.setParallelism(4);
+    properties.setMaxRowsPerSecond(0);
+    FakeMigration migration = new FakeMigration(randomKeys(100));
+    // Each range waits in its first extract until all ranges have started.
+    migration.extractBarrier = new CountDownLatch(4);
+    runner = createRunner();
+
+    runner.migrate(NAME, migration, null, 10).get(10, TimeUnit.SECONDS);
+
+    assertFalse(migration.barrierTimedOut);
+    assertEquals(migration.keys, new TreeSet<>(migration.loaded));
+    assertEquals(100, migration.loaded.size());
+    assertTrue(migration.completed);
+    verify(checkpoints, times(4)).markCompleted(any());
+    verify(checkpoints).delete(NAME);
+    assertTrue(runner.describeProgress().contains("COMPLETED"));
+  }
+
+  @Test
+  void testResumeFromCheckpoints() throws Exception {
+    properties.setParallelism(2);
+    properties.setMaxRowsPerSecond(0);
+    FakeMigration migration = new FakeMigration(randomKeys(50));
+    String splitPoint = migration.splitKeySpace(2).get(0);
+    List<String> secondRange = new ArrayList<>(migration.keys.tailSet(splitPoint, false));
+    String lastProcessed = secondRange.get(4);
+    when(checkpoints.find(NAME))
+        .thenReturn(
+            List.of(
+                new Checkpoint(NAME, 0, null, splitPoint, splitPoint, 10, true),
+                new Checkpoint(NAME, 1, splitPoint, null, lastProcessed, 5, false)));
+    runner = createRunner();
+
+    runner.migrate(NAME, migration, null, 10).get(10, TimeUnit.SECONDS);
+
+    assertEquals(secondRange.subList(5, secondRange.size()), migration.loaded);
+    assertEquals(lastProcessed, migration.offsets.get(0));
+    verify(checkpoints, never()).reset(anyString(), any());
+    verify(checkpoints).delete(NAME);
+  }
+
+  @Test
+  void testResumeReportsProgressFromCheckpoints() throws Exception {
+    properties.setParallelism(2);
+    properties.setMaxRowsPerSecond(0);
+    FakeMigration migration = new FakeMigration(randomKeys(50));
+    String splitPoint = migration.splitKeySpace(2).get(0);
+    int firstRangeSize = migration.keys.headSet(splitPoint, true).size();
+    List<String> secondRange = new ArrayList<>(migration.keys.tailSet(splitPoint, false));
+    String lastProcessed = secondRange.get(4);
+    when(checkpoints.find(NAME))
+        .thenReturn(
+            List.of(
+                new Checkpoint(NAME, 0, null, splitPoint, splitPoint, firstRangeSize, true),
+                new Checkpoint(NAME, 1, splitPoint, null, lastProcessed, 5, false)));
+    List<String> reportedProgress = Collections.synchronizedList(new ArrayList<>());
+    runner = createRunner();
+    migration.afterLoad = () -> reportedProgress.add(runner.describeProgress());
+
+    runner.migrate(NAME, migration, null, 10).get(10, TimeUnit.SECONDS);
+
+    // Before the first batch of this run is counted, progress is what the checkpoints record.
+    assertTrue(
+        reportedProgress
+            .get(0)
+            .startsWith(String.format("%s: RUNNING, %d of ~50 rows", NAME, firstRangeSize + 5)),
+        reportedProgress.get(0));
+    assertTrue(runner.describeProgress().contains("COMPLETED, 50 of ~50 rows"));
+    assertTrue(migration.offsets.stream().allMatch(offset -> offset.compareTo(lastProcessed) >= 0));
+    assertTrue(migration.loaded.stream().allMatch(key -> key.compareTo(lastProcessed) > 0));
+  }
+
+  @Test
+  void testStartingRecordIdIsComparedCaseInsensitively() throws Exception {
+    properties.setParallelism(4);
+    properties.setMaxRowsPerSecond(0);
+    FakeMigration migration = new FakeMigration(randomKeys(50));
+    String start = "C0000000-0000-0000-0000-000000000000";
+    runner = createRunner();
+
+    runner.migrate(NAME, migration, start, 10).get(10, TimeUnit.SECONDS);
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<Checkpoint>> ranges = ArgumentCaptor.forClass(List.class);
+    verify(checkpoints).reset(eq(NAME), ranges.capture());
+    assertEquals(1, ranges.getValue().size());
+    assertEquals(start.toLowerCase(), ranges.getValue().get(0).getRangeStart());
+    assertEquals(
+        new ArrayList<>(migration.keys.tailSet(start.toLowerCase(), false)), migration.loaded);
+  }
+
+  @Test
+  void testStopLeavesMigrationResumable() throws Exception {
+    properties.setParallelism(1);
+    properties.setMaxRowsPerSecond(0);
+    FakeMigration migration = new FakeMigration(randomKeys(30));
+    CountDownLatch firstBatchLoaded = new CountDownLatch(1);
+    CountDownLatch stopRequested = new CountDownLatch(1);
+    migration.afterLoad =
+        () -> {
+          firstBatchLoaded.countDown();
+          awaitQuietly(stopRequested);
+        };
+    runner = createRunner();
+
+    CompletableFuture<Void> result = runner.migrate(NAME, migration, null, 10);
+    assertTrue(firstBatchLoaded.await(10, TimeUnit.SECONDS));
+    runner.stop();
+    stopRequested.countDown();
+    result.get(10, TimeUnit.SECONDS);
+
+    assertEquals(10, migration.loaded.size());
+    verify(checkpoints).saveProgress(any(), eq(migration.loaded.get(9)), eq(10L));
+    verify(checkpoints, never()).markCompleted(any());
+    verify(checkpoints, never()).delete(NAME);
+    assertFalse(migration.completed);
+    assertTrue(runner.describeProgress().contains("STOPPED"));
+  }
+
+  @Test
+  void testMigrationIsNotStartedTwice() throws Exception {
+    properties.setParallelism(1);
+    properties.setMaxRowsPerSecond(0);
+    FakeMigration migration = new FakeMigration(randomKeys(10));
+    CountDownLatch release = new CountDownLatch(1);
+    migration.afterLoad = () -> awaitQuietly(release);
+    runner = createRunner();
+
+    CompletableFuture<Void> first = runner.migrate(NAME, migration, null, 10);
+    runner.migrate(NAME, migration, null, 10).get(10, TimeUnit.SECONDS);
+    release.countDown();
+    first.get(10, TimeUnit.SECONDS);
+
+    verify(checkpoints, times(1)).reset(eq(NAME), any());
+    assertEquals(10, migration.loaded.size());
+  }
+
+  @Test
+  void testMigrationIsThrottled() throws Exception {
+    properties.setParallelism(1);
+    properties.setMaxRowsPerSecond(10);
+    FakeMigration migration = new FakeMigration(randomKeys(20));
+    runner = createRunner();
+
+    long started = System.nanoTime();
+    runner.migrate(NAME, migration, null, 5).get(10, TimeUnit.SECONDS);
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+    // 20 rows at 10 rows per second; the first batch of 5 is not delayed.
+    assertTrue(elapsedMillis >= 1000, "Migration took only " + elapsedMillis + "ms");
+    assertEquals(20, migration.loaded.size());
+    verify(checkpoints, times(4)).saveProgress(any(), anyString(), anyLong());
+  }
+
+  private DataMigrationRunner createRunner() {
+    return new DataMigrationRunner(
+        new JdbcTemplate(), new SimpleMeterRegistry(), properties, checkpoints);
+  }
+
+  private static List<String> randomKeys(int count) {
+    return IntStream.range(0, count)
+        .mapToObj(i -> UUID.randomUUID().toString())
+        .collect(Collectors.toList());
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Migrates keys held in memory, recording the batches it loads. */
+  static class FakeMigration extends DataMigration {
+    final NavigableSet<String> keys;
+    final List<String> loaded = Collections.synchronizedList(new ArrayList<>());
+    final List<String> offsets = Collections.synchronizedList(new ArrayList<>());
+    private final Map<SqlRowSet, List<String>> batches = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> rangesStarted = new ConcurrentHashMap<>();
+    volatile CountDownLatch extractBarrier;
+    volatile boolean barrierTimedOut;
+    volatile Runnable afterLoad;
+    volatile boolean completed;
+
+    FakeMigration(List<String> keys) {
+      super(null, new SimpleMeterRegistry());
+      this.keys = new TreeSet<>(keys);
+    }
+
+    @Override
+    public SqlRowSet extract(String recordOffset, String upperBound, int batchSize) {
+      offsets.add(recordOffset);
+      awaitOtherRanges(String.valueOf(upperBound));
+      NavigableSet<String> remaining =
+          recordOffset == null ? keys : keys.tailSet(recordOffset, false);
+      List<String> batch =
+          remaining.stream()
+              .filter(key -> upperBound == null || key.compareTo(upperBound) <= 0)
+              .limit(batchSize)
+              .collect(Collectors.toList());
+      SqlRowSet page = mock(SqlRowSet.class);
+      when(page.last()).thenReturn(!batch.isEmpty());
+      when(page.getRow()).thenReturn(batch.size());
+      batches.put(page, batch);
+      return page;
+    }
+
+    private void awaitOtherRanges(String range) {
+      CountDownLatch barrier = extractBarrier;
+      if (barrier != null && rangesStarted.putIfAbsent(range, true) == null) {
+        barrier.countDown();
+        try {
+          barrierTimedOut |= !barrier.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    @Override
+    public String transformAndLoad(SqlRowSet data) {
+      List<String> batch = batches.remove(data);
+      if (batch.isEmpty()) {
+        return null;
+      }
+      loaded.addAll(batch);
+      Runnable hook = afterLoad;
+      if (hook != null) {
+        hook.run();
+      }
+      return batch.get(batch.size() - 1);
+    }
+
+    @Override
+    public void recordCompleted() {
+      completed = true;
+    }
+
+    @Override
+    public long countRecords(String recordOffset, String upperBound) {
+      NavigableSet<String> remaining =
+          recordOffset == null ? keys : keys.tailSet(recordOffset, false);
+      return remaining.stream()
+          .filter(key -> upperBound == null || key.compareTo(upperBound) <= 0)
+          .count();
+    }
+  }
+}
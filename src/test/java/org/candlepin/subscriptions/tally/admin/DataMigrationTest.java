@@ -0,0 +1,66 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally.admin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+class DataMigrationTest {
+
+  private final DataMigration migration =
+      new HardwareMeasurementMigration(new JdbcTemplate(), new SimpleMeterRegistry());
+
+  @Test
+  void testSplitKeySpaceEvenly() {
+    assertEquals(
+        List.of(
+            "3fffffff-ffff-ffff-ffff-ffffffffffff",
+            "7fffffff-ffff-fffe-ffff-ffffffffffff",
+            "bfffffff-ffff-fffd-ffff-ffffffffffff"),
+        migration.splitKeySpace(4));
+  }
+
+  @Test
+  void testSplitPointsSortAsStringsLikeUuids() {
+    List<String> splitPoints = migration.splitKeySpace(16);
+    assertEquals(15, splitPoints.size());
+    for (int i = 1; i < splitPoints.size(); i++) {
+      assertTrue(splitPoints.get(i - 1).compareTo(splitPoints.get(i)) < 0);
+      // Postgres compares UUIDs as unsigned bytes
+      assertTrue(
+          Long.compareUnsigned(
+                  UUID.fromString(splitPoints.get(i - 1)).getMostSignificantBits(),
+                  UUID.fromString(splitPoints.get(i)).getMostSignificantBits())
+              < 0);
+    }
+  }
+
+  @Test
+  void testSingleRangeHasNoSplitPoints() {
+    assertTrue(migration.splitKeySpace(1).isEmpty());
+  }
+}
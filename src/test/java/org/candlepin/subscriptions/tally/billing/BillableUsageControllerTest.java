@@ -20,12 +20,15 @@
  */
 package org.candlepin.subscriptions.tally.billing;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.sql.Timestamp;
 import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import org.candlepin.subscriptions.FixedClockConfiguration;
@@ -120,6 +123,89 @@ class BillableUsageControllerTest {
     verifyNoMoreInteractions(remittanceRepo);
   }
 
+  @Test
+  void monthlyBatchReadsSnapshotsAndRemittancesOnce() {
+    OffsetDateTime firstHour = clock.startOfCurrentMonth();
+    BillableUsage first = billable(firstHour, 0.3);
+    BillableUsage second = billable(firstHour.plusHours(1), 1.5);
+    BillableUsage third = billable(firstHour.plusHours(2), 0.1);
+    when(remittanceRepo.findAllById(List.of(keyFrom(first))))
+        .thenReturn(List.of(remittance(first, clock.now().minusHours(1), 1.0)));
+    when(snapshotRepo.sumHourlyPhysicalMeasurements(
+            "account123", List.of("rhosak"), firstHour, third.getSnapshotDate()))
+        .thenReturn(
+            List.of(
+                    hourlySum(first, 0.3),
+                    hourlySum(second, 1.5),
+                    hourlySum(third, 0.1),
+                    hourlySum(billable(firstHour, 0.0).withBillingAccountId("other"), 9.0))
+                .stream());
+
+    controller.submitBillableUsages(BillingWindow.MONTHLY, List.of(first, second, third));
+
+    // Running totals are 0.3, 1.8 and 1.9, which round up to 1, 2 and 2.
+    assertEquals(0.0, first.getValue());
+    assertEquals(1.0, second.getValue());
+    assertEquals(0.0, third.getValue());
+    verify(remittanceRepo).saveAll(List.of(remittance(first, clock.now(), 2.0)));
+    verify(producer).produce(first);
+    verify(producer).produce(second);
+    verify(producer).produce(third);
+    verifyNoMoreInteractions(remittanceRepo, snapshotRepo);
+  }
+
+  @Test
+  void monthlyBatchCreatesMissingRemittance() {
+    OffsetDateTime firstHour = clock.startOfCurrentMonth();
+    BillableUsage first = billable(firstHour, 0.4);
+    BillableUsage second = billable(firstHour.plusHours(1), 0.4);
+    when(remittanceRepo.findAllById(List.of(keyFrom(first)))).thenReturn(List.of());
+    when(snapshotRepo.sumHourlyPhysicalMeasurements(
+            "account123", List.of("rhosak"), firstHour, second.getSnapshotDate()))
+        .thenReturn(List.of(hourlySum(first, 0.4), hourlySum(second, 0.4)).stream());
+
+    controller.submitBillableUsages(BillingWindow.MONTHLY, List.of(first, second));
+
+    assertEquals(1.0, first.getValue());
+    assertEquals(0.0, second.getValue());
+    verify(remittanceRepo).saveAll(List.of(remittance(first, clock.now(), 1.0)));
+  }
+
+  @Test
+  void monthlyBatchRestartsTotalsEachMonth() {
+    OffsetDateTime firstHour = clock.startOfCurrentMonth();
+    BillableUsage lastMonth = billable(firstHour.minusHours(1), 1.5);
+    BillableUsage thisMonth = billable(firstHour, 0.3);
+    when(remittanceRepo.findAllById(List.of(keyFrom(lastMonth), keyFrom(thisMonth))))
+        .thenReturn(List.of());
+    when(snapshotRepo.sumHourlyPhysicalMeasurements(
+            "account123",
+            List.of("rhosak"),
+            clock.startOfMonth(lastMonth.getSnapshotDate()),
+            firstHour))
+        .thenReturn(List.of(hourlySum(lastMonth, 1.5), hourlySum(thisMonth, 0.3)).stream());
+
+    controller.submitBillableUsages(BillingWindow.MONTHLY, List.of(lastMonth, thisMonth));
+
+    // Totals are 1.5 for last month and 0.3 for this month, which round up to 2 and 1.
+    assertEquals(2.0, lastMonth.getValue());
+    assertEquals(1.0, thisMonth.getValue());
+  }
+
+  /** A row of summed hourly measurements, as returned by the snapshot repository. */
+  private Object[] hourlySum(BillableUsage usage, double value) {
+    return new Object[] {
+      usage.getProductId(),
+      usage.getSla().value(),
+      usage.getUsage().value(),
+      usage.getBillingProvider().value(),
+      usage.getBillingAccountId(),
+      Measurement.Uom.fromValue(usage.getUom().value()).name(),
+      Timestamp.from(usage.getSnapshotDate().toInstant()),
+      value
+    };
+  }
+
   private BillableUsage billable(OffsetDateTime date, Double value) {
     return new BillableUsage()
         .withAccountNumber("account123")
@@ -28,11 +28,13 @@ import static org.candlepin.subscriptions.tally.collector.TestHelper.cloudMachin
 import static org.candlepin.subscriptions.tally.collector.TestHelper.guestFacts;
 import static org.candlepin.subscriptions.tally.collector.TestHelper.hypervisorFacts;
 import static org.candlepin.subscriptions.tally.collector.TestHelper.physicalNonHypervisor;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.util.LinkedList;
 import java.util.List;
 import org.candlepin.subscriptions.db.model.BillingProvider;
 import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
+import org.candlepin.subscriptions.db.model.HostTallyBucket;
 import org.candlepin.subscriptions.db.model.ServiceLevel;
 import org.candlepin.subscriptions.db.model.Usage;
 import org.candlepin.subscriptions.tally.UsageCalculation;
@@ -137,6 +139,23 @@ class DefaultProductUsageCollectorTest {
     assertTotalsCalculation(calc, 0, 0, 3);
   }
 
+  @Test
+  void testCollectFromBucketMatchesCollect() {
+    List<NormalizedFacts> conditions =
+        List.of(
+            physicalNonHypervisor(4, 12),
+            guestFacts(3, 12, true),
+            cloudMachineFacts(HardwareMeasurementType.AWS, 4, 12));
+    for (NormalizedFacts facts : conditions) {
+      UsageCalculation expected = new UsageCalculation(createUsageKey());
+      HostTallyBucket bucket = collector.collect(expected, facts).orElseThrow();
+
+      UsageCalculation actual = new UsageCalculation(createUsageKey());
+      collector.collectFromBucket(actual, bucket);
+      assertEquals(expected.toString(), actual.toString());
+    }
+  }
+
   private UsageCalculation.Key createUsageKey() {
     return new UsageCalculation.Key(
         "NON_RHEL", ServiceLevel.EMPTY, Usage.EMPTY, BillingProvider.EMPTY, "_ANY");
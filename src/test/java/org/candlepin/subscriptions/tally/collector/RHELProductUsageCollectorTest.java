@@ -161,6 +161,30 @@ class RHELProductUsageCollectorTest {
     assertTotalsCalculation(calc, 0, 0, 3);
   }
 
+  @Test
+  void testCollectFromBucketMatchesCollect() {
+    List<NormalizedFacts> conditions =
+        List.of(
+            physicalNonHypervisor(4, 12),
+            guestFacts(3, 12, true),
+            cloudMachineFacts(HardwareMeasurementType.AWS, 4, 12));
+    for (NormalizedFacts facts : conditions) {
+      UsageCalculation expected = new UsageCalculation(createUsageKey());
+      HostTallyBucket bucket = collector.collect(expected, facts).orElseThrow();
+
+      UsageCalculation actual = new UsageCalculation(createUsageKey());
+      collector.collectFromBucket(actual, bucket);
+      assertEquals(expected.toString(), actual.toString());
+    }
+
+    UsageCalculation expected = new UsageCalculation(createUsageKey());
+    HostTallyBucket bucket =
+        collector.collectForHypervisor("foo", expected, hypervisorFacts(4, 12)).orElseThrow();
+    UsageCalculation actual = new UsageCalculation(createUsageKey());
+    collector.collectFromBucket(actual, bucket);
+    assertEquals(expected.toString(), actual.toString());
+  }
+
   private UsageCalculation.Key createUsageKey() {
     return new UsageCalculation.Key(
         "RHEL", ServiceLevel.EMPTY, Usage.EMPTY, BillingProvider.EMPTY, "_ANY");
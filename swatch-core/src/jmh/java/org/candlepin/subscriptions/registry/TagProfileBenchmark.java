@@ -0,0 +1,162 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.registry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.candlepin.subscriptions.json.Measurement.Uom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.Constructor;
+
+/**
+ * Compares the {@link TagProfile} lookups used per event and per usage record with the linear
+ * scans they replaced, against the tag profile shipped with the application.
+ *
+ * <p>Each lookup is made for the last matching entry of the profile, the worst case of a scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagProfileBenchmark {
+
+  private TagProfile tagProfile;
+  private Map<String, Set<String>> tagToEngProducts;
+  private String metricTag;
+  private Uom metricUom;
+  private String engProduct;
+  private String serviceType;
+
+  @Setup
+  public void setup() throws IOException {
+    try (InputStream profile =
+        getClass().getClassLoader().getResourceAsStream("tag_profile.yaml")) {
+      tagProfile = new Yaml(new Constructor(TagProfile.class)).load(profile);
+    }
+    tagProfile.initLookups();
+
+    TagMetric lastMetric = tagProfile.getTagMetrics().get(tagProfile.getTagMetrics().size() - 1);
+    metricTag = lastMetric.getTag();
+    metricUom = lastMetric.getUom();
+
+    // The tag -> engineering products lookup the previous getTagsByEngProduct scanned
+    tagToEngProducts = new HashMap<>();
+    for (TagMapping mapping : tagProfile.getTagMappings()) {
+      if ("engId".equals(mapping.getValueType())) {
+        mapping
+            .getTags()
+            .forEach(
+                tag ->
+                    tagToEngProducts
+                        .computeIfAbsent(tag, k -> new HashSet<>())
+                        .add(mapping.getValue()));
+        engProduct = mapping.getValue();
+      }
+    }
+
+    List<TagMetaData> metaData = tagProfile.getTagMetaData();
+    serviceType =
+        metaData.stream()
+            .map(TagMetaData::getServiceType)
+            .filter(type -> type != null && !type.isEmpty())
+            .reduce((first, second) -> second)
+            .orElseThrow();
+  }
+
+  @Benchmark
+  public Optional<TagMetric> tagMetricScan() {
+    List<TagMetric> matchedMetrics =
+        tagProfile.getTagMetrics().stream()
+            .filter(x -> metricTag.equals(x.getTag()) && metricUom.equals(x.getUom()))
+            .collect(Collectors.toList());
+    if (matchedMetrics.size() > 1) {
+      throw new IllegalStateException(
+          String.format("Duplicate tag metric found: %s/%s", metricTag, metricUom));
+    }
+    return matchedMetrics.stream().findFirst();
+  }
+
+  @Benchmark
+  public Optional<TagMetric> tagMetricIndex() {
+    return tagProfile.getTagMetric(metricTag, metricUom);
+  }
+
+  @Benchmark
+  public Set<String> tagsByEngProductScan() {
+    return tagToEngProducts.entrySet().stream()
+        .filter(e -> e.getValue().contains(engProduct))
+        .map(Entry::getKey)
+        .collect(Collectors.toSet());
+  }
+
+  @Benchmark
+  public Set<String> tagsByEngProductIndex() {
+    return tagProfile.getTagsByEngProduct(engProduct);
+  }
+
+  @Benchmark
+  public Optional<TagMetaData> tagMetaDataByServiceTypeScan() {
+    return tagProfile.getTagMetaData().stream()
+        .filter(meta -> serviceType.equals(meta.getServiceType()))
+        .findFirst();
+  }
+
+  @Benchmark
+  public Optional<TagMetaData> tagMetaDataByServiceTypeIndex() {
+    return tagProfile.getTagMetaDataByServiceType(serviceType);
+  }
+
+  @Benchmark
+  public Set<String> tagsForServiceTypeScan() {
+    Set<String> tags = new HashSet<>();
+    tagProfile.getTagMetaData().stream()
+        .filter(meta -> serviceType.equals(meta.getServiceType()))
+        .map(TagMetaData::getTags)
+        .forEach(tags::addAll);
+    return tags;
+  }
+
+  @Benchmark
+  public Set<String> tagsForServiceTypeIndex() {
+    return tagProfile.getTagsForServiceType(serviceType);
+  }
+}
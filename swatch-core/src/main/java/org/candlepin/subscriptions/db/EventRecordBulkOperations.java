@@ -0,0 +1,68 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import org.candlepin.subscriptions.db.model.EventKey;
+import org.candlepin.subscriptions.db.model.EventRecord;
+
+/** Repository "fragment interface" for set-based writes of event records. */
+public interface EventRecordBulkOperations {
+
+  /**
+   * Insert the given event records, replacing the data of any existing record with the same
+   * natural key (org, event type, event source, instance and timestamp). Existing records keep
+   * their ID.
+   *
+   * @param records event records with distinct natural keys
+   */
+  void upsertAll(Collection<EventRecord> records);
+
+  /**
+   * Delete the events of an org, event source and event type in a time range, except for the
+   * given keys.
+   *
+   * @param orgId the org ID
+   * @param eventSource the event source
+   * @param eventType the event type
+   * @param begin start of the time range (inclusive)
+   * @param end end of the time range (exclusive)
+   * @param keep keys of the events to keep
+   * @return the number of deleted events
+   */
+  int deleteInTimeRangeExcept(
+      String orgId,
+      String eventSource,
+      String eventType,
+      OffsetDateTime begin,
+      OffsetDateTime end,
+      Collection<EventKey> keep);
+
+  /**
+   * Delete at most batchSize events older than the cutoff date, across all orgs.
+   *
+   * @param cutoffDate events with a timestamp BEFORE this date are deleted
+   * @param batchSize maximum number of events deleted by this call
+   * @return the number of deleted events
+   */
+  int deleteBatchByTimestampBefore(OffsetDateTime cutoffDate, int batchSize);
+}
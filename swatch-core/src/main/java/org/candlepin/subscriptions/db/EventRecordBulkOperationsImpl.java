@@ -0,0 +1,142 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javax.sql.DataSource;
+import org.candlepin.subscriptions.db.model.EventKey;
+import org.candlepin.subscriptions.db.model.EventRecord;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Repository "mixin" implementing set-based writes of event records with plain JDBC, so that a
+ * large number of events is written with a handful of statements rather than one entity merge per
+ * event. To use, extend EventRecordBulkOperations
+ */
+@Component
+public class EventRecordBulkOperationsImpl implements EventRecordBulkOperations {
+
+  private static final int BATCH_SIZE = 1000;
+
+  private static final String UPSERT_SQL =
+      "insert into events(id, account_number, org_id, event_type, event_source, instance_id, "
+          + "service_type, timestamp, data) values (?, ?, ?, ?, ?, ?, ?, ?, cast(? as jsonb)) "
+          + "on conflict (event_type, event_source, instance_id, org_id, timestamp) do update "
+          + "set account_number = excluded.account_number, "
+          + "service_type = excluded.service_type, "
+          + "data = jsonb_set(excluded.data, '{event_id}', to_jsonb(events.id))";
+
+  private static final String DELETE_EXCEPT_SQL =
+      "delete from events e where e.org_id = ? and e.event_source = ? and e.event_type = ? "
+          + "and e.timestamp >= ? and e.timestamp < ? and not exists ("
+          + "select 1 from unnest(?, ?) as k(instance_id, timestamp) "
+          + "where k.instance_id = e.instance_id and k.timestamp = e.timestamp)";
+
+  private static final String DELETE_BATCH_BEFORE_SQL =
+      "delete from events where id in ("
+          + "select e.id from events e where e.timestamp < ? limit ?)";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final ObjectMapper objectMapper;
+
+  public EventRecordBulkOperationsImpl(
+      @Qualifier("rhsmSubscriptionsDataSource") DataSource dataSource, ObjectMapper objectMapper) {
+    this.jdbcTemplate = new JdbcTemplate(dataSource);
+    this.objectMapper = objectMapper;
+  }
+
+  @Override
+  public void upsertAll(Collection<EventRecord> records) {
+    List<Object[]> batchArgs = new ArrayList<>(records.size());
+    for (EventRecord eventRecord : records) {
+      batchArgs.add(
+          new Object[] {
+            eventRecord.getId(),
+            eventRecord.getAccountNumber(),
+            eventRecord.getOrgId(),
+            eventRecord.getEventType(),
+            eventRecord.getEventSource(),
+            eventRecord.getInstanceId(),
+            eventRecord.getServiceType(),
+            eventRecord.getTimestamp(),
+            toJson(eventRecord)
+          });
+      if (batchArgs.size() >= BATCH_SIZE) {
+        jdbcTemplate.batchUpdate(UPSERT_SQL, batchArgs);
+        batchArgs.clear();
+      }
+    }
+    if (!batchArgs.isEmpty()) {
+      jdbcTemplate.batchUpdate(UPSERT_SQL, batchArgs);
+    }
+  }
+
+  @Override
+  public int deleteInTimeRangeExcept(
+      String orgId,
+      String eventSource,
+      String eventType,
+      OffsetDateTime begin,
+      OffsetDateTime end,
+      Collection<EventKey> keep) {
+    String[] instanceIds = new String[keep.size()];
+    Timestamp[] timestamps = new Timestamp[keep.size()];
+    int i = 0;
+    for (EventKey key : keep) {
+      instanceIds[i] = key.getInstanceId();
+      timestamps[i] = Timestamp.from(key.getTimestamp().toInstant());
+      i++;
+    }
+    return jdbcTemplate.update(
+        connection -> {
+          var statement = connection.prepareStatement(DELETE_EXCEPT_SQL);
+          statement.setString(1, orgId);
+          statement.setString(2, eventSource);
+          statement.setString(3, eventType);
+          statement.setObject(4, begin);
+          statement.setObject(5, end);
+          statement.setArray(6, connection.createArrayOf("varchar", instanceIds));
+          statement.setArray(7, connection.createArrayOf("timestamptz", timestamps));
+          return statement;
+        });
+  }
+
+  @Override
+  public int deleteBatchByTimestampBefore(OffsetDateTime cutoffDate, int batchSize) {
+    return jdbcTemplate.update(DELETE_BATCH_BEFORE_SQL, cutoffDate, batchSize);
+  }
+
+  private String toJson(EventRecord eventRecord) {
+    try {
+      return objectMapper.writeValueAsString(eventRecord.getEvent());
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Error serializing event", e);
+    }
+  }
+}
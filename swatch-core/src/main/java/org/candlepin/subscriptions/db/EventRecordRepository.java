@@ -25,8 +25,6 @@ import java.util.UUID;
 import java.util.stream.Stream;
 import org.candlepin.subscriptions.db.model.EventRecord;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 
 /**
  * DB repository for Event records.
@@ -35,7 +33,8 @@ import org.springframework.data.repository.query.Param;
  * @see org.candlepin.subscriptions.json.Event
  */
 @SuppressWarnings({"linelength", "indentation"})
-public interface EventRecordRepository extends JpaRepository<EventRecord, UUID> {
+public interface EventRecordRepository
+    extends JpaRepository<EventRecord, UUID>, EventRecordBulkOperations {
 
   /**
    * Fetch a stream of events for a given account for a given time range.
@@ -95,36 +94,22 @@ public interface EventRecordRepository extends JpaRepository<EventRecord, UUID>
    * @param end
    * @return true if at least 1 event exists, false otherwise.
    */
-  @Query(
-      nativeQuery = true,
-      value =
-          "select exists(select 1 from events where org_id=:orgId and data->>'service_type'=:serviceType and timestamp >= :begin and timestamp < :end order by timestamp)")
   boolean existsByOrgIdAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThan(
-      @Param("orgId") String orgId,
-      @Param("serviceType") String serviceType,
-      @Param("begin") OffsetDateTime begin,
-      @Param("end") OffsetDateTime end);
+      String orgId, String serviceType, OffsetDateTime begin, OffsetDateTime end);
 
   /**
-   * Find all the events based on the account number and service type that exist during the
-   * specified range.
+   * Find all the events based on the org ID and service type that exist during the specified
+   * range.
    *
-   * @param accountNumber
+   * @param orgId
    * @param serviceType
    * @param begin
    * @param end
    * @return a stream of Event objects matching the specified criteria.
    */
-  @Query(
-      nativeQuery = true,
-      value =
-          "select * from events where account_number=:accountNumber and data->>'service_type'=:serviceType and timestamp >= :begin and timestamp < :end order by timestamp")
   Stream<EventRecord>
-      findByAccountNumberAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestamp(
-          @Param("accountNumber") String accountNumber,
-          @Param("serviceType") String serviceType,
-          @Param("begin") OffsetDateTime begin,
-          @Param("end") OffsetDateTime end);
+      findByOrgIdAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestamp(
+          String orgId, String serviceType, OffsetDateTime begin, OffsetDateTime end);
 
   void deleteByOrgId(String orgId);
 }
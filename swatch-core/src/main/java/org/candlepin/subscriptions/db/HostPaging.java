@@ -0,0 +1,46 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import java.util.UUID;
+import org.candlepin.subscriptions.db.model.Host;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+/** Repository "fragment interface" for paging through the ids of hosts. */
+public interface HostPaging {
+
+  /**
+   * Find a page of the ids of the distinct hosts matching a specification. Only the ids are
+   * selected, sorted and paged in the database, so that the hosts of the page can then be loaded by
+   * id without the joins the specification filters on.
+   *
+   * @param specification criteria the hosts must match
+   * @param position criteria selecting where the page starts, e.g. the hosts sorting after the last
+   *     host of the previous page; unlike the specification, it doesn't limit the total count (pass
+   *     null for none)
+   * @param pageable the page to return and its sort
+   * @return a page of host ids, along with the total number of hosts matching the specification
+   */
+  Page<UUID> findHostIds(
+      Specification<Host> specification, Specification<Host> position, Pageable pageable);
+}
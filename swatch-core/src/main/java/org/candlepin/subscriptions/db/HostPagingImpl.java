@@ -0,0 +1,91 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import org.candlepin.subscriptions.db.model.Host;
+import org.candlepin.subscriptions.db.model.Host_;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.stereotype.Component;
+
+/**
+ * Repository "mixin" selecting a page of host ids with a criteria query, so that paging happens in
+ * the database rather than over every joined row in memory. To use, extend HostPaging
+ */
+@Component
+public class HostPagingImpl implements HostPaging {
+
+  @PersistenceContext private EntityManager entityManager;
+
+  @Override
+  public Page<UUID> findHostIds(
+      Specification<Host> specification, Specification<Host> position, Pageable pageable) {
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+
+    CriteriaQuery<Tuple> query = builder.createTupleQuery();
+    Root<Host> root = query.from(Host.class);
+    Specification<Host> pageSpecification =
+        position == null ? specification : specification.and(position);
+    query.where(pageSpecification.toPredicate(root, query, builder));
+    // Sorting on a collection reuses the join the specification made for it, so the sort has to be
+    // resolved after the specification.
+    List<Order> orders = QueryUtils.toOrders(pageable.getSort(), root, builder);
+    // The joins can repeat a host, and a distinct query has to select what it sorts by.
+    List<Selection<?>> selections = new ArrayList<>();
+    selections.add(root.get(Host_.id));
+    orders.forEach(order -> selections.add(order.getExpression()));
+    query.multiselect(selections).distinct(true).orderBy(orders);
+    TypedQuery<Tuple> pageQuery = entityManager.createQuery(query);
+    if (pageable.isPaged()) {
+      pageQuery.setFirstResult((int) pageable.getOffset());
+      pageQuery.setMaxResults(pageable.getPageSize());
+    }
+    List<UUID> ids =
+        pageQuery.getResultList().stream()
+            .map(tuple -> tuple.get(0, UUID.class))
+            .collect(Collectors.toList());
+
+    CriteriaQuery<Long> countQuery = builder.createQuery(Long.class);
+    Root<Host> countRoot = countQuery.from(Host.class);
+    countQuery
+        .select(builder.countDistinct(countRoot.get(Host_.id)))
+        .where(specification.toPredicate(countRoot, countQuery, builder));
+    long total = entityManager.createQuery(countQuery).getSingleResult();
+
+    return new PageImpl<>(ids, pageable, total);
+  }
+}
@@ -21,8 +21,12 @@
 package org.candlepin.subscriptions.db;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import javax.validation.constraints.NotNull;
 import org.candlepin.subscriptions.db.model.BillingProvider;
 import org.candlepin.subscriptions.db.model.Host;
@@ -36,9 +40,9 @@ import org.candlepin.subscriptions.db.model.TallyHostView;
 import org.candlepin.subscriptions.db.model.Usage;
 import org.candlepin.subscriptions.json.Measurement.Uom;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
@@ -48,7 +52,10 @@ import org.springframework.util.StringUtils;
 /** Provides access to Host database entities. */
 @SuppressWarnings({"linelength", "indentation"})
 public interface HostRepository
-    extends JpaRepository<Host, UUID>, JpaSpecificationExecutor<Host>, TagProfileLookup {
+    extends JpaRepository<Host, UUID>,
+        JpaSpecificationExecutor<Host>,
+        TagProfileLookup,
+        HostPaging {
 
   /**
    * Find all Hosts by bucket criteria and return a page of TallyHostView objects. A TallyHostView
@@ -68,6 +75,49 @@ public interface HostRepository
    * @return a page of Host entities matching the criteria.
    */
   @SuppressWarnings("java:S107")
+  default Page<TallyHostView> getTallyHostViews(
+      String orgId,
+      String productId,
+      ServiceLevel sla,
+      Usage usage,
+      BillingProvider billingProvider,
+      String billingAccountId,
+      String displayNameSubstring,
+      int minCores,
+      int minSockets,
+      Pageable pageable) {
+    // A display name condition matching every host would still keep the database from using the
+    // other indexes on hosts, so it's left out of the query entirely when there's no filter.
+    if (!StringUtils.hasLength(displayNameSubstring)) {
+      return findTallyHostViews(
+          orgId,
+          productId,
+          sla,
+          usage,
+          billingProvider,
+          billingAccountId,
+          minCores,
+          minSockets,
+          pageable);
+    }
+    return findTallyHostViewsByDisplayNameContaining(
+        orgId,
+        productId,
+        sla,
+        usage,
+        billingProvider,
+        billingAccountId,
+        displayNameSubstring,
+        minCores,
+        minSockets,
+        pageable);
+  }
+
+  /**
+   * @see #getTallyHostViews(String, String, ServiceLevel, Usage, BillingProvider, String, String,
+   *     int, int, Pageable)
+   */
+  @SuppressWarnings("java:S107")
   @Query(
       value =
           "select b from HostTallyBucket b join fetch b.host h where "
@@ -76,10 +126,6 @@ public interface HostRepository
               + "b.key.sla = :sla and b.key.usage = :usage and "
               + "b.key.billingProvider = :billingProvider and "
               + "b.key.billingAccountId = :billingAccountId and "
-              +
-              // Have to do the null check first, otherwise the lower in the LIKE clause has issues
-              // with datatypes
-              "((lower(h.displayName) LIKE lower(concat('%', :displayNameSubstring,'%')))) and "
               + "b.cores >= :minCores and b.sockets >= :minSockets",
       // Because we are using a 'fetch join' to avoid having to lazy load each bucket host,
       // we need to specify how the Page should gets its count when the 'limit' parameter
@@ -89,26 +135,58 @@ public interface HostRepository
               + "h.orgId = :orgId and "
               + "b.key.productId = :product and "
               + "b.key.sla = :sla and b.key.usage = :usage and "
-              + "b.key.sla = :sla and b.key.usage = :usage and "
               + "b.key.billingProvider = :billingProvider and "
               + "b.key.billingAccountId = :billingAccountId and "
-              + "((lower(h.displayName) LIKE lower(concat('%', :displayNameSubstring,'%')))) and "
               + "b.cores >= :minCores and b.sockets >= :minSockets")
-  Page<TallyHostView> getTallyHostViews(
+  Page<TallyHostView> findTallyHostViews(
       @Param("orgId") String orgId,
       @Param("product") String productId,
       @Param("sla") ServiceLevel sla,
       @Param("usage") Usage usage,
       @Param("billingProvider") BillingProvider billingProvider,
       @Param("billingAccountId") String billingAccountId,
-      @NotNull @Param("displayNameSubstring") String displayNameSubstring,
       @Param("minCores") int minCores,
       @Param("minSockets") int minSockets,
       Pageable pageable);
 
-  @Override
-  @EntityGraph(attributePaths = {"buckets"})
-  Page<Host> findAll(Specification<Host> specification, Pageable pageable);
+  /**
+   * The display name condition matches the expression of the trigram index on hosts, so that it
+   * can be used for substrings anywhere in the name.
+   *
+   * @see #getTallyHostViews(String, String, ServiceLevel, Usage, BillingProvider, String, String,
+   *     int, int, Pageable)
+   */
+  @SuppressWarnings("java:S107")
+  @Query(
+      value =
+          "select b from HostTallyBucket b join fetch b.host h where "
+              + "h.orgId = :orgId and "
+              + "b.key.productId = :product and "
+              + "b.key.sla = :sla and b.key.usage = :usage and "
+              + "b.key.billingProvider = :billingProvider and "
+              + "b.key.billingAccountId = :billingAccountId and "
+              + "lower(h.displayName) LIKE lower(concat('%', :displayNameSubstring,'%')) and "
+              + "b.cores >= :minCores and b.sockets >= :minSockets",
+      countQuery =
+          "select count(b) from HostTallyBucket b join b.host h where "
+              + "h.orgId = :orgId and "
+              + "b.key.productId = :product and "
+              + "b.key.sla = :sla and b.key.usage = :usage and "
+              + "b.key.billingProvider = :billingProvider and "
+              + "b.key.billingAccountId = :billingAccountId and "
+              + "lower(h.displayName) LIKE lower(concat('%', :displayNameSubstring,'%')) and "
+              + "b.cores >= :minCores and b.sockets >= :minSockets")
+  Page<TallyHostView> findTallyHostViewsByDisplayNameContaining(
+      @Param("orgId") String orgId,
+      @Param("product") String productId,
+      @Param("sla") ServiceLevel sla,
+      @Param("usage") Usage usage,
+      @Param("billingProvider") BillingProvider billingProvider,
+      @Param("billingAccountId") String billingAccountId,
+      @Param("displayNameSubstring") String displayNameSubstring,
+      @Param("minCores") int minCores,
+      @Param("minSockets") int minSockets,
+      Pageable pageable);
 
   /**
    * Find all Hosts by bucket criteria and return a page of TallyHostView objects. A TallyHostView
@@ -141,6 +219,46 @@ public interface HostRepository
       BillingProvider billingProvider,
       String billingAccountId,
       Pageable pageable) {
+    return findAllBy(
+        orgId,
+        productId,
+        sla,
+        usage,
+        displayNameSubstring,
+        minCores,
+        minSockets,
+        month,
+        referenceUom,
+        billingProvider,
+        billingAccountId,
+        null,
+        pageable);
+  }
+
+  /**
+   * Find a page of Hosts by bucket criteria, starting at a given position rather than at the
+   * offset of the pageable. The ids of the page are found first, then only those Hosts are loaded.
+   *
+   * @param position criteria selecting the Hosts after the last one of the previous page, see
+   *     {@link HostSpecification#sortedAfter(UUID)} (pass null to start at the pageable's offset)
+   * @see #findAllBy(String, String, ServiceLevel, Usage, String, int, int, String, Uom,
+   *     BillingProvider, String, Pageable)
+   */
+  @SuppressWarnings("java:S107")
+  default Page<Host> findAllBy(
+      @Param("orgId") String orgId,
+      @Param("product") String productId,
+      @Param("sla") ServiceLevel sla,
+      @Param("usage") Usage usage,
+      @NotNull @Param("displayNameSubstring") String displayNameSubstring,
+      @Param("minCores") int minCores,
+      @Param("minSockets") int minSockets,
+      String month,
+      Uom referenceUom,
+      BillingProvider billingProvider,
+      String billingAccountId,
+      Specification<Host> position,
+      Pageable pageable) {
 
     HostSpecification searchCriteria = new HostSpecification();
 
@@ -177,7 +295,21 @@ public interface HostRepository
       }
     }
 
-    return findAll(searchCriteria, pageable);
+    // Paging over a fetch of the hosts' collections would happen in memory, after loading every
+    // matching host, so the page is selected by id first.
+    Page<UUID> ids = findHostIds(searchCriteria, position, pageable);
+    Map<UUID, Host> hosts =
+        findAllById(ids.getContent()).stream()
+            .collect(Collectors.toMap(Host::getId, Function.identity()));
+    // A host deleted after its id was selected is left out of the page, rather than returned as
+    // null.
+    List<Host> content =
+        ids.getContent().stream()
+            .map(hosts::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    long missing = ids.getNumberOfElements() - (long) content.size();
+    return new PageImpl<>(content, ids.getPageable(), ids.getTotalElements() - missing);
   }
 
   default Uom getDefaultUomForProduct(String productId) {
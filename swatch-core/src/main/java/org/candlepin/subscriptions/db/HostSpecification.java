@@ -21,9 +21,12 @@
 package org.candlepin.subscriptions.db;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Join;
@@ -39,11 +42,15 @@ import org.candlepin.subscriptions.db.model.HostTallyBucket_;
 import org.candlepin.subscriptions.db.model.Host_;
 import org.candlepin.subscriptions.db.model.InstanceMonthlyTotalKey;
 import org.candlepin.subscriptions.db.model.InstanceMonthlyTotalKey_;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
 /** Util class for dynamically building Specification&lt;Host&gt; */
 public class HostSpecification implements Specification<Host> {
 
+  private static final Set<SearchOperation> PATTERN_OPERATIONS =
+      EnumSet.of(SearchOperation.CONTAINS, SearchOperation.MATCH_START, SearchOperation.MATCH_END);
+
   private final transient List<SearchCriteria> list;
 
   public HostSpecification() {
@@ -54,6 +61,38 @@ public class HostSpecification implements Specification<Host> {
     list.add(criteria);
   }
 
+  /**
+   * Hosts that come after the given host when sorted by id, for listing the hosts following a page.
+   *
+   * @param id id of the last host of the previous page
+   * @return criteria matching the hosts sorted after it
+   */
+  public static Specification<Host> sortedAfter(UUID id) {
+    return (root, query, builder) -> builder.greaterThan(root.get(Host_.id), id);
+  }
+
+  /**
+   * Hosts that come after the given host when sorted by display name, then by ascending id, for
+   * listing the hosts following a page.
+   *
+   * @param displayName display name of the last host of the previous page
+   * @param id id of the last host of the previous page
+   * @param direction direction of the display name sort
+   * @return criteria matching the hosts sorted after it
+   */
+  public static Specification<Host> sortedAfter(
+      String displayName, UUID id, Sort.Direction direction) {
+    return (root, query, builder) -> {
+      Path<String> name = root.get(Host_.displayName);
+      Predicate nameAfter =
+          direction.isDescending()
+              ? builder.lessThan(name, displayName)
+              : builder.greaterThan(name, displayName);
+      Predicate idAfter = builder.greaterThan(root.get(Host_.id), id);
+      return builder.or(nameAfter, builder.and(builder.equal(name, displayName), idAfter));
+    };
+  }
+
   @Override
   @SuppressWarnings("java:S3776")
   public Predicate toPredicate(Root<Host> root, CriteriaQuery<?> query, CriteriaBuilder builder) {
@@ -77,6 +116,11 @@ public class HostSpecification implements Specification<Host> {
             InstanceMonthlyTotalKey_.MONTH, instanceMonthlyTotalRoot);
 
     for (SearchCriteria criteria : list) {
+      if (isEmptyPattern(criteria)) {
+        // Matching any value only rules out nulls, and the pattern columns (display name) aren't
+        // nullable. Leaving the condition out lets the database use the other indexes on hosts.
+        continue;
+      }
       Path<?> path = rootPaths.getOrDefault(criteria.getKey(), root);
       if (criteria.getOperation().equals(SearchOperation.GREATER_THAN)) {
         predicates.add(
@@ -125,4 +169,10 @@ public class HostSpecification implements Specification<Host> {
 
     return builder.and(predicates.toArray(new Predicate[0]));
   }
+
+  private static boolean isEmptyPattern(SearchCriteria criteria) {
+    return PATTERN_OPERATIONS.contains(criteria.getOperation())
+        && criteria.getValue() != null
+        && criteria.getValue().toString().isEmpty();
+  }
 }
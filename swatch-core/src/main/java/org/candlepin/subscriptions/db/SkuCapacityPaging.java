@@ -0,0 +1,56 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import java.time.OffsetDateTime;
+import org.candlepin.subscriptions.db.model.SubscriptionCapacityView;
+import org.candlepin.subscriptions.utilization.api.model.SkuCapacityReportSort;
+import org.candlepin.subscriptions.utilization.api.model.SortDirection;
+import org.candlepin.subscriptions.utilization.api.model.Uom;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+/** Repository "fragment interface" for paging through the SKUs of subscription capacities. */
+public interface SkuCapacityPaging {
+
+  /**
+   * Find a page of the distinct SKUs of the subscription capacities matching a specification. The
+   * SKUs are grouped, sorted and paged in the database, so that only the SKUs of the requested page
+   * are returned.
+   *
+   * @param specification criteria the subscription capacities must match
+   * @param sort the per-SKU value to sort by, or null to sort by SKU
+   * @param dir the sort direction, or null for ascending
+   * @param uom the unit of measure capacities are totaled in, or null to use sockets when a SKU
+   *     has socket capacity and cores otherwise
+   * @param now the date after which subscription end dates are considered upcoming events
+   * @param pageable the page to return
+   * @return a page of SKUs, along with the total number of matching SKUs
+   */
+  Page<String> findSkus(
+      Specification<SubscriptionCapacityView> specification,
+      SkuCapacityReportSort sort,
+      SortDirection dir,
+      Uom uom,
+      OffsetDateTime now,
+      Pageable pageable);
+}
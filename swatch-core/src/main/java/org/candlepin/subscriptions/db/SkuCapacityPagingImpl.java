@@ -0,0 +1,213 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Root;
+import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.SubscriptionCapacityView;
+import org.candlepin.subscriptions.db.model.SubscriptionCapacityView_;
+import org.candlepin.subscriptions.db.model.Usage;
+import org.candlepin.subscriptions.utilization.api.model.SkuCapacityReportSort;
+import org.candlepin.subscriptions.utilization.api.model.SortDirection;
+import org.candlepin.subscriptions.utilization.api.model.SubscriptionEventType;
+import org.candlepin.subscriptions.utilization.api.model.Uom;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+/**
+ * Repository "mixin" grouping subscription capacities by SKU with a criteria query, so that
+ * sorting and paging happen in the database. To use, extend SkuCapacityPaging
+ */
+@Component
+public class SkuCapacityPagingImpl implements SkuCapacityPaging {
+
+  @PersistenceContext private EntityManager entityManager;
+
+  @Override
+  public Page<String> findSkus(
+      Specification<SubscriptionCapacityView> specification,
+      SkuCapacityReportSort sort,
+      SortDirection dir,
+      Uom uom,
+      OffsetDateTime now,
+      Pageable pageable) {
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+
+    CriteriaQuery<String> query = builder.createQuery(String.class);
+    Root<SubscriptionCapacityView> root = query.from(SubscriptionCapacityView.class);
+    Expression<String> sku = root.get(SubscriptionCapacityView_.sku);
+    query
+        .select(sku)
+        .where(specification.toPredicate(root, query, builder))
+        .groupBy(sku)
+        .orderBy(orderBy(builder, root, sort, dir, uom, now));
+    TypedQuery<String> pageQuery = entityManager.createQuery(query);
+    if (pageable.isPaged()) {
+      pageQuery.setFirstResult((int) pageable.getOffset());
+      pageQuery.setMaxResults(pageable.getPageSize());
+    }
+    List<String> skus = pageQuery.getResultList();
+
+    CriteriaQuery<Long> countQuery = builder.createQuery(Long.class);
+    Root<SubscriptionCapacityView> countRoot = countQuery.from(SubscriptionCapacityView.class);
+    countQuery
+        .select(builder.countDistinct(countRoot.get(SubscriptionCapacityView_.sku)))
+        .where(specification.toPredicate(countRoot, countQuery, builder));
+    long total = entityManager.createQuery(countQuery).getSingleResult();
+
+    return new PageImpl<>(skus, pageable, total);
+  }
+
+  private List<Order> orderBy(
+      CriteriaBuilder builder,
+      Root<SubscriptionCapacityView> root,
+      SkuCapacityReportSort sort,
+      SortDirection dir,
+      Uom uom,
+      OffsetDateTime now) {
+    boolean ascending = dir != SortDirection.DESC;
+    List<Expression<?>> sortExpressions = new ArrayList<>();
+    switch (Optional.ofNullable(sort).orElse(SkuCapacityReportSort.SKU)) {
+      case SERVICE_LEVEL:
+        sortExpressions.add(
+            builder.min(
+                enumOrder(
+                    builder,
+                    root.get(SubscriptionCapacityView_.serviceLevel),
+                    ServiceLevel.values(),
+                    ServiceLevel.EMPTY)));
+        break;
+      case USAGE:
+        sortExpressions.add(
+            builder.min(
+                enumOrder(
+                    builder,
+                    root.get(SubscriptionCapacityView_.usage),
+                    Usage.values(),
+                    Usage.EMPTY)));
+        break;
+      case QUANTITY:
+        sortExpressions.add(builder.sum(root.get(SubscriptionCapacityView_.quantity)));
+        break;
+      case NEXT_EVENT_DATE:
+        sortExpressions.add(builder.least(upcomingEndDate(builder, root, now)));
+        break;
+      case NEXT_EVENT_TYPE:
+        // The only event type reported is the end of a subscription. SKUs without an upcoming
+        // event have no event type, and sort like SKUs without a next event date.
+        sortExpressions.add(
+            builder.min(
+                builder
+                    .<Integer>selectCase()
+                    .when(
+                        builder.greaterThan(root.get(SubscriptionCapacityView_.endDate), now),
+                        SubscriptionEventType.END.ordinal())
+                    .otherwise(builder.nullLiteral(Integer.class))));
+        break;
+      case TOTAL_CAPACITY:
+        // Unlimited capacity is greater than any limited capacity.
+        sortExpressions.add(
+            builder.max(
+                builder
+                    .<Integer>selectCase()
+                    .when(builder.isTrue(root.get(SubscriptionCapacityView_.hasUnlimitedUsage)), 1)
+                    .otherwise(0)));
+        sortExpressions.add(totalCapacity(builder, root, uom));
+        break;
+      case PRODUCT_NAME:
+        sortExpressions.add(builder.least(root.get(SubscriptionCapacityView_.productName)));
+        break;
+      default:
+        break;
+    }
+    // SKUs are unique, so they break any ties.
+    sortExpressions.add(root.get(SubscriptionCapacityView_.sku));
+
+    List<Order> orders = new ArrayList<>();
+    for (Expression<?> expression : sortExpressions) {
+      orders.add(ascending ? builder.asc(expression) : builder.desc(expression));
+    }
+    return orders;
+  }
+
+  /**
+   * Sort position of an enum attribute. The values are ordered as the enum declares them, which is
+   * also the order of the API enum, rather than by the strings stored in the database. Null sorts
+   * as the given default value.
+   */
+  private static <E extends Enum<E>> Expression<Integer> enumOrder(
+      CriteriaBuilder builder, Expression<E> attribute, E[] values, E defaultValue) {
+    CriteriaBuilder.Case<Integer> order = builder.selectCase();
+    for (E value : values) {
+      if (value != defaultValue) {
+        order = order.when(builder.equal(attribute, value), value.ordinal());
+      }
+    }
+    return order.otherwise(defaultValue.ordinal());
+  }
+
+  private Expression<OffsetDateTime> upcomingEndDate(
+      CriteriaBuilder builder, Root<SubscriptionCapacityView> root, OffsetDateTime now) {
+    Expression<OffsetDateTime> endDate = root.get(SubscriptionCapacityView_.endDate);
+    return builder
+        .<OffsetDateTime>selectCase()
+        .when(builder.greaterThan(endDate, now), endDate)
+        .otherwise(builder.nullLiteral(OffsetDateTime.class));
+  }
+
+  private Expression<Integer> totalCapacity(
+      CriteriaBuilder builder, Root<SubscriptionCapacityView> root, Uom uom) {
+    Expression<Integer> sockets =
+        builder.sum(
+            builder.sum(
+                builder.coalesce(root.get(SubscriptionCapacityView_.physicalSockets), 0),
+                builder.coalesce(root.get(SubscriptionCapacityView_.virtualSockets), 0)));
+    Expression<Integer> cores =
+        builder.sum(
+            builder.sum(
+                builder.coalesce(root.get(SubscriptionCapacityView_.physicalCores), 0),
+                builder.coalesce(root.get(SubscriptionCapacityView_.virtualCores), 0)));
+    if (uom == Uom.SOCKETS) {
+      return sockets;
+    }
+    if (uom == Uom.CORES) {
+      return cores;
+    }
+    return builder
+        .<Integer>selectCase()
+        .when(builder.notEqual(sockets, 0), sockets)
+        .otherwise(cores);
+  }
+}
@@ -21,6 +21,7 @@
 package org.candlepin.subscriptions.db;
 
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import org.candlepin.subscriptions.db.model.ServiceLevel;
@@ -29,14 +30,19 @@ import org.candlepin.subscriptions.db.model.SubscriptionCapacityKey_;
 import org.candlepin.subscriptions.db.model.SubscriptionCapacityView;
 import org.candlepin.subscriptions.db.model.SubscriptionCapacityView_;
 import org.candlepin.subscriptions.db.model.Usage;
+import org.candlepin.subscriptions.utilization.api.model.SkuCapacityReportSort;
+import org.candlepin.subscriptions.utilization.api.model.SortDirection;
 import org.candlepin.subscriptions.utilization.api.model.Uom;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 
 public interface SubscriptionCapacityViewRepository
     extends JpaRepository<SubscriptionCapacityView, SubscriptionCapacityKey>,
-        JpaSpecificationExecutor<SubscriptionCapacityView> {
+        JpaSpecificationExecutor<SubscriptionCapacityView>,
+        SkuCapacityPaging {
 
   @SuppressWarnings("java:S107")
   default List<SubscriptionCapacityView> findAllBy(
@@ -61,6 +67,78 @@ public interface SubscriptionCapacityViewRepository
             uom));
   }
 
+  /**
+   * Find a sorted page of the SKUs of the subscription capacities matching the given criteria.
+   * Upcoming events are those after the end of the report range.
+   *
+   * @see SkuCapacityPaging#findSkus
+   */
+  @SuppressWarnings("java:S107")
+  default Page<String> findSkusBy(
+      String orgId,
+      HypervisorReportCategory hypervisorReportCategory,
+      String productId,
+      ServiceLevel serviceLevel,
+      Usage usage,
+      OffsetDateTime reportStart,
+      OffsetDateTime reportEnd,
+      Uom uom,
+      SkuCapacityReportSort sort,
+      SortDirection dir,
+      Pageable pageable) {
+
+    return findSkus(
+        buildSearchSpecification(
+            orgId,
+            hypervisorReportCategory,
+            productId,
+            serviceLevel,
+            usage,
+            reportStart,
+            reportEnd,
+            uom),
+        sort,
+        dir,
+        uom,
+        reportEnd,
+        pageable);
+  }
+
+  /**
+   * Find the subscription capacities matching the given criteria, limited to the given SKUs.
+   *
+   * @see #findAllBy(String, HypervisorReportCategory, String, ServiceLevel, Usage, OffsetDateTime,
+   *     OffsetDateTime, Uom)
+   */
+  @SuppressWarnings("java:S107")
+  default List<SubscriptionCapacityView> findAllBy(
+      String orgId,
+      HypervisorReportCategory hypervisorReportCategory,
+      String productId,
+      ServiceLevel serviceLevel,
+      Usage usage,
+      OffsetDateTime reportStart,
+      OffsetDateTime reportEnd,
+      Uom uom,
+      Collection<String> skus) {
+
+    return findAll(
+        buildSearchSpecification(
+                orgId,
+                hypervisorReportCategory,
+                productId,
+                serviceLevel,
+                usage,
+                reportStart,
+                reportEnd,
+                uom)
+            .and(skuIn(skus)));
+  }
+
+  static Specification<SubscriptionCapacityView> skuIn(Collection<String> skus) {
+    return (root, query, builder) -> root.get(SubscriptionCapacityView_.sku).in(skus);
+  }
+
   static Specification<SubscriptionCapacityView> orgAndProductEquals(
       String orgId, String productId) {
     return (root, query, builder) -> {
@@ -0,0 +1,41 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import java.time.OffsetDateTime;
+import org.candlepin.subscriptions.db.model.Granularity;
+
+/** Repository "fragment interface" for set-based deletes of tally snapshots. */
+public interface TallySnapshotBulkOperations {
+
+  /**
+   * Delete at most batchSize snapshots of a granularity older than the cutoff date, across all orgs
+   * that have an account config. Measurements of the deleted snapshots are removed by the cascading
+   * foreign key.
+   *
+   * @param granularity the granularity of the snapshots to delete
+   * @param cutoffDate snapshots dated BEFORE this date are deleted
+   * @param batchSize maximum number of snapshots deleted by this call
+   * @return the number of deleted snapshots
+   */
+  int deleteBatchByGranularityAndSnapshotDateBefore(
+      Granularity granularity, OffsetDateTime cutoffDate, int batchSize);
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import java.time.OffsetDateTime;
+import javax.sql.DataSource;
+import org.candlepin.subscriptions.db.model.Granularity;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Repository "mixin" implementing set-based deletes of tally snapshots with plain JDBC, so that
+ * stale snapshots are removed with bounded statements rather than loading and deleting each
+ * snapshot entity. To use, extend TallySnapshotBulkOperations
+ */
+@Component
+public class TallySnapshotBulkOperationsImpl implements TallySnapshotBulkOperations {
+
+  private static final String DELETE_BATCH_BEFORE_SQL =
+      "delete from tally_snapshots where id in ("
+          + "select s.id from tally_snapshots s where s.granularity = ? and s.snapshot_date < ? "
+          + "and exists (select 1 from account_config c where c.org_id = s.org_id) limit ?)";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public TallySnapshotBulkOperationsImpl(
+      @Qualifier("rhsmSubscriptionsDataSource") DataSource dataSource) {
+    this.jdbcTemplate = new JdbcTemplate(dataSource);
+  }
+
+  @Override
+  public int deleteBatchByGranularityAndSnapshotDateBefore(
+      Granularity granularity, OffsetDateTime cutoffDate, int batchSize) {
+    return jdbcTemplate.update(DELETE_BATCH_BEFORE_SQL, granularity.name(), cutoffDate, batchSize);
+  }
+}
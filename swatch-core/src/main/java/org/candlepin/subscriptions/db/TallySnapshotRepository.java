@@ -39,7 +39,8 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 /** Interface that Spring Data will turn into a DAO for us. */
-public interface TallySnapshotRepository extends JpaRepository<TallySnapshot, UUID> {
+public interface TallySnapshotRepository
+    extends JpaRepository<TallySnapshot, UUID>, TallySnapshotBulkOperations {
 
   // suppress line length and params arguments, can't help either easily b/c this is a spring data
   // method
@@ -103,6 +104,28 @@ public interface TallySnapshotRepository extends JpaRepository<TallySnapshot, UU
       OffsetDateTime beginning,
       OffsetDateTime ending);
 
+  /**
+   * Sums the PHYSICAL measurements of an account's hourly snapshots, per snapshot date and
+   * measurement key. Each row holds the product_id, sla, usage, billing_provider,
+   * billing_account_id, uom, snapshot_date and summed value, in that order.
+   */
+  @Query(
+      nativeQuery = true,
+      value =
+          "select s.product_id, s.sla, s.usage, s.billing_provider, s.billing_account_id, m.uom, "
+              + "s.snapshot_date, sum(m.value) from tally_snapshots s "
+              + "inner join tally_measurements m on m.snapshot_id = s.id "
+              + "where s.account_number = :accountNumber and s.product_id in (:productIds) "
+              + "and s.granularity = 'HOURLY' and m.measurement_type = 'PHYSICAL' "
+              + "and s.snapshot_date between :beginning and :ending "
+              + "group by s.product_id, s.sla, s.usage, s.billing_provider, s.billing_account_id, "
+              + "m.uom, s.snapshot_date")
+  Stream<Object[]> sumHourlyPhysicalMeasurements(
+      @Param("accountNumber") String accountNumber,
+      @Param("productIds") Collection<String> productIds,
+      @Param("beginning") OffsetDateTime beginning,
+      @Param("ending") OffsetDateTime ending);
+
   void deleteByOrgId(String orgId);
 
   @SuppressWarnings("java:S107") // repository method has a lot of params, deal with it
@@ -71,6 +71,7 @@ public class EventRecord {
     this.eventType = event.getEventType();
     this.eventSource = event.getEventSource();
     this.instanceId = event.getInstanceId();
+    this.serviceType = event.getServiceType();
     this.timestamp = event.getTimestamp();
   }
 
@@ -91,6 +92,9 @@ public class EventRecord {
   @Column(name = "instance_id")
   private String instanceId;
 
+  @Column(name = "service_type")
+  private String serviceType;
+
   private OffsetDateTime timestamp;
 
   @Valid
@@ -52,6 +52,7 @@ import lombok.Setter;
 import lombok.ToString;
 import org.candlepin.subscriptions.json.Measurement;
 import org.candlepin.subscriptions.json.Measurement.Uom;
+import org.hibernate.annotations.BatchSize;
 
 /**
  * Represents a reported Host from inventory. This entity stores normalized facts for a Host
@@ -97,6 +98,7 @@ public class Host implements Serializable {
   @MapKeyEnumerated(EnumType.STRING)
   @MapKeyColumn(name = "uom")
   @Column(name = "value")
+  @BatchSize(size = 100)
   private Map<Measurement.Uom, Double> measurements = new EnumMap<>(Measurement.Uom.class);
 
   @ElementCollection(fetch = FetchType.EAGER)
@@ -104,6 +106,7 @@ public class Host implements Serializable {
       name = "instance_monthly_totals",
       joinColumns = @JoinColumn(name = "instance_id"))
   @Column(name = "value")
+  @BatchSize(size = 100)
   private Map<InstanceMonthlyTotalKey, Double> monthlyTotals = new HashMap<>();
 
   @Column(name = "is_guest")
@@ -127,6 +130,7 @@ public class Host implements Serializable {
       cascade = CascadeType.ALL,
       orphanRemoval = true,
       fetch = FetchType.EAGER)
+  @BatchSize(size = 100)
   private Set<HostTallyBucket> buckets = new HashSet<>();
 
   @Column(name = "is_unmapped_guest")
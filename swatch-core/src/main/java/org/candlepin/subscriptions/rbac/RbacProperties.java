@@ -20,6 +20,7 @@
  */
 package org.candlepin.subscriptions.rbac;
 
+import java.time.Duration;
 import java.util.List;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -37,4 +38,13 @@ public class RbacProperties extends HttpClientProperties {
 
   /** The RBAC application name that defines the permissions for this application. */
   private String applicationName = "subscriptions";
+
+  /** Whether permissions looked up for an identity are cached. */
+  private boolean permissionCacheEnabled = true;
+
+  /** How long permissions for an identity are cached before RBAC is consulted again. */
+  private Duration permissionCacheTtl = Duration.ofMinutes(1);
+
+  /** Maximum number of identities whose permissions are cached. */
+  private long permissionCacheMaxSize = 10000;
 }
@@ -20,25 +20,80 @@
  */
 package org.candlepin.subscriptions.rbac;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import lombok.Value;
 import org.candlepin.subscriptions.rbac.model.Access;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.StringUtils;
 
-/** Provides RBAC functionality. */
+/**
+ * Provides RBAC functionality.
+ *
+ * <p>Permissions are cached per identity header and application name for a short time, so that a
+ * burst of API requests from the same user results in a single call to the RBAC service. Requests
+ * without an identity header are never cached.
+ */
 public class RbacService {
 
   @Autowired private RbacApi api;
 
+  private final Cache<PermissionKey, List<String>> permissionCache;
+
+  public RbacService(RbacProperties properties, MeterRegistry meterRegistry) {
+    if (properties.isPermissionCacheEnabled()) {
+      permissionCache =
+          CacheBuilder.newBuilder()
+              .maximumSize(properties.getPermissionCacheMaxSize())
+              .expireAfterWrite(properties.getPermissionCacheTtl())
+              .recordStats()
+              .build();
+      GuavaCacheMetrics.monitor(meterRegistry, permissionCache, "rbac.permissions");
+    } else {
+      permissionCache = null;
+    }
+  }
+
   public List<String> getPermissions(String rbacAppName) throws RbacApiException {
+    String identityHeader = RbacApiClient.getIdentityHeader();
+    if (permissionCache == null || !StringUtils.hasText(identityHeader)) {
+      return fetchPermissions(rbacAppName);
+    }
+
+    // Only the digest of the header is kept, so cached keys hold no identity details.
+    PermissionKey key =
+        new PermissionKey(
+            Hashing.sha256().hashString(identityHeader, StandardCharsets.UTF_8).toString(),
+            rbacAppName);
+    List<String> permissions = permissionCache.getIfPresent(key);
+    if (permissions == null) {
+      // Failures are not cached so that the next request retries RBAC.
+      permissions = fetchPermissions(rbacAppName);
+      permissionCache.put(key, permissions);
+    }
+    return permissions;
+  }
+
+  private List<String> fetchPermissions(String rbacAppName) throws RbacApiException {
     // Get all permissions for the configured application name.
     try (Stream<Access> accessStream = api.getCurrentUserAccess(rbacAppName).stream()) {
       return accessStream
           .filter(access -> access != null && StringUtils.hasText(access.getPermission()))
           .map(Access::getPermission)
-          .collect(Collectors.toList());
+          .collect(Collectors.toUnmodifiableList());
     }
   }
+
+  @Value
+  private static class PermissionKey {
+    String identityHash;
+    String applicationName;
+  }
 }
@@ -70,6 +70,10 @@ public class TagProfile {
   private Map<String, Granularity> finestGranularityLookup;
   private Map<String, TagMetaData> tagMetaDataToTagLookup;
   private Map<String, List<Measurement.Uom>> tagToUomLookup;
+  private Map<String, Set<String>> engProductToTagsLookup;
+  private Map<ProductUom, TagMetric> tagMetricLookup;
+  private Map<String, TagMetaData> serviceTypeToTagMetaDataLookup;
+  private Map<String, Set<String>> serviceTypeToTagsLookup;
 
   /** Initialize lookup fields */
   @PostConstruct
@@ -85,10 +89,25 @@ public class TagProfile {
     tagMetaDataToTagLookup = new HashMap<>();
     finestGranularityLookup = new HashMap<>();
     tagToUomLookup = new HashMap<>();
+    engProductToTagsLookup = new HashMap<>();
+    tagMetricLookup = new HashMap<>();
+    serviceTypeToTagMetaDataLookup = new HashMap<>();
+    serviceTypeToTagsLookup = new HashMap<>();
     serviceTypes = new HashSet<>();
     tagMappings.forEach(this::handleTagMapping);
     tagMetrics.forEach(this::handleTagMetric);
     tagMetaData.forEach(this::handleTagMetaData);
+    // The indexes below are read on hot paths (per event, per usage record) and are never
+    // modified after initialization.
+    engProductToTagsLookup = immutableCopyOf(engProductToTagsLookup);
+    tagMetricLookup = Map.copyOf(tagMetricLookup);
+    serviceTypeToTagMetaDataLookup = Map.copyOf(serviceTypeToTagMetaDataLookup);
+    serviceTypeToTagsLookup = immutableCopyOf(serviceTypeToTagsLookup);
+  }
+
+  private static Map<String, Set<String>> immutableCopyOf(Map<String, Set<String>> lookup) {
+    return lookup.entrySet().stream()
+        .collect(Collectors.toUnmodifiableMap(Entry::getKey, e -> Set.copyOf(e.getValue())));
   }
 
   private void handleTagMapping(TagMapping mapping) {
@@ -100,6 +119,9 @@ public class TagProfile {
                   tagToEngProductsLookup
                       .computeIfAbsent(tag, k -> new HashSet<>())
                       .add(mapping.getValue()));
+      engProductToTagsLookup
+          .computeIfAbsent(mapping.getValue(), k -> new HashSet<>())
+          .addAll(mapping.getTags());
     } else if ("productName".equals(mapping.getValueType())) {
       mapping
           .getTags()
@@ -122,9 +144,14 @@ public class TagProfile {
   }
 
   private void handleTagMetric(TagMetric tagMetric) {
+    ProductUom productUom = new ProductUom(tagMetric.getTag(), tagMetric.getUom().value());
+    if (tagMetricLookup.putIfAbsent(productUom, tagMetric) != null) {
+      throw new IllegalStateException(
+          String.format(
+              "Duplicate tag metric found: %s/%s", tagMetric.getTag(), tagMetric.getUom()));
+    }
     tagsWithPrometheusEnabledLookup.add(tagMetric.getTag());
-    productUomToRhmMetricIdLookup.put(
-        new ProductUom(tagMetric.getTag(), tagMetric.getUom().value()), tagMetric.getRhmMetricId());
+    productUomToRhmMetricIdLookup.put(productUom, tagMetric.getRhmMetricId());
     measurementsByTagLookup
         .computeIfAbsent(tagMetric.getTag(), k -> new HashSet<>())
         .add(tagMetric.getUom());
@@ -135,6 +162,10 @@ public class TagProfile {
   private void handleTagMetaData(TagMetaData tagMetaData) {
     if (StringUtils.hasText(tagMetaData.getServiceType())) {
       serviceTypes.add(tagMetaData.getServiceType());
+      serviceTypeToTagMetaDataLookup.putIfAbsent(tagMetaData.getServiceType(), tagMetaData);
+      serviceTypeToTagsLookup
+          .computeIfAbsent(tagMetaData.getServiceType(), k -> new HashSet<>())
+          .addAll(tagMetaData.getTags());
     }
     tagMetaData
         .getTags()
@@ -188,18 +219,7 @@ public class TagProfile {
     if (!StringUtils.hasText(productTag) || Objects.isNull(metric)) {
       return Optional.empty();
     }
-
-    List<TagMetric> matchedMetrics =
-        getTagMetrics().stream()
-            .filter(x -> productTag.equals(x.getTag()) && metric.equals(x.getUom()))
-            .collect(Collectors.toList());
-
-    if (matchedMetrics.size() > 1) {
-      throw new IllegalStateException(
-          String.format("Duplicate tag metric found: %s/%s", productTag, metric));
-    }
-    // Optional.empty if list is empty.
-    return matchedMetrics.stream().findFirst();
+    return Optional.ofNullable(tagMetricLookup.get(new ProductUom(productTag, metric.value())));
   }
 
   public Set<Uom> getSupportedMetricsForProduct(String productTag) {
@@ -218,10 +238,10 @@ public class TagProfile {
   }
 
   public Set<String> getTagsByEngProduct(String engProduct) {
-    return tagToEngProductsLookup.entrySet().stream()
-        .filter(e -> e.getValue().contains(engProduct))
-        .map(Entry::getKey)
-        .collect(Collectors.toSet());
+    if (Objects.isNull(engProduct)) {
+      return Collections.emptySet();
+    }
+    return engProductToTagsLookup.getOrDefault(engProduct, Collections.emptySet());
   }
 
   public Set<String> getTagsByArch(String arch) {
@@ -238,21 +258,14 @@ public class TagProfile {
     if (!StringUtils.hasText(serviceType)) {
       return Optional.empty();
     }
-    return getTagMetaData().stream()
-        .filter(meta -> serviceType.equals(meta.getServiceType()))
-        .findFirst();
+    return Optional.ofNullable(serviceTypeToTagMetaDataLookup.get(serviceType));
   }
 
   public Set<String> getTagsForServiceType(String serviceType) {
     if (!StringUtils.hasText(serviceType)) {
       return Collections.emptySet();
     }
-    Set<String> tags = new HashSet<>();
-    getTagMetaData().stream()
-        .filter(meta -> serviceType.equals(meta.getServiceType()))
-        .map(TagMetaData::getTags)
-        .forEach(tags::addAll);
-    return tags;
+    return serviceTypeToTagsLookup.getOrDefault(serviceType, Collections.emptySet());
   }
 
   public Set<String> getOfferingProductNamesForTag(String productTag) {
@@ -20,6 +20,7 @@
  */
 package org.candlepin.subscriptions.security;
 
+import java.time.Duration;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
@@ -63,4 +64,13 @@ public class SecurityProperties {
    * @see AntiCsrfFilter
    */
   private int antiCsrfPort = 443;
+
+  /** Whether orgs found to be opted in are cached, to avoid a lookup on every API request. */
+  private boolean optInCacheEnabled = true;
+
+  /** How long an org is remembered as opted in before the database is consulted again. */
+  private Duration optInCacheTtl = Duration.ofSeconds(30);
+
+  /** Maximum number of opted-in orgs cached. */
+  private long optInCacheMaxSize = 10000;
 }
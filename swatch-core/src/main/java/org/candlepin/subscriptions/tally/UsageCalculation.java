@@ -54,7 +54,7 @@ public class UsageCalculation {
    * <p>Note that already data is scoped to an account, so account is not included in the key.
    */
   @Getter
-  @EqualsAndHashCode
+  @EqualsAndHashCode(cacheStrategy = EqualsAndHashCode.CacheStrategy.LAZY)
   @AllArgsConstructor
   @ToString
   public static class Key {
@@ -193,6 +193,20 @@ public class UsageCalculation {
     add(cloudType, 0, count, count);
   }
 
+  /**
+   * Adds all totals of another calculation to this one, as-is.
+   *
+   * <p>Unlike {@link #add(HardwareMeasurementType, Uom, Double)}, the TOTAL hardware type is not
+   * derived, since the other calculation already carries its own TOTAL values.
+   *
+   * @param other the calculation to merge into this one
+   */
+  public void addAll(UsageCalculation other) {
+    other.mappedTotals.forEach(
+        (type, totals) ->
+            totals.getMeasurements().forEach((uom, value) -> increment(type, uom, value)));
+  }
+
   private void increment(HardwareMeasurementType type, Measurement.Uom uom, Double value) {
     Totals total = getOrDefault(type);
     total.increment(uom, value);
@@ -23,18 +23,30 @@ package com.redhat.swatch.processors;
 import com.redhat.swatch.clients.swatch.internal.subscription.api.model.AwsUsageContext;
 import com.redhat.swatch.files.AwsCredentialsLookup;
 import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.marketplacemetering.MarketplaceMeteringClient;
 import software.amazon.awssdk.services.marketplacemetering.MarketplaceMeteringClientBuilder;
 
+/**
+ * Provides MarketplaceMeteringClient instances per AWS seller account.
+ *
+ * <p>Clients are cached so that their connection pools are reused across messages. Region,
+ * endpoint and credentials are all loaded once at startup, so a client lives as long as the
+ * application and is closed on shutdown.
+ */
 @ApplicationScoped
 public class AwsMarketplaceMeteringClientFactory {
   private final AwsCredentialsLookup awsCredentialsLookup;
   private final boolean awsMarketplaceEndpointOverride;
   private final String awsMarketplaceEndpointUrl;
   private final String awsRegion;
+  private final Map<String, MarketplaceMeteringClient> clients = new ConcurrentHashMap<>();
 
   public AwsMarketplaceMeteringClientFactory(
       AwsCredentialsLookup awsCredentialsLookup,
@@ -48,7 +60,19 @@ public class AwsMarketplaceMeteringClientFactory {
     this.awsCredentialsLookup = awsCredentialsLookup;
   }
 
-  public MarketplaceMeteringClient buildMarketplaceMeteringClient(AwsUsageContext context) {
+  /**
+   * Get the client for the seller account of the given usage context. The returned client is
+   * shared, and must not be closed by the caller.
+   */
+  public MarketplaceMeteringClient getMarketplaceMeteringClient(AwsUsageContext context) {
+    return clients.computeIfAbsent(
+        context.getAwsSellerAccountId(),
+        account ->
+            buildMarketplaceMeteringClient(awsCredentialsLookup.getCredentialsProvider(account)));
+  }
+
+  private MarketplaceMeteringClient buildMarketplaceMeteringClient(
+      AwsCredentialsProvider credentialsProvider) {
     MarketplaceMeteringClientBuilder builder = MarketplaceMeteringClient.builder();
     if (awsMarketplaceEndpointOverride) {
       builder = builder.endpointOverride(URI.create(awsMarketplaceEndpointUrl));
@@ -56,9 +80,12 @@ public class AwsMarketplaceMeteringClientFactory {
     if (awsRegion != null) {
       builder = builder.region(Region.of(awsRegion));
     }
-    return builder
-        .credentialsProvider(
-            awsCredentialsLookup.getCredentialsProvider(context.getAwsSellerAccountId()))
-        .build();
+    return builder.credentialsProvider(credentialsProvider).build();
+  }
+
+  @PreDestroy
+  void closeClients() {
+    clients.values().forEach(MarketplaceMeteringClient::close);
+    clients.clear();
   }
 }
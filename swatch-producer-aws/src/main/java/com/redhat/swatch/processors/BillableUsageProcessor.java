@@ -36,9 +36,23 @@ import com.redhat.swatch.openapi.model.BillableUsage.UsageEnum;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.smallrye.reactive.messaging.annotations.Blocking;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.enterprise.context.ApplicationScoped;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.faulttolerance.Retry;
@@ -50,39 +64,104 @@ import software.amazon.awssdk.services.marketplacemetering.model.BatchMeterUsage
 import software.amazon.awssdk.services.marketplacemetering.model.BatchMeterUsageResponse;
 import software.amazon.awssdk.services.marketplacemetering.model.MarketplaceMeteringException;
 import software.amazon.awssdk.services.marketplacemetering.model.UsageRecord;
+import software.amazon.awssdk.services.marketplacemetering.model.UsageRecordResult;
 import software.amazon.awssdk.services.marketplacemetering.model.UsageRecordResultStatus;
 
 @Slf4j
 @ApplicationScoped
 public class BillableUsageProcessor {
+  /** The maximum number of usage records AWS accepts in a single BatchMeterUsage request. */
+  public static final int MAX_USAGE_RECORDS_PER_REQUEST = 25;
+
+  /** BatchMeterUsage requests with at least one record accepted by AWS. */
   private final Counter acceptedCounter;
+  /** BatchMeterUsage requests that failed, or that AWS left records of unprocessed. */
   private final Counter rejectedCounter;
+  private final Counter acceptedRecordsCounter;
+  /** Usage records still unprocessed after being sent again the maximum number of times. */
+  private final Counter rejectedRecordsCounter;
   private final TagProfile tagProfile;
   private final InternalSubscriptionsApi internalSubscriptionsApi;
   private final AwsMarketplaceMeteringClientFactory awsMarketplaceMeteringClientFactory;
   private final Optional<Boolean> isDryRun;
+  private final Duration usageContextCacheTtl;
+  private final int unprocessedRecordsRetries;
+  private final Map<UsageContextKey, List<CachedUsageContext>> usageContextCache =
+      new ConcurrentHashMap<>();
 
   public BillableUsageProcessor(
       MeterRegistry meterRegistry,
       TagProfile tagProfile,
       @RestClient InternalSubscriptionsApi internalSubscriptionsApi,
       AwsMarketplaceMeteringClientFactory awsMarketplaceMeteringClientFactory,
-      @ConfigProperty(name = "ENABLE_AWS_DRY_RUN") Optional<Boolean> isDryRun) {
+      @ConfigProperty(name = "ENABLE_AWS_DRY_RUN") Optional<Boolean> isDryRun,
+      @ConfigProperty(name = "AWS_USAGE_CONTEXT_CACHE_TTL") Duration usageContextCacheTtl,
+      @ConfigProperty(name = "AWS_UNPROCESSED_RECORDS_RETRIES") int unprocessedRecordsRetries) {
     acceptedCounter = meterRegistry.counter("swatch_aws_marketplace_batch_accepted_total");
     rejectedCounter = meterRegistry.counter("swatch_aws_marketplace_batch_rejected_total");
+    acceptedRecordsCounter =
+        meterRegistry.counter("swatch_aws_marketplace_records_accepted_total");
+    rejectedRecordsCounter =
+        meterRegistry.counter("swatch_aws_marketplace_records_rejected_total");
     this.tagProfile = tagProfile;
     this.internalSubscriptionsApi = internalSubscriptionsApi;
     this.awsMarketplaceMeteringClientFactory = awsMarketplaceMeteringClientFactory;
     this.isDryRun = isDryRun;
+    this.usageContextCacheTtl = usageContextCacheTtl;
+    this.unprocessedRecordsRetries = unprocessedRecordsRetries;
   }
 
+  public void process(BillableUsage billableUsage) {
+    process(Collections.singletonList(billableUsage));
+  }
+
+  /**
+   * Process the billable usages received in a single poll of the tally topic. Usages are grouped
+   * by AWS product code and seller account, so that each group is sent to AWS in as few
+   * BatchMeterUsage requests as possible.
+   *
+   * @param billableUsages the usages to send to AWS.
+   */
   @Incoming("tally-in")
   @Blocking
-  public void process(BillableUsage billableUsage) {
+  public void process(List<BillableUsage> billableUsages) {
+    Instant now = Instant.now();
+    usageContextCache.replaceAll(
+        (key, cached) ->
+            cached.stream()
+                .filter(context -> !context.isExpiredAt(now))
+                .collect(Collectors.toList()));
+    usageContextCache.values().removeIf(List::isEmpty);
+
+    Map<BatchKey, List<PendingUsage>> batches = new LinkedHashMap<>();
+    for (BillableUsage billableUsage : billableUsages) {
+      try {
+        prepare(billableUsage)
+            .ifPresent(
+                pending ->
+                    batches
+                        .computeIfAbsent(
+                            new BatchKey(
+                                pending.getContext().getProductCode(),
+                                pending.getContext().getAwsSellerAccountId()),
+                            k -> new ArrayList<>())
+                        .add(pending));
+      } finally {
+        MDC.remove("org_id");
+        MDC.remove("account_id");
+      }
+    }
+
+    batches.values().stream()
+        .flatMap(pendingUsages -> chunk(pendingUsages, MAX_USAGE_RECORDS_PER_REQUEST).stream())
+        .forEach(this::sendBatch);
+  }
+
+  private Optional<PendingUsage> prepare(BillableUsage billableUsage) {
     log.debug("Picked up billable usage message {} to process", billableUsage);
     if (billableUsage == null) {
       log.warn("Skipping null billable usage: deserialization failure?");
-      return;
+      return Optional.empty();
     }
     if (billableUsage.getOrgId() != null) {
       MDC.put("org_id", billableUsage.getOrgId());
@@ -93,19 +172,19 @@ public class BillableUsageProcessor {
 
     if (!isApplicable(billableUsage)) {
       log.debug("Skipping billable usage because it is not applicable: {}", billableUsage);
-      return;
+      return Optional.empty();
     }
 
     AwsUsageContext context;
     try {
-      context = lookupAwsUsageContext(billableUsage);
+      context = getAwsUsageContext(billableUsage);
     } catch (SubscriptionRecentlyTerminatedException e) {
       log.info(
           "Subscription recently terminated for account={} tallySnapshotId={} orgId={}",
           billableUsage.getAccountNumber(),
           billableUsage.getId(),
           billableUsage.getOrgId());
-      return;
+      return Optional.empty();
     } catch (AwsUsageContextLookupException e) {
       log.error(
           "Error looking up usage context for account={} tallySnapshotId={} orgId={}",
@@ -113,20 +192,14 @@ public class BillableUsageProcessor {
           billableUsage.getId(),
           billableUsage.getOrgId(),
           e);
-      return;
+      return Optional.empty();
     }
     try {
-      transformAndSend(context, billableUsage);
+      return Optional.of(
+          new PendingUsage(billableUsage, context, transformToAwsUsage(context, billableUsage)));
     } catch (Exception e) {
-      log.error(
-          "Error sending usage for account={} rhSubscriptionId={} tallySnapshotId={} awsCustomerId={} awsProductCode={} orgId={}",
-          billableUsage.getAccountNumber(),
-          context.getRhSubscriptionId(),
-          billableUsage.getId(),
-          context.getCustomerId(),
-          context.getProductCode(),
-          billableUsage.getOrgId(),
-          e);
+      logSendError(new PendingUsage(billableUsage, context, null), e);
+      return Optional.empty();
     }
   }
 
@@ -145,6 +218,49 @@ public class BillableUsageProcessor {
     return applicable;
   }
 
+  /**
+   * Get the AWS usage context of a billable usage, reusing a context looked up for a previous usage
+   * of the same org and product while it is cached. A cached context only serves the snapshot
+   * dates in the period the internal subscription service returned it as valid for, in which the
+   * same subscription would be picked, e.g. each hourly usage of a month.
+   */
+  private AwsUsageContext getAwsUsageContext(BillableUsage billableUsage)
+      throws AwsUsageContextLookupException {
+    if (usageContextCacheTtl.isZero() || billableUsage.getSnapshotDate() == null) {
+      return lookupAwsUsageContext(billableUsage);
+    }
+    UsageContextKey key =
+        new UsageContextKey(
+            billableUsage.getAccountNumber(),
+            billableUsage.getOrgId(),
+            billableUsage.getProductId(),
+            billableUsage.getSla(),
+            billableUsage.getUsage(),
+            billableUsage.getBillingAccountId());
+    Instant now = Instant.now();
+    Optional<AwsUsageContext> cached =
+        usageContextCache.getOrDefault(key, List.of()).stream()
+            .filter(
+                context ->
+                    !context.isExpiredAt(now)
+                        && context.appliesTo(billableUsage.getSnapshotDate()))
+            .map(CachedUsageContext::getContext)
+            .findFirst();
+    if (cached.isPresent()) {
+      return cached.get();
+    }
+    AwsUsageContext context = lookupAwsUsageContext(billableUsage);
+    if (context.getValidFrom() != null && context.getValidUntil() != null) {
+      var newContext = new CachedUsageContext(context, now.plus(usageContextCacheTtl));
+      usageContextCache.merge(
+          key,
+          List.of(newContext),
+          (existing, added) ->
+              Stream.concat(existing.stream(), added.stream()).collect(Collectors.toList()));
+    }
+    return context;
+  }
+
   @Retry(retryOn = AwsUsageContextLookupException.class)
   public AwsUsageContext lookupAwsUsageContext(BillableUsage billableUsage)
       throws AwsUsageContextLookupException {
@@ -173,70 +289,156 @@ public class BillableUsageProcessor {
     }
   }
 
-  private void transformAndSend(AwsUsageContext context, BillableUsage billableUsage)
-      throws AwsUnprocessedRecordsException, AwsDimensionNotConfiguredException {
-    BatchMeterUsageRequest request =
+  private void sendBatch(List<PendingUsage> batch) {
+    AwsUsageContext context = batch.get(0).getContext();
+    var request =
         BatchMeterUsageRequest.builder()
             .productCode(context.getProductCode())
-            .usageRecords(transformToAwsUsage(context, billableUsage))
+            .usageRecords(
+                batch.stream().map(PendingUsage::getUsageRecord).collect(Collectors.toList()))
             .build();
 
     if (isDryRun.isPresent() && Boolean.TRUE.equals(isDryRun.get())) {
-      log.info(
-          "[DRY RUN] Sending usage request to AWS: {}, organization={}, account={}, product_id={}",
-          request,
-          billableUsage.getOrgId(),
-          billableUsage.getAccountNumber(),
-          billableUsage.getProductId());
+      batch.forEach(
+          pending ->
+              log.info(
+                  "[DRY RUN] Sending usage request to AWS: {}, organization={}, account={}, product_id={}",
+                  pending.getUsageRecord(),
+                  pending.getUsage().getOrgId(),
+                  pending.getUsage().getAccountNumber(),
+                  pending.getUsage().getProductId()));
       return;
-    } else {
-      log.info(
-          "Sending usage request to AWS: {}, organization={}, account={}, product_id={}",
-          request,
-          billableUsage.getOrgId(),
-          billableUsage.getAccountNumber(),
-          billableUsage.getProductId());
     }
+    batch.forEach(
+        pending ->
+            log.info(
+                "Sending usage request to AWS: {}, organization={}, account={}, product_id={}",
+                pending.getUsageRecord(),
+                pending.getUsage().getOrgId(),
+                pending.getUsage().getAccountNumber(),
+                pending.getUsage().getProductId()));
 
+    MarketplaceMeteringClient marketplaceMeteringClient;
     try {
-      MarketplaceMeteringClient marketplaceMeteringClient =
-          awsMarketplaceMeteringClientFactory.buildMarketplaceMeteringClient(context);
-      BatchMeterUsageResponse response = send(marketplaceMeteringClient, request);
-      log.debug("{}", response);
-      response
-          .results()
-          .forEach(
-              result -> {
-                if (result.status() == UsageRecordResultStatus.CUSTOMER_NOT_SUBSCRIBED) {
-                  log.warn(
-                      "No subscription found for organization={}, account={}, product_id={}, result={}",
-                      billableUsage.getOrgId(),
-                      billableUsage.getAccountNumber(),
-                      billableUsage.getProductId(),
-                      result);
-                } else if (result.status() != UsageRecordResultStatus.SUCCESS) {
-                  log.warn(
-                      "{}, organization={}, account={}",
-                      result,
-                      billableUsage.getOrgId(),
-                      billableUsage.getAccountNumber());
-                } else {
-                  log.info(
-                      "{}, organization={}, account={}",
-                      result,
-                      billableUsage.getOrgId(),
-                      billableUsage.getAccountNumber());
-                  acceptedCounter.increment(response.results().size());
-                }
-              });
-      if (!response.unprocessedRecords().isEmpty()) {
-        rejectedCounter.increment(response.unprocessedRecords().size());
-        throw new AwsUnprocessedRecordsException(response.unprocessedRecords().size());
+      marketplaceMeteringClient =
+          awsMarketplaceMeteringClientFactory.getMarketplaceMeteringClient(context);
+    } catch (Exception e) {
+      batch.forEach(pending -> logSendError(pending, e));
+      return;
+    }
+
+    // Records AWS did not process are sent again in a new request, a limited number of times
+    List<PendingUsage> toSend = batch;
+    for (int attempt = 0; !toSend.isEmpty(); attempt++) {
+      if (attempt > 0) {
+        log.warn(
+            "Sending {} usage records left unprocessed by AWS again, attempt {} of {}",
+            toSend.size(),
+            attempt,
+            unprocessedRecordsRetries);
+        request =
+            BatchMeterUsageRequest.builder()
+                .productCode(context.getProductCode())
+                .usageRecords(
+                    toSend.stream().map(PendingUsage::getUsageRecord).collect(Collectors.toList()))
+                .build();
+      }
+      List<PendingUsage> unprocessed;
+      Exception error;
+      try {
+        BatchMeterUsageResponse response = send(marketplaceMeteringClient, request);
+        log.debug("{}", response);
+        unprocessed = handleResponse(toSend, response);
+        error = new AwsUnprocessedRecordsException(1);
+      } catch (MarketplaceMeteringException e) {
+        rejectedCounter.increment();
+        unprocessed = toSend;
+        error = new AwsUnprocessedRecordsException(toSend.size(), e);
+      } catch (Exception e) {
+        toSend.forEach(pending -> logSendError(pending, e));
+        return;
+      }
+      if (!unprocessed.isEmpty() && attempt >= unprocessedRecordsRetries) {
+        rejectedRecordsCounter.increment(unprocessed.size());
+        Exception finalError = error;
+        unprocessed.forEach(pending -> logSendError(pending, finalError));
+        return;
+      }
+      toSend = unprocessed;
+    }
+  }
+
+  /**
+   * Map the per-record results and unprocessed records of a response back to the billable usages
+   * they were sent for.
+   *
+   * @return the usages whose records AWS left unprocessed
+   */
+  private List<PendingUsage> handleResponse(
+      List<PendingUsage> batch, BatchMeterUsageResponse response) {
+    Map<UsageRecord, Deque<PendingUsage>> pendingByRecord = new HashMap<>();
+    batch.forEach(
+        pending ->
+            pendingByRecord
+                .computeIfAbsent(pending.getUsageRecord(), k -> new ArrayDeque<>())
+                .add(pending));
+
+    boolean anyAccepted = false;
+    for (UsageRecordResult result : response.results()) {
+      Optional<BillableUsage> billableUsage =
+          originatingUsage(pendingByRecord, result.usageRecord()).map(PendingUsage::getUsage);
+      String orgId = billableUsage.map(BillableUsage::getOrgId).orElse(null);
+      String accountNumber = billableUsage.map(BillableUsage::getAccountNumber).orElse(null);
+      if (result.status() == UsageRecordResultStatus.CUSTOMER_NOT_SUBSCRIBED) {
+        log.warn(
+            "No subscription found for organization={}, account={}, product_id={}, result={}",
+            orgId,
+            accountNumber,
+            billableUsage.map(BillableUsage::getProductId).orElse(null),
+            result);
+      } else if (result.status() != UsageRecordResultStatus.SUCCESS) {
+        log.warn("{}, organization={}, account={}", result, orgId, accountNumber);
+      } else {
+        log.info("{}, organization={}, account={}", result, orgId, accountNumber);
+        acceptedRecordsCounter.increment();
+        anyAccepted = true;
       }
-    } catch (MarketplaceMeteringException e) {
-      rejectedCounter.increment(request.usageRecords().size());
-      throw new AwsUnprocessedRecordsException(request.usageRecords().size(), e);
     }
+    if (anyAccepted) {
+      acceptedCounter.increment();
+    }
+
+    List<PendingUsage> unprocessed = new ArrayList<>();
+    if (!response.unprocessedRecords().isEmpty()) {
+      rejectedCounter.increment();
+      for (UsageRecord unprocessedRecord : response.unprocessedRecords()) {
+        originatingUsage(pendingByRecord, unprocessedRecord)
+            .ifPresentOrElse(
+                unprocessed::add,
+                () -> {
+                  rejectedRecordsCounter.increment();
+                  log.error("Unprocessed usage record {} was not sent", unprocessedRecord);
+                });
+      }
+    }
+    return unprocessed;
+  }
+
+  private Optional<PendingUsage> originatingUsage(
+      Map<UsageRecord, Deque<PendingUsage>> pendingByRecord, UsageRecord usageRecord) {
+    return Optional.ofNullable(pendingByRecord.get(usageRecord)).map(Deque::poll);
+  }
+
+  private void logSendError(PendingUsage pending, Exception e) {
+    log.error(
+        "Error sending usage for account={} rhSubscriptionId={} tallySnapshotId={} awsCustomerId={} awsProductCode={} orgId={}",
+        pending.getUsage().getAccountNumber(),
+        pending.getContext().getRhSubscriptionId(),
+        pending.getUsage().getId(),
+        pending.getContext().getCustomerId(),
+        pending.getContext().getProductCode(),
+        pending.getUsage().getOrgId(),
+        e);
   }
 
   @Retry
@@ -263,4 +465,54 @@ public class BillableUsageProcessor {
         .timestamp(effectiveTimestamp.toInstant())
         .build();
   }
+
+  private static <T> List<List<T>> chunk(List<T> list, int size) {
+    List<List<T>> chunks = new ArrayList<>();
+    for (int i = 0; i < list.size(); i += size) {
+      chunks.add(list.subList(i, Math.min(i + size, list.size())));
+    }
+    return chunks;
+  }
+
+  /** Usages that can be sent in the same BatchMeterUsage request. */
+  @Value
+  private static class BatchKey {
+    String productCode;
+    String sellerAccountId;
+  }
+
+  /** The fields of a billable usage that its AWS usage context is looked up by. */
+  @Value
+  private static class UsageContextKey {
+    String accountNumber;
+    String orgId;
+    String productId;
+    SlaEnum sla;
+    UsageEnum usage;
+    String billingAccountId;
+  }
+
+  @Value
+  private static class CachedUsageContext {
+    AwsUsageContext context;
+    Instant expiresAt;
+
+    boolean isExpiredAt(Instant now) {
+      return !now.isBefore(expiresAt);
+    }
+
+    /** Whether the context was returned as valid for the given snapshot date. */
+    boolean appliesTo(OffsetDateTime snapshotDate) {
+      return !snapshotDate.isBefore(context.getValidFrom())
+          && !snapshotDate.isAfter(context.getValidUntil());
+    }
+  }
+
+  /** A billable usage, along with the AWS usage record created for it. */
+  @Value
+  private static class PendingUsage {
+    BillableUsage usage;
+    AwsUsageContext context;
+    UsageRecord usageRecord;
+  }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.swatch.com.redhat.swatch.processors;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.redhat.swatch.clients.swatch.internal.subscription.api.model.AwsUsageContext;
+import com.redhat.swatch.files.AwsCredentialsLookup;
+import com.redhat.swatch.processors.AwsMarketplaceMeteringClientFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.services.marketplacemetering.MarketplaceMeteringClient;
+
+@ExtendWith(MockitoExtension.class)
+class AwsMarketplaceMeteringClientFactoryTest {
+
+  private static final StaticCredentialsProvider CREDENTIALS_1 =
+      StaticCredentialsProvider.create(AwsBasicCredentials.create("key1", "secret1"));
+  private static final StaticCredentialsProvider CREDENTIALS_2 =
+      StaticCredentialsProvider.create(AwsBasicCredentials.create("key2", "secret2"));
+
+  @Mock AwsCredentialsLookup credentialsLookup;
+
+  AwsMarketplaceMeteringClientFactory factory;
+
+  @BeforeEach
+  void setup() {
+    factory =
+        new AwsMarketplaceMeteringClientFactory(
+            credentialsLookup, true, "http://localhost:8101", "us-east-1");
+  }
+
+  @Test
+  void clientIsReusedForSameSellerAccount() {
+    when(credentialsLookup.getCredentialsProvider("seller1")).thenReturn(CREDENTIALS_1);
+
+    MarketplaceMeteringClient client = factory.getMarketplaceMeteringClient(context("seller1"));
+
+    assertSame(client, factory.getMarketplaceMeteringClient(context("seller1")));
+  }
+
+  @Test
+  void clientIsNotSharedBetweenSellerAccounts() {
+    when(credentialsLookup.getCredentialsProvider("seller1")).thenReturn(CREDENTIALS_1);
+    when(credentialsLookup.getCredentialsProvider("seller2")).thenReturn(CREDENTIALS_2);
+
+    assertNotSame(
+        factory.getMarketplaceMeteringClient(context("seller1")),
+        factory.getMarketplaceMeteringClient(context("seller2")));
+  }
+
+  @Test
+  void credentialsAreLookedUpOncePerSellerAccount() {
+    when(credentialsLookup.getCredentialsProvider("seller1")).thenReturn(CREDENTIALS_1);
+
+    factory.getMarketplaceMeteringClient(context("seller1"));
+    factory.getMarketplaceMeteringClient(context("seller1"));
+
+    verify(credentialsLookup, times(1)).getCredentialsProvider("seller1");
+  }
+
+  private AwsUsageContext context(String sellerAccount) {
+    return new AwsUsageContext().awsSellerAccountId(sellerAccount);
+  }
+}
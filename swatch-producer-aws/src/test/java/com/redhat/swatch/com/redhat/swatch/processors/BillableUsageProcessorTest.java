@@ -23,6 +23,7 @@ package com.redhat.swatch.com.redhat.swatch.processors;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -45,13 +46,18 @@ import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import javax.ws.rs.core.Response;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import software.amazon.awssdk.services.marketplacemetering.MarketplaceMeteringClient;
@@ -86,7 +92,10 @@ class BillableUsageProcessorTest {
           .rhSubscriptionId("id")
           .customerId("customer")
           .productCode("product")
-          .subscriptionStartDate(OffsetDateTime.MIN);
+          .subscriptionStartDate(OffsetDateTime.MIN)
+          .subscriptionEndDate(OffsetDateTime.MAX)
+          .validFrom(OffsetDateTime.MIN)
+          .validUntil(OffsetDateTime.MAX);
   public static final BatchMeterUsageResponse BATCH_METER_USAGE_SUCCESS_RESPONSE =
       BatchMeterUsageResponse.builder()
           .results(
@@ -107,6 +116,8 @@ class BillableUsageProcessorTest {
   MeterRegistry meterRegistry;
   Counter acceptedCounter;
   Counter rejectedCounter;
+  Counter acceptedRecordsCounter;
+  Counter rejectedRecordsCounter;
   BillableUsageProcessor processor;
 
   @BeforeEach
@@ -114,13 +125,19 @@ class BillableUsageProcessorTest {
     meterRegistry = new SimpleMeterRegistry();
     acceptedCounter = meterRegistry.counter("swatch_aws_marketplace_batch_accepted_total");
     rejectedCounter = meterRegistry.counter("swatch_aws_marketplace_batch_rejected_total");
+    acceptedRecordsCounter =
+        meterRegistry.counter("swatch_aws_marketplace_records_accepted_total");
+    rejectedRecordsCounter =
+        meterRegistry.counter("swatch_aws_marketplace_records_rejected_total");
     processor =
         new BillableUsageProcessor(
             meterRegistry,
             new TagProfile(),
             internalSubscriptionsApi,
             clientFactory,
-            Optional.of(false));
+            Optional.of(false),
+            Duration.ofMinutes(5),
+            2);
   }
 
   @Test
@@ -145,11 +162,204 @@ class BillableUsageProcessorTest {
     when(internalSubscriptionsApi.getAwsUsageContext(
             any(), any(), any(), any(), any(), any(), any()))
         .thenReturn(MOCK_AWS_USAGE_CONTEXT);
-    when(clientFactory.buildMarketplaceMeteringClient(any())).thenReturn(meteringClient);
+    when(clientFactory.getMarketplaceMeteringClient(any())).thenReturn(meteringClient);
     processor.process(RHOSAK_INSTANCE_HOURS_RECORD);
     verify(meteringClient).batchMeterUsage(any(BatchMeterUsageRequest.class));
   }
 
+  @Test
+  void shouldBatchUsagesForSameProductCodeAndSellerAccount() throws ApiException {
+    when(internalSubscriptionsApi.getAwsUsageContext(
+            any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(MOCK_AWS_USAGE_CONTEXT);
+    when(clientFactory.getMarketplaceMeteringClient(any())).thenReturn(meteringClient);
+    when(meteringClient.batchMeterUsage(any(BatchMeterUsageRequest.class)))
+        .thenReturn(BATCH_METER_USAGE_SUCCESS_RESPONSE);
+
+    processor.process(Collections.nCopies(30, RHOSAK_INSTANCE_HOURS_RECORD));
+
+    ArgumentCaptor<BatchMeterUsageRequest> requests =
+        ArgumentCaptor.forClass(BatchMeterUsageRequest.class);
+    verify(meteringClient, times(2)).batchMeterUsage(requests.capture());
+    assertEquals(
+        List.of(BillableUsageProcessor.MAX_USAGE_RECORDS_PER_REQUEST, 5),
+        requests.getAllValues().stream()
+            .map(request -> request.usageRecords().size())
+            .collect(Collectors.toList()));
+    // One accepted batch per request, whatever the number of usages it carries.
+    assertEquals(2.0, acceptedCounter.count());
+  }
+
+  @Test
+  void shouldNotBatchUsagesForDifferentSellerAccounts() throws ApiException {
+    when(internalSubscriptionsApi.getAwsUsageContext(
+            any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(awsUsageContext("seller1"), awsUsageContext("seller2"));
+    when(clientFactory.getMarketplaceMeteringClient(any())).thenReturn(meteringClient);
+    when(meteringClient.batchMeterUsage(any(BatchMeterUsageRequest.class)))
+        .thenReturn(BATCH_METER_USAGE_SUCCESS_RESPONSE);
+
+    processor.process(
+        List.of(usageForBillingAccount("account1"), usageForBillingAccount("account2")));
+
+    verify(meteringClient, times(2)).batchMeterUsage(any(BatchMeterUsageRequest.class));
+  }
+
+  @Test
+  void shouldReuseAwsUsageContextForSameSubscriptionAndSnapshotDate() throws ApiException {
+    when(internalSubscriptionsApi.getAwsUsageContext(
+            any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(MOCK_AWS_USAGE_CONTEXT);
+    when(clientFactory.getMarketplaceMeteringClient(any())).thenReturn(meteringClient);
+    when(meteringClient.batchMeterUsage(any(BatchMeterUsageRequest.class)))
+        .thenReturn(BATCH_METER_USAGE_SUCCESS_RESPONSE);
+
+    processor.process(RHOSAK_INSTANCE_HOURS_RECORD);
+    processor.process(RHOSAK_STORAGE_GIB_MONTHS_RECORD);
+
+    verify(internalSubscriptionsApi, times(1))
+        .getAwsUsageContext(any(), any(), any(), any(), any(), any(), any());
+  }
+
+  @Test
+  void shouldReuseAwsUsageContextForLaterHoursOfItsValidity() throws ApiException {
+    OffsetDateTime start = OffsetDateTime.parse("2022-06-01T00:00:00Z");
+    OffsetDateTime end = OffsetDateTime.parse("2022-07-01T00:00:00Z");
+    when(internalSubscriptionsApi.getAwsUsageContext(
+            any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(
+            new AwsUsageContext()
+                .customerId("customer")
+                .productCode("product")
+                .subscriptionStartDate(start)
+                .subscriptionEndDate(end)
+                .validFrom(start)
+                .validUntil(end));
+    when(clientFactory.getMarketplaceMeteringClient(any())).thenReturn(meteringClient);
+    when(meteringClient.batchMeterUsage(any(BatchMeterUsageRequest.class)))
+        .thenReturn(BATCH_METER_USAGE_SUCCESS_RESPONSE);
+
+    processor.process(instanceHoursAt(start.plusHours(1)));
+    processor.process(instanceHoursAt(start.plusHours(2)));
+    verify(internalSubscriptionsApi, times(1))
+        .getAwsUsageContext(any(), any(), any(), any(), any(), any(), any());
+
+    // After the end of its validity, the context is looked up again.
+    processor.process(instanceHoursAt(end.plusHours(1)));
+    verify(internalSubscriptionsApi, times(2))
+        .getAwsUsageContext(any(), any(), any(), any(), any(), any(), any());
+  }
+
+  @Test
+  void shouldLookupAwsUsageContextWithoutValidityOnEveryUsage() throws ApiException {
+    OffsetDateTime start = OffsetDateTime.parse("2022-06-01T00:00:00Z");
+    when(internalSubscriptionsApi.getAwsUsageContext(
+            any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(
+            new AwsUsageContext()
+                .customerId("customer")
+                .productCode("product")
+                .subscriptionStartDate(start)
+                .subscriptionEndDate(start.plusMonths(1)));
+    when(clientFactory.getMarketplaceMeteringClient(any())).thenReturn(meteringClient);
+    when(meteringClient.batchMeterUsage(any(BatchMeterUsageRequest.class)))
+        .thenReturn(BATCH_METER_USAGE_SUCCESS_RESPONSE);
+
+    processor.process(instanceHoursAt(start.plusHours(1)));
+    processor.process(instanceHoursAt(start.plusHours(1)));
+
+    verify(internalSubscriptionsApi, times(2))
+        .getAwsUsageContext(any(), any(), any(), any(), any(), any(), any());
+  }
+
+  private static BillableUsage instanceHoursAt(OffsetDateTime snapshotDate) {
+    return new BillableUsage()
+        .productId("rhosak")
+        .snapshotDate(snapshotDate)
+        .billingProvider(BillingProviderEnum.AWS)
+        .uom(UomEnum.INSTANCE_HOURS)
+        .value(new BigDecimal("42.0"));
+  }
+
+  @Test
+  void shouldLookupAwsUsageContextOnEveryUsageWhenCacheDisabled() throws ApiException {
+    processor =
+        new BillableUsageProcessor(
+            meterRegistry,
+            new TagProfile(),
+            internalSubscriptionsApi,
+            clientFactory,
+            Optional.of(false),
+            Duration.ZERO,
+            2);
+    when(internalSubscriptionsApi.getAwsUsageContext(
+            any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(MOCK_AWS_USAGE_CONTEXT);
+    when(clientFactory.getMarketplaceMeteringClient(any())).thenReturn(meteringClient);
+    when(meteringClient.batchMeterUsage(any(BatchMeterUsageRequest.class)))
+        .thenReturn(BATCH_METER_USAGE_SUCCESS_RESPONSE);
+
+    processor.process(List.of(RHOSAK_INSTANCE_HOURS_RECORD, RHOSAK_STORAGE_GIB_MONTHS_RECORD));
+
+    verify(internalSubscriptionsApi, times(2))
+        .getAwsUsageContext(any(), any(), any(), any(), any(), any(), any());
+  }
+
+  @Test
+  void shouldCountEachUnprocessedRecordOfABatch() throws ApiException {
+    when(internalSubscriptionsApi.getAwsUsageContext(
+            any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(MOCK_AWS_USAGE_CONTEXT);
+    when(clientFactory.getMarketplaceMeteringClient(any())).thenReturn(meteringClient);
+    when(meteringClient.batchMeterUsage(any(BatchMeterUsageRequest.class)))
+        .thenAnswer(
+            invocation ->
+                BatchMeterUsageResponse.builder()
+                    .unprocessedRecords(
+                        invocation.getArgument(0, BatchMeterUsageRequest.class).usageRecords())
+                    .build());
+
+    processor.process(List.of(RHOSAK_INSTANCE_HOURS_RECORD, RHOSAK_STORAGE_GIB_MONTHS_RECORD));
+
+    // Sent once, then twice again before giving up on the records.
+    verify(meteringClient, times(3)).batchMeterUsage(any(BatchMeterUsageRequest.class));
+    assertEquals(3.0, rejectedCounter.count());
+    assertEquals(2.0, rejectedRecordsCounter.count());
+  }
+
+  @Test
+  void shouldSendUnprocessedRecordsAgain() throws ApiException {
+    when(internalSubscriptionsApi.getAwsUsageContext(
+            any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(MOCK_AWS_USAGE_CONTEXT);
+    when(clientFactory.getMarketplaceMeteringClient(any())).thenReturn(meteringClient);
+    when(meteringClient.batchMeterUsage(any(BatchMeterUsageRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              List<UsageRecord> records =
+                  invocation.getArgument(0, BatchMeterUsageRequest.class).usageRecords();
+              // AWS processes the first record, and leaves the others for later.
+              return BatchMeterUsageResponse.builder()
+                  .results(
+                      UsageRecordResult.builder()
+                          .usageRecord(records.get(0))
+                          .status(UsageRecordResultStatus.SUCCESS)
+                          .build())
+                  .unprocessedRecords(records.subList(1, records.size()))
+                  .build();
+            });
+
+    processor.process(List.of(RHOSAK_INSTANCE_HOURS_RECORD, RHOSAK_STORAGE_GIB_MONTHS_RECORD));
+
+    ArgumentCaptor<BatchMeterUsageRequest> requests =
+        ArgumentCaptor.forClass(BatchMeterUsageRequest.class);
+    verify(meteringClient, times(2)).batchMeterUsage(requests.capture());
+    UsageRecord unprocessed = requests.getAllValues().get(0).usageRecords().get(1);
+    assertEquals(List.of(unprocessed), requests.getAllValues().get(1).usageRecords());
+    assertEquals(2.0, acceptedRecordsCounter.count());
+    assertEquals(0.0, rejectedRecordsCounter.count());
+  }
+
   @Test
   void shouldSkipMessageIfAwsContextCannotBeLookedUp() throws ApiException {
     BillableUsage usage =
@@ -192,11 +402,12 @@ class BillableUsageProcessorTest {
     when(internalSubscriptionsApi.getAwsUsageContext(
             any(), any(), any(), any(), any(), any(), any()))
         .thenReturn(MOCK_AWS_USAGE_CONTEXT);
-    when(clientFactory.buildMarketplaceMeteringClient(any())).thenReturn(meteringClient);
+    when(clientFactory.getMarketplaceMeteringClient(any())).thenReturn(meteringClient);
     when(meteringClient.batchMeterUsage(any(BatchMeterUsageRequest.class)))
         .thenReturn(BATCH_METER_USAGE_SUCCESS_RESPONSE);
     processor.process(RHOSAK_INSTANCE_HOURS_RECORD);
     assertEquals(1.0, acceptedCounter.count());
+    assertEquals(1.0, acceptedRecordsCounter.count());
   }
 
   @Test
@@ -204,7 +415,7 @@ class BillableUsageProcessorTest {
     when(internalSubscriptionsApi.getAwsUsageContext(
             any(), any(), any(), any(), any(), any(), any()))
         .thenReturn(MOCK_AWS_USAGE_CONTEXT);
-    when(clientFactory.buildMarketplaceMeteringClient(any())).thenReturn(meteringClient);
+    when(clientFactory.getMarketplaceMeteringClient(any())).thenReturn(meteringClient);
     when(meteringClient.batchMeterUsage(any(BatchMeterUsageRequest.class)))
         .thenReturn(
             BatchMeterUsageResponse.builder()
@@ -219,11 +430,13 @@ class BillableUsageProcessorTest {
     when(internalSubscriptionsApi.getAwsUsageContext(
             any(), any(), any(), any(), any(), any(), any()))
         .thenReturn(MOCK_AWS_USAGE_CONTEXT);
-    when(clientFactory.buildMarketplaceMeteringClient(any())).thenReturn(meteringClient);
+    when(clientFactory.getMarketplaceMeteringClient(any())).thenReturn(meteringClient);
     when(meteringClient.batchMeterUsage(any(BatchMeterUsageRequest.class)))
         .thenThrow(MarketplaceMeteringException.class);
     processor.process(RHOSAK_INSTANCE_HOURS_RECORD);
-    assertEquals(1.0, rejectedCounter.count());
+    verify(meteringClient, times(3)).batchMeterUsage(any(BatchMeterUsageRequest.class));
+    assertEquals(3.0, rejectedCounter.count());
+    assertEquals(1.0, rejectedRecordsCounter.count());
   }
 
   @Test
@@ -234,7 +447,9 @@ class BillableUsageProcessorTest {
             new TagProfile(),
             internalSubscriptionsApi,
             clientFactory,
-            Optional.of(true));
+            Optional.of(true),
+            Duration.ofMinutes(5),
+            2);
     when(internalSubscriptionsApi.getAwsUsageContext(
             any(), any(), any(), any(), any(), any(), any()))
         .thenReturn(MOCK_AWS_USAGE_CONTEXT);
@@ -276,4 +491,23 @@ class BillableUsageProcessorTest {
     processor.process(RHOSAK_INSTANCE_HOURS_RECORD);
     verifyNoInteractions(meteringClient);
   }
+
+  private static BillableUsage usageForBillingAccount(String billingAccountId) {
+    return new BillableUsage()
+        .productId("rhosak")
+        .snapshotDate(OffsetDateTime.MAX)
+        .billingProvider(BillingProviderEnum.AWS)
+        .billingAccountId(billingAccountId)
+        .uom(UomEnum.INSTANCE_HOURS)
+        .value(new BigDecimal("42.0"));
+  }
+
+  private static AwsUsageContext awsUsageContext(String sellerAccount) {
+    return new AwsUsageContext()
+        .customerId("customer")
+        .productCode("product")
+        .awsSellerAccountId(sellerAccount)
+        .subscriptionStartDate(OffsetDateTime.MIN)
+        .subscriptionEndDate(OffsetDateTime.MAX);
+  }
 }
@@ -46,7 +46,10 @@ public class ConduitTaskFactory implements TaskFactory {
       return new UpdateOrgInventoryTask(
           inventoryController,
           taskDescriptor.getArg("org_id").get(0),
-          taskDescriptor.getArg("offset").get(0));
+          taskDescriptor.getArg("offset").get(0),
+          taskDescriptor.hasArg("sync_started")
+              ? Long.valueOf(taskDescriptor.getArg("sync_started").get(0))
+              : null);
     }
     throw new IllegalArgumentException(
         "Could not build task. Unknown task type: " + taskDescriptor.getTaskType());
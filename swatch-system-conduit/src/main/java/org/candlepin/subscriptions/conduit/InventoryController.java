@@ -34,16 +34,26 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.annotation.PreDestroy;
 import javax.validation.ConstraintViolation;
 import javax.validation.Validator;
 import org.candlepin.subscriptions.conduit.inventory.ConduitFacts;
 import org.candlepin.subscriptions.conduit.inventory.InventoryService;
 import org.candlepin.subscriptions.conduit.inventory.InventoryServiceProperties;
+import org.candlepin.subscriptions.conduit.job.OrgSyncProperties;
 import org.candlepin.subscriptions.conduit.job.OrgSyncTaskManager;
 import org.candlepin.subscriptions.conduit.json.inventory.HbiNetworkInterface;
 import org.candlepin.subscriptions.conduit.rhsm.RhsmService;
@@ -70,10 +80,14 @@ public class InventoryController {
 
   private static final BigDecimal KIBIBYTES_PER_GIBIBYTE = BigDecimal.valueOf(1048576);
   private static final BigDecimal BYTES_PER_KIBIBYTE = BigDecimal.valueOf(1024);
-  private static final String COMMA_REGEX = ",\\s*";
+  private static final Pattern COMMA_PATTERN = Pattern.compile(",\\s*");
   private static final String PERIOD_REGEX = "\\.";
-  private static final String NON_HYPHEN_REGEX = "[0-9a-fA-F]{8}([0-9a-fA-F]{4}){3}[0-9a-fA-F]{12}";
-  private static final String UUID_REGEX = "[0-9a-fA-F]{8}-([0-9a-fA-F]{4}-){3}[0-9a-fA-F]{12}";
+  private static final Pattern NON_HYPHEN_UUID_PATTERN =
+      Pattern.compile("[0-9a-fA-F]{8}([0-9a-fA-F]{4}){3}[0-9a-fA-F]{12}");
+  private static final Pattern UUID_PATTERN =
+      Pattern.compile("[0-9a-fA-F]{8}-([0-9a-fA-F]{4}-){3}[0-9a-fA-F]{12}");
+  // Memory as reported by openshift, in bytes with a decimal part, e.g. 12345.00B
+  private static final Pattern MEMTOTAL_BYTES_PATTERN = Pattern.compile("^\\d+\\.\\d+[Bb]$");
 
   public static final String OS_DISTRIBUTION_NAME = "distribution.name";
   public static final String OS_DISTRIBUTION_VERSION = "distribution.version";
@@ -118,6 +132,14 @@ public class InventoryController {
   private Counter finalizeOrgCounter;
   private Timer transformHostTimer;
   private Timer validateHostTimer;
+  private Timer orgSyncTimer;
+  private final OrgSyncProperties orgSyncProperties;
+  private final RequestRateLimiter rhsmRateLimiter;
+  private final Semaphore orgSyncPermits;
+  private final ExecutorService transformExecutor;
+  private final ExecutorService prefetchExecutor;
+  private final AtomicInteger pagesInFlight = new AtomicInteger();
+  private final Counter orgSyncRequeuedCounter;
 
   @Autowired private InventoryServiceProperties serviceProperties;
 
@@ -129,6 +151,7 @@ public class InventoryController {
       MacAddressValidator macValidator,
       IpAddressValidator ipValidator,
       OrgSyncTaskManager taskManager,
+      OrgSyncProperties orgSyncProperties,
       MeterRegistry meterRegistry) {
 
     this.inventoryService = inventoryService;
@@ -141,6 +164,30 @@ public class InventoryController {
     this.finalizeOrgCounter = meterRegistry.counter("rhsm-conduit.finalize.org");
     this.transformHostTimer = meterRegistry.timer("rhsm-conduit.transform.host");
     this.validateHostTimer = meterRegistry.timer("rhsm-conduit.validate.host");
+    this.orgSyncTimer = meterRegistry.timer("rhsm-conduit.sync.org");
+    meterRegistry.gauge("rhsm-conduit.sync.pages-in-flight", pagesInFlight);
+    this.orgSyncRequeuedCounter = meterRegistry.counter("rhsm-conduit.sync.org-requeued");
+
+    this.orgSyncProperties = orgSyncProperties;
+    this.rhsmRateLimiter = new RequestRateLimiter(orgSyncProperties.getRhsmRequestsPerSecond());
+    this.orgSyncPermits =
+        orgSyncProperties.getMaxConcurrentOrgs() > 0
+            ? new Semaphore(orgSyncProperties.getMaxConcurrentOrgs())
+            : null;
+    this.transformExecutor =
+        orgSyncProperties.getTransformParallelism() > 1
+            ? Executors.newFixedThreadPool(orgSyncProperties.getTransformParallelism())
+            : null;
+    // Each running sync task has at most one page prefetch in flight.
+    this.prefetchExecutor = Executors.newCachedThreadPool();
+  }
+
+  @PreDestroy
+  void shutdown() {
+    if (transformExecutor != null) {
+      transformExecutor.shutdownNow();
+    }
+    prefetchExecutor.shutdownNow();
   }
 
   protected ConduitFacts getFactsFromConsumer(Consumer consumer) {
@@ -218,9 +265,9 @@ public class InventoryController {
   private void extractHardwareFacts(Map<String, String> rhsmFacts, ConduitFacts facts) {
     String systemUuid = rhsmFacts.get(DMI_SYSTEM_UUID);
     if (StringUtils.hasLength(systemUuid)) {
-      if (systemUuid.matches(UUID_REGEX)) {
+      if (UUID_PATTERN.matcher(systemUuid).matches()) {
         facts.setBiosUuid(systemUuid);
-      } else if (systemUuid.matches(NON_HYPHEN_REGEX)) {
+      } else if (NON_HYPHEN_UUID_PATTERN.matcher(systemUuid).matches()) {
         facts.setBiosUuid(normalizeUuid(systemUuid));
       } else {
         log.info(
@@ -278,17 +325,12 @@ public class InventoryController {
    * @return memory total in kibibytes
    */
   protected BigDecimal memtotalFromString(String memoryTotal) {
-    // Check for match of openshift
-    String patternString = "^\\d+\\.\\d+[Bb]$";
-    Matcher matcher = Pattern.compile(patternString).matcher(memoryTotal);
-
-    String memStr = memoryTotal;
     // Any other format will throw a NumberFormatException if not a double.
-    if (matcher.matches()) {
-      memStr = memStr.replaceAll("[Bb]", "");
+    if (MEMTOTAL_BYTES_PATTERN.matcher(memoryTotal).matches()) {
+      String memStr = memoryTotal.substring(0, memoryTotal.length() - 1);
       return new BigDecimal(memStr).divide(BYTES_PER_KIBIBYTE, RoundingMode.CEILING);
     } else {
-      return new BigDecimal(memStr);
+      return new BigDecimal(memoryTotal);
     }
   }
 
@@ -299,52 +341,43 @@ public class InventoryController {
       facts.setFqdn(fqdn);
     }
 
-    List<HbiNetworkInterface> networkInterfaces = populateNICs(rhsmFacts);
+    var nicFacts = new NicFactIndex(rhsmFacts);
+    List<HbiNetworkInterface> networkInterfaces = populateNICs(nicFacts, rhsmFacts);
     if (!networkInterfaces.isEmpty()) {
       facts.setNetworkInterfaces(networkInterfaces);
     }
 
-    var macAddresses = extractMacAddresses(rhsmFacts);
+    var macAddresses = extractMacAddresses(nicFacts);
     if (!macAddresses.isEmpty()) {
       facts.setMacAddresses(new ArrayList<>(macAddresses));
     }
-    var ipAddresses = extractIpAddresses(rhsmFacts);
+    var ipAddresses = extractIpAddresses(nicFacts);
     if (!ipAddresses.isEmpty()) {
       facts.setIpAddresses(new ArrayList<>(ipAddresses));
     }
   }
 
   protected Set<String> extractMacAddresses(Map<String, String> rhsmFacts) {
-    Set<String> macAddresses = new HashSet<>();
-    rhsmFacts.entrySet().stream()
-        .filter(
-            entry -> entry.getKey().startsWith(NIC_PREFIX) && entry.getKey().endsWith(MAC_SUFFIX))
-        .forEach(
-            entry -> {
-              var macString = entry.getValue();
-              var macFact = entry.getKey();
-              var splitMacs = filterMacs(macString, macFact);
-              macAddresses.addAll(splitMacs);
-            });
+    return extractMacAddresses(new NicFactIndex(rhsmFacts));
+  }
 
+  private Set<String> extractMacAddresses(NicFactIndex nicFacts) {
+    Set<String> macAddresses = new HashSet<>();
+    for (Map.Entry<String, String> entry : nicFacts.getMacAddressFacts()) {
+      macAddresses.addAll(filterMacs(entry.getValue(), entry.getKey()));
+    }
     return macAddresses;
   }
 
   protected Set<String> extractIpAddresses(Map<String, String> rhsmFacts) {
-    Set<String> ipAddresses = new HashSet<>();
-    rhsmFacts.entrySet().stream()
-        .filter(
-            entry ->
-                entry.getKey().matches(IP_ADDRESS_FACT_REGEX)
-                    && StringUtils.hasLength(entry.getValue()))
-        .forEach(
-            entry -> {
-              var addrString = entry.getValue();
-              var addrFact = entry.getKey();
-              var splitAddrs = filterIps(addrString, addrFact);
-              ipAddresses.addAll(splitAddrs);
-            });
+    return extractIpAddresses(new NicFactIndex(rhsmFacts));
+  }
 
+  private Set<String> extractIpAddresses(NicFactIndex nicFacts) {
+    Set<String> ipAddresses = new HashSet<>();
+    for (Map.Entry<String, String> entry : nicFacts.getIpAddressFacts()) {
+      ipAddresses.addAll(filterIps(entry.getValue(), entry.getKey()));
+    }
     return ipAddresses;
   }
 
@@ -375,18 +408,17 @@ public class InventoryController {
   }
 
   protected List<String> filterCommaDelimitedList(String s, Predicate<String> predicate) {
-    List<String> items = Arrays.asList(s.split(COMMA_REGEX));
+    List<String> items = Arrays.asList(COMMA_PATTERN.split(s));
     return items.stream().filter(predicate).collect(Collectors.toList());
   }
 
-  private List<HbiNetworkInterface> populateNICs(Map<String, String> rhsmFacts) {
+  private List<HbiNetworkInterface> populateNICs(
+      NicFactIndex nicFacts, Map<String, String> rhsmFacts) {
     var nicSet = new ArrayList<HbiNetworkInterface>();
-    for (Map.Entry<String, String> entry : rhsmFacts.entrySet()) {
-      if (entry.getKey().startsWith(NIC_PREFIX)
-          && entry.getKey().endsWith(MAC_SUFFIX)
-          // If the MAC address is invalid, ignore the entry rather than have the ConduitFacts
-          // object fail validation in validateConsumer
-          && macValidator.isValid(entry.getValue(), null)) {
+    for (Map.Entry<String, String> entry : nicFacts.getMacAddressFacts()) {
+      // If the MAC address is invalid, ignore the entry rather than have the ConduitFacts
+      // object fail validation in validateConsumer
+      if (macValidator.isValid(entry.getValue(), null)) {
         String[] nicsName = entry.getKey().split(PERIOD_REGEX);
         var mac = entry.getValue();
         var networkInterface = new HbiNetworkInterface();
@@ -489,38 +521,170 @@ public class InventoryController {
     updateInventoryForOrg(orgId, null);
   }
 
-  @Timed("rhsm-conduit.sync.org-page")
   public void updateInventoryForOrg(String orgId, String offset)
       throws ApiException, MissingAccountNumberException {
+    updateInventoryForOrg(orgId, offset, null);
+  }
 
-    org.candlepin.subscriptions.conduit.rhsm.client.model.OrgInventory feedPage =
-        rhsmService.getPageOfConsumers(orgId, offset, rhsmService.formattedTime());
-    Stream<ConduitFacts> facts = validateConduitFactsForOrg(feedPage);
-
-    long updateSize =
-        facts
-            .map(
-                hostFacts -> {
-                  inventoryService.scheduleHostUpdate(hostFacts);
-                  return 1;
-                })
-            .count();
-    if (updateSize > 0) {
+  /**
+   * Syncs pages of consumers for the org, starting at the given offset.
+   *
+   * <p>When this instance already syncs the maximum number of orgs, the task is queued again
+   * rather than holding the calling (Kafka consumer) thread until a permit frees up.
+   *
+   * @param orgId the org to sync
+   * @param offset the offset to start at, or null to start a new sync of the org
+   * @param syncStartedMillis epoch millis at which the sync of the org started, or null if unknown
+   */
+  @Timed("rhsm-conduit.sync.org-page")
+  public void updateInventoryForOrg(String orgId, String offset, Long syncStartedMillis)
+      throws ApiException, MissingAccountNumberException {
+    if (orgSyncPermits != null && !tryAcquire(orgSyncPermits)) {
+      log.debug("Too many orgs syncing; requeueing sync of org {} at offset {}", orgId, offset);
+      taskManager.updateOrgInventory(orgId, offset, syncStartedMillis);
+      orgSyncRequeuedCounter.increment();
+      return;
+    }
+    try {
+      if (offset == null && syncStartedMillis == null) {
+        syncStartedMillis = System.currentTimeMillis();
+      }
+      syncPagesForOrg(orgId, offset, syncStartedMillis);
+    } finally {
+      if (orgSyncPermits != null) {
+        orgSyncPermits.release();
+      }
+    }
+  }
+
+  /**
+   * Syncs up to pagesPerTask pages of consumers for the org, starting at the given offset. While a
+   * page is being transformed and sent, the next one is already being fetched from RHSM. If the org
+   * has more pages left after that, a task is queued to continue from the next offset.
+   */
+  private void syncPagesForOrg(String orgId, String offset, Long syncStartedMillis)
+      throws ApiException, MissingAccountNumberException {
+    int pagesPerTask = Math.max(1, orgSyncProperties.getPagesPerTask());
+    // Pages fetched or being fetched by this call that have not been sent yet.
+    int pagesStarted = 0;
+    CompletableFuture<org.candlepin.subscriptions.conduit.rhsm.client.model.OrgInventory>
+        nextPage = null;
+    try {
+      String pageOffset = offset;
+      pagesStarted++;
+      pagesInFlight.incrementAndGet();
+      org.candlepin.subscriptions.conduit.rhsm.client.model.OrgInventory feedPage =
+          fetchPageOfConsumers(orgId, pageOffset);
+      for (int page = 1; ; page++) {
+        Optional<String> nextOffset = getNextOffset(feedPage);
+        nextPage = null;
+        if (nextOffset.isPresent() && page < pagesPerTask) {
+          pagesStarted++;
+          pagesInFlight.incrementAndGet();
+          nextPage = prefetchPageOfConsumers(orgId, nextOffset.get());
+        }
+
+        sendPage(orgId, pageOffset, feedPage);
+        pagesStarted--;
+        pagesInFlight.decrementAndGet();
+
+        if (nextOffset.isEmpty()) {
+          finalizeOrg(orgId, syncStartedMillis);
+          return;
+        }
+        if (nextPage == null) {
+          log.debug("Queueing up task for next page of org {}", orgId);
+          taskManager.updateOrgInventory(orgId, nextOffset.get(), syncStartedMillis);
+          queueNextPageCounter.increment();
+          return;
+        }
+        pageOffset = nextOffset.get();
+        feedPage = awaitPage(nextPage);
+      }
+    } finally {
+      if (nextPage != null) {
+        nextPage.cancel(true);
+      }
+      pagesInFlight.addAndGet(-pagesStarted);
+    }
+  }
+
+  private void finalizeOrg(String orgId, Long syncStartedMillis) {
+    log.info("Host inventory update completed for org {}.", orgId);
+    finalizeOrgCounter.increment();
+    // The start time travels with the sync tasks, as later pages may be synced by other instances.
+    if (syncStartedMillis != null) {
+      orgSyncTimer.record(System.currentTimeMillis() - syncStartedMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void sendPage(
+      String orgId,
+      String offset,
+      org.candlepin.subscriptions.conduit.rhsm.client.model.OrgInventory feedPage)
+      throws MissingAccountNumberException {
+    List<ConduitFacts> facts = validateConduitFactsForOrgInParallel(feedPage);
+    facts.forEach(inventoryService::scheduleHostUpdate);
+    if (!facts.isEmpty()) {
       inventoryService.flushHostUpdates();
     }
     log.debug(
         "Finished page w/ offset {} of inventory updates for org {}, producing {} updates",
         offset,
         orgId,
-        updateSize);
-    Optional<String> nextOffset = getNextOffset(feedPage);
-    if (nextOffset.isPresent()) {
-      log.debug("Queueing up task for next page of org {}", orgId);
-      taskManager.updateOrgInventory(orgId, nextOffset.get());
-      queueNextPageCounter.increment();
-    } else {
-      log.info("Host inventory update completed for org {}.", orgId);
-      finalizeOrgCounter.increment();
+        facts.size());
+  }
+
+  private org.candlepin.subscriptions.conduit.rhsm.client.model.OrgInventory fetchPageOfConsumers(
+      String orgId, String offset) throws ApiException {
+    try {
+      rhsmRateLimiter.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting to call RHSM.", e);
+    }
+    return rhsmService.getPageOfConsumers(orgId, offset, rhsmService.formattedTime());
+  }
+
+  private CompletableFuture<org.candlepin.subscriptions.conduit.rhsm.client.model.OrgInventory>
+      prefetchPageOfConsumers(String orgId, String offset) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            return fetchPageOfConsumers(orgId, offset);
+          } catch (ApiException e) {
+            throw new CompletionException(e);
+          }
+        },
+        prefetchExecutor);
+  }
+
+  private org.candlepin.subscriptions.conduit.rhsm.client.model.OrgInventory awaitPage(
+      Future<org.candlepin.subscriptions.conduit.rhsm.client.model.OrgInventory> nextPage)
+      throws ApiException {
+    try {
+      return nextPage.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while fetching a page of consumers.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof ApiException) {
+        throw (ApiException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Unable to fetch a page of consumers.", e.getCause());
+    }
+  }
+
+  private boolean tryAcquire(Semaphore semaphore) {
+    try {
+      return semaphore.tryAcquire(
+          orgSyncProperties.getOrgPermitWait().toMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting to sync an org.", e);
     }
   }
 
@@ -537,11 +701,59 @@ public class InventoryController {
       throws MissingAccountNumberException, ApiException {
 
     org.candlepin.subscriptions.conduit.rhsm.client.model.OrgInventory feedPage =
-        rhsmService.getPageOfConsumers(orgId, offset, rhsmService.formattedTime());
+        fetchPageOfConsumers(orgId, offset);
     return inventoryService.getInventoryForOrgConsumers(
         validateConduitFactsForOrg(feedPage).collect(Collectors.toList()));
   }
 
+  /**
+   * Transforms and validates the consumers of a page, splitting the work across the transform pool
+   * when one is configured. The order of the consumers is preserved.
+   */
+  private List<ConduitFacts> validateConduitFactsForOrgInParallel(
+      org.candlepin.subscriptions.conduit.rhsm.client.model.OrgInventory feedPage)
+      throws MissingAccountNumberException {
+    if (transformExecutor == null || feedPage.getBody().size() < 2) {
+      return validateConduitFactsForOrg(feedPage).collect(Collectors.toList());
+    }
+
+    checkAccountNumber(feedPage);
+    List<Consumer> consumers = feedPage.getBody();
+    int chunkSize =
+        (consumers.size() + orgSyncProperties.getTransformParallelism() - 1)
+            / orgSyncProperties.getTransformParallelism();
+    List<Future<List<ConduitFacts>>> chunks = new ArrayList<>();
+    for (int from = 0; from < consumers.size(); from += chunkSize) {
+      List<Consumer> chunk = consumers.subList(from, Math.min(from + chunkSize, consumers.size()));
+      chunks.add(
+          transformExecutor.submit(
+              () ->
+                  chunk.stream()
+                      .map(this::validateConsumer)
+                      .filter(Optional::isPresent)
+                      .map(Optional::get)
+                      .collect(Collectors.toList())));
+    }
+
+    List<ConduitFacts> facts = new ArrayList<>(consumers.size());
+    try {
+      for (Future<List<ConduitFacts>> chunk : chunks) {
+        facts.addAll(chunk.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while transforming consumers.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Unable to transform consumers.", e.getCause());
+    } finally {
+      chunks.forEach(chunk -> chunk.cancel(true));
+    }
+    return facts;
+  }
+
   private Stream<ConduitFacts> validateConduitFactsForOrg(
       org.candlepin.subscriptions.conduit.rhsm.client.model.OrgInventory feedPage)
       throws MissingAccountNumberException {
@@ -550,6 +762,16 @@ public class InventoryController {
       return Stream.empty();
     }
 
+    checkAccountNumber(feedPage);
+    return feedPage.getBody().stream()
+        .map(this::validateConsumer)
+        .filter(Optional::isPresent)
+        .map(Optional::get);
+  }
+
+  private void checkAccountNumber(
+      org.candlepin.subscriptions.conduit.rhsm.client.model.OrgInventory feedPage)
+      throws MissingAccountNumberException {
     // If the missing account number is false then
     // Peek at the first consumer.  If it is missing an account number, that means they all are.
     // Abort and return an empty stream.  No sense in wasting time looping through everything.
@@ -561,11 +783,6 @@ public class InventoryController {
     } catch (NoSuchElementException e) {
       throw new MissingAccountNumberException();
     }
-
-    return feedPage.getBody().stream()
-        .map(this::validateConsumer)
-        .filter(Optional::isPresent)
-        .map(Optional::get);
   }
 
   @SuppressWarnings("indentation")
@@ -0,0 +1,89 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.conduit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.util.StringUtils;
+
+/**
+ * The network interface facts of a single consumer, classified in one pass over its facts.
+ *
+ * <p>Every key under {@link InventoryController#NIC_PREFIX} is looked at once and filed as a MAC
+ * address fact or an IP address fact by its suffix, so that building the NICs, MAC addresses and IP
+ * addresses of a host doesn't re-scan (or regex match) the whole fact map for each of them.
+ */
+class NicFactIndex {
+
+  /**
+   * The part of an IP address fact key after the interface name. Together with the interface name
+   * being the text up to the next period, this is the same set of keys matched by {@link
+   * InventoryController#IP_ADDRESS_FACT_REGEX}.
+   */
+  private static final Set<String> IP_ADDRESS_ATTRIBUTES =
+      Set.of(
+          "ipv4_address",
+          "ipv4_address_list",
+          "ipv4_address.global",
+          "ipv4_address.global_list",
+          "ipv4_address.link",
+          "ipv4_address.link_list",
+          "ipv6_address",
+          "ipv6_address_list",
+          "ipv6_address.global",
+          "ipv6_address.global_list",
+          "ipv6_address.link",
+          "ipv6_address.link_list");
+
+  private final List<Map.Entry<String, String>> macAddressFacts = new ArrayList<>();
+  private final List<Map.Entry<String, String>> ipAddressFacts = new ArrayList<>();
+
+  NicFactIndex(Map<String, String> rhsmFacts) {
+    for (Map.Entry<String, String> entry : rhsmFacts.entrySet()) {
+      String key = entry.getKey();
+      if (!key.startsWith(InventoryController.NIC_PREFIX)) {
+        continue;
+      }
+      if (key.endsWith(InventoryController.MAC_SUFFIX)) {
+        macAddressFacts.add(entry);
+      } else if (isIpAddressFact(key) && StringUtils.hasLength(entry.getValue())) {
+        ipAddressFacts.add(entry);
+      }
+    }
+  }
+
+  private static boolean isIpAddressFact(String key) {
+    int nameEnd = key.indexOf('.', InventoryController.NIC_PREFIX.length());
+    return nameEnd >= 0 && IP_ADDRESS_ATTRIBUTES.contains(key.substring(nameEnd + 1));
+  }
+
+  /** Facts ending in {@link InventoryController#MAC_SUFFIX}, in the fact map's iteration order. */
+  List<Map.Entry<String, String>> getMacAddressFacts() {
+    return macAddressFacts;
+  }
+
+  /** Non-empty IP address facts, in the fact map's iteration order. */
+  List<Map.Entry<String, String>> getIpAddressFacts() {
+    return ipAddressFacts;
+  }
+}
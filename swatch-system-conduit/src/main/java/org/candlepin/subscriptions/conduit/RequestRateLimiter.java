@@ -0,0 +1,55 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.conduit;
+
+/**
+ * Spaces out requests so that no more than a fixed number start per second. Callers block in
+ * {@link #acquire()} until their slot comes up.
+ */
+class RequestRateLimiter {
+
+  private final long intervalNanos;
+  private long nextSlotNanos;
+
+  /**
+   * @param requestsPerSecond maximum request rate, or a value of 0 or less for no limit
+   */
+  RequestRateLimiter(double requestsPerSecond) {
+    this.intervalNanos = requestsPerSecond > 0 ? (long) (1_000_000_000L / requestsPerSecond) : 0;
+    this.nextSlotNanos = System.nanoTime();
+  }
+
+  void acquire() throws InterruptedException {
+    if (intervalNanos == 0) {
+      return;
+    }
+    long waitNanos = reserveSlot() - System.nanoTime();
+    if (waitNanos > 0) {
+      Thread.sleep(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+    }
+  }
+
+  private synchronized long reserveSlot() {
+    long slot = Math.max(nextSlotNanos, System.nanoTime());
+    nextSlotNanos = slot + intervalNanos;
+    return slot;
+  }
+}
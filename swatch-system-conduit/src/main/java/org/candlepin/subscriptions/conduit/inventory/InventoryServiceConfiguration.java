@@ -74,8 +74,12 @@ public class InventoryServiceConfiguration {
 
   @Bean
   public ProducerFactory<String, CreateUpdateHostMessage> inventoryServiceKafkaProducerFactory(
-      KafkaProperties kafkaProperties, @Qualifier("hbiObjectMapper") ObjectMapper mapper) {
-    return kafkaConfigurator.defaultProducerFactory(kafkaProperties, mapper);
+      KafkaProperties kafkaProperties,
+      @Qualifier("hbiObjectMapper") ObjectMapper mapper,
+      InventoryServiceProperties serviceProperties,
+      MeterRegistry meterRegistry) {
+    return kafkaConfigurator.defaultProducerFactory(
+        kafkaProperties, mapper, serviceProperties, meterRegistry);
   }
 
   @Bean
@@ -39,6 +39,21 @@ public class InventoryServiceProperties {
   private int staleHostOffsetInDays = 0;
   private boolean tolerateMissingAccountNumber;
 
+  /**
+   * Hand host messages to an idempotent, batching producer without retrying each message, instead
+   * of sending them one at a time. Send failures are reported by the delivery callbacks.
+   */
+  private boolean kafkaHighThroughput;
+
+  /** Producer batch size in bytes, used when kafkaHighThroughput is enabled. */
+  private int kafkaBatchSizeBytes = 262144;
+
+  /** How long the producer waits to fill a batch, used when kafkaHighThroughput is enabled. */
+  private Duration kafkaLinger = Duration.ofMillis(20);
+
+  /** Producer compression type, used when kafkaHighThroughput is enabled. */
+  private String kafkaCompressionType = "lz4";
+
   @DurationUnit(ChronoUnit.HOURS)
   private Duration hostLastSyncThreshold = Duration.ofHours(24);
 }
@@ -21,12 +21,15 @@
 package org.candlepin.subscriptions.conduit.inventory.kafka;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.Map;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.candlepin.subscriptions.conduit.inventory.InventoryServiceProperties;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerProducerListener;
 import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 import org.springframework.stereotype.Component;
@@ -39,9 +42,24 @@ import org.springframework.stereotype.Component;
 public class InventoryServiceKafkaConfigurator {
 
   public DefaultKafkaProducerFactory<String, CreateUpdateHostMessage> defaultProducerFactory(
-      KafkaProperties kafkaProperties, ObjectMapper mapper) {
+      KafkaProperties kafkaProperties,
+      ObjectMapper mapper,
+      InventoryServiceProperties serviceProperties,
+      MeterRegistry meterRegistry) {
     Map<String, Object> producerConfig = kafkaProperties.buildProducerProperties();
     producerConfig.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+    if (serviceProperties.isKafkaHighThroughput()) {
+      // Host messages carry large fact payloads, so batch and compress them, and let the
+      // idempotent producer retry transient failures without duplicating messages.
+      producerConfig.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+      producerConfig.put(ProducerConfig.ACKS_CONFIG, "all");
+      producerConfig.put(
+          ProducerConfig.BATCH_SIZE_CONFIG, serviceProperties.getKafkaBatchSizeBytes());
+      producerConfig.put(
+          ProducerConfig.LINGER_MS_CONFIG, serviceProperties.getKafkaLinger().toMillis());
+      producerConfig.put(
+          ProducerConfig.COMPRESSION_TYPE_CONFIG, serviceProperties.getKafkaCompressionType());
+    }
 
     DefaultKafkaProducerFactory<String, CreateUpdateHostMessage> factory =
         new DefaultKafkaProducerFactory<>(producerConfig);
@@ -50,6 +68,8 @@ public class InventoryServiceKafkaConfigurator {
     // it via configuration properties, so we use the custom one that is configured for the
     // application that is created via the ApplicationConfiguration.
     factory.setValueSerializer(new JsonSerializer<>(mapper));
+    // Exposes the producer client metrics, e.g. outgoing byte rate and compression rate.
+    factory.addListener(new MicrometerProducerListener<>(meterRegistry));
     return factory;
   }
 
@@ -25,7 +25,10 @@ import io.micrometer.core.instrument.MeterRegistry;
 import java.time.OffsetDateTime;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.candlepin.subscriptions.conduit.inventory.ConduitFacts;
 import org.candlepin.subscriptions.conduit.inventory.InventoryService;
@@ -38,8 +41,9 @@ import org.springframework.retry.support.RetryTemplate;
 
 /**
  * An InventoryService implementation that includes a Kafka producer that is capable of sending
- * messages to the inventory service's Kafka instance. A message is sent as soon as a host update is
- * scheduled.
+ * messages to the inventory service's Kafka instance. By default, a message is sent as soon as a
+ * host update is scheduled. In high throughput mode, host updates are queued and handed to the
+ * producer together when the queue is flushed.
  */
 public class KafkaEnabledInventoryService extends InventoryService {
 
@@ -51,6 +55,7 @@ public class KafkaEnabledInventoryService extends InventoryService {
   private final Counter failedMessageCounter;
   private final Counter messageSizeCounter;
   private final RetryTemplate retryTemplate;
+  private final boolean highThroughput;
 
   @SuppressWarnings("java:S3740")
   public KafkaEnabledInventoryService(
@@ -58,24 +63,35 @@ public class KafkaEnabledInventoryService extends InventoryService {
       KafkaTemplate<String, CreateUpdateHostMessage> producer,
       MeterRegistry meterRegistry,
       RetryTemplate retryTemplate) {
-    // Flush updates as soon as they get scheduled.
-    super(serviceProperties, 1);
+    // Flush updates as soon as they get scheduled, unless they are batched for throughput.
+    super(
+        serviceProperties,
+        serviceProperties.isKafkaHighThroughput()
+            ? serviceProperties.getApiHostUpdateBatchSize()
+            : 1);
     this.producer = producer;
     this.hostIngressTopic = serviceProperties.getKafkaHostIngressTopic();
     this.sentMessageCounter = meterRegistry.counter("rhsm-conduit.send.inventory-message");
     this.failedMessageCounter = meterRegistry.counter("rhsm.conduit.send.inventory-message.failed");
     this.messageSizeCounter = meterRegistry.counter("rhsm-conduit.inventory-message.size.bytes");
     this.retryTemplate = retryTemplate;
+    this.highThroughput = serviceProperties.isKafkaHighThroughput();
   }
 
   @Override
   public void scheduleHostUpdate(ConduitFacts facts) {
-    this.sendHostUpdate(Collections.singletonList(facts));
+    if (highThroughput) {
+      super.scheduleHostUpdate(facts);
+    } else {
+      this.sendHostUpdate(Collections.singletonList(facts));
+    }
   }
 
   @Override
   public void flushHostUpdates() {
-    /* intentionally left blank */
+    if (highThroughput) {
+      super.flushHostUpdates();
+    }
   }
 
   @Override
@@ -86,6 +102,11 @@ public class KafkaEnabledInventoryService extends InventoryService {
     }
 
     OffsetDateTime now = OffsetDateTime.now();
+    if (highThroughput) {
+      sendBatchToKafka(now, facts);
+      return;
+    }
+
     for (ConduitFacts factSet : facts) {
       // Attempt to send the host create/update message. If the send fails for any reason,
       // log the error and move on to the next one.
@@ -115,6 +136,34 @@ public class KafkaEnabledInventoryService extends InventoryService {
     producer.send(hostIngressTopic, message).addCallback(this::recordSuccess, this::recordFailure);
   }
 
+  /**
+   * Hands every message of the batch to the producer without waiting on or retrying individual
+   * sends. The idempotent producer retries transient errors itself, and whatever still fails is
+   * reported by the delivery callback.
+   */
+  private void sendBatchToKafka(OffsetDateTime now, List<ConduitFacts> facts) {
+    long start = System.nanoTime();
+    String requestId = UUID.randomUUID().toString();
+    Set<String> orgIds = new TreeSet<>();
+    for (ConduitFacts factSet : facts) {
+      CreateUpdateHostMessage message = new CreateUpdateHostMessage(createHost(factSet, now));
+      message.setMetadata("request_id", requestId);
+      orgIds.add(String.valueOf(factSet.getOrgId()));
+      try {
+        producer
+            .send(hostIngressTopic, message)
+            .addCallback(this::recordSuccess, this::recordFailure);
+      } catch (Exception e) {
+        recordFailure(e);
+      }
+    }
+    log.debug(
+        "Handed {} host messages for orgs {} to the producer in {}ms",
+        facts.size(),
+        orgIds,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
   private void recordFailure(Throwable throwable) {
     log.error("Unable to send host create/update message.", throwable);
     failedMessageCounter.increment();
@@ -20,6 +20,7 @@
  */
 package org.candlepin.subscriptions.conduit.job;
 
+import java.time.Duration;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -35,4 +36,26 @@ public class OrgSyncProperties {
   private String schedule = "0 5 * * * ?";
   /** Artificial limit to number of orgs */
   private Integer limit = null;
+
+  /**
+   * Number of pages of consumers a single org sync task processes before queueing a task for the
+   * next page. When greater than one, the next page is fetched while the current one is being
+   * transformed and sent.
+   */
+  private int pagesPerTask = 1;
+
+  /** Number of threads used to transform and validate the consumers of a page. */
+  private int transformParallelism = 1;
+
+  /** Maximum number of orgs synced concurrently by this instance, or 0 for no limit. */
+  private int maxConcurrentOrgs = 0;
+
+  /**
+   * How long an org sync task waits for one of the maxConcurrentOrgs permits before it is queued
+   * again.
+   */
+  private Duration orgPermitWait = Duration.ofSeconds(5);
+
+  /** Maximum number of RHSM page requests per second made by this instance, or 0 for no limit. */
+  private double rhsmRequestsPerSecond = 0;
 }
@@ -68,13 +68,27 @@ public class OrgSyncTaskManager {
    * @param orgId the ID of the org in which to update.
    * @param offset the offset to start at
    */
-  @SuppressWarnings("indentation")
   public void updateOrgInventory(String orgId, String offset) {
-    queue.enqueue(
+    updateOrgInventory(orgId, offset, null);
+  }
+
+  /**
+   * Initiates a task that will update the inventory of the specified organization's ID.
+   *
+   * @param orgId the ID of the org in which to update.
+   * @param offset the offset to start at
+   * @param syncStartedMillis epoch millis at which the sync of the org started, if known
+   */
+  @SuppressWarnings("indentation")
+  public void updateOrgInventory(String orgId, String offset, Long syncStartedMillis) {
+    TaskDescriptor.TaskDescriptorBuilder builder =
         TaskDescriptor.builder(TaskType.UPDATE_ORG_INVENTORY, taskQueueProperties.getTopic())
             .setSingleValuedArg("org_id", orgId)
-            .setSingleValuedArg("offset", offset)
-            .build());
+            .setSingleValuedArg("offset", offset);
+    if (syncStartedMillis != null) {
+      builder.setSingleValuedArg("sync_started", syncStartedMillis.toString());
+    }
+    queue.enqueue(builder.build());
   }
 
   /** Queue up tasks for each configured org. */
@@ -37,11 +37,18 @@ public class UpdateOrgInventoryTask implements Task {
 
   private String orgId;
   private String offset;
+  private Long syncStartedMillis;
   private InventoryController controller;
 
   public UpdateOrgInventoryTask(InventoryController controller, String orgId, String offset) {
+    this(controller, orgId, offset, null);
+  }
+
+  public UpdateOrgInventoryTask(
+      InventoryController controller, String orgId, String offset, Long syncStartedMillis) {
     this.orgId = orgId;
     this.offset = offset;
+    this.syncStartedMillis = syncStartedMillis;
     this.controller = controller;
   }
 
@@ -49,7 +56,7 @@ public class UpdateOrgInventoryTask implements Task {
   public void execute() {
     log.info("Updating inventory for org {} with offset {}", orgId, offset);
     try {
-      controller.updateInventoryForOrg(orgId, offset);
+      controller.updateInventoryForOrg(orgId, offset, syncStartedMillis);
     } catch (MissingAccountNumberException e) {
       log.warn("Org {} is missing account number", orgId);
     } catch (ApiException e) {
@@ -23,6 +23,7 @@ package org.candlepin.subscriptions.conduit;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.BDDMockito.any;
+import static org.mockito.BDDMockito.anyLong;
 import static org.mockito.BDDMockito.anyString;
 import static org.mockito.BDDMockito.eq;
 import static org.mockito.BDDMockito.never;
@@ -33,6 +34,7 @@ import static org.mockito.BDDMockito.verifyNoInteractions;
 import static org.mockito.BDDMockito.verifyNoMoreInteractions;
 import static org.mockito.BDDMockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.util.ArrayList;
@@ -42,11 +44,18 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import javax.validation.Validator;
 import org.candlepin.subscriptions.conduit.inventory.ConduitFacts;
 import org.candlepin.subscriptions.conduit.inventory.InventoryService;
 import org.candlepin.subscriptions.conduit.inventory.InventoryServiceProperties;
 import org.candlepin.subscriptions.conduit.job.DatabaseOrgList;
+import org.candlepin.subscriptions.conduit.job.OrgSyncProperties;
 import org.candlepin.subscriptions.conduit.job.OrgSyncTaskManager;
 import org.candlepin.subscriptions.conduit.json.inventory.HbiNetworkInterface;
 import org.candlepin.subscriptions.conduit.rhsm.RhsmService;
@@ -57,14 +66,18 @@ import org.candlepin.subscriptions.conduit.rhsm.client.model.InstalledProducts;
 import org.candlepin.subscriptions.conduit.rhsm.client.model.OrgInventory;
 import org.candlepin.subscriptions.conduit.rhsm.client.model.Pagination;
 import org.candlepin.subscriptions.exception.MissingAccountNumberException;
+import org.candlepin.subscriptions.validator.IpAddressValidator;
+import org.candlepin.subscriptions.validator.MacAddressValidator;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
 
 @SpringBootTest
 @ActiveProfiles({"rhsm-conduit", "test", "kafka-queue"})
@@ -81,6 +94,10 @@ class InventoryControllerTest {
 
   @Autowired RhsmApiProperties rhsmApiProperties;
 
+  @Autowired OrgSyncProperties orgSyncProperties;
+
+  @Autowired Validator validator;
+
   @MockBean InventoryServiceProperties inventoryServiceProperties;
 
   @BeforeEach
@@ -651,7 +668,133 @@ class InventoryControllerTest {
 
     controller.updateInventoryForOrg("123");
     verify(inventoryService, times(1)).flushHostUpdates();
-    verify(taskManager, times(1)).updateOrgInventory("123", "next-offset");
+    verify(taskManager, times(1)).updateOrgInventory(eq("123"), eq("next-offset"), anyLong());
+  }
+
+  @Test
+  void processesSeveralPagesPerTaskWhenConfigured()
+      throws ApiException, MissingAccountNumberException {
+    orgSyncProperties.setPagesPerTask(3);
+    try {
+      when(rhsmService.getPageOfConsumers(eq("123"), nullable(String.class), anyString()))
+          .thenReturn(fullPageEndingAt("offset-1"));
+      when(rhsmService.getPageOfConsumers(eq("123"), eq("offset-1"), anyString()))
+          .thenReturn(fullPageEndingAt("offset-2"));
+      when(rhsmService.getPageOfConsumers(eq("123"), eq("offset-2"), anyString()))
+          .thenReturn(fullPageEndingAt("offset-3"));
+
+      controller.updateInventoryForOrg("123");
+
+      verify(rhsmService, times(3)).getPageOfConsumers(eq("123"), any(), anyString());
+      verify(inventoryService, times(3)).flushHostUpdates();
+      verify(taskManager).updateOrgInventory(eq("123"), eq("offset-3"), anyLong());
+      verifyNoMoreInteractions(taskManager);
+    } finally {
+      orgSyncProperties.setPagesPerTask(1);
+    }
+  }
+
+  @Test
+  void passesSyncStartTimeToTaskForNextPage() throws ApiException, MissingAccountNumberException {
+    when(rhsmService.getPageOfConsumers(eq("123"), eq("offset-1"), anyString()))
+        .thenReturn(fullPageEndingAt("offset-2"));
+
+    controller.updateInventoryForOrg("123", "offset-1", 42L);
+
+    verify(taskManager).updateOrgInventory("123", "offset-2", 42L);
+  }
+
+  @Test
+  void requeuesOrgSyncWhenNoPermitIsFree() throws Exception {
+    OrgSyncProperties properties = new OrgSyncProperties();
+    properties.setMaxConcurrentOrgs(1);
+    properties.setOrgPermitWait(Duration.ofMillis(10));
+    InventoryController limitedController = controllerWith(properties);
+    CountDownLatch fetching = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(rhsmService.getPageOfConsumers(eq("123"), nullable(String.class), anyString()))
+        .thenAnswer(
+            invocation -> {
+              fetching.countDown();
+              release.await(10, TimeUnit.SECONDS);
+              return pageOf();
+            });
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> firstSync = executor.submit(() -> limitedController.updateInventoryForOrg("123"));
+      assertTrue(fetching.await(10, TimeUnit.SECONDS));
+
+      limitedController.updateInventoryForOrg("456", "offset", 42L);
+
+      verify(taskManager).updateOrgInventory("456", "offset", 42L);
+      verify(rhsmService, never()).getPageOfConsumers(eq("456"), any(), anyString());
+      release.countDown();
+      firstSync.get(10, TimeUnit.SECONDS);
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+      limitedController.shutdown();
+    }
+  }
+
+  @Test
+  void transformsConsumersInParallelPreservingOrder()
+      throws ApiException, MissingAccountNumberException {
+    OrgSyncProperties properties = new OrgSyncProperties();
+    properties.setTransformParallelism(4);
+    InventoryController parallelController = controllerWith(properties);
+    Consumer[] consumers = new Consumer[10];
+    for (int i = 0; i < consumers.length; i++) {
+      consumers[i] = new Consumer();
+      consumers[i].setUuid(UUID.randomUUID().toString());
+      consumers[i].setAccountNumber("account");
+      consumers[i].setOrgId("123");
+    }
+    when(rhsmService.getPageOfConsumers(eq("123"), nullable(String.class), anyString()))
+        .thenReturn(pageOf(consumers));
+
+    try {
+      parallelController.updateInventoryForOrg("123");
+    } finally {
+      parallelController.shutdown();
+    }
+
+    ArgumentCaptor<ConduitFacts> facts = ArgumentCaptor.forClass(ConduitFacts.class);
+    verify(inventoryService, times(consumers.length)).scheduleHostUpdate(facts.capture());
+    assertEquals(
+        Arrays.stream(consumers).map(Consumer::getUuid).collect(Collectors.toList()),
+        facts.getAllValues().stream()
+            .map(ConduitFacts::getSubscriptionManagerId)
+            .collect(Collectors.toList()));
+    verify(inventoryService, times(1)).flushHostUpdates();
+  }
+
+  private InventoryController controllerWith(OrgSyncProperties properties) {
+    InventoryController inventoryController =
+        new InventoryController(
+            inventoryService,
+            rhsmService,
+            validator,
+            new MacAddressValidator(),
+            new IpAddressValidator(),
+            taskManager,
+            properties,
+            new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(
+        inventoryController, "serviceProperties", inventoryServiceProperties);
+    return inventoryController;
+  }
+
+  private OrgInventory fullPageEndingAt(String lastConsumerId) {
+    Consumer[] consumers = new Consumer[rhsmApiProperties.getRequestBatchSize()];
+    for (int i = 0; i < consumers.length; i++) {
+      consumers[i] = new Consumer();
+      consumers[i].setId(lastConsumerId);
+      consumers[i].setUuid(UUID.randomUUID().toString());
+      consumers[i].setAccountNumber("account");
+      consumers[i].setOrgId("123");
+    }
+    return pageOf(consumers);
   }
 
   @Test
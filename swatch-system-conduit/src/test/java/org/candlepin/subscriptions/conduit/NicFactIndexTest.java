@@ -0,0 +1,72 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.conduit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class NicFactIndexTest {
+
+  @Test
+  void classifiesIpAddressFactsLikeTheFactRegex() {
+    List<String> keys =
+        List.of(
+            "net.interface.eth0.ipv4_address",
+            "net.interface.eth0.ipv4_address_list",
+            "net.interface.eth0.ipv4_address.global_list",
+            "net.interface.eth0.ipv6_address.link",
+            "net.interface.eth0.ipv6_address.link_list",
+            "net.interface.eth0.ipv6_address.host",
+            "net.interface.eth0.ipv6_address.global_list.extra",
+            "net.interface.eth0.ipv4_netmask",
+            "net.interface.eth0.100.ipv4_address",
+            "net.interface..ipv4_address",
+            "net.interface.ipv4_address",
+            "net.interface.virbr0-nic.ipv4_address",
+            "network.ipv4_address",
+            "net.interface.eth0.mac_address");
+    Map<String, String> facts = new LinkedHashMap<>();
+    keys.forEach(key -> facts.put(key, "value"));
+
+    var index = new NicFactIndex(facts);
+
+    assertEquals(
+        keys.stream()
+            .filter(key -> key.matches(InventoryController.IP_ADDRESS_FACT_REGEX))
+            .collect(Collectors.toList()),
+        index.getIpAddressFacts().stream().map(Map.Entry::getKey).collect(Collectors.toList()));
+    assertEquals(
+        List.of("net.interface.eth0.mac_address"),
+        index.getMacAddressFacts().stream().map(Map.Entry::getKey).collect(Collectors.toList()));
+  }
+
+  @Test
+  void skipsEmptyIpAddressFacts() {
+    var index = new NicFactIndex(Map.of("net.interface.eth0.ipv4_address", ""));
+
+    assertEquals(List.of(), index.getIpAddressFacts());
+  }
+}
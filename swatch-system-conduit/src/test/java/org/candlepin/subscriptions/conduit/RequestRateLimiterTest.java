@@ -0,0 +1,86 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.conduit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class RequestRateLimiterTest {
+
+  @Test
+  void testRequestsAreSpacedOut() throws InterruptedException {
+    RequestRateLimiter limiter = new RequestRateLimiter(20);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 5; i++) {
+      limiter.acquire();
+    }
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    // The first request starts right away, the next four 50ms apart.
+    assertTrue(elapsedMillis >= 190, "Requests took only " + elapsedMillis + "ms");
+  }
+
+  @Test
+  void testRequestsAreSpacedOutAcrossThreads() throws Exception {
+    RequestRateLimiter limiter = new RequestRateLimiter(20);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      long start = System.nanoTime();
+      List<Future<?>> requests = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        requests.add(
+            executor.submit(
+                () -> {
+                  limiter.acquire();
+                  return null;
+                }));
+      }
+      for (Future<?> request : requests) {
+        request.get(10, TimeUnit.SECONDS);
+      }
+      long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+      assertTrue(elapsedMillis >= 340, "Requests took only " + elapsedMillis + "ms");
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testNoLimitDoesNotWait() throws InterruptedException {
+    RequestRateLimiter limiter = new RequestRateLimiter(0);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 1000; i++) {
+      limiter.acquire();
+    }
+
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+  }
+}
@@ -47,6 +47,7 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.retry.backoff.NoBackOffPolicy;
 import org.springframework.retry.support.RetryTemplate;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.concurrent.SettableListenableFuture;
 
 @SpringBootTest
 @ExtendWith(MockitoExtension.class)
@@ -163,6 +164,27 @@ class KafkaEnabledInventoryServiceTest {
     verify(producer, times(2)).send(anyString(), any());
   }
 
+  @Test
+  void highThroughputModeSendsQueuedHostsOnFlushWithoutRetrying() {
+    when(producer.send(anyString(), any(CreateUpdateHostMessage.class)))
+        .thenReturn(new SettableListenableFuture<>())
+        .thenThrow(KafkaException.class);
+
+    InventoryServiceProperties props = new InventoryServiceProperties();
+    props.setKafkaHostIngressTopic("placeholder");
+    props.setKafkaHighThroughput(true);
+    KafkaEnabledInventoryService service =
+        new KafkaEnabledInventoryService(props, producer, meterRegistry, retryTemplate);
+    service.scheduleHostUpdate(new ConduitFacts());
+    service.scheduleHostUpdate(new ConduitFacts());
+    verifyNoInteractions(producer);
+
+    service.flushHostUpdates();
+
+    verify(producer, times(2)).send(anyString(), any(CreateUpdateHostMessage.class));
+    verify(mockCounter).increment();
+  }
+
   @Test
   void testStaleTimestampUpdatedBasedOnSyncTimestampAndOffset() {
     ArgumentCaptor<String> topicCaptor = ArgumentCaptor.forClass(String.class);
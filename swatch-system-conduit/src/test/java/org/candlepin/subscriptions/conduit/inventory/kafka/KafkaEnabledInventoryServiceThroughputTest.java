@@ -0,0 +1,112 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.conduit.inventory.kafka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.candlepin.subscriptions.conduit.inventory.ConduitFacts;
+import org.candlepin.subscriptions.conduit.inventory.InventoryServiceProperties;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.retry.support.RetryTemplate;
+
+@EmbeddedKafka(partitions = 3, topics = KafkaEnabledInventoryServiceThroughputTest.TOPIC)
+class KafkaEnabledInventoryServiceThroughputTest {
+
+  static final String TOPIC = "platform.inventory.host-ingress";
+  private static final int HOST_COUNT = 5000;
+
+  private static final Logger log =
+      LoggerFactory.getLogger(KafkaEnabledInventoryServiceThroughputTest.class);
+
+  @Test
+  void highThroughputModeDeliversEveryHostMessage(EmbeddedKafkaBroker broker) {
+    InventoryServiceProperties props = new InventoryServiceProperties();
+    props.setKafkaHostIngressTopic(TOPIC);
+    props.setKafkaHighThroughput(true);
+    props.setApiHostUpdateBatchSize(500);
+    KafkaProperties kafkaProperties = new KafkaProperties();
+    kafkaProperties.setBootstrapServers(List.of(broker.getBrokersAsString()));
+    ObjectMapper mapper =
+        new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    DefaultKafkaProducerFactory<String, CreateUpdateHostMessage> factory =
+        new InventoryServiceKafkaConfigurator()
+            .defaultProducerFactory(kafkaProperties, mapper, props, meterRegistry);
+    try {
+      KafkaTemplate<String, CreateUpdateHostMessage> template = new KafkaTemplate<>(factory);
+      KafkaEnabledInventoryService service =
+          new KafkaEnabledInventoryService(props, template, meterRegistry, new RetryTemplate());
+      List<ConduitFacts> hosts =
+          IntStream.range(0, HOST_COUNT).mapToObj(this::host).collect(Collectors.toList());
+
+      long start = System.nanoTime();
+      hosts.forEach(service::scheduleHostUpdate);
+      service.flushHostUpdates();
+      template.flush();
+      double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+      log.info(
+          "Delivered {} host messages ({} bytes serialized) in {}s: {} messages/s",
+          HOST_COUNT,
+          (long) meterRegistry.counter("rhsm-conduit.inventory-message.size.bytes").count(),
+          seconds,
+          Math.round(HOST_COUNT / seconds));
+      assertEquals(
+          HOST_COUNT, meterRegistry.counter("rhsm-conduit.send.inventory-message").count());
+      assertEquals(0, meterRegistry.counter("rhsm.conduit.send.inventory-message.failed").count());
+    } finally {
+      factory.destroy();
+    }
+  }
+
+  private ConduitFacts host(int index) {
+    ConduitFacts facts = new ConduitFacts();
+    facts.setOrgId("org" + index % 10);
+    facts.setAccountNumber("account" + index % 10);
+    facts.setSubscriptionManagerId(UUID.randomUUID().toString());
+    facts.setInsightsId(UUID.randomUUID().toString());
+    facts.setFqdn("host" + index + ".example.com");
+    facts.setCpuSockets(2);
+    facts.setCpuCores(8);
+    facts.setOsName("Red Hat Enterprise Linux Server");
+    facts.setOsVersion("8.6");
+    facts.setRhProd(List.of("69", "479", "290"));
+    facts.setIpAddresses(List.of("10.0.0." + index % 250, "192.168.1." + index % 250));
+    return facts;
+  }
+}
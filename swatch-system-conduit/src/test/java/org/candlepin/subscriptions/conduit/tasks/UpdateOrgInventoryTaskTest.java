@@ -39,6 +39,13 @@ class UpdateOrgInventoryTaskTest {
     String expectedOrg = "my-org";
     UpdateOrgInventoryTask task = new UpdateOrgInventoryTask(controller, expectedOrg, null);
     task.execute();
-    Mockito.verify(controller).updateInventoryForOrg(expectedOrg, null);
+    Mockito.verify(controller).updateInventoryForOrg(expectedOrg, null, null);
+  }
+
+  @Test
+  void testExecutePassesSyncStartTime() throws MissingAccountNumberException, ApiException {
+    UpdateOrgInventoryTask task = new UpdateOrgInventoryTask(controller, "my-org", "offset", 42L);
+    task.execute();
+    Mockito.verify(controller).updateInventoryForOrg("my-org", "offset", 42L);
   }
 }